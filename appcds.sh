@@ -0,0 +1,54 @@
+#!/usr/bin/env bash
+# appcds.sh
+# Usage: ./appcds.sh target/gpx-verifier-0.0.1-SNAPSHOT.jar [output-dir]
+#
+# Builds an AppCDS archive for the verifier so a new instance loads its
+# classes from a memory-mapped archive instead of parsing them from jars:
+#   1. extracts the jar (CDS needs a plain classpath, not nested jars)
+#   2. runs a training start on an in-memory H2 database with the startup
+#      warmup, so the GPX pipeline, JDBC and Jackson classes are loaded,
+#      then exits and writes application.jsa
+# Run the instance from the extracted jar with the archive afterwards.
+
+set -e
+
+if [ -z "$1" ]; then
+  echo "Usage: $0 /path/to/app.jar [output-dir]"
+  exit 1
+fi
+
+JAR="$1"
+OUT="${2:-$(dirname "$JAR")/cds}"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+
+if [ ! -f "$JAR" ]; then
+  echo "Error: '$JAR' does not exist or is not a file."
+  exit 1
+fi
+
+echo "Extracting $JAR to $OUT"
+rm -rf "$OUT"
+"$JAVA" -Djarmode=tools -jar "$JAR" extract --destination "$OUT"
+APP_JAR="$OUT/$(basename "$JAR")"
+WORK="$(mktemp -d)"
+trap 'rm -rf "$WORK"' EXIT
+
+echo "Training run (startup + warmup), writing $OUT/application.jsa"
+"$JAVA" -XX:ArchiveClassesAtExit="$OUT/application.jsa" -jar "$APP_JAR" \
+  --spring.profiles.active=embedded \
+  "--spring.datasource.url=jdbc:h2:mem:cds;MODE=MySQL;DATABASE_TO_LOWER=TRUE;IGNORE_UNKNOWN_SETTINGS=TRUE" \
+  --verifier.blob-store.root="$WORK/blobs" \
+  --server.port=0 \
+  --verifier.warmup.enabled=true \
+  --verifier.warmup.exit-after=true \
+  --logging.level.org.springframework.jdbc.core=INFO > "$WORK/training.log" 2>&1 || true
+
+if [ ! -f "$OUT/application.jsa" ]; then
+  echo "Error: no archive written; training output:"
+  tail -30 "$WORK/training.log"
+  exit 1
+fi
+
+grep "\[WarmupService\]" "$WORK/training.log" || true
+echo "Done. Start instances with:"
+echo "  java -XX:SharedArchiveFile=$OUT/application.jsa -jar $APP_JAR"
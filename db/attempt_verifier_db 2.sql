@@ -25,7 +25,7 @@ GRANT ALL PRIVILEGES ON attempt_verifier_db.* TO 'attempt_user'@'localhost';
 FLUSH PRIVILEGES;
 
 
--- 2. SCHEMA DEFINITION: Create all 4 tables
+-- 2. SCHEMA DEFINITION: Create all tables
 
 -- Switch context to the new database
 USE attempt_verifier_db;
@@ -48,11 +48,40 @@ CREATE TABLE attempts (
     -- --- Fields required by the Java repository logic ---
     coverage_ratio DOUBLE,
     max_deviation_m DOUBLE,
-    gpx_data BLOB,                     -- Stores the raw GPX file bytes 
+    gpx_data BLOB,                     -- Legacy inline GPX bytes; new files go to the GpxBlobStore
+
+    -- Time-based metrics (NULL when the GPX has no timestamps)
+    elapsed_time_s BIGINT,
+    moving_time_s BIGINT,
+    avg_pace_s_per_km DOUBLE,
+    max_speed_kmh DOUBLE,               -- fastest plausible segment
+    speed_spikes INT,                   -- teleports / vehicle segments; > 0 flags the attempt
+
+    -- Ordered checkpoint check (NULL when the route has no checkpoints)
+    checkpoints_reached INT,
+    checkpoints_total INT,
+
+    -- Progress along the route from per-point chainage (NULL without a packed track)
+    progress_km DOUBLE,                 -- furthest continuous progress along the route
+    route_completion DOUBLE,            -- share of the route distance covered, 0.0–1.0
+    skipped_km DOUBLE,                  -- route sections before progress_km never covered
+
+    -- Recording gaps: not counted in distance_km
+    track_segments INT,                 -- <trkseg> count in the file
+    gap_km DOUBLE,                      -- straight-line km across segment and pause gaps
+
+    -- Content-hash dedup: SHA-256 of the uploaded file and of the route file.
+    -- gpx_sha256 is also the key of the raw file in the GpxBlobStore.
+    gpx_sha256 CHAR(64),
+    route_hash CHAR(64),
 
     -- Verification outcome
     result VARCHAR(20) NOT NULL,        -- Stores VERIFIED, FLAGGED, or REJECTED
-    message VARCHAR(255)                -- Optional diagnostic/explanation message
+    message VARCHAR(255),               -- Optional diagnostic/explanation message
+
+    -- One row per (route, file, runner); duplicate uploads become an indexed lookup
+    UNIQUE KEY uq_attempts_route_content (route_hash, gpx_sha256, runner_id),
+    KEY idx_attempts_gpx_sha256 (gpx_sha256)
 );
 
 
@@ -81,15 +110,149 @@ CREATE TABLE routes (
 CREATE TABLE attempt_metrics (
     metric_id BIGINT AUTO_INCREMENT PRIMARY KEY,
     attempt_id BIGINT NOT NULL UNIQUE,  -- FK to core attempts table
-    time_taken_seconds INT,
+    time_taken_seconds INT,             -- elapsed time of the track, written with packed_track
     weather_conditions VARCHAR(100),
     version_checked VARCHAR(50),
+
+    -- Derived track written at verification time (DerivedTrackCodec):
+    -- delta-encoded coordinates, simplification levels, on/off-route flags.
+    -- Read paths use it instead of re-parsing the GPX.
+    packed_track MEDIUMBLOB,
     
     -- Foreign Key Link (for ERD documentation)
     FOREIGN KEY (attempt_id) REFERENCES attempts(id)
 );
 
 
+-- Table 5: gpx_blobs (RAW GPX FILES, used when verifier.blob-store.type=database)
+-- Content-addressed: one row per distinct file, shared by all attempts with that hash.
+CREATE TABLE gpx_blobs (
+    sha256 CHAR(64) PRIMARY KEY,
+    size_bytes BIGINT NOT NULL,
+    data LONGBLOB NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+
+-- Table 6: reverify_jobs (BULK RE-VERIFICATION PROGRESS + CHECKPOINT)
+-- last_attempt_id is the keyset position up to which results were written;
+-- a job left RUNNING by a crash resumes from there on startup.
+CREATE TABLE reverify_jobs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,         -- RUNNING, COMPLETED, CANCELLED, FAILED
+    route_hash CHAR(64) NOT NULL,
+    tolerance_m DOUBLE NOT NULL,
+    stale_only BOOLEAN NOT NULL,
+    last_attempt_id BIGINT NOT NULL DEFAULT 0,
+    total_attempts INT NOT NULL DEFAULT 0,
+    processed INT NOT NULL DEFAULT 0,
+    changed INT NOT NULL DEFAULT 0,
+    skipped INT NOT NULL DEFAULT 0,
+    failed INT NOT NULL DEFAULT 0,       -- attempts whose re-verification threw, left unchanged
+    failed_attempt_ids VARCHAR(1000),    -- first 50 of them, comma-separated
+    started_at DATETIME NOT NULL,
+    updated_at DATETIME NOT NULL,
+    message VARCHAR(255),
+    KEY idx_reverify_jobs_status (status)
+);
+
+
+-- Table 7: runner_summaries (LEADERBOARD AGGREGATES PER ROUTE + RUNNER)
+-- Upserted with every saved attempt; refreshed per runner by bulk re-verification.
+CREATE TABLE runner_summaries (
+    route_hash CHAR(64) NOT NULL,
+    runner_id VARCHAR(100) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    verified INT NOT NULL DEFAULT 0,
+    flagged INT NOT NULL DEFAULT 0,
+    rejected INT NOT NULL DEFAULT 0,
+    best_verified_score DOUBLE,           -- NULL until the first VERIFIED attempt
+    best_attempt_id BIGINT,
+    last_attempt_at DATETIME,
+    PRIMARY KEY (route_hash, runner_id),
+    KEY idx_runner_summaries_board (route_hash, best_verified_score),
+    KEY idx_runner_summaries_runner (runner_id)
+);
+
+
+-- Table 8: attempt_checkpoints (PER-CHECKPOINT OUTCOME + SPLIT TIMES)
+CREATE TABLE attempt_checkpoints (
+    attempt_id BIGINT NOT NULL,
+    seq INT NOT NULL,                   -- checkpoint order along the route
+    name VARCHAR(255),
+    chainage_m DOUBLE NOT NULL,
+    reached BOOLEAN NOT NULL,
+    point_index INT,                    -- first attempt point within the radius
+    reached_at DATETIME,
+    elapsed_s BIGINT,                   -- since the attempt's first timestamp
+    split_s BIGINT,                     -- since the previous reached checkpoint
+    PRIMARY KEY (attempt_id, seq),
+    FOREIGN KEY (attempt_id) REFERENCES attempts(id)
+);
+
+
+-- Table 9: idempotency_keys (Idempotency-Key HEADER OF /api/attempts/upload)
+-- First request with a key creates the attempt; retries return it. Rows older
+-- than verifier.idempotency.ttl-hours are ignored and purged.
+CREATE TABLE idempotency_keys (
+    idem_key VARCHAR(128) PRIMARY KEY,
+    runner_id VARCHAR(100) NOT NULL,
+    attempt_id BIGINT NOT NULL,
+    created_at DATETIME NOT NULL,
+    KEY idx_idempotency_keys_created (created_at)
+);
+
+
+-- Table 10: attempt_sync (EMBEDDED NODES ONLY: ATTEMPTS PUSHED TO CENTRAL)
+-- Written by CentralSyncService on nodes running the embedded H2 profile;
+-- stays empty on the central MySQL.
+CREATE TABLE attempt_sync (
+    attempt_id BIGINT PRIMARY KEY,
+    central_attempt_id BIGINT,           -- attempts.id on the central database, NULL while failing
+    synced_at DATETIME,
+    failures INT NOT NULL DEFAULT 0,     -- failed pushes; retried up to verifier.sync.max-failures
+    last_error VARCHAR(500),
+    failed_at DATETIME,
+    FOREIGN KEY (attempt_id) REFERENCES attempts(id)
+);
+
+
+-- Table 11: id_blocks (ID RESERVATION FOR verifier.write-behind.enabled=true)
+-- Write-behind hands out attempt ids from reserved blocks, so the API can
+-- return an id before the row is inserted.
+CREATE TABLE id_blocks (
+    name VARCHAR(50) PRIMARY KEY,       -- 'attempts'
+    next_id BIGINT NOT NULL             -- first id not yet reserved
+);
+
+
+-- Table 12: attempt_cells (GEOHASH INDEX OF ATTEMPT POINTS)
+-- cell is a 7-character geohash (~150 m) as its 35-bit integer; a shorter
+-- geohash is a contiguous range of these, so area queries are range scans.
+CREATE TABLE attempt_cells (
+    cell BIGINT NOT NULL,
+    attempt_id BIGINT NOT NULL,
+    points INT NOT NULL,                -- attempt points in the cell
+    off_route_points INT NOT NULL,      -- of which off the official route
+    PRIMARY KEY (cell, attempt_id),
+    KEY idx_attempt_cells_attempt (attempt_id),
+    FOREIGN KEY (attempt_id) REFERENCES attempts(id)
+);
+
+
+-- Table 13: heatmap_cells (attempt_cells SUMMED PER CELL, FOR HEATMAP TILES)
+-- Kept at geohash lengths 5, 6 and 7, updated by deltas when an attempt's
+-- cells are written or replaced.
+CREATE TABLE heatmap_cells (
+    precision_chars TINYINT NOT NULL,   -- geohash length of cell
+    cell BIGINT NOT NULL,
+    points BIGINT NOT NULL,
+    off_route_points BIGINT NOT NULL,
+    attempts INT NOT NULL,              -- attempts with points in the cell
+    PRIMARY KEY (precision_chars, cell)
+);
+
+
 -- --- Conceptual Foreign Key Definitions (For ERD Documentation) ---
 
 -- Link attempts to users (using runner_id as the conceptual foreign key)
@@ -0,0 +1,176 @@
+-- --------------------------------------------------------------------------
+-- Attempt Verifier Database Upgrade Script
+--
+-- Brings a database created with an older version of
+-- 'attempt_verifier_db 2.sql' up to the current schema.
+-- Fresh installs do not need this; run each section once, in order.
+-- --------------------------------------------------------------------------
+
+USE attempt_verifier_db;
+
+-- Content-hash deduplication of GPX uploads
+ALTER TABLE attempts
+    ADD COLUMN gpx_sha256 CHAR(64) AFTER gpx_data,
+    ADD COLUMN route_hash CHAR(64) AFTER gpx_sha256,
+    ADD UNIQUE KEY uq_attempts_route_content (route_hash, gpx_sha256, runner_id),
+    ADD KEY idx_attempts_gpx_sha256 (gpx_sha256);
+
+-- GpxBlobStore (database-backed variant; the default store is the filesystem)
+CREATE TABLE gpx_blobs (
+    sha256 CHAR(64) PRIMARY KEY,
+    size_bytes BIGINT NOT NULL,
+    data LONGBLOB NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Derived packed track per attempt (filled lazily for existing attempts)
+ALTER TABLE attempt_metrics
+    ADD COLUMN packed_track MEDIUMBLOB;
+
+-- Bulk re-verification jobs
+CREATE TABLE reverify_jobs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,         -- RUNNING, COMPLETED, CANCELLED, FAILED
+    route_hash CHAR(64) NOT NULL,
+    tolerance_m DOUBLE NOT NULL,
+    stale_only BOOLEAN NOT NULL,
+    last_attempt_id BIGINT NOT NULL DEFAULT 0,
+    total_attempts INT NOT NULL DEFAULT 0,
+    processed INT NOT NULL DEFAULT 0,
+    changed INT NOT NULL DEFAULT 0,
+    skipped INT NOT NULL DEFAULT 0,
+    started_at DATETIME NOT NULL,
+    updated_at DATETIME NOT NULL,
+    message VARCHAR(255),
+    KEY idx_reverify_jobs_status (status)
+);
+
+-- Leaderboard aggregates; fill once from existing attempts with the INSERT below
+CREATE TABLE runner_summaries (
+    route_hash CHAR(64) NOT NULL,
+    runner_id VARCHAR(100) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    verified INT NOT NULL DEFAULT 0,
+    flagged INT NOT NULL DEFAULT 0,
+    rejected INT NOT NULL DEFAULT 0,
+    best_verified_score DOUBLE,           -- NULL until the first VERIFIED attempt
+    best_attempt_id BIGINT,
+    last_attempt_at DATETIME,
+    PRIMARY KEY (route_hash, runner_id),
+    KEY idx_runner_summaries_board (route_hash, best_verified_score),
+    KEY idx_runner_summaries_runner (runner_id)
+);
+
+INSERT INTO runner_summaries
+(route_hash, runner_id, attempts, verified, flagged, rejected,
+ best_verified_score, best_attempt_id, last_attempt_at)
+SELECT a.route_hash, a.runner_id, COUNT(*),
+       SUM(CASE WHEN a.result = 'VERIFIED' THEN 1 ELSE 0 END),
+       SUM(CASE WHEN a.result = 'FLAGGED'  THEN 1 ELSE 0 END),
+       SUM(CASE WHEN a.result = 'REJECTED' THEN 1 ELSE 0 END),
+       MAX(CASE WHEN a.result = 'VERIFIED' THEN a.difficulty_score END),
+       (SELECT b.id FROM attempts b
+        WHERE b.route_hash = a.route_hash AND b.runner_id = a.runner_id
+          AND b.result = 'VERIFIED'
+        ORDER BY b.difficulty_score DESC, b.id ASC
+        LIMIT 1),
+       MAX(a.timestamp)
+FROM attempts a
+WHERE a.route_hash IS NOT NULL
+GROUP BY a.route_hash, a.runner_id;
+
+-- Time-based metrics (filled for existing rows by POST /api/admin/reverify)
+ALTER TABLE attempts
+    ADD COLUMN elapsed_time_s BIGINT,
+    ADD COLUMN moving_time_s BIGINT,
+    ADD COLUMN avg_pace_s_per_km DOUBLE,
+    ADD COLUMN max_speed_kmh DOUBLE,
+    ADD COLUMN speed_spikes INT;
+
+-- Ordered checkpoints (filled for existing rows by POST /api/admin/reverify)
+ALTER TABLE attempts
+    ADD COLUMN checkpoints_reached INT,
+    ADD COLUMN checkpoints_total INT;
+
+CREATE TABLE attempt_checkpoints (
+    attempt_id BIGINT NOT NULL,
+    seq INT NOT NULL,                   -- checkpoint order along the route
+    name VARCHAR(255),
+    chainage_m DOUBLE NOT NULL,
+    reached BOOLEAN NOT NULL,
+    point_index INT,                    -- first attempt point within the radius
+    reached_at DATETIME,
+    elapsed_s BIGINT,                   -- since the attempt's first timestamp
+    split_s BIGINT,                     -- since the previous reached checkpoint
+    PRIMARY KEY (attempt_id, seq),
+    FOREIGN KEY (attempt_id) REFERENCES attempts(id)
+);
+
+-- Idempotent uploads (Idempotency-Key header)
+CREATE TABLE idempotency_keys (
+    idem_key VARCHAR(128) PRIMARY KEY,
+    runner_id VARCHAR(100) NOT NULL,
+    attempt_id BIGINT NOT NULL,
+    created_at DATETIME NOT NULL,
+    KEY idx_idempotency_keys_created (created_at)
+);
+
+-- Sync bookkeeping for embedded nodes (AttemptRepository.resetAll clears it)
+CREATE TABLE attempt_sync (
+    attempt_id BIGINT PRIMARY KEY,
+    central_attempt_id BIGINT NOT NULL,
+    synced_at DATETIME NOT NULL,
+    FOREIGN KEY (attempt_id) REFERENCES attempts(id)
+);
+
+-- Write-behind id reservation
+CREATE TABLE id_blocks (
+    name VARCHAR(50) PRIMARY KEY,       -- 'attempts'
+    next_id BIGINT NOT NULL             -- first id not yet reserved
+);
+
+-- Progress along the route (filled for existing rows by POST /api/admin/reverify)
+ALTER TABLE attempts
+    ADD COLUMN progress_km DOUBLE,
+    ADD COLUMN route_completion DOUBLE,
+    ADD COLUMN skipped_km DOUBLE;
+
+-- Recording gaps (filled for existing rows by POST /api/admin/reverify)
+ALTER TABLE attempts
+    ADD COLUMN track_segments INT,
+    ADD COLUMN gap_km DOUBLE;
+
+-- Geohash index and heatmap (filled for existing rows by POST /api/admin/reverify)
+CREATE TABLE attempt_cells (
+    cell BIGINT NOT NULL,
+    attempt_id BIGINT NOT NULL,
+    points INT NOT NULL,
+    off_route_points INT NOT NULL,
+    PRIMARY KEY (cell, attempt_id),
+    KEY idx_attempt_cells_attempt (attempt_id),
+    FOREIGN KEY (attempt_id) REFERENCES attempts(id)
+);
+
+CREATE TABLE heatmap_cells (
+    precision_chars TINYINT NOT NULL,
+    cell BIGINT NOT NULL,
+    points BIGINT NOT NULL,
+    off_route_points BIGINT NOT NULL,
+    attempts INT NOT NULL,
+    PRIMARY KEY (precision_chars, cell)
+);
+
+-- Central sync failures are recorded per attempt instead of stopping the sync
+ALTER TABLE attempt_sync
+    MODIFY central_attempt_id BIGINT NULL,
+    MODIFY synced_at DATETIME NULL,
+    ADD COLUMN failures INT NOT NULL DEFAULT 0,
+    ADD COLUMN last_error VARCHAR(500),
+    ADD COLUMN failed_at DATETIME;
+
+-- Re-verification records attempts that failed instead of stopping the job
+ALTER TABLE reverify_jobs
+    ADD COLUMN failed INT NOT NULL DEFAULT 0,
+    ADD COLUMN failed_attempt_ids VARCHAR(1000);
+
+-- End of script
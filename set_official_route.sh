@@ -26,3 +26,5 @@ cp "$SRC" "$DEST"
 
 echo "Done. New official route is now '$SRC'."
 echo "Restart Spring Boot for it to take effect if the app is running."
+echo "Then re-verify stored attempts against the new route:"
+echo "  curl -X POST http://localhost:8080/api/admin/reverify"
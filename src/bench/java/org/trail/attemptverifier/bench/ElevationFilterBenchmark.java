@@ -0,0 +1,58 @@
+package org.trail.attemptverifier.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.trail.attemptverifier.service.oop.ElevationFilter;
+import org.trail.attemptverifier.service.oop.ElevationFilterSpec;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the elevation filters over a synthetic 90k-point track
+ * (slow climb/descent profile plus 2 m Gaussian noise).
+ *
+ * Run: mvn -Pbench clean test-compile exec:exec
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ElevationFilterBenchmark {
+
+    private static final int POINTS = 90_000;
+
+    @Param({"raw", "hysteresis:3", "window:9", "kalman:0.5,9", "window:9+hysteresis:2"})
+    public String spec;
+
+    private double[] elevations;
+    private ElevationFilterSpec filterSpec;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        elevations = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            elevations[i] = 800 + 600 * Math.sin(i / 4000.0) + random.nextGaussian() * 2.0;
+        }
+        filterSpec = ElevationFilterSpec.parse(spec);
+    }
+
+    /** One track: filter every point and sum positive deltas (as TrackMetrics does). */
+    @Benchmark
+    public void gainPerTrack(Blackhole bh) {
+        ElevationFilter filter = filterSpec.create();
+        double prev = Double.NaN;
+        double gain = 0.0;
+        for (double e : elevations) {
+            double v = filter.filter(e);
+            if (!Double.isNaN(prev) && v > prev) {
+                gain += v - prev;
+            }
+            prev = v;
+        }
+        bh.consume(gain);
+    }
+}
@@ -0,0 +1,95 @@
+package org.trail.attemptverifier.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.trail.attemptverifier.model.TrackPoint;
+import org.trail.attemptverifier.util.GpxParser;
+import org.trail.attemptverifier.util.ParseLimits;
+import org.trail.attemptverifier.util.XmlValueDecoder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of decoding GPX coordinates and timestamps, per value and per file.
+ *
+ *  - decoder / jdk: one latitude plus one &lt;time&gt; from a reused
+ *    StringBuilder, as the readers hold them. jdk is the String-based path
+ *    (toString, trim, Double.parseDouble, Instant.parse).
+ *  - parseTrack: GpxParser over a generated 6000-point attempt with
+ *    &lt;ele&gt; and &lt;time&gt; on every point, as a watch writes it.
+ *
+ * Run with the GC profiler (the bench profile default) and compare
+ * gc.alloc.rate.norm, the bytes allocated per operation:
+ * mvn -Pbench clean test-compile exec:exec -Dbench=XmlValueDecoderBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XmlValueDecoderBenchmark {
+
+    private static final int VALUES = 1024;
+    private static final int TRACK_POINTS = 6000;
+
+    private StringBuilder[] latitudes;
+    private StringBuilder[] times;
+    private int next;
+
+    private GpxParser parser;
+    private byte[] track;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        latitudes = new StringBuilder[VALUES];
+        times = new StringBuilder[VALUES];
+        long t0 = 1_731_065_628_000L;
+        for (int i = 0; i < VALUES; i++) {
+            latitudes[i] = new StringBuilder(String.format("%.7f", 22.0 + random.nextDouble()));
+            long millis = t0 + i * 1000L + (i % 2 == 0 ? 0 : random.nextInt(1000));
+            times[i] = new StringBuilder(Instant.ofEpochMilli(millis).toString());
+        }
+
+        parser = new GpxParser(new ParseLimits(1_000_000, 32, 8192));
+        StringBuilder gpx = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<gpx version=\"1.1\" creator=\"bench\" xmlns=\"http://www.topografix.com/GPX/1/1\">\n"
+                + "<trk><trkseg>\n");
+        for (int i = 0; i < TRACK_POINTS; i++) {
+            gpx.append(String.format("<trkpt lat=\"%.7f\" lon=\"%.7f\"><ele>%.1f</ele><time>%s</time></trkpt>%n",
+                    22.3364 + i * 1e-5, 103.8438 - i * 1e-5, 1600.0 + (i % 300) * 0.4,
+                    Instant.ofEpochMilli(t0 + i * 1000L)));
+        }
+        gpx.append("</trkseg></trk>\n</gpx>\n");
+        track = gpx.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** One latitude and one time, decoded in place. */
+    @Benchmark
+    public void decoder(Blackhole bh) {
+        int i = next++ & (VALUES - 1);
+        bh.consume(XmlValueDecoder.parseDouble(latitudes[i]));
+        bh.consume(XmlValueDecoder.parseEpochMillis(times[i]));
+    }
+
+    /** One latitude and one time through Strings and the JDK parsers. */
+    @Benchmark
+    public void jdk(Blackhole bh) {
+        int i = next++ & (VALUES - 1);
+        bh.consume(Double.parseDouble(latitudes[i].toString().trim()));
+        bh.consume(Instant.parse(times[i].toString().trim()).toEpochMilli());
+    }
+
+    /** The whole file, List&lt;TrackPoint&gt; included. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<TrackPoint> parseTrack() {
+        return parser.parse(new ByteArrayInputStream(track));
+    }
+}
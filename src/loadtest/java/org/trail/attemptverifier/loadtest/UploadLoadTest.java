@@ -0,0 +1,356 @@
+package org.trail.attemptverifier.loadtest;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.trail.attemptverifier.AttemptVerifierApplication;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * End-to-end load generator for the REST API.
+ *
+ * Replays the GPX corpus (gpx/ and src/main/resources/gpx by default)
+ * against POST /api/attempts/upload, then GET /api/attempts/{id}/track for
+ * the created attempts, at a fixed concurrency. Reports per phase:
+ * throughput, p50/p95/p99/max latency, status codes, and heap/GC deltas.
+ *
+ * By default it starts the app in-process on a random port with an
+ * in-memory H2 database in MySQL mode and a temporary blob store, so GC
+ * and heap figures are the server's own. Set -Dloadtest.url to hit a
+ * running instance instead (heap/GC then describe the client only).
+ *
+ *   mvn -Ploadtest clean test-compile exec:exec
+ *   mvn -Ploadtest clean test-compile exec:exec -Dloadtest.concurrency=16 -Dloadtest.uploads=400
+ *
+ * Properties (all -Dloadtest.*):
+ *   url          external base URL (default: embedded instance)
+ *   concurrency  parallel clients (8)
+ *   uploads      upload requests in the measured phase (100)
+ *   tracks       track requests in the measured phase (400)
+ *   warmup       unmeasured requests per phase first (20)
+ *   level        simplification level for /track (0)
+ *   runners      distinct runner ids to spread uploads over (50)
+ *   unique       add a comment per upload so every file is new work,
+ *                not a dedup hit (true)
+ *   corpus       comma-separated files or directories
+ *                (gpx,src/main/resources/gpx)
+ *   app-args     extra --key=value settings for the embedded app, space
+ *                separated (e.g. --verifier.write-behind.enabled=true)
+ */
+public class UploadLoadTest {
+
+    private static final Pattern ID_PATTERN = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final String BOUNDARY = "----loadtest" + UUID.randomUUID();
+
+    private final String baseUrl;
+    private final int concurrency;
+    private final int runners;
+    private final boolean unique;
+    private final List<Path> corpus;
+    private final HttpClient client;
+
+    private final AtomicInteger uploadSeq = new AtomicInteger();
+
+    public UploadLoadTest(String baseUrl, int concurrency, int runners, boolean unique, List<Path> corpus) {
+        this.baseUrl = baseUrl;
+        this.concurrency = concurrency;
+        this.runners = runners;
+        this.unique = unique;
+        this.corpus = corpus;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = Integer.getInteger("loadtest.concurrency", 8);
+        int uploads = Integer.getInteger("loadtest.uploads", 100);
+        int tracks = Integer.getInteger("loadtest.tracks", 400);
+        int warmup = Integer.getInteger("loadtest.warmup", 20);
+        int level = Integer.getInteger("loadtest.level", 0);
+        int runners = Integer.getInteger("loadtest.runners", 50);
+        boolean unique = Boolean.parseBoolean(System.getProperty("loadtest.unique", "true"));
+        List<Path> corpus = findCorpus(System.getProperty("loadtest.corpus", "gpx,src/main/resources/gpx"));
+        if (corpus.isEmpty()) {
+            System.err.println("[UploadLoadTest] No .gpx files found in loadtest.corpus");
+            System.exit(1);
+        }
+
+        String url = System.getProperty("loadtest.url");
+        ConfigurableApplicationContext app = null;
+        if (url == null || url.isBlank()) {
+            app = startEmbedded();
+            int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+            url = "http://localhost:" + port;
+        }
+
+        try {
+            System.out.printf("Target %s, %d clients, %d corpus files (%.1f MB)%n",
+                    url, concurrency, corpus.size(), totalBytes(corpus) / 1e6);
+            UploadLoadTest test = new UploadLoadTest(url, concurrency, runners, unique, corpus);
+
+            test.run("upload warm-up", warmup, i -> test.upload(), false);
+            PhaseResult up = test.run("upload", uploads, i -> test.upload(), true);
+
+            List<Long> ids = new ArrayList<>(up.createdIds);
+            if (ids.isEmpty()) {
+                System.out.println("No attempts created; skipping the track phase.");
+            } else {
+                String query = level > 0 ? "?level=" + level : "";
+                test.run("track warm-up", warmup,
+                        i -> test.get("/api/attempts/" + ids.get(i % ids.size()) + "/track" + query), false);
+                test.run("track", tracks,
+                        i -> test.get("/api/attempts/" + ids.get(i % ids.size()) + "/track" + query), true);
+            }
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Embedded instance
+    // ------------------------------------------------------------
+
+    private static ConfigurableApplicationContext startEmbedded() throws IOException {
+        Path blobRoot = Files.createTempDirectory("loadtest-blobs");
+        Map<String, Object> props = new HashMap<>();
+        props.put("server.port", 0);
+        props.put("spring.datasource.url",
+                "jdbc:h2:mem:loadtest;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"
+                        // MySQL driver settings from application.properties reach H2 too
+                        + ";IGNORE_UNKNOWN_SETTINGS=TRUE");
+        props.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        props.put("spring.datasource.username", "sa");
+        props.put("spring.datasource.password", "");
+        props.put("spring.sql.init.mode", "always");
+        props.put("spring.sql.init.schema-locations", "classpath:db/schema-h2.sql");
+        props.put("verifier.blob-store.type", "filesystem");
+        props.put("verifier.blob-store.root", blobRoot.toString());
+        // Measure the verifier, not the per-runner rate limit
+        props.put("verifier.admission.runner-per-minute", 1_000_000);
+        props.put("verifier.admission.runner-burst", 1_000_000);
+        props.put("logging.level.org.springframework.jdbc.core", "WARN");
+        props.put("spring.main.banner-mode", "off");
+
+        // Command-line args, so they win over application.properties
+        List<String> args = new ArrayList<>();
+        props.forEach((k, v) -> args.add("--" + k + "=" + v));
+        for (String extra : System.getProperty("loadtest.app-args", "").trim().split("\\s+")) {
+            if (!extra.isEmpty()) {
+                args.add(extra);
+            }
+        }
+        return SpringApplication.run(AttemptVerifierApplication.class, args.toArray(new String[0]));
+    }
+
+    // ------------------------------------------------------------
+    // Requests
+    // ------------------------------------------------------------
+
+    @FunctionalInterface
+    private interface Call {
+        HttpResponse<String> send(int i) throws Exception;
+    }
+
+    private HttpResponse<String> upload() throws Exception {
+        int seq = uploadSeq.getAndIncrement();
+        Path file = corpus.get(seq % corpus.size());
+        byte[] gpx = Files.readAllBytes(file);
+        if (unique) {
+            byte[] marker = ("\n<!-- loadtest " + seq + " -->\n").getBytes(StandardCharsets.UTF_8);
+            gpx = Arrays.copyOf(gpx, gpx.length + marker.length);
+            System.arraycopy(marker, 0, gpx, gpx.length - marker.length, marker.length);
+        }
+        String runnerId = "load-runner-" + (seq % runners);
+
+        List<byte[]> parts = new ArrayList<>();
+        parts.add(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"runnerId\"\r\n\r\n"
+                + runnerId + "\r\n").getBytes(StandardCharsets.UTF_8));
+        parts.add(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + file.getFileName() + "\"\r\n"
+                + "Content-Type: application/gpx+xml\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        parts.add(gpx);
+        parts.add(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/attempts/upload"))
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(parts))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofMinutes(1))
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    // ------------------------------------------------------------
+    // Phase runner + report
+    // ------------------------------------------------------------
+
+    private static final class PhaseResult {
+        final List<Long> createdIds = new ArrayList<>();
+    }
+
+    private PhaseResult run(String name, int requests, Call call, boolean report) throws InterruptedException {
+        PhaseResult result = new PhaseResult();
+        if (requests <= 0) {
+            return result;
+        }
+
+        long[] latencyNanos = new long[requests];
+        Map<Integer, AtomicInteger> statuses = new TreeMap<>();
+        ConcurrentLinkedQueue<Long> ids = new ConcurrentLinkedQueue<>();
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(concurrency);
+
+        GcSnapshot before = GcSnapshot.take();
+        long start = System.nanoTime();
+
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        for (int c = 0; c < concurrency; c++) {
+            pool.execute(() -> {
+                try {
+                    int i;
+                    while ((i = next.getAndIncrement()) < requests) {
+                        long t0 = System.nanoTime();
+                        try {
+                            HttpResponse<String> resp = call.send(i);
+                            latencyNanos[i] = System.nanoTime() - t0;
+                            synchronized (statuses) {
+                                statuses.computeIfAbsent(resp.statusCode(), s -> new AtomicInteger()).incrementAndGet();
+                            }
+                            if (resp.statusCode() == 200) {
+                                Matcher m = ID_PATTERN.matcher(resp.body());
+                                if (m.find()) {
+                                    ids.add(Long.parseLong(m.group(1)));
+                                }
+                            }
+                        } catch (Exception e) {
+                            latencyNanos[i] = System.nanoTime() - t0;
+                            failures.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        pool.shutdown();
+
+        long wallNanos = System.nanoTime() - start;
+        GcSnapshot after = GcSnapshot.take();
+        result.createdIds.addAll(ids);
+
+        if (report) {
+            Arrays.sort(latencyNanos);
+            System.out.println();
+            System.out.printf("== %s: %d requests, %d clients, %.1f s%n",
+                    name, requests, concurrency, wallNanos / 1e9);
+            System.out.printf("   throughput   %.1f req/s%n", requests / (wallNanos / 1e9));
+            System.out.printf("   latency ms   p50 %.1f  p95 %.1f  p99 %.1f  max %.1f%n",
+                    percentileMs(latencyNanos, 50), percentileMs(latencyNanos, 95),
+                    percentileMs(latencyNanos, 99), latencyNanos[requests - 1] / 1e6);
+            System.out.printf("   status       %s%s%n", statuses,
+                    failures.get() > 0 ? "  transport errors " + failures.get() : "");
+            System.out.printf("   heap MB      used %.0f -> %.0f (committed %.0f, max %.0f)%n",
+                    before.heapUsed / 1e6, after.heapUsed / 1e6,
+                    after.heapCommitted / 1e6, after.heapMax / 1e6);
+            System.out.printf("   GC           %d collections, %d ms%n",
+                    after.gcCount - before.gcCount, after.gcMillis - before.gcMillis);
+        }
+        return result;
+    }
+
+    private static double percentileMs(long[] sorted, double p) {
+        int idx = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, idx))] / 1e6;
+    }
+
+    private static final class GcSnapshot {
+        long gcCount;
+        long gcMillis;
+        long heapUsed;
+        long heapCommitted;
+        long heapMax;
+
+        static GcSnapshot take() {
+            GcSnapshot s = new GcSnapshot();
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                s.gcCount += Math.max(0, gc.getCollectionCount());
+                s.gcMillis += Math.max(0, gc.getCollectionTime());
+            }
+            MemoryMXBean mem = ManagementFactory.getMemoryMXBean();
+            s.heapUsed = mem.getHeapMemoryUsage().getUsed();
+            s.heapCommitted = mem.getHeapMemoryUsage().getCommitted();
+            s.heapMax = mem.getHeapMemoryUsage().getMax();
+            return s;
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Corpus
+    // ------------------------------------------------------------
+
+    private static List<Path> findCorpus(String spec) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String entry : spec.split(",")) {
+            Path p = Paths.get(entry.trim());
+            if (Files.isDirectory(p)) {
+                try (Stream<Path> walk = Files.walk(p)) {
+                    walk.filter(f -> f.toString().toLowerCase().endsWith(".gpx"))
+                            .sorted()
+                            .forEach(files::add);
+                }
+            } else if (Files.isRegularFile(p)) {
+                files.add(p);
+            }
+        }
+        return files;
+    }
+
+    private static long totalBytes(List<Path> files) throws IOException {
+        long total = 0;
+        for (Path f : files) {
+            total += Files.size(f);
+        }
+        return total;
+    }
+}
@@ -2,8 +2,10 @@ package org.trail.attemptverifier;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(AttemptVerifierRuntimeHints.class)
 public class AttemptVerifierApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,87 @@
+package org.trail.attemptverifier;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.trail.attemptverifier.controller.AdminController;
+import org.trail.attemptverifier.controller.AttemptController;
+import org.trail.attemptverifier.controller.HealthController;
+import org.trail.attemptverifier.controller.LeaderboardController;
+import org.trail.attemptverifier.model.Attempt;
+import org.trail.attemptverifier.model.Checkpoint;
+import org.trail.attemptverifier.model.CheckpointSplit;
+import org.trail.attemptverifier.model.ReverificationJob;
+import org.trail.attemptverifier.model.RunnerSummary;
+import org.trail.attemptverifier.model.TrackPoint;
+import org.trail.attemptverifier.repository.AttemptCellRepository;
+import org.trail.attemptverifier.repository.RunnerSummaryRepository;
+import org.trail.attemptverifier.service.AdmissionControlService;
+import org.trail.attemptverifier.service.CentralSyncService;
+import org.trail.attemptverifier.service.RouteRegistry;
+import org.trail.attemptverifier.service.SpatialIndexService;
+import org.trail.attemptverifier.service.WarmupService;
+import org.trail.attemptverifier.util.Excursions;
+import org.trail.attemptverifier.util.RouteProgress;
+
+/**
+ * Reflection and resource hints for the native image (mvn -Pnative package).
+ *
+ * Spring AOT only sees the payload types of handler methods declared with a
+ * concrete type; most of ours return ResponseEntity&lt;?&gt;, so every JSON
+ * payload is registered here. The JDK DOM parser used by GpxParser is found
+ * through JAXP's factory lookup, and the official route, H2 schema and UI are
+ * loaded from the classpath at runtime.
+ */
+public class AttemptVerifierRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final Class<?>[] JSON_TYPES = {
+            Attempt.class,
+            TrackPoint.class,
+            Checkpoint.class,
+            CheckpointSplit.class,
+            RunnerSummary.class,
+            ReverificationJob.class,
+            RunnerSummaryRepository.RouteTotals.class,
+            AdmissionControlService.Stats.class,
+            CentralSyncService.SyncStatus.class,
+            WarmupService.Report.class,
+            RouteProgress.class,
+            Excursions.class,
+            Excursions.Excursion.class,
+            SpatialIndexService.AreaResult.class,
+            AttemptCellRepository.AreaAttempt.class,
+            SpatialIndexService.HeatmapTile.class,
+            SpatialIndexService.TileCell.class,
+            HealthController.Readiness.class,
+            AttemptController.ErrorResponse.class,
+            AttemptController.ResetResponse.class,
+            AdminController.RouteInfo.class,
+            RouteRegistry.RouteInfo.class,
+            RouteRegistry.Detection.class,
+            RouteRegistry.Candidate.class,
+            LeaderboardController.LeaderboardPage.class
+    };
+
+    private static final String[] XML_FACTORIES = {
+            "com.sun.org.apache.xerces.internal.jaxp.DocumentBuilderFactoryImpl",
+            "com.sun.org.apache.xerces.internal.jaxp.SAXParserFactoryImpl",
+            "com.sun.xml.internal.stream.XMLInputFactoryImpl"
+    };
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), JSON_TYPES);
+
+        for (String factory : XML_FACTORIES) {
+            hints.reflection().registerType(TypeReference.of(factory),
+                    MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+
+        hints.resources()
+                .registerPattern("gpx/*.gpx")
+                .registerPattern("db/*.sql")
+                .registerPattern("static/*");
+    }
+}
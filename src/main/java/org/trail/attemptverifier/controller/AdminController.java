@@ -0,0 +1,178 @@
+package org.trail.attemptverifier.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.trail.attemptverifier.controller.AttemptController.ErrorResponse;
+import org.trail.attemptverifier.model.ReverificationJob;
+import org.trail.attemptverifier.service.AdmissionControlService;
+import org.trail.attemptverifier.service.CentralSyncService;
+import org.trail.attemptverifier.service.ReverificationJobService;
+import org.trail.attemptverifier.service.RouteRegistry;
+import org.trail.attemptverifier.service.RouteService;
+import org.trail.attemptverifier.service.RouteSnapshot;
+
+import java.util.Optional;
+
+/**
+ * Organizer/admin operations: route and route registry reload, bulk re-verification,
+ * upload admission counters and central sync of embedded nodes.
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final ReverificationJobService reverificationJobService;
+    private final RouteService routeService;
+    private final RouteRegistry routeRegistry;
+    private final AdmissionControlService admissionControlService;
+    private final CentralSyncService centralSyncService;
+
+    public AdminController(ReverificationJobService reverificationJobService,
+                           RouteService routeService,
+                           RouteRegistry routeRegistry,
+                           AdmissionControlService admissionControlService,
+                           CentralSyncService centralSyncService) {
+        this.reverificationJobService = reverificationJobService;
+        this.routeService = routeService;
+        this.routeRegistry = routeRegistry;
+        this.admissionControlService = admissionControlService;
+        this.centralSyncService = centralSyncService;
+    }
+
+    // ------------------------------------------------------------
+    // GET /api/admin/admission
+    // Upload limits, current load (bytes in flight, queue depth)
+    // and admitted / rejected counters since startup
+    // ------------------------------------------------------------
+    @GetMapping(value = "/admission", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<AdmissionControlService.Stats> admissionStats() {
+        return ResponseEntity.ok(admissionControlService.getStats());
+    }
+
+    // ------------------------------------------------------------
+    // POST /api/admin/sync  → push unsynced attempts to central now
+    // GET  /api/admin/sync  → pending count and last round
+    // ------------------------------------------------------------
+    @PostMapping(value = "/sync", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> startSync() {
+        try {
+            centralSyncService.syncNow();
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(centralSyncService.getStatus());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping(value = "/sync", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<CentralSyncService.SyncStatus> syncStatus() {
+        return ResponseEntity.ok(centralSyncService.getStatus());
+    }
+
+    // ------------------------------------------------------------
+    // POST /api/admin/route/reload
+    // Re-reads the official route from verifier.route.location
+    // ------------------------------------------------------------
+    @PostMapping(value = "/route/reload", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> reloadRoute() {
+        RouteSnapshot route = routeService.reload();
+        if (route == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(new ErrorResponse("Official route could not be loaded."));
+        }
+        return ResponseEntity.ok(new RouteInfo(route.getHash(), route.getPoints().size(),
+                route.getIndex().lengthM() / 1000.0));
+    }
+
+    // ------------------------------------------------------------
+    // POST /api/admin/routes/reload
+    // Re-reads verifier.routes.directory for route auto-detection
+    // ------------------------------------------------------------
+    @PostMapping(value = "/routes/reload", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> reloadRoutes() {
+        routeRegistry.reload();
+        return ResponseEntity.ok(routeRegistry.list());
+    }
+
+    // ------------------------------------------------------------
+    // POST /api/admin/reverify?staleOnly=true
+    // Starts a background re-verification of stored attempts
+    // ------------------------------------------------------------
+    @PostMapping(value = "/reverify", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> startReverification(
+            @RequestParam(value = "staleOnly", defaultValue = "false") boolean staleOnly
+    ) {
+        try {
+            ReverificationJob job = reverificationJobService.start(staleOnly);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    // ------------------------------------------------------------
+    // GET /api/admin/reverify          → latest job
+    // GET /api/admin/reverify/{jobId}  → specific job
+    // ------------------------------------------------------------
+    @GetMapping(value = "/reverify", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> latestReverification() {
+        return jobOr404(reverificationJobService.findLatestJob(), "No re-verification job has run yet.");
+    }
+
+    @GetMapping(value = "/reverify/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getReverification(@PathVariable("jobId") Long jobId) {
+        return jobOr404(reverificationJobService.findJob(jobId), "Job ID " + jobId + " not found.");
+    }
+
+    // ------------------------------------------------------------
+    // POST /api/admin/reverify/cancel
+    // Stops the running job after its current batch
+    // ------------------------------------------------------------
+    @PostMapping(value = "/reverify/cancel", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> cancelReverification() {
+        if (!reverificationJobService.cancel()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse("No re-verification job is running."));
+        }
+        return reverificationJobService.findLatestJob()
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
+    private ResponseEntity<?> jobOr404(Optional<ReverificationJob> job, String notFound) {
+        if (job.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new ErrorResponse(notFound));
+        }
+        return ResponseEntity.ok(job.get());
+    }
+
+    // ------------------------------------------------------------
+    // DTOs
+    // ------------------------------------------------------------
+    public static class RouteInfo {
+        private final String routeHash;
+        private final int points;
+        private final double lengthKm;
+
+        public RouteInfo(String routeHash, int points, double lengthKm) {
+            this.routeHash = routeHash;
+            this.points = points;
+            this.lengthKm = lengthKm;
+        }
+
+        public String getRouteHash() {
+            return routeHash;
+        }
+
+        public int getPoints() {
+            return points;
+        }
+
+        public double getLengthKm() {
+            return lengthKm;
+        }
+    }
+}
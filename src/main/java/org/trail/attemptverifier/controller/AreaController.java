@@ -0,0 +1,66 @@
+package org.trail.attemptverifier.controller;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.trail.attemptverifier.controller.AttemptController.ErrorResponse;
+import org.trail.attemptverifier.service.SpatialIndexService;
+
+/**
+ * Spatial queries over all stored attempts: who ran through an area, and
+ * heatmap tiles of where attempts went (and where they left the route).
+ * Served from the geohash index, not from the GPX files.
+ */
+@RestController
+@RequestMapping("/api")
+public class AreaController {
+
+    private static final int MAX_AREA_LIMIT = 1000;
+    private static final int MAX_ZOOM = 22;
+
+    private final SpatialIndexService spatialIndexService;
+
+    public AreaController(SpatialIndexService spatialIndexService) {
+        this.spatialIndexService = spatialIndexService;
+    }
+
+    // ------------------------------------------------------------
+    // GET /api/attempts/area?minLat=&minLon=&maxLat=&maxLon=&limit=100
+    // Attempts with points in the box (snapped out to geohash cells),
+    // with how many points and how many of them were off route
+    // ------------------------------------------------------------
+    @GetMapping(value = "/attempts/area", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> attemptsInArea(
+            @RequestParam("minLat") double minLat,
+            @RequestParam("minLon") double minLon,
+            @RequestParam("maxLat") double maxLat,
+            @RequestParam("maxLon") double maxLon,
+            @RequestParam(value = "limit", defaultValue = "100") int limit
+    ) {
+        if (!(minLat >= -90 && maxLat <= 90 && minLat <= maxLat
+                && minLon >= -180 && maxLon <= 180 && minLon <= maxLon)) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("Box must satisfy -90 <= minLat <= maxLat <= 90 and -180 <= minLon <= maxLon <= 180."));
+        }
+        if (limit < 1 || limit > MAX_AREA_LIMIT) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("limit must be between 1 and " + MAX_AREA_LIMIT + "."));
+        }
+        return ResponseEntity.ok(spatialIndexService.findAttempts(minLat, minLon, maxLat, maxLon, limit));
+    }
+
+    // ------------------------------------------------------------
+    // GET /api/heatmap/{z}/{x}/{y}
+    // Pre-aggregated heatmap cells of one slippy-map tile
+    // ------------------------------------------------------------
+    @GetMapping(value = "/heatmap/{z}/{x}/{y}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> heatmapTile(@PathVariable("z") int z,
+                                         @PathVariable("x") int x,
+                                         @PathVariable("y") int y) {
+        if (z < 0 || z > MAX_ZOOM || x < 0 || y < 0 || x >= (1 << z) || y >= (1 << z)) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("Tile must have 0 <= z <= " + MAX_ZOOM + " and 0 <= x, y < 2^z."));
+        }
+        return ResponseEntity.ok(spatialIndexService.heatmapTile(z, x, y));
+    }
+}
@@ -1,16 +1,28 @@
 package org.trail.attemptverifier.controller;
 
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.trail.attemptverifier.model.Attempt;
+import org.trail.attemptverifier.model.CheckpointSplit;
 import org.trail.attemptverifier.model.TrackPoint;
-import org.trail.attemptverifier.repository.AttemptRepository;
+import org.trail.attemptverifier.repository.AttemptStore;
+import org.trail.attemptverifier.service.AdmissionControlService;
+import org.trail.attemptverifier.service.AdmissionControlService.AdmissionRejectedException;
 import org.trail.attemptverifier.service.AttemptVerifierService;
+import org.trail.attemptverifier.service.IdempotencyService;
+import org.trail.attemptverifier.util.Excursions;
+import org.trail.attemptverifier.util.RouteProgress;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,17 +36,35 @@ import java.util.Optional;
 public class AttemptController {
 
     private final AttemptVerifierService attemptVerifierService;
-    private final AttemptRepository attemptRepository;
+    private final AttemptStore attemptStore;
+    private final IdempotencyService idempotencyService;
+    private final AdmissionControlService admissionControlService;
+
+    /** Longest accepted Idempotency-Key (column idempotency_keys.idem_key). */
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 128;
+
+    /** Copy buffer for streamed GPX downloads. */
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
 
     public AttemptController(AttemptVerifierService attemptVerifierService,
-                             AttemptRepository attemptRepository) {
+                             AttemptStore attemptStore,
+                             IdempotencyService idempotencyService,
+                             AdmissionControlService admissionControlService) {
         this.attemptVerifierService = attemptVerifierService;
-        this.attemptRepository = attemptRepository;
+        this.attemptStore = attemptStore;
+        this.idempotencyService = idempotencyService;
+        this.admissionControlService = admissionControlService;
     }
 
     // ------------------------------------------------------------
     // POST /api/attempts/upload
     // Upload + verify GPX attempt
+    // Optional Idempotency-Key header: a retry with the same key
+    // returns the first attempt (Idempotency-Replayed: true) instead
+    // of verifying the file again.
+    // Admission control: 429 when the runner uploads too often,
+    // 503 when too many bytes are being verified; both with
+    // Retry-After. Replays skip admission.
     // ------------------------------------------------------------
     @PostMapping(
             path = "/upload",
@@ -43,7 +73,8 @@ public class AttemptController {
     )
     public ResponseEntity<?> uploadAttempt(
             @RequestParam("runnerId") String runnerId,
-            @RequestParam("file") MultipartFile gpxFile
+            @RequestParam("file") MultipartFile gpxFile,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey
     ) {
         if (runnerId == null || runnerId.isBlank()) {
             return ResponseEntity.badRequest()
@@ -51,18 +82,46 @@ public class AttemptController {
         }
         if (gpxFile == null || gpxFile.isEmpty()) {
             return ResponseEntity.badRequest()
-                    .body(new ErrorResponse("GPX file is required."));
+                    .body(new ErrorResponse("GPX, TCX or FIT file is required."));
+        }
+
+        if (idempotencyKey != null
+                && (idempotencyKey.isBlank() || idempotencyKey.trim().length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("Idempotency-Key must be 1-"
+                            + MAX_IDEMPOTENCY_KEY_LENGTH + " characters."));
         }
 
+        String runner = runnerId.trim();
         try {
-            Attempt attempt = attemptVerifierService.verifyAttempt(gpxFile, runnerId.trim());
-            return ResponseEntity.ok(attempt);
+            if (idempotencyKey == null) {
+                return ResponseEntity.ok(verifyAdmitted(gpxFile, runner));
+            }
+            IdempotencyService.Outcome outcome = idempotencyService.execute(
+                    idempotencyKey.trim(), runner,
+                    () -> verifyAdmitted(gpxFile, runner));
+            return ResponseEntity.ok()
+                    .header("Idempotency-Replayed", String.valueOf(outcome.isReplayed()))
+                    .body(outcome.getAttempt());
+        } catch (AdmissionRejectedException e) {
+            return ResponseEntity.status(e.getStatus())
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(new ErrorResponse(e.getMessage()));
+        } catch (IdempotencyService.KeyConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new ErrorResponse(e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new ErrorResponse("Verification failed: " + e.getMessage()));
         }
     }
 
+    private Attempt verifyAdmitted(MultipartFile gpxFile, String runnerId) throws Exception {
+        try (AdmissionControlService.Permit permit = admissionControlService.admit(runnerId, gpxFile.getSize())) {
+            return attemptVerifierService.verifyAttempt(gpxFile, runnerId);
+        }
+    }
+
     // ------------------------------------------------------------
     // GET /api/attempts
     // List + filter attempts
@@ -79,16 +138,16 @@ public class AttemptController {
         List<Attempt> list;
 
         if (!filterRunner && !filterResult) {
-            list = attemptRepository.findAll();
+            list = attemptStore.findAll();
         } else if (filterRunner && filterResult) {
-            list = attemptRepository.findByRunnerIdAndResult(
+            list = attemptStore.findByRunnerIdAndResult(
                     runnerId.trim(),
                     result.trim().toUpperCase()
             );
         } else if (filterRunner) {
-            list = attemptRepository.findByRunnerId(runnerId.trim());
+            list = attemptStore.findByRunnerId(runnerId.trim());
         } else {
-            list = attemptRepository.findByResult(result.trim().toUpperCase());
+            list = attemptStore.findByResult(result.trim().toUpperCase());
         }
 
         return ResponseEntity.ok(list);
@@ -99,7 +158,7 @@ public class AttemptController {
     // ------------------------------------------------------------
     @GetMapping(value = "/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<?> getAttempt(@PathVariable("id") Long id) {
-        Optional<Attempt> found = attemptRepository.findById(id);
+        Optional<Attempt> found = attemptStore.findById(id);
 
         if (found.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -111,37 +170,163 @@ public class AttemptController {
 
     // ------------------------------------------------------------
     // GET /api/attempts/{id}/track
-    // Returns parsed TrackPoint list for mapping (JSON).
+    // Returns TrackPoint list for mapping (JSON), from the stored
+    // packed track when available.
+    // Optional ?level=1..3 returns a pre-simplified track
+    // (5 m / 20 m / 100 m tolerance) for overview maps.
     // Still useful for debugging and non-GPX clients.
     // ------------------------------------------------------------
     @GetMapping(value = "/{id}/track", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<TrackPoint>> getAttemptTrack(@PathVariable("id") Long id) {
-        List<TrackPoint> pts = attemptVerifierService.loadAttemptTrack(id);
+    public ResponseEntity<List<TrackPoint>> getAttemptTrack(
+            @PathVariable("id") Long id,
+            @RequestParam(value = "level", defaultValue = "0") int level
+    ) {
+        List<TrackPoint> pts = attemptVerifierService.loadAttemptTrack(id, level);
         // Always 200; UI can decide how to handle empty list
         return ResponseEntity.ok(pts);
     }
 
+    // ------------------------------------------------------------
+    // GET /api/attempts/{id}/checkpoints
+    // Per-checkpoint outcome in route order: reached in order or not,
+    // time of reaching it, elapsed and split seconds.
+    // ------------------------------------------------------------
+    @GetMapping(value = "/{id}/checkpoints", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getAttemptCheckpoints(@PathVariable("id") Long id) {
+        if (attemptStore.findById(id).isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse("Attempt ID " + id + " not found."));
+        }
+        List<CheckpointSplit> splits = attemptVerifierService.loadCheckpointSplits(id);
+        return ResponseEntity.ok(splits);
+    }
+
+    // ------------------------------------------------------------
+    // GET /api/attempts/{id}/progress
+    // Progress along the official route from the stored per-point
+    // chainage: furthest km reached, share of the route distance
+    // covered and the sections skipped on the way.
+    // ------------------------------------------------------------
+    @GetMapping(value = "/{id}/progress", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getAttemptProgress(@PathVariable("id") Long id) {
+        if (attemptStore.findById(id).isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse("Attempt ID " + id + " not found."));
+        }
+        Optional<RouteProgress> progress = attemptVerifierService.loadRouteProgress(id);
+        if (progress.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse("No track or official route available for attempt " + id + "."));
+        }
+        return ResponseEntity.ok(progress.get());
+    }
+
+    // ------------------------------------------------------------
+    // GET /api/attempts/{id}/excursions
+    // Off-route excursions found at verification time: point range,
+    // chainage where the track left / rejoined the route, length,
+    // duration, max deviation and bounding box of each.
+    // ------------------------------------------------------------
+    @GetMapping(value = "/{id}/excursions", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getAttemptExcursions(@PathVariable("id") Long id) {
+        if (attemptStore.findById(id).isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse("Attempt ID " + id + " not found."));
+        }
+        Optional<Excursions> excursions = attemptVerifierService.loadExcursions(id);
+        if (excursions.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse("No track or official route available for attempt " + id + "."));
+        }
+        return ResponseEntity.ok(excursions.get());
+    }
+
     // ------------------------------------------------------------
     // GET /api/attempts/{id}/gpx
-    // Raw GPX bytes endpoint for potential GPX clients.
+    // Raw GPX file for potential GPX clients.
+    // Streamed from the blob store with ONE open per request: for the
+    // database store that is one query whose connection stays open
+    // inside the StreamingResponseBody. A single Range is answered by
+    // skipping within that stream (206); multi-range requests get the
+    // whole file (200).
     // ------------------------------------------------------------
     @GetMapping(value = "/{id}/gpx", produces = "application/gpx+xml")
-    public ResponseEntity<byte[]> getAttemptGpx(@PathVariable("id") Long id) {
-        Optional<Attempt> found = attemptRepository.findById(id);
+    public ResponseEntity<StreamingResponseBody> getAttemptGpx(@PathVariable("id") Long id,
+                                                               @RequestHeader(value = HttpHeaders.RANGE, required = false) String range) {
+        Optional<Resource> gpx = attemptVerifierService.loadAttemptGpx(id);
 
-        if (found.isEmpty() || found.get().getGpxData() == null) {
+        if (gpx.isEmpty()) {
             // 404 with empty body is fine; client will handle it
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
         }
 
-        byte[] gpx = found.get().getGpxData();
+        Resource resource = gpx.get();
+        long length;
+        try {
+            length = resource.contentLength();
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+
+        List<HttpRange> ranges = List.of();
+        if (range != null) {
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                // malformed Range is ignored (RFC 9110 14.2)
+            }
+        }
+        if (ranges.size() != 1) {
+            // Using XML content type is acceptable for GPX
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_XML)
+                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                    .contentLength(length)
+                    .body(streamBody(resource, 0, length));
+        }
 
-        HttpHeaders headers = new HttpHeaders();
-        // Using XML content type is acceptable for GPX
-        headers.setContentType(MediaType.APPLICATION_XML);
-        headers.setContentLength(gpx.length);
+        long start = -1;
+        long end = -1;
+        try {
+            start = ranges.get(0).getRangeStart(length);
+            end = ranges.get(0).getRangeEnd(length);
+        } catch (IllegalArgumentException e) {
+            // reported as unsatisfiable below
+        }
+        if (start < 0 || start >= length || end < start) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                    .build();
+        }
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .contentType(MediaType.APPLICATION_XML)
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .header(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length)
+                .contentLength(end - start + 1)
+                .body(streamBody(resource, start, end - start + 1));
+    }
 
-        return new ResponseEntity<>(gpx, headers, HttpStatus.OK);
+    /**
+     * Copies count bytes from offset `start` of the resource. The stream
+     * (and with it the database connection) is opened when the response is
+     * written and closed when it is done or the client goes away.
+     */
+    private static StreamingResponseBody streamBody(Resource resource, long start, long count) {
+        return out -> {
+            try (InputStream in = resource.getInputStream()) {
+                in.skipNBytes(start);
+                byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+                long remaining = count;
+                while (remaining > 0) {
+                    int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (n < 0) {
+                        throw new EOFException("GPX shorter than its recorded length");
+                    }
+                    out.write(buffer, 0, n);
+                    remaining -= n;
+                }
+            }
+        };
     }
 
     // ------------------------------------------------------------
@@ -151,7 +336,9 @@ public class AttemptController {
     // ------------------------------------------------------------
     @DeleteMapping("/reset")
     public ResponseEntity<ResetResponse> resetAttempts() {
-        int deleted = attemptRepository.resetAll();
+        int deleted = attemptStore.resetAll();
+        // Attempt ids start from 1 again, so stored keys would point at new attempts
+        idempotencyService.clear();
         return ResponseEntity.ok(
                 new ResetResponse("All attempts have been deleted.", deleted)
         );
@@ -1,13 +1,57 @@
 package org.trail.attemptverifier.controller;
 
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.trail.attemptverifier.service.WarmupService;
 
 @RestController
 public class HealthController {
 
+    private final ApplicationAvailability availability;
+    private final WarmupService warmupService;
+
+    public HealthController(ApplicationAvailability availability, WarmupService warmupService) {
+        this.availability = availability;
+        this.warmupService = warmupService;
+    }
+
     @GetMapping("/api/health")
     public String health() {
         return "OK - AttemptVerifier Spring Boot is running";
     }
+
+    /**
+     * Readiness probe for load balancers: 503 until startup (route preload
+     * and warmup) has finished, then 200 with the warmup timings.
+     */
+    @GetMapping("/api/health/ready")
+    public ResponseEntity<Readiness> ready() {
+        ReadinessState state = availability.getReadinessState();
+        Readiness body = new Readiness(state.name(), warmupService.getReport());
+        return state == ReadinessState.ACCEPTING_TRAFFIC
+                ? ResponseEntity.ok(body)
+                : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(body);
+    }
+
+    public static class Readiness {
+        private final String state;
+        private final WarmupService.Report warmup;
+
+        public Readiness(String state, WarmupService.Report warmup) {
+            this.state = state;
+            this.warmup = warmup;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public WarmupService.Report getWarmup() {
+            return warmup;
+        }
+    }
 }
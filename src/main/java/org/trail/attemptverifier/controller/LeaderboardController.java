@@ -0,0 +1,115 @@
+package org.trail.attemptverifier.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.trail.attemptverifier.controller.AttemptController.ErrorResponse;
+import org.trail.attemptverifier.model.RunnerSummary;
+import org.trail.attemptverifier.repository.RunnerSummaryRepository;
+import org.trail.attemptverifier.repository.RunnerSummaryRepository.RouteTotals;
+import org.trail.attemptverifier.service.RouteService;
+
+import java.util.List;
+
+/**
+ * Read-only leaderboard and runner statistics, served from the
+ * runner_summaries table rather than aggregated over all attempts.
+ */
+@RestController
+@RequestMapping("/api")
+public class LeaderboardController {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final RunnerSummaryRepository runnerSummaryRepository;
+    private final RouteService routeService;
+
+    public LeaderboardController(RunnerSummaryRepository runnerSummaryRepository,
+                                 RouteService routeService) {
+        this.runnerSummaryRepository = runnerSummaryRepository;
+        this.routeService = routeService;
+    }
+
+    // ------------------------------------------------------------
+    // GET /api/leaderboard?route=<hash>&page=0&size=20
+    // Best verified difficulty per runner (defaults to the current route)
+    // ------------------------------------------------------------
+    @GetMapping(value = "/leaderboard", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> leaderboard(
+            @RequestParam(value = "route", required = false) String routeHash,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "20") int size
+    ) {
+        if (routeHash == null || routeHash.isBlank()) {
+            routeHash = routeService.getRouteHash();
+            if (routeHash == null) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(new ErrorResponse("Official route not available."));
+            }
+        }
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("page must be >= 0 and size between 1 and " + MAX_PAGE_SIZE + "."));
+        }
+
+        List<RunnerSummary> rows = runnerSummaryRepository.findLeaderboard(routeHash, page * size, size);
+        return ResponseEntity.ok(new LeaderboardPage(routeHash, page, size, rows));
+    }
+
+    // ------------------------------------------------------------
+    // GET /api/leaderboard/routes
+    // Runners, verified finishers and attempts per route version
+    // ------------------------------------------------------------
+    @GetMapping(value = "/leaderboard/routes", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<RouteTotals>> routeTotals() {
+        return ResponseEntity.ok(runnerSummaryRepository.findRouteTotals());
+    }
+
+    // ------------------------------------------------------------
+    // GET /api/runners/{runnerId}/stats
+    // One runner's counts and best score on every route they attempted
+    // ------------------------------------------------------------
+    @GetMapping(value = "/runners/{runnerId}/stats", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> runnerStats(@PathVariable("runnerId") String runnerId) {
+        List<RunnerSummary> rows = runnerSummaryRepository.findByRunnerId(runnerId.trim());
+        if (rows.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(new ErrorResponse("No attempts for runner " + runnerId + "."));
+        }
+        return ResponseEntity.ok(rows);
+    }
+
+    // ------------------------------------------------------------
+    // DTOs
+    // ------------------------------------------------------------
+    public static class LeaderboardPage {
+        private final String routeHash;
+        private final int page;
+        private final int size;
+        private final List<RunnerSummary> entries;
+
+        public LeaderboardPage(String routeHash, int page, int size, List<RunnerSummary> entries) {
+            this.routeHash = routeHash;
+            this.page = page;
+            this.size = size;
+            this.entries = entries;
+        }
+
+        public String getRouteHash() {
+            return routeHash;
+        }
+
+        public int getPage() {
+            return page;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public List<RunnerSummary> getEntries() {
+            return entries;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.trail.attemptverifier.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.trail.attemptverifier.controller.AttemptController.ErrorResponse;
+import org.trail.attemptverifier.service.AdmissionControlService;
+import org.trail.attemptverifier.service.AdmissionControlService.AdmissionRejectedException;
+import org.trail.attemptverifier.service.RouteRegistry;
+import org.trail.attemptverifier.util.ParseLimits;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Registered routes and route auto-detection: which of the known races
+ * (50K, 70K, the 100K variants, …) a file belongs to. Detection does not
+ * store anything; uploads are still verified against the official route.
+ */
+@RestController
+@RequestMapping("/api/routes")
+public class RouteController {
+
+    private final RouteRegistry routeRegistry;
+    private final AdmissionControlService admissionControlService;
+
+    public RouteController(RouteRegistry routeRegistry,
+                           AdmissionControlService admissionControlService) {
+        this.routeRegistry = routeRegistry;
+        this.admissionControlService = admissionControlService;
+    }
+
+    // ------------------------------------------------------------
+    // GET /api/routes
+    // Official route and every route in verifier.routes.directory
+    // ------------------------------------------------------------
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<RouteRegistry.RouteInfo>> listRoutes() {
+        return ResponseEntity.ok(routeRegistry.list());
+    }
+
+    // ------------------------------------------------------------
+    // POST /api/routes/detect
+    // Best matching route for a GPX / TCX / FIT file, with confidence
+    // and the fully matched candidates. Same admission limits as uploads.
+    // ------------------------------------------------------------
+    @PostMapping(
+            path = "/detect",
+            consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<?> detectRoute(
+            @RequestParam("runnerId") String runnerId,
+            @RequestParam("file") MultipartFile file
+    ) {
+        if (runnerId == null || runnerId.isBlank()) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("Runner ID cannot be empty."));
+        }
+        if (file == null || file.isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("GPX, TCX or FIT file is required."));
+        }
+
+        try (AdmissionControlService.Permit permit = admissionControlService.admit(runnerId.trim(), file.getSize());
+             InputStream in = file.getInputStream()) {
+            return ResponseEntity.ok(routeRegistry.detect(in));
+        } catch (AdmissionRejectedException e) {
+            return ResponseEntity.status(e.getStatus())
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(new ErrorResponse(e.getMessage()));
+        } catch (IllegalArgumentException | ParseLimits.LimitExceededException e) {
+            return ResponseEntity.badRequest()
+                    .body(new ErrorResponse(e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(new ErrorResponse("Route detection failed: " + e.getMessage()));
+        }
+    }
+}
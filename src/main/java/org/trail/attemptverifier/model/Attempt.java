@@ -1,6 +1,8 @@
 package org.trail.attemptverifier.model;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Plain Attempt domain model (no JPA).
@@ -23,8 +25,35 @@ public class Attempt {
     private Double coverageRatio;
     private Double maxDeviationM;
 
-    // Optional: raw GPX bytes for visualization / debugging
-    private byte[] gpxData;
+    // Time-based metrics (null when the GPX has no <time> elements)
+    private Long elapsedSeconds;
+    private Long movingSeconds;
+    private Double avgPaceSecPerKm;
+    private Double maxSpeedKmh;
+    private Integer speedSpikes;
+
+    // Ordered checkpoint check (null when the route has no checkpoints)
+    private Integer checkpointsReached;
+    private Integer checkpointsTotal;
+
+    // Progress along the route (chainage of on-route points; null without a packed track)
+    private Double progressKm;
+    private Double routeCompletion;
+    private Double skippedKm;
+
+    // Recording gaps: <trkseg>/<trk> count and straight-line km between
+    // segments and across paused-watch gaps, not part of distanceKm
+    private Integer trackSegments;
+    private Double gapKm;
+
+    // Per-checkpoint splits; filled by verification, stored in attempt_checkpoints
+    private List<CheckpointSplit> checkpointSplits;
+
+    // SHA-256 of the uploaded file and of the route it was checked against.
+    // Together with runnerId they form the deduplication key; gpxSha256 is
+    // also the key of the raw file in the GpxBlobStore.
+    private String gpxSha256;
+    private String routeHash;
 
     // Non-persisted helper flags (used only in API / debugging)
     private boolean officialRouteUsed;
@@ -39,6 +68,38 @@ public class Attempt {
         this.attemptTime = LocalDateTime.now();
     }
 
+    // Copy of another attempt, e.g. to store it in a second database
+    // without touching the original
+    public Attempt(Attempt other) {
+        this.id = other.id;
+        this.runnerId = other.runnerId;
+        this.attemptTime = other.attemptTime;
+        this.distanceKm = other.distanceKm;
+        this.elevationGainM = other.elevationGainM;
+        this.difficultyScore = other.difficultyScore;
+        this.result = other.result;
+        this.message = other.message;
+        this.coverageRatio = other.coverageRatio;
+        this.maxDeviationM = other.maxDeviationM;
+        this.elapsedSeconds = other.elapsedSeconds;
+        this.movingSeconds = other.movingSeconds;
+        this.avgPaceSecPerKm = other.avgPaceSecPerKm;
+        this.maxSpeedKmh = other.maxSpeedKmh;
+        this.speedSpikes = other.speedSpikes;
+        this.checkpointsReached = other.checkpointsReached;
+        this.checkpointsTotal = other.checkpointsTotal;
+        this.progressKm = other.progressKm;
+        this.routeCompletion = other.routeCompletion;
+        this.skippedKm = other.skippedKm;
+        this.trackSegments = other.trackSegments;
+        this.gapKm = other.gapKm;
+        this.checkpointSplits = other.checkpointSplits != null ? new ArrayList<>(other.checkpointSplits) : null;
+        this.gpxSha256 = other.gpxSha256;
+        this.routeHash = other.routeHash;
+        this.officialRouteUsed = other.officialRouteUsed;
+        this.debugInfo = other.debugInfo;
+    }
+
     // ---------------- Getters & Setters ----------------
 
     public Long getId() {
@@ -121,12 +182,124 @@ public class Attempt {
         this.maxDeviationM = maxDeviationM;
     }
 
-    public byte[] getGpxData() {
-        return gpxData;
+    public Long getElapsedSeconds() {
+        return elapsedSeconds;
+    }
+
+    public void setElapsedSeconds(Long elapsedSeconds) {
+        this.elapsedSeconds = elapsedSeconds;
+    }
+
+    public Long getMovingSeconds() {
+        return movingSeconds;
+    }
+
+    public void setMovingSeconds(Long movingSeconds) {
+        this.movingSeconds = movingSeconds;
+    }
+
+    public Double getAvgPaceSecPerKm() {
+        return avgPaceSecPerKm;
+    }
+
+    public void setAvgPaceSecPerKm(Double avgPaceSecPerKm) {
+        this.avgPaceSecPerKm = avgPaceSecPerKm;
+    }
+
+    public Double getMaxSpeedKmh() {
+        return maxSpeedKmh;
+    }
+
+    public void setMaxSpeedKmh(Double maxSpeedKmh) {
+        this.maxSpeedKmh = maxSpeedKmh;
+    }
+
+    public Integer getSpeedSpikes() {
+        return speedSpikes;
+    }
+
+    public void setSpeedSpikes(Integer speedSpikes) {
+        this.speedSpikes = speedSpikes;
+    }
+
+    public Integer getCheckpointsReached() {
+        return checkpointsReached;
+    }
+
+    public void setCheckpointsReached(Integer checkpointsReached) {
+        this.checkpointsReached = checkpointsReached;
+    }
+
+    public Integer getCheckpointsTotal() {
+        return checkpointsTotal;
+    }
+
+    public void setCheckpointsTotal(Integer checkpointsTotal) {
+        this.checkpointsTotal = checkpointsTotal;
+    }
+
+    public Double getProgressKm() {
+        return progressKm;
+    }
+
+    public void setProgressKm(Double progressKm) {
+        this.progressKm = progressKm;
+    }
+
+    public Double getRouteCompletion() {
+        return routeCompletion;
+    }
+
+    public void setRouteCompletion(Double routeCompletion) {
+        this.routeCompletion = routeCompletion;
+    }
+
+    public Double getSkippedKm() {
+        return skippedKm;
+    }
+
+    public void setSkippedKm(Double skippedKm) {
+        this.skippedKm = skippedKm;
+    }
+
+    public Integer getTrackSegments() {
+        return trackSegments;
+    }
+
+    public void setTrackSegments(Integer trackSegments) {
+        this.trackSegments = trackSegments;
+    }
+
+    public Double getGapKm() {
+        return gapKm;
+    }
+
+    public void setGapKm(Double gapKm) {
+        this.gapKm = gapKm;
+    }
+
+    public List<CheckpointSplit> getCheckpointSplits() {
+        return checkpointSplits;
+    }
+
+    public void setCheckpointSplits(List<CheckpointSplit> checkpointSplits) {
+        this.checkpointSplits = checkpointSplits;
+    }
+
+    public String getGpxSha256() {
+        return gpxSha256;
+    }
+
+    public void setGpxSha256(String gpxSha256) {
+        this.gpxSha256 = gpxSha256;
+    }
+
+    public String getRouteHash() {
+        return routeHash;
     }
 
-    public void setGpxData(byte[] gpxData) {
-        this.gpxData = gpxData;
+    public void setRouteHash(String routeHash) {
+        this.routeHash = routeHash;
     }
 
     public boolean isOfficialRouteUsed() {
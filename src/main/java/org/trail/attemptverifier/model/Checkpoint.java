@@ -0,0 +1,68 @@
+package org.trail.attemptverifier.model;
+
+/**
+ * Ordered checkpoint of the official route (aid station or distance marker).
+ * Coordinates are snapped onto the route; chainageM is the distance along
+ * the route from the start.
+ */
+public class Checkpoint {
+
+    private int sequence;
+    private String name;
+    private double latitude;
+    private double longitude;
+    private double chainageM;
+
+    public Checkpoint() {
+    }
+
+    public Checkpoint(int sequence, String name, double latitude, double longitude, double chainageM) {
+        this.sequence = sequence;
+        this.name = name;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.chainageM = chainageM;
+    }
+
+    // ---------------- Getters & Setters ----------------
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(int sequence) {
+        this.sequence = sequence;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    public double getChainageM() {
+        return chainageM;
+    }
+
+    public void setChainageM(double chainageM) {
+        this.chainageM = chainageM;
+    }
+}
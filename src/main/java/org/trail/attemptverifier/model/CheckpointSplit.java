@@ -0,0 +1,95 @@
+package org.trail.attemptverifier.model;
+
+import java.time.Instant;
+
+/**
+ * Outcome of one route checkpoint for one attempt (table attempt_checkpoints).
+ * Time fields are null when the checkpoint was missed or the GPX has no timestamps.
+ */
+public class CheckpointSplit {
+
+    private int sequence;
+    private String name;
+    private double chainageM;
+
+    private boolean reached;
+    private Integer pointIndex;        // first attempt point within the checkpoint radius
+    private Instant reachedAt;
+    private Long elapsedSeconds;       // since the first timestamp of the attempt
+    private Long splitSeconds;         // since the previous reached checkpoint (or the start)
+
+    public CheckpointSplit() {
+    }
+
+    public CheckpointSplit(Checkpoint checkpoint) {
+        this.sequence = checkpoint.getSequence();
+        this.name = checkpoint.getName();
+        this.chainageM = checkpoint.getChainageM();
+    }
+
+    // ---------------- Getters & Setters ----------------
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(int sequence) {
+        this.sequence = sequence;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public double getChainageM() {
+        return chainageM;
+    }
+
+    public void setChainageM(double chainageM) {
+        this.chainageM = chainageM;
+    }
+
+    public boolean isReached() {
+        return reached;
+    }
+
+    public void setReached(boolean reached) {
+        this.reached = reached;
+    }
+
+    public Integer getPointIndex() {
+        return pointIndex;
+    }
+
+    public void setPointIndex(Integer pointIndex) {
+        this.pointIndex = pointIndex;
+    }
+
+    public Instant getReachedAt() {
+        return reachedAt;
+    }
+
+    public void setReachedAt(Instant reachedAt) {
+        this.reachedAt = reachedAt;
+    }
+
+    public Long getElapsedSeconds() {
+        return elapsedSeconds;
+    }
+
+    public void setElapsedSeconds(Long elapsedSeconds) {
+        this.elapsedSeconds = elapsedSeconds;
+    }
+
+    public Long getSplitSeconds() {
+        return splitSeconds;
+    }
+
+    public void setSplitSeconds(Long splitSeconds) {
+        this.splitSeconds = splitSeconds;
+    }
+}
@@ -0,0 +1,164 @@
+package org.trail.attemptverifier.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Progress record of a bulk re-verification run (table reverify_jobs).
+ * The row doubles as the crash-recovery checkpoint: lastAttemptId is the
+ * keyset position up to which results have been written.
+ */
+public class ReverificationJob {
+
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String CANCELLED = "CANCELLED";
+    public static final String FAILED = "FAILED";
+
+    /** How many ids of attempts that could not be re-verified are kept. */
+    public static final int MAX_FAILED_IDS = 50;
+
+    private Long id;
+    private String status;
+    private String routeHash;
+    private double toleranceM;
+    private boolean staleOnly;
+
+    private long lastAttemptId;
+    private int totalAttempts;
+    private int processed;
+    private int changed;
+    private int skipped;
+    private int failed;
+    private List<Long> failedAttemptIds = List.of();   // first MAX_FAILED_IDS only
+
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private String message;
+
+    public ReverificationJob() {
+    }
+
+    // ---------------- Getters & Setters ----------------
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getRouteHash() {
+        return routeHash;
+    }
+
+    public void setRouteHash(String routeHash) {
+        this.routeHash = routeHash;
+    }
+
+    public double getToleranceM() {
+        return toleranceM;
+    }
+
+    public void setToleranceM(double toleranceM) {
+        this.toleranceM = toleranceM;
+    }
+
+    public boolean isStaleOnly() {
+        return staleOnly;
+    }
+
+    public void setStaleOnly(boolean staleOnly) {
+        this.staleOnly = staleOnly;
+    }
+
+    public long getLastAttemptId() {
+        return lastAttemptId;
+    }
+
+    public void setLastAttemptId(long lastAttemptId) {
+        this.lastAttemptId = lastAttemptId;
+    }
+
+    public int getTotalAttempts() {
+        return totalAttempts;
+    }
+
+    public void setTotalAttempts(int totalAttempts) {
+        this.totalAttempts = totalAttempts;
+    }
+
+    public int getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(int processed) {
+        this.processed = processed;
+    }
+
+    public int getChanged() {
+        return changed;
+    }
+
+    public void setChanged(int changed) {
+        this.changed = changed;
+    }
+
+    public int getSkipped() {
+        return skipped;
+    }
+
+    public void setSkipped(int skipped) {
+        this.skipped = skipped;
+    }
+
+    /** Attempts whose re-verification threw; left unchanged, the job went on. */
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public List<Long> getFailedAttemptIds() {
+        return failedAttemptIds;
+    }
+
+    public void setFailedAttemptIds(List<Long> failedAttemptIds) {
+        this.failedAttemptIds = failedAttemptIds;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
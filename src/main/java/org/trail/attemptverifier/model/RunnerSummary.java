@@ -0,0 +1,102 @@
+package org.trail.attemptverifier.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Per-runner, per-route aggregate (table runner_summaries).
+ * Maintained incrementally on every saved attempt, so leaderboards and
+ * runner stats are read a page at a time instead of scanning attempts.
+ */
+public class RunnerSummary {
+
+    private String routeHash;
+    private String runnerId;
+
+    private int attempts;
+    private int verified;
+    private int flagged;
+    private int rejected;
+
+    // Best difficulty score among VERIFIED attempts (null if none)
+    private Double bestVerifiedScore;
+    private Long bestAttemptId;
+
+    private LocalDateTime lastAttemptAt;
+
+    public RunnerSummary() {
+    }
+
+    // ---------------- Getters & Setters ----------------
+
+    public String getRouteHash() {
+        return routeHash;
+    }
+
+    public void setRouteHash(String routeHash) {
+        this.routeHash = routeHash;
+    }
+
+    public String getRunnerId() {
+        return runnerId;
+    }
+
+    public void setRunnerId(String runnerId) {
+        this.runnerId = runnerId;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public int getVerified() {
+        return verified;
+    }
+
+    public void setVerified(int verified) {
+        this.verified = verified;
+    }
+
+    public int getFlagged() {
+        return flagged;
+    }
+
+    public void setFlagged(int flagged) {
+        this.flagged = flagged;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(int rejected) {
+        this.rejected = rejected;
+    }
+
+    public Double getBestVerifiedScore() {
+        return bestVerifiedScore;
+    }
+
+    public void setBestVerifiedScore(Double bestVerifiedScore) {
+        this.bestVerifiedScore = bestVerifiedScore;
+    }
+
+    public Long getBestAttemptId() {
+        return bestAttemptId;
+    }
+
+    public void setBestAttemptId(Long bestAttemptId) {
+        this.bestAttemptId = bestAttemptId;
+    }
+
+    public LocalDateTime getLastAttemptAt() {
+        return lastAttemptAt;
+    }
+
+    public void setLastAttemptAt(LocalDateTime lastAttemptAt) {
+        this.lastAttemptAt = lastAttemptAt;
+    }
+}
@@ -1,13 +1,19 @@
 package org.trail.attemptverifier.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.time.Instant;
 
 public class TrackPoint {
 
+    /** Time of a point without a timestamp (same marker as PackedTrack.NO_TIME). */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
     private double latitude;
     private double longitude;
     private Double elevation; // may be null
-    private Instant time;     // may be null
+    private long timeMillis = NO_TIME; // epoch millis: the readers decode straight into it, no Instant per point
+    private boolean segmentStart; // first point of a <trkseg>: no recorded movement from the previous point
 
     public TrackPoint() {
     }
@@ -16,7 +22,17 @@ public class TrackPoint {
         this.latitude = latitude;
         this.longitude = longitude;
         this.elevation = elevation;
-        this.time = time;
+        setTime(time);
+    }
+
+    /**
+     * @param timeMillis epoch millis, or NO_TIME
+     */
+    public TrackPoint(double latitude, double longitude, Double elevation, long timeMillis) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.elevation = elevation;
+        this.timeMillis = timeMillis;
     }
 
     public double getLatitude() {
@@ -43,11 +59,29 @@ public class TrackPoint {
         this.elevation = elevation;
     }
 
+    /** A new Instant per call, or null; metric loops use getTimeMillis. */
     public Instant getTime() {
-        return time;
+        return timeMillis != NO_TIME ? Instant.ofEpochMilli(timeMillis) : null;
     }
 
     public void setTime(Instant time) {
-        this.time = time;
+        this.timeMillis = time != null ? time.toEpochMilli() : NO_TIME;
+    }
+
+    @JsonIgnore
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public boolean hasTime() {
+        return timeMillis != NO_TIME;
+    }
+
+    public boolean isSegmentStart() {
+        return segmentStart;
+    }
+
+    public void setSegmentStart(boolean segmentStart) {
+        this.segmentStart = segmentStart;
     }
 }
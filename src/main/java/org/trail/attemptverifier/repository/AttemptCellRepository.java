@@ -0,0 +1,305 @@
+package org.trail.attemptverifier.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.trail.attemptverifier.util.Geohash;
+import org.trail.attemptverifier.util.TrackCells;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * JDBC access to the spatial index of stored attempts:
+ *
+ *  - attempt_cells: one row per (geohash-7 cell, attempt) with how many of
+ *    the attempt's points fall in the cell and how many were off route.
+ *    Keyed cell-first, so an area is a handful of cell ranges.
+ *  - heatmap_cells: the same counts summed over all attempts, kept at
+ *    HEATMAP_PRECISIONS, plus how many attempts touch each cell. Maintained
+ *    by deltas whenever an attempt's rows are replaced, never rebuilt.
+ *
+ * Cells are Geohash longs; a cell of precision p covers the precision-7
+ * cells [c << 5(7-p), ((c+1) << 5(7-p)) - 1], which is what the range
+ * queries rely on.
+ */
+@Repository
+public class AttemptCellRepository {
+
+    /** Geohash lengths pre-aggregated in heatmap_cells (~4.9 km, ~1.2 km, ~150 m). */
+    public static final int[] HEATMAP_PRECISIONS = {5, 6, TrackCells.PRECISION};
+
+    // Delta map key: precision in the top byte, cell below
+    private static final long CELL_MASK = (1L << 56) - 1;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AttemptCellRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // ------------------------------------------------------------
+    // Incremental maintenance
+    // ------------------------------------------------------------
+    private static final String HEATMAP_SQL = """
+        INSERT INTO heatmap_cells (precision_chars, cell, points, off_route_points, attempts)
+        VALUES (?, ?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE
+            points = points + VALUES(points),
+            off_route_points = off_route_points + VALUES(off_route_points),
+            attempts = attempts + VALUES(attempts)
+        """;
+
+    /**
+     * Replaces the cell rows of an attempt and applies the difference to
+     * heatmap_cells (a first upload only adds, a re-verification only
+     * moves the off-route counts).
+     */
+    @Transactional
+    public void replace(Long attemptId, TrackCells cells) {
+        TrackCells previous = findByAttemptId(attemptId);
+        if (!previous.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM attempt_cells WHERE attempt_id = ?", attemptId);
+        }
+        if (!cells.isEmpty()) {
+            List<Integer> rows = indexes(cells.size());
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO attempt_cells (cell, attempt_id, points, off_route_points) VALUES (?, ?, ?, ?)",
+                    rows, rows.size(), (ps, i) -> {
+                        ps.setLong(1, cells.cell(i));
+                        ps.setLong(2, attemptId);
+                        ps.setInt(3, cells.points(i));
+                        ps.setInt(4, cells.offRoutePoints(i));
+                    });
+        }
+
+        // (precision, cell) -> {points, offRoutePoints, attempts}, in key
+        // order so concurrent uploads lock heatmap rows in the same order
+        TreeMap<Long, long[]> delta = new TreeMap<>();
+        accumulate(delta, previous, -1);
+        accumulate(delta, cells, 1);
+        delta.values().removeIf(d -> d[0] == 0 && d[1] == 0 && d[2] == 0);
+        if (delta.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Long, long[]>> entries = new ArrayList<>(delta.entrySet());
+        jdbcTemplate.batchUpdate(HEATMAP_SQL, entries, entries.size(), (ps, e) -> {
+            ps.setInt(1, (int) (e.getKey() >>> 56));
+            ps.setLong(2, e.getKey() & CELL_MASK);
+            ps.setLong(3, e.getValue()[0]);
+            ps.setLong(4, e.getValue()[1]);
+            ps.setInt(5, (int) e.getValue()[2]);
+        });
+        if (!previous.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM heatmap_cells WHERE attempts <= 0");
+        }
+    }
+
+    /**
+     * Gives a deduplicated attempt the cell rows of the attempt it was
+     * copied from (and counts it in the heatmap once more).
+     */
+    @Transactional
+    public void copy(Long fromAttemptId, Long toAttemptId) {
+        TrackCells cells = findByAttemptId(fromAttemptId);
+        if (!cells.isEmpty()) {
+            replace(toAttemptId, cells);
+        }
+    }
+
+    private static void accumulate(Map<Long, long[]> delta, TrackCells cells, int sign) {
+        for (int precision : HEATMAP_PRECISIONS) {
+            long prefix = (long) precision << 56;
+            long last = -1;
+            for (int i = 0; i < cells.size(); i++) {
+                long cell = Geohash.parent(cells.cell(i), TrackCells.PRECISION, precision);
+                long[] d = delta.computeIfAbsent(prefix | cell, k -> new long[3]);
+                d[0] += sign * (long) cells.points(i);
+                d[1] += sign * (long) cells.offRoutePoints(i);
+                // cells are sorted, so equal parents are adjacent
+                if (cell != last) {
+                    d[2] += sign;
+                    last = cell;
+                }
+            }
+        }
+    }
+
+    private static List<Integer> indexes(int size) {
+        List<Integer> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            rows.add(i);
+        }
+        return rows;
+    }
+
+    public TrackCells findByAttemptId(Long attemptId) {
+        List<long[]> rows = jdbcTemplate.query(
+                "SELECT cell, points, off_route_points FROM attempt_cells WHERE attempt_id = ? ORDER BY cell",
+                (rs, rowNum) -> new long[]{rs.getLong("cell"), rs.getInt("points"), rs.getInt("off_route_points")},
+                attemptId);
+        long[] cells = new long[rows.size()];
+        int[] points = new int[rows.size()];
+        int[] offRoute = new int[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            cells[i] = rows.get(i)[0];
+            points[i] = (int) rows.get(i)[1];
+            offRoute[i] = (int) rows.get(i)[2];
+        }
+        return new TrackCells(cells, points, offRoute);
+    }
+
+    // ------------------------------------------------------------
+    // Area queries
+    // ------------------------------------------------------------
+
+    /**
+     * Attempts with points in any of the precision-7 cell ranges
+     * ({first, last} pairs), most points first.
+     */
+    public List<AreaAttempt> findAttemptsInRanges(List<long[]> ranges, int limit) {
+        if (ranges.isEmpty()) {
+            return List.of();
+        }
+        String sql = """
+            SELECT c.attempt_id, a.runner_id, a.result,
+                   SUM(c.points) AS points, SUM(c.off_route_points) AS off_route_points
+            FROM attempt_cells c
+            JOIN attempts a ON a.id = c.attempt_id
+            WHERE %s
+            GROUP BY c.attempt_id, a.runner_id, a.result
+            ORDER BY points DESC, c.attempt_id
+            LIMIT ?
+            """.formatted(rangeClause("c.cell", ranges.size()));
+        Object[] args = rangeArgs(ranges, limit);
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new AreaAttempt(
+                rs.getLong("attempt_id"),
+                rs.getString("runner_id"),
+                rs.getString("result"),
+                rs.getLong("points"),
+                rs.getLong("off_route_points")), args);
+    }
+
+    /**
+     * Pre-aggregated heatmap cells of one precision inside the given cell
+     * ranges (at that precision), at most limit rows.
+     */
+    public List<HeatmapCell> findHeatmapCells(int precision, List<long[]> ranges, int limit) {
+        if (ranges.isEmpty()) {
+            return List.of();
+        }
+        String sql = """
+            SELECT cell, points, off_route_points, attempts
+            FROM heatmap_cells
+            WHERE precision_chars = ? AND (%s)
+            ORDER BY cell
+            LIMIT ?
+            """.formatted(rangeClause("cell", ranges.size()));
+        Object[] rangeArgs = rangeArgs(ranges, limit);
+        Object[] args = new Object[rangeArgs.length + 1];
+        args[0] = precision;
+        System.arraycopy(rangeArgs, 0, args, 1, rangeArgs.length);
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new HeatmapCell(
+                rs.getLong("cell"),
+                rs.getLong("points"),
+                rs.getLong("off_route_points"),
+                rs.getInt("attempts")), args);
+    }
+
+    private static String rangeClause(String column, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(" OR ");
+            sb.append(column).append(" BETWEEN ? AND ?");
+        }
+        return sb.toString();
+    }
+
+    private static Object[] rangeArgs(List<long[]> ranges, int limit) {
+        Object[] args = new Object[ranges.size() * 2 + 1];
+        for (int i = 0; i < ranges.size(); i++) {
+            args[2 * i] = ranges.get(i)[0];
+            args[2 * i + 1] = ranges.get(i)[1];
+        }
+        args[args.length - 1] = limit;
+        return args;
+    }
+
+    // ------------------------------------------------------------
+    // DTOs
+    // ------------------------------------------------------------
+
+    /**
+     * One attempt's share of an area.
+     */
+    public static class AreaAttempt {
+        private final long attemptId;
+        private final String runnerId;
+        private final String result;
+        private final long points;
+        private final long offRoutePoints;
+
+        public AreaAttempt(long attemptId, String runnerId, String result, long points, long offRoutePoints) {
+            this.attemptId = attemptId;
+            this.runnerId = runnerId;
+            this.result = result;
+            this.points = points;
+            this.offRoutePoints = offRoutePoints;
+        }
+
+        public long getAttemptId() {
+            return attemptId;
+        }
+
+        public String getRunnerId() {
+            return runnerId;
+        }
+
+        public String getResult() {
+            return result;
+        }
+
+        public long getPoints() {
+            return points;
+        }
+
+        public long getOffRoutePoints() {
+            return offRoutePoints;
+        }
+    }
+
+    /**
+     * Summed counts of one heatmap cell.
+     */
+    public static class HeatmapCell {
+        private final long cell;
+        private final long points;
+        private final long offRoutePoints;
+        private final int attempts;
+
+        public HeatmapCell(long cell, long points, long offRoutePoints, int attempts) {
+            this.cell = cell;
+            this.points = points;
+            this.offRoutePoints = offRoutePoints;
+            this.attempts = attempts;
+        }
+
+        public long getCell() {
+            return cell;
+        }
+
+        public long getPoints() {
+            return points;
+        }
+
+        public long getOffRoutePoints() {
+            return offRoutePoints;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+}
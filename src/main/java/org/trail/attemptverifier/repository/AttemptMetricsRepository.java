@@ -0,0 +1,60 @@
+package org.trail.attemptverifier.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JDBC access to attempt_metrics: the optional one-to-one side table of
+ * attempts that holds secondary, derived data (see DB_relation.md).
+ */
+@Repository
+public class AttemptMetricsRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AttemptMetricsRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // ------------------------------------------------------------
+    // Packed derived track (DerivedTrackCodec bytes)
+    // ------------------------------------------------------------
+    /**
+     * Upserts the packed track together with time_taken_seconds (elapsed time
+     * of the track; null if it has no timestamps).
+     */
+    public void savePackedTrack(Long attemptId, byte[] packed, Long timeTakenSeconds) {
+        String sql = """
+            INSERT INTO attempt_metrics (attempt_id, packed_track, time_taken_seconds)
+            VALUES (?, ?, ?)
+            ON DUPLICATE KEY UPDATE packed_track = VALUES(packed_track),
+                                    time_taken_seconds = VALUES(time_taken_seconds)
+            """;
+        jdbcTemplate.update(sql, attemptId, packed, timeTakenSeconds);
+    }
+
+    public Optional<byte[]> findPackedTrack(Long attemptId) {
+        String sql = """
+            SELECT packed_track FROM attempt_metrics
+            WHERE attempt_id = ? AND packed_track IS NOT NULL
+            """;
+        List<byte[]> list = jdbcTemplate.query(sql, (rs, rowNum) -> rs.getBytes(1), attemptId);
+        return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
+    }
+
+    /**
+     * Gives a deduplicated attempt the derived data of the attempt it was copied from.
+     */
+    public void copyPackedTrack(Long fromAttemptId, Long toAttemptId) {
+        String sql = """
+            INSERT INTO attempt_metrics (attempt_id, packed_track, time_taken_seconds)
+            SELECT ?, packed_track, time_taken_seconds FROM attempt_metrics WHERE attempt_id = ?
+            ON DUPLICATE KEY UPDATE packed_track = VALUES(packed_track),
+                                    time_taken_seconds = VALUES(time_taken_seconds)
+            """;
+        jdbcTemplate.update(sql, toAttemptId, fromAttemptId);
+    }
+}
@@ -1,23 +1,53 @@
 package org.trail.attemptverifier.repository;
 
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import org.trail.attemptverifier.model.Attempt;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
+/**
+ * JDBC AttemptStore. The SQL is MySQL's; the embedded profile runs it on H2
+ * in MySQL mode, which accepts the same statements.
+ */
 @Repository
-public class AttemptRepository {
+public class AttemptRepository implements AttemptStore {
+
+    /**
+     * Columns loaded for an Attempt. gpx_data is deliberately excluded:
+     * raw files live in the GpxBlobStore, and legacy BLOBs are only read
+     * by findLegacyGpxData, so list queries never drag them through the
+     * buffer pool.
+     */
+    private static final String ATTEMPT_COLUMNS = """
+            id, runner_id, timestamp, distance_km, elevation_gain_m,
+            difficulty_score, result, message, coverage_ratio, max_deviation_m,
+            elapsed_time_s, moving_time_s, avg_pace_s_per_km, max_speed_kmh, speed_spikes,
+            checkpoints_reached, checkpoints_total,
+            progress_km, route_completion, skipped_km,
+            track_segments, gap_km,
+            gpx_sha256, route_hash
+            """;
 
     private final JdbcTemplate jdbcTemplate;
+    private final RunnerSummaryRepository runnerSummaryRepository;
 
-    public AttemptRepository(JdbcTemplate jdbcTemplate) {
+    public AttemptRepository(JdbcTemplate jdbcTemplate,
+                             RunnerSummaryRepository runnerSummaryRepository) {
         this.jdbcTemplate = jdbcTemplate;
+        this.runnerSummaryRepository = runnerSummaryRepository;
     }
 
     // ------------------------------------------------------------
@@ -43,9 +73,27 @@ public class AttemptRepository {
             attempt.setCoverageRatio(rs.getObject("coverage_ratio", Double.class));
             attempt.setMaxDeviationM(rs.getObject("max_deviation_m", Double.class));
 
-            // Raw GPX blob
-            byte[] gpxBytes = rs.getBytes("gpx_data");
-            attempt.setGpxData(gpxBytes != null ? gpxBytes : null);
+            // Time-based metrics
+            attempt.setElapsedSeconds(rs.getObject("elapsed_time_s", Long.class));
+            attempt.setMovingSeconds(rs.getObject("moving_time_s", Long.class));
+            attempt.setAvgPaceSecPerKm(rs.getObject("avg_pace_s_per_km", Double.class));
+            attempt.setMaxSpeedKmh(rs.getObject("max_speed_kmh", Double.class));
+            attempt.setSpeedSpikes(rs.getObject("speed_spikes", Integer.class));
+            attempt.setCheckpointsReached(rs.getObject("checkpoints_reached", Integer.class));
+            attempt.setCheckpointsTotal(rs.getObject("checkpoints_total", Integer.class));
+
+            // Progress along the route
+            attempt.setProgressKm(rs.getObject("progress_km", Double.class));
+            attempt.setRouteCompletion(rs.getObject("route_completion", Double.class));
+            attempt.setSkippedKm(rs.getObject("skipped_km", Double.class));
+
+            // Recording gaps (<trkseg> boundaries, paused watch)
+            attempt.setTrackSegments(rs.getObject("track_segments", Integer.class));
+            attempt.setGapKm(rs.getObject("gap_km", Double.class));
+
+            // Content-hash dedup key (also the GpxBlobStore key)
+            attempt.setGpxSha256(rs.getString("gpx_sha256"));
+            attempt.setRouteHash(rs.getString("route_hash"));
 
             return attempt;
         }
@@ -54,14 +102,23 @@ public class AttemptRepository {
     // ------------------------------------------------------------
     // INSERT Attempt
     // ------------------------------------------------------------
+    private static final String INSERT_COLUMNS = """
+            runner_id, timestamp, distance_km, elevation_gain_m,
+            difficulty_score, result, message,
+            coverage_ratio, max_deviation_m,
+            elapsed_time_s, moving_time_s, avg_pace_s_per_km, max_speed_kmh, speed_spikes,
+            checkpoints_reached, checkpoints_total,
+            progress_km, route_completion, skipped_km,
+            track_segments, gap_km,
+            gpx_sha256, route_hash""";
+
+    @Override
+    @Transactional
     public Attempt save(Attempt attempt) {
 
-        String sql = """
-            INSERT INTO attempts
-            (runner_id, timestamp, distance_km, elevation_gain_m,
-             difficulty_score, result, message,
-             coverage_ratio, max_deviation_m, gpx_data)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        String sql = "INSERT INTO attempts (" + INSERT_COLUMNS + """
+            )
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
             """;
 
         KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -69,37 +126,7 @@ public class AttemptRepository {
         jdbcTemplate.update(connection -> {
             PreparedStatement ps =
                     connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-
-            ps.setString(1, attempt.getRunnerId());
-
-            ps.setTimestamp(2,
-                    attempt.getAttemptTime() != null
-                            ? Timestamp.valueOf(attempt.getAttemptTime())
-                            : null);
-
-            ps.setDouble(3, attempt.getDistanceKm());
-            ps.setDouble(4, attempt.getElevationGainM());
-            ps.setDouble(5, attempt.getDifficultyScore());
-            ps.setString(6, attempt.getResult());
-            ps.setString(7, attempt.getMessage());
-
-            // coverage + deviation
-            if (attempt.getCoverageRatio() != null)
-                ps.setDouble(8, attempt.getCoverageRatio());
-            else
-                ps.setNull(8, Types.DOUBLE);
-
-            if (attempt.getMaxDeviationM() != null)
-                ps.setDouble(9, attempt.getMaxDeviationM());
-            else
-                ps.setNull(9, Types.DOUBLE);
-
-            // GPX bytes
-            if (attempt.getGpxData() != null)
-                ps.setBytes(10, attempt.getGpxData());
-            else
-                ps.setNull(10, Types.BLOB);
-
+            bindInsert(ps, 1, attempt);
             return ps;
         }, keyHolder);
 
@@ -108,19 +135,105 @@ public class AttemptRepository {
             attempt.setId(key.longValue());
         }
 
+        // Leaderboard row is updated in the same transaction as the insert
+        runnerSummaryRepository.recordAttempt(attempt);
+
         return attempt;
     }
 
+    // ------------------------------------------------------------
+    // WRITE-BEHIND (ids allocated up front, rows inserted in batches)
+    // ------------------------------------------------------------
+    /**
+     * Inserts attempts whose ids were taken from allocateIds(), plus their
+     * runner summaries, as two JDBC batches in one transaction.
+     */
+    @Transactional
+    public void insertBatchWithIds(List<Attempt> attempts) {
+        if (attempts.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO attempts (id, " + INSERT_COLUMNS + """
+            )
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+        jdbcTemplate.batchUpdate(sql, attempts, attempts.size(), (ps, a) -> {
+            ps.setLong(1, a.getId());
+            bindInsert(ps, 2, a);
+        });
+        runnerSummaryRepository.recordAttempts(attempts);
+    }
+
+    /**
+     * Reserves `count` consecutive attempt ids and returns the first one.
+     * The counter row in id_blocks is locked for the transaction, and never
+     * hands out ids at or below MAX(id), so rows inserted by auto-increment
+     * in between are skipped over.
+     */
+    @Transactional
+    public long allocateIds(int count) {
+        List<Long> next = jdbcTemplate.query(
+                "SELECT next_id FROM id_blocks WHERE name = 'attempts' FOR UPDATE",
+                (rs, rowNum) -> rs.getLong(1));
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM attempts", Long.class);
+        long first = Math.max(next.isEmpty() ? 1 : next.get(0), (maxId != null ? maxId : 0) + 1);
+
+        if (next.isEmpty()) {
+            jdbcTemplate.update("INSERT INTO id_blocks (name, next_id) VALUES ('attempts', ?)", first + count);
+        } else {
+            jdbcTemplate.update("UPDATE id_blocks SET next_id = ? WHERE name = 'attempts'", first + count);
+        }
+        return first;
+    }
+
+    /**
+     * Binds the 23 INSERT_COLUMNS values starting at index i.
+     */
+    private static void bindInsert(PreparedStatement ps, int i, Attempt attempt) throws SQLException {
+        ps.setString(i, attempt.getRunnerId());
+
+        ps.setTimestamp(i + 1,
+                attempt.getAttemptTime() != null
+                        ? Timestamp.valueOf(attempt.getAttemptTime())
+                        : null);
+
+        ps.setDouble(i + 2, attempt.getDistanceKm());
+        ps.setDouble(i + 3, attempt.getElevationGainM());
+        ps.setDouble(i + 4, attempt.getDifficultyScore());
+        ps.setString(i + 5, attempt.getResult());
+        ps.setString(i + 6, attempt.getMessage());
+
+        // coverage + deviation
+        if (attempt.getCoverageRatio() != null)
+            ps.setDouble(i + 7, attempt.getCoverageRatio());
+        else
+            ps.setNull(i + 7, Types.DOUBLE);
+
+        if (attempt.getMaxDeviationM() != null)
+            ps.setDouble(i + 8, attempt.getMaxDeviationM());
+        else
+            ps.setNull(i + 8, Types.DOUBLE);
+
+        // time-based metrics + checkpoint counts + route progress + gaps
+        int next = bindTrackMetrics(ps, i + 9, attempt);
+
+        // dedup key / blob store key (route_hash may be null if no route was loaded)
+        ps.setString(next, attempt.getGpxSha256());
+        ps.setString(next + 1, attempt.getRouteHash());
+    }
+
     // ------------------------------------------------------------
     // BASIC QUERIES
     // ------------------------------------------------------------
+    @Override
     public List<Attempt> findAll() {
-        String sql = "SELECT * FROM attempts ORDER BY timestamp DESC";
+        String sql = "SELECT " + ATTEMPT_COLUMNS + " FROM attempts ORDER BY timestamp DESC";
         return jdbcTemplate.query(sql, new AttemptRowMapper());
     }
 
+    @Override
     public Optional<Attempt> findById(Long id) {
-        String sql = "SELECT * FROM attempts WHERE id = ?";
+        String sql = "SELECT " + ATTEMPT_COLUMNS + " FROM attempts WHERE id = ?";
         List<Attempt> list = jdbcTemplate.query(sql, new AttemptRowMapper(), id);
         return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
     }
@@ -128,42 +241,265 @@ public class AttemptRepository {
     // ------------------------------------------------------------
     // FILTERS
     // ------------------------------------------------------------
+    @Override
     public List<Attempt> findByRunnerId(String runnerId) {
-        String sql = """
-            SELECT * FROM attempts
+        String sql = "SELECT " + ATTEMPT_COLUMNS + """
+            FROM attempts
             WHERE runner_id = ?
             ORDER BY timestamp DESC
             """;
         return jdbcTemplate.query(sql, new AttemptRowMapper(), runnerId);
     }
 
+    @Override
     public List<Attempt> findByResult(String result) {
-        String sql = """
-            SELECT * FROM attempts
+        String sql = "SELECT " + ATTEMPT_COLUMNS + """
+            FROM attempts
             WHERE result = ?
             ORDER BY timestamp DESC
             """;
         return jdbcTemplate.query(sql, new AttemptRowMapper(), result);
     }
 
+    @Override
     public List<Attempt> findByRunnerIdAndResult(String runnerId, String result) {
-        String sql = """
-            SELECT * FROM attempts
+        String sql = "SELECT " + ATTEMPT_COLUMNS + """
+            FROM attempts
             WHERE runner_id = ? AND result = ?
             ORDER BY timestamp DESC
             """;
         return jdbcTemplate.query(sql, new AttemptRowMapper(), runnerId, result);
     }
 
+    // ------------------------------------------------------------
+    // BULK RE-VERIFICATION
+    // ------------------------------------------------------------
+    /**
+     * Keyset page: the next `limit` attempts with id &gt; afterId, in id order.
+     * If skipRouteHash is given, attempts already verified against that
+     * route version are left out.
+     */
+    @Override
+    public List<Attempt> findBatchAfterId(long afterId, int limit, String skipRouteHash) {
+        if (skipRouteHash == null) {
+            String sql = "SELECT " + ATTEMPT_COLUMNS + """
+                FROM attempts
+                WHERE id > ?
+                ORDER BY id
+                LIMIT ?
+                """;
+            return jdbcTemplate.query(sql, new AttemptRowMapper(), afterId, limit);
+        }
+        String sql = "SELECT " + ATTEMPT_COLUMNS + """
+            FROM attempts
+            WHERE id > ? AND (route_hash IS NULL OR route_hash <> ?)
+            ORDER BY id
+            LIMIT ?
+            """;
+        return jdbcTemplate.query(sql, new AttemptRowMapper(), afterId, skipRouteHash, limit);
+    }
+
+    @Override
+    public int countAttempts() {
+        Integer n = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM attempts", Integer.class);
+        return n != null ? n : 0;
+    }
+
+    private static final String UPDATE_VERIFICATION_SQL = """
+        UPDATE attempts
+        SET distance_km = ?, elevation_gain_m = ?, difficulty_score = ?,
+            result = ?, message = ?, coverage_ratio = ?, max_deviation_m = ?,
+            elapsed_time_s = ?, moving_time_s = ?, avg_pace_s_per_km = ?,
+            max_speed_kmh = ?, speed_spikes = ?,
+            checkpoints_reached = ?, checkpoints_total = ?,
+            progress_km = ?, route_completion = ?, skipped_km = ?,
+            track_segments = ?, gap_km = ?,
+            route_hash = ?
+        WHERE id = ?
+        """;
+
+    /**
+     * Writes re-computed metrics, result and route hash for a batch of attempts
+     * in one JDBC batch.
+     *
+     * If the batch hits the (route_hash, gpx_sha256, runner_id) unique index —
+     * the same runner uploaded the same file against two route versions, which
+     * now collapse into one — rows are retried one by one and the redundant
+     * row keeps its old route_hash.
+     *
+     * The runner_summaries rows the attempts left and joined are recomputed in
+     * the same transaction (RunnerSummaryRepository.refresh).
+     *
+     * @return number of rows updated
+     */
+    @Override
+    @Transactional
+    public int batchUpdateVerification(List<Attempt> attempts) {
+        if (attempts.isEmpty()) {
+            return 0;
+        }
+        Set<RunnerSummaryRepository.Key> summaryKeys = new HashSet<>(findSummaryKeys(attempts));
+        int total = updateVerification(attempts);
+        summaryKeys.addAll(findSummaryKeys(attempts));
+        runnerSummaryRepository.refresh(summaryKeys);
+        return total;
+    }
+
+    private int updateVerification(List<Attempt> attempts) {
+        try {
+            int[][] counts = jdbcTemplate.batchUpdate(UPDATE_VERIFICATION_SQL, attempts, attempts.size(),
+                    (ps, a) -> bindVerification(ps, a, a.getRouteHash()));
+            int total = 0;
+            for (int[] chunk : counts) {
+                for (int c : chunk) {
+                    // rewriteBatchedStatements=true reports SUCCESS_NO_INFO (-2) per row
+                    total += c == Statement.SUCCESS_NO_INFO ? 1 : Math.max(c, 0);
+                }
+            }
+            return total;
+        } catch (DuplicateKeyException e) {
+            int total = 0;
+            List<Attempt> collided = new ArrayList<>();
+            for (Attempt a : attempts) {
+                try {
+                    total += jdbcTemplate.update(UPDATE_VERIFICATION_SQL,
+                            ps -> bindVerification(ps, a, a.getRouteHash()));
+                } catch (DuplicateKeyException dup) {
+                    collided.add(a);
+                }
+            }
+            for (Attempt a : collided) {
+                total += jdbcTemplate.update("""
+                    UPDATE attempts
+                    SET distance_km = ?, elevation_gain_m = ?, difficulty_score = ?,
+                        result = ?, message = ?, coverage_ratio = ?, max_deviation_m = ?,
+                        elapsed_time_s = ?, moving_time_s = ?, avg_pace_s_per_km = ?,
+                        max_speed_kmh = ?, speed_spikes = ?,
+                        checkpoints_reached = ?, checkpoints_total = ?,
+                        progress_km = ?, route_completion = ?, skipped_km = ?,
+                        track_segments = ?, gap_km = ?
+                    WHERE id = ?
+                    """, ps -> bindVerification(ps, a, null));
+            }
+            return total;
+        }
+    }
+
+    /** Distinct (route_hash, runner_id) of the stored attempts, ranked ones only. */
+    private List<RunnerSummaryRepository.Key> findSummaryKeys(List<Attempt> attempts) {
+        String sql = "SELECT DISTINCT route_hash, runner_id FROM attempts WHERE route_hash IS NOT NULL AND id IN ("
+                + String.join(", ", Collections.nCopies(attempts.size(), "?")) + ")";
+        return jdbcTemplate.query(sql,
+                (rs, rowNum) -> new RunnerSummaryRepository.Key(rs.getString(1), rs.getString(2)),
+                attempts.stream().map(Attempt::getId).toArray());
+    }
+
+    private static void bindVerification(PreparedStatement ps, Attempt a, String routeHash)
+            throws SQLException {
+        int i = 1;
+        ps.setDouble(i++, a.getDistanceKm());
+        ps.setDouble(i++, a.getElevationGainM());
+        ps.setDouble(i++, a.getDifficultyScore());
+        ps.setString(i++, a.getResult());
+        ps.setString(i++, a.getMessage());
+        if (a.getCoverageRatio() != null)
+            ps.setDouble(i++, a.getCoverageRatio());
+        else
+            ps.setNull(i++, Types.DOUBLE);
+        if (a.getMaxDeviationM() != null && !Double.isNaN(a.getMaxDeviationM()))
+            ps.setDouble(i++, a.getMaxDeviationM());
+        else
+            ps.setNull(i++, Types.DOUBLE);
+        i = bindTrackMetrics(ps, i, a);
+        if (routeHash != null)
+            ps.setString(i++, routeHash);
+        ps.setLong(i, a.getId());
+    }
+
+    /**
+     * Binds the five nullable time-based metrics, the two checkpoint counts,
+     * the three route progress metrics and the two recording gap metrics
+     * starting at index i. Returns the next free parameter index.
+     */
+    private static int bindTrackMetrics(PreparedStatement ps, int i, Attempt a) throws SQLException {
+        ps.setObject(i++, a.getElapsedSeconds(), Types.BIGINT);
+        ps.setObject(i++, a.getMovingSeconds(), Types.BIGINT);
+        ps.setObject(i++, a.getAvgPaceSecPerKm(), Types.DOUBLE);
+        ps.setObject(i++, a.getMaxSpeedKmh(), Types.DOUBLE);
+        ps.setObject(i++, a.getSpeedSpikes(), Types.INTEGER);
+        ps.setObject(i++, a.getCheckpointsReached(), Types.INTEGER);
+        ps.setObject(i++, a.getCheckpointsTotal(), Types.INTEGER);
+        ps.setObject(i++, a.getProgressKm(), Types.DOUBLE);
+        ps.setObject(i++, a.getRouteCompletion(), Types.DOUBLE);
+        ps.setObject(i++, a.getSkippedKm(), Types.DOUBLE);
+        ps.setObject(i++, a.getTrackSegments(), Types.INTEGER);
+        ps.setObject(i++, a.getGapKm(), Types.DOUBLE);
+        return i;
+    }
+
+    // ------------------------------------------------------------
+    // CONTENT-HASH DEDUP
+    // ------------------------------------------------------------
+    /**
+     * Attempts already verified from the exact same bytes against the same route,
+     * oldest first. Served by the (route_hash, gpx_sha256, runner_id) unique index.
+     */
+    @Override
+    public List<Attempt> findByContentHash(String routeHash, String gpxSha256) {
+        String sql = "SELECT " + ATTEMPT_COLUMNS + """
+            FROM attempts
+            WHERE route_hash = ? AND gpx_sha256 = ?
+            ORDER BY id ASC
+            """;
+        return jdbcTemplate.query(sql, new AttemptRowMapper(), routeHash, gpxSha256);
+    }
+
+    /**
+     * GPX file stored inline in attempts.gpx_data by versions before the
+     * GpxBlobStore. Looks at the row itself first, then at any row sharing
+     * its content hash (deduplicated uploads did not keep their own copy).
+     * The BLOB is streamed on demand, not loaded here.
+     */
+    @Override
+    public Optional<Resource> findLegacyGpxData(Long id, String gpxSha256) {
+        RowMapper<Resource> toResource = (rs, rowNum) -> new JdbcBlobResource(
+                jdbcTemplate, "attempts", "gpx_data", "id", rs.getLong(1), rs.getLong(2));
+
+        String sql = """
+            SELECT id, LENGTH(gpx_data) FROM attempts
+            WHERE id = ? AND gpx_data IS NOT NULL
+            """;
+        List<Resource> list = jdbcTemplate.query(sql, toResource, id);
+        if (list.isEmpty() && gpxSha256 != null) {
+            sql = """
+                SELECT id, LENGTH(gpx_data) FROM attempts
+                WHERE gpx_sha256 = ? AND gpx_data IS NOT NULL
+                ORDER BY id ASC
+                LIMIT 1
+                """;
+            list = jdbcTemplate.query(sql, toResource, gpxSha256);
+        }
+        return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
+    }
+
     // ------------------------------------------------------------
     // RESET (used by /api/attempts/reset)
     // ------------------------------------------------------------
     /**
-     * Deletes all attempts and resets AUTO_INCREMENT.
+     * Deletes all attempts (and their attempt_metrics rows) and resets AUTO_INCREMENT.
      *
      * @return number of rows deleted
      */
+    @Override
     public int resetAll() {
+        // Side tables reference attempts(id), so clear them first
+        jdbcTemplate.update("DELETE FROM attempt_sync");
+        jdbcTemplate.update("DELETE FROM id_blocks WHERE name = 'attempts'");
+        jdbcTemplate.update("DELETE FROM attempt_metrics");
+        jdbcTemplate.update("DELETE FROM attempt_checkpoints");
+        jdbcTemplate.update("DELETE FROM attempt_cells");
+        jdbcTemplate.update("DELETE FROM heatmap_cells");
+        runnerSummaryRepository.deleteAll();
         // Delete rows and capture how many were removed
         int deleted = jdbcTemplate.update("DELETE FROM attempts");
         // Reset auto-increment so IDs start from 1 again
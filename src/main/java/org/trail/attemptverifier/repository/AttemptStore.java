@@ -0,0 +1,80 @@
+package org.trail.attemptverifier.repository;
+
+import org.springframework.core.io.Resource;
+import org.trail.attemptverifier.model.Attempt;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Persistence of attempts, as seen by services and controllers.
+ *
+ * The JDBC implementation (AttemptRepository) runs unchanged on both
+ * backends, selected by the DataSource:
+ *  - central MySQL (default profile)
+ *  - embedded H2 file in MySQL mode (profile "embedded", single-node
+ *    deployments without a database server); CentralSyncService later
+ *    pushes those attempts to the central MySQL.
+ *
+ * With verifier.write-behind.enabled, WriteBehindAttemptStore wraps it and
+ * batches inserts; rows referencing attempts(id) must then be written
+ * through afterSave().
+ */
+public interface AttemptStore {
+
+    /**
+     * Inserts the attempt, sets its generated id and updates its runner summary.
+     */
+    Attempt save(Attempt attempt);
+
+    /**
+     * Runs writes that reference the saved attempt's row (checkpoint splits,
+     * packed track) once that row exists: right away here, right after the
+     * flush that inserts it with write-behind.
+     */
+    default void afterSave(Attempt attempt, Runnable dependentWrites) {
+        dependentWrites.run();
+    }
+
+    List<Attempt> findAll();
+
+    Optional<Attempt> findById(Long id);
+
+    List<Attempt> findByRunnerId(String runnerId);
+
+    List<Attempt> findByResult(String result);
+
+    List<Attempt> findByRunnerIdAndResult(String runnerId, String result);
+
+    /**
+     * Keyset page: the next `limit` attempts with id &gt; afterId, in id order,
+     * optionally leaving out those already verified against skipRouteHash.
+     */
+    List<Attempt> findBatchAfterId(long afterId, int limit, String skipRouteHash);
+
+    int countAttempts();
+
+    /**
+     * Writes re-computed metrics, result and route hash for a batch of attempts.
+     *
+     * @return number of rows updated
+     */
+    int batchUpdateVerification(List<Attempt> attempts);
+
+    /**
+     * Attempts verified from the same bytes against the same route, oldest first.
+     */
+    List<Attempt> findByContentHash(String routeHash, String gpxSha256);
+
+    /**
+     * GPX bytes stored inline by versions before the GpxBlobStore, streamed on demand.
+     */
+    Optional<Resource> findLegacyGpxData(Long id, String gpxSha256);
+
+    /**
+     * Deletes all attempts and their side rows; ids start from 1 again.
+     *
+     * @return number of attempts deleted
+     */
+    int resetAll();
+}
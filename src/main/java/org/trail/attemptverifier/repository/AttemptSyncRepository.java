@@ -0,0 +1,106 @@
+package org.trail.attemptverifier.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * attempt_sync: which local attempts were pushed to the central MySQL, and
+ * under which central id. Only written on embedded nodes (CentralSyncService).
+ *
+ * An attempt whose push failed has a row without central_attempt_id that
+ * counts the failures and keeps the last error; it is retried until it
+ * reaches the caller's failure limit.
+ */
+@Repository
+public class AttemptSyncRepository {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AttemptSyncRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Ids after afterId of attempts still to push (never tried, or failed
+     * fewer than maxFailures times), in id order.
+     */
+    public List<Long> findUnsyncedIds(long afterId, int maxFailures, int limit) {
+        String sql = """
+            SELECT a.id FROM attempts a
+            LEFT JOIN attempt_sync s ON s.attempt_id = a.id
+            WHERE a.id > ?
+              AND (s.attempt_id IS NULL OR (s.central_attempt_id IS NULL AND s.failures < ?))
+            ORDER BY a.id
+            LIMIT ?
+            """;
+        return jdbcTemplate.query(sql, (rs, rowNum) -> rs.getLong(1), afterId, maxFailures, limit);
+    }
+
+    /** Attempts without a central id, including ones that keep failing. */
+    public int countUnsynced() {
+        String sql = """
+            SELECT COUNT(*) FROM attempts a
+            LEFT JOIN attempt_sync s ON s.attempt_id = a.id
+            WHERE s.central_attempt_id IS NULL
+            """;
+        Integer n = jdbcTemplate.queryForObject(sql, Integer.class);
+        return n != null ? n : 0;
+    }
+
+    /** Unsynced attempts whose last push failed. */
+    public int countFailing() {
+        Integer n = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM attempt_sync WHERE central_attempt_id IS NULL AND failures > 0",
+                Integer.class);
+        return n != null ? n : 0;
+    }
+
+    public void markSynced(Long attemptId, Long centralAttemptId) {
+        String sql = """
+            INSERT INTO attempt_sync (attempt_id, central_attempt_id, synced_at, failures)
+            VALUES (?, ?, ?, 0)
+            ON DUPLICATE KEY UPDATE
+                central_attempt_id = VALUES(central_attempt_id),
+                synced_at = VALUES(synced_at),
+                last_error = NULL
+            """;
+        jdbcTemplate.update(sql, attemptId, centralAttemptId, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * Counts one failed push of the attempt.
+     *
+     * @return failures so far, including this one
+     */
+    public int markFailed(Long attemptId, String error) {
+        String message = error == null ? null
+                : error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+        String sql = """
+            INSERT INTO attempt_sync (attempt_id, failures, last_error, failed_at)
+            VALUES (?, 1, ?, ?)
+            ON DUPLICATE KEY UPDATE
+                failures = failures + 1,
+                last_error = VALUES(last_error),
+                failed_at = VALUES(failed_at)
+            """;
+        jdbcTemplate.update(sql, attemptId, message, Timestamp.valueOf(LocalDateTime.now()));
+        Integer n = jdbcTemplate.queryForObject(
+                "SELECT failures FROM attempt_sync WHERE attempt_id = ?", Integer.class, attemptId);
+        return n != null ? n : 0;
+    }
+
+    /**
+     * Makes attempts that reached the failure limit eligible again.
+     *
+     * @return number of attempts reset
+     */
+    public int resetFailures() {
+        return jdbcTemplate.update("DELETE FROM attempt_sync WHERE central_attempt_id IS NULL");
+    }
+}
@@ -0,0 +1,97 @@
+package org.trail.attemptverifier.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.trail.attemptverifier.model.CheckpointSplit;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * JDBC access to attempt_checkpoints: one row per (attempt, route checkpoint)
+ * with whether it was reached in order and the split times.
+ */
+@Repository
+public class CheckpointSplitRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CheckpointSplitRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // ------------------------------------------------------------
+    // RowMapper for DB → Model
+    // ------------------------------------------------------------
+    private static class CheckpointSplitRowMapper implements RowMapper<CheckpointSplit> {
+        @Override
+        public CheckpointSplit mapRow(ResultSet rs, int rowNum) throws SQLException {
+            CheckpointSplit s = new CheckpointSplit();
+            s.setSequence(rs.getInt("seq"));
+            s.setName(rs.getString("name"));
+            s.setChainageM(rs.getDouble("chainage_m"));
+            s.setReached(rs.getBoolean("reached"));
+            s.setPointIndex(rs.getObject("point_index", Integer.class));
+            Timestamp ts = rs.getTimestamp("reached_at");
+            s.setReachedAt(ts != null ? ts.toInstant() : null);
+            s.setElapsedSeconds(rs.getObject("elapsed_s", Long.class));
+            s.setSplitSeconds(rs.getObject("split_s", Long.class));
+            return s;
+        }
+    }
+
+    /**
+     * Replaces the checkpoint rows of an attempt (one delete + one JDBC batch).
+     */
+    @Transactional
+    public void replaceAll(Long attemptId, List<CheckpointSplit> splits) {
+        jdbcTemplate.update("DELETE FROM attempt_checkpoints WHERE attempt_id = ?", attemptId);
+        if (splits == null || splits.isEmpty()) {
+            return;
+        }
+        String sql = """
+            INSERT INTO attempt_checkpoints
+            (attempt_id, seq, name, chainage_m, reached, point_index, reached_at, elapsed_s, split_s)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+        jdbcTemplate.batchUpdate(sql, splits, splits.size(), (ps, s) -> {
+            ps.setLong(1, attemptId);
+            ps.setInt(2, s.getSequence());
+            ps.setString(3, s.getName());
+            ps.setDouble(4, s.getChainageM());
+            ps.setBoolean(5, s.isReached());
+            ps.setObject(6, s.getPointIndex(), Types.INTEGER);
+            ps.setTimestamp(7, s.getReachedAt() != null ? Timestamp.from(s.getReachedAt()) : null);
+            ps.setObject(8, s.getElapsedSeconds(), Types.BIGINT);
+            ps.setObject(9, s.getSplitSeconds(), Types.BIGINT);
+        });
+    }
+
+    public List<CheckpointSplit> findByAttemptId(Long attemptId) {
+        String sql = """
+            SELECT seq, name, chainage_m, reached, point_index, reached_at, elapsed_s, split_s
+            FROM attempt_checkpoints
+            WHERE attempt_id = ?
+            ORDER BY seq
+            """;
+        return jdbcTemplate.query(sql, new CheckpointSplitRowMapper(), attemptId);
+    }
+
+    /**
+     * Gives a deduplicated attempt the checkpoint rows of the attempt it was copied from.
+     */
+    public void copy(Long fromAttemptId, Long toAttemptId) {
+        String sql = """
+            INSERT INTO attempt_checkpoints
+            (attempt_id, seq, name, chainage_m, reached, point_index, reached_at, elapsed_s, split_s)
+            SELECT ?, seq, name, chainage_m, reached, point_index, reached_at, elapsed_s, split_s
+            FROM attempt_checkpoints WHERE attempt_id = ?
+            """;
+        jdbcTemplate.update(sql, toAttemptId, fromAttemptId);
+    }
+}
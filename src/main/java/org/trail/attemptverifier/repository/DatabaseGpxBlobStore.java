@@ -0,0 +1,54 @@
+package org.trail.attemptverifier.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * GPX store backed by the gpx_blobs table (one row per distinct file).
+ * Keeps everything inside MySQL for deployments without a persistent disk.
+ * Reads stream the column from one query (JdbcBlobResource); the
+ * connection is held until the reader closes the stream.
+ * Writes use their own statement timeout (verifier.blob-store.write-timeout-s)
+ * so a stalled multi-MB insert gives its pooled connection back.
+ */
+@Repository
+@ConditionalOnProperty(name = "verifier.blob-store.type", havingValue = "database")
+public class DatabaseGpxBlobStore implements GpxBlobStore {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate writeTemplate;
+
+    public DatabaseGpxBlobStore(JdbcTemplate jdbcTemplate,
+                                @Value("${verifier.blob-store.write-timeout-s:30}") int writeTimeoutSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.writeTemplate.setQueryTimeout(writeTimeoutSeconds);
+    }
+
+    @Override
+    public void put(String sha256, byte[] data) {
+        // Content-addressed: an existing row already holds identical bytes
+        writeTemplate.update(
+                "INSERT IGNORE INTO gpx_blobs (sha256, size_bytes, data) VALUES (?, ?, ?)",
+                sha256, data.length, data);
+    }
+
+    @Override
+    public Optional<Resource> find(String sha256) {
+        List<Long> sizes = jdbcTemplate.query(
+                "SELECT size_bytes FROM gpx_blobs WHERE sha256 = ?",
+                (rs, rowNum) -> rs.getLong(1),
+                sha256);
+        if (sizes.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new JdbcBlobResource(
+                jdbcTemplate, "gpx_blobs", "data", "sha256", sha256, sizes.get(0)));
+    }
+}
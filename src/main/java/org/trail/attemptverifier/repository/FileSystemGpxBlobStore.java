@@ -0,0 +1,81 @@
+package org.trail.attemptverifier.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Content-addressed GPX store on the local filesystem.
+ *
+ * Layout (sharded so no directory grows past a few thousand entries):
+ *   {root}/ab/cd/abcd…(64 hex chars).gpx
+ *
+ * Writes go to a temp file in the target directory and are then renamed
+ * into place, so readers never observe a partially written file.
+ */
+@Repository
+@ConditionalOnProperty(name = "verifier.blob-store.type", havingValue = "filesystem", matchIfMissing = true)
+public class FileSystemGpxBlobStore implements GpxBlobStore {
+
+    private final Path root;
+
+    public FileSystemGpxBlobStore(@Value("${verifier.blob-store.root:data/gpx-blobs}") String root) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        System.out.println("[FileSystemGpxBlobStore] Storing GPX files under " + this.root);
+    }
+
+    @Override
+    public void put(String sha256, byte[] data) throws IOException {
+        Path target = pathFor(sha256);
+        if (Files.exists(target)) {
+            return; // same hash → same bytes
+        }
+
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), sha256, ".tmp");
+        try {
+            Files.write(tmp, data);
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, target);
+            }
+        } catch (FileAlreadyExistsException e) {
+            // A concurrent upload of the same file got there first
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public Optional<Resource> find(String sha256) {
+        Path path = pathFor(sha256);
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        // FileSystemResource is streamed by Spring MVC (including Range requests)
+        // without loading the file into memory.
+        return Optional.of(new FileSystemResource(path));
+    }
+
+    private Path pathFor(String sha256) {
+        if (sha256 == null || sha256.length() != 64) {
+            throw new IllegalArgumentException("Not a SHA-256 hex digest: " + sha256);
+        }
+        String key = sha256.toLowerCase();
+        return root.resolve(key.substring(0, 2))
+                .resolve(key.substring(2, 4))
+                .resolve(key + ".gpx");
+    }
+}
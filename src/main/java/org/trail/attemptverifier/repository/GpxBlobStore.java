@@ -0,0 +1,34 @@
+package org.trail.attemptverifier.repository;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Storage for raw uploaded GPX files, addressed by their SHA-256 hex digest.
+ *
+ * Attempts only keep the hash (attempts.gpx_sha256); the bytes live in the store.
+ * Because keys are content hashes, put() is idempotent and identical uploads
+ * share one stored copy.
+ *
+ * Implementations:
+ *  - FileSystemGpxBlobStore (default, verifier.blob-store.type=filesystem)
+ *  - DatabaseGpxBlobStore   (verifier.blob-store.type=database)
+ */
+public interface GpxBlobStore {
+
+    /**
+     * Stores the bytes under the given hash. Does nothing if already present.
+     *
+     * @param sha256 lowercase hex SHA-256 of data
+     * @param data   raw file bytes
+     */
+    void put(String sha256, byte[] data) throws IOException;
+
+    /**
+     * Streamable handle to the stored file, or empty if the hash is unknown.
+     * Callers read it through getInputStream() and never need the whole file in heap.
+     */
+    Optional<Resource> find(String sha256);
+}
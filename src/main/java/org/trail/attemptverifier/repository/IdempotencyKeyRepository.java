@@ -0,0 +1,96 @@
+package org.trail.attemptverifier.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JDBC access to idempotency_keys: Idempotency-Key header → attempt created
+ * by the first request carrying it. Survives restarts and is shared by all
+ * instances; IdempotencyService keeps a bounded in-memory cache in front.
+ */
+@Repository
+public class IdempotencyKeyRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdempotencyKeyRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Stored (runnerId, attemptId, createdAt) for a key, ignoring rows older than notBefore.
+     */
+    public Optional<IdempotencyRecord> find(String key, LocalDateTime notBefore) {
+        String sql = """
+            SELECT runner_id, attempt_id, created_at FROM idempotency_keys
+            WHERE idem_key = ? AND created_at >= ?
+            """;
+        List<IdempotencyRecord> rows = jdbcTemplate.query(sql,
+                (rs, rowNum) -> new IdempotencyRecord(rs.getString(1), rs.getLong(2),
+                        rs.getTimestamp(3).toLocalDateTime()),
+                key, Timestamp.valueOf(notBefore));
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+
+    /**
+     * Records a key. Returns false if another request (or instance) stored it
+     * first, or an expired row for it has not been purged yet.
+     */
+    public boolean insert(String key, IdempotencyRecord record) {
+        String sql = """
+            INSERT IGNORE INTO idempotency_keys (idem_key, runner_id, attempt_id, created_at)
+            VALUES (?, ?, ?, ?)
+            """;
+        return jdbcTemplate.update(sql, key, record.getRunnerId(), record.getAttemptId(),
+                Timestamp.valueOf(record.getCreatedAt())) > 0;
+    }
+
+    /**
+     * Deletes the row of one key if it is older than cutoff.
+     */
+    public int deleteExpired(String key, LocalDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM idempotency_keys WHERE idem_key = ? AND created_at < ?",
+                key, Timestamp.valueOf(cutoff));
+    }
+
+    public int deleteOlderThan(LocalDateTime cutoff) {
+        return jdbcTemplate.update("DELETE FROM idempotency_keys WHERE created_at < ?",
+                Timestamp.valueOf(cutoff));
+    }
+
+    public void deleteAll() {
+        jdbcTemplate.update("DELETE FROM idempotency_keys");
+    }
+
+    /**
+     * Which runner's upload created which attempt, and when the key was recorded.
+     */
+    public static class IdempotencyRecord {
+        private final String runnerId;
+        private final long attemptId;
+        private final LocalDateTime createdAt;
+
+        public IdempotencyRecord(String runnerId, long attemptId, LocalDateTime createdAt) {
+            this.runnerId = runnerId;
+            this.attemptId = attemptId;
+            this.createdAt = createdAt;
+        }
+
+        public String getRunnerId() {
+            return runnerId;
+        }
+
+        public long getAttemptId() {
+            return attemptId;
+        }
+
+        public LocalDateTime getCreatedAt() {
+            return createdAt;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.trail.attemptverifier.repository;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import javax.sql.DataSource;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Read-only Resource over a BLOB column.
+ *
+ * Every getInputStream() runs ONE query and streams the column through
+ * ResultSet.getBinaryStream; the pooled connection stays borrowed until the
+ * stream is closed. Reading a window per query (SUBSTRING) would be cheaper
+ * on the client, but MySQL reads the whole BLOB for each of those queries,
+ * so a large file would be read from disk hundreds of times.
+ *
+ * On MySQL the statement is a streaming result set (fetch size
+ * Integer.MIN_VALUE), so rows are not buffered ahead of the read; the
+ * driver still materializes the one row it is on.
+ *
+ * contentLength() is known up front. Range requests skip within the one
+ * stream (see AttemptController.getAttemptGpx).
+ */
+public class JdbcBlobResource extends AbstractResource {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String table;
+    private final String column;
+    private final String keyColumn;
+    private final Object key;
+    private final long length;
+
+    /**
+     * @param table     table holding the BLOB (trusted identifier, not user input)
+     * @param column    BLOB column
+     * @param keyColumn primary/unique key column used to address the row
+     * @param key       key value
+     * @param length    BLOB length in bytes
+     */
+    public JdbcBlobResource(JdbcTemplate jdbcTemplate, String table, String column,
+                            String keyColumn, Object key, long length) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.table = table;
+        this.column = column;
+        this.keyColumn = keyColumn;
+        this.key = key;
+        this.length = length;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return length;
+    }
+
+    @Override
+    public String getDescription() {
+        return "BLOB " + table + "." + column + " [" + keyColumn + "=" + key + "]";
+    }
+
+    /**
+     * Opens the query and returns the column stream. The caller must close
+     * it: that closes the result set and returns the connection to the pool.
+     */
+    @Override
+    public InputStream getInputStream() throws IOException {
+        DataSource dataSource = jdbcTemplate.getDataSource();
+        Connection con = DataSourceUtils.getConnection(dataSource);
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ps = con.prepareStatement("SELECT " + column + " FROM " + table + " WHERE " + keyColumn + " = ?",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            if ("MySQL".equals(con.getMetaData().getDatabaseProductName())) {
+                ps.setFetchSize(Integer.MIN_VALUE);
+            }
+            ps.setObject(1, key);
+            rs = ps.executeQuery();
+            InputStream in = rs.next() ? rs.getBinaryStream(1) : null;
+            if (in == null) {
+                throw new IOException("Missing " + getDescription());
+            }
+            return new BlobInputStream(in, rs, ps, con, dataSource);
+        } catch (SQLException | IOException | RuntimeException e) {
+            JdbcUtils.closeResultSet(rs);
+            JdbcUtils.closeStatement(ps);
+            DataSourceUtils.releaseConnection(con, dataSource);
+            if (e instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Could not open " + getDescription(), e);
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Streaming reader
+    // ------------------------------------------------------------
+    private static final class BlobInputStream extends FilterInputStream {
+
+        private final ResultSet rs;
+        private final PreparedStatement ps;
+        private final Connection con;
+        private final DataSource dataSource;
+        private boolean closed;
+
+        BlobInputStream(InputStream in, ResultSet rs, PreparedStatement ps,
+                        Connection con, DataSource dataSource) {
+            super(in);
+            this.rs = rs;
+            this.ps = ps;
+            this.con = con;
+            this.dataSource = dataSource;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                JdbcUtils.closeResultSet(rs);
+                JdbcUtils.closeStatement(ps);
+                DataSourceUtils.releaseConnection(con, dataSource);
+            }
+        }
+    }
+}
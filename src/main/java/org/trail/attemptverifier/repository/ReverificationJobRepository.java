@@ -0,0 +1,159 @@
+package org.trail.attemptverifier.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.trail.attemptverifier.model.ReverificationJob;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JDBC access to reverify_jobs (progress + checkpoint of bulk re-verification).
+ */
+@Repository
+public class ReverificationJobRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ReverificationJobRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private static class JobRowMapper implements RowMapper<ReverificationJob> {
+        @Override
+        public ReverificationJob mapRow(ResultSet rs, int rowNum) throws SQLException {
+            ReverificationJob job = new ReverificationJob();
+            job.setId(rs.getLong("id"));
+            job.setStatus(rs.getString("status"));
+            job.setRouteHash(rs.getString("route_hash"));
+            job.setToleranceM(rs.getDouble("tolerance_m"));
+            job.setStaleOnly(rs.getBoolean("stale_only"));
+            job.setLastAttemptId(rs.getLong("last_attempt_id"));
+            job.setTotalAttempts(rs.getInt("total_attempts"));
+            job.setProcessed(rs.getInt("processed"));
+            job.setChanged(rs.getInt("changed"));
+            job.setSkipped(rs.getInt("skipped"));
+            job.setFailed(rs.getInt("failed"));
+            job.setFailedAttemptIds(parseIds(rs.getString("failed_attempt_ids")));
+            Timestamp started = rs.getTimestamp("started_at");
+            job.setStartedAt(started != null ? started.toLocalDateTime() : null);
+            Timestamp updated = rs.getTimestamp("updated_at");
+            job.setUpdatedAt(updated != null ? updated.toLocalDateTime() : null);
+            job.setMessage(rs.getString("message"));
+            return job;
+        }
+    }
+
+    public ReverificationJob insert(ReverificationJob job) {
+        String sql = """
+            INSERT INTO reverify_jobs
+            (status, route_hash, tolerance_m, stale_only, last_attempt_id,
+             total_attempts, processed, changed, skipped, failed, failed_attempt_ids,
+             started_at, updated_at, message)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+        LocalDateTime now = LocalDateTime.now();
+        job.setStartedAt(now);
+        job.setUpdatedAt(now);
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, job.getStatus());
+            ps.setString(2, job.getRouteHash());
+            ps.setDouble(3, job.getToleranceM());
+            ps.setBoolean(4, job.isStaleOnly());
+            ps.setLong(5, job.getLastAttemptId());
+            ps.setInt(6, job.getTotalAttempts());
+            ps.setInt(7, job.getProcessed());
+            ps.setInt(8, job.getChanged());
+            ps.setInt(9, job.getSkipped());
+            ps.setInt(10, job.getFailed());
+            ps.setString(11, formatIds(job.getFailedAttemptIds()));
+            ps.setTimestamp(12, Timestamp.valueOf(now));
+            ps.setTimestamp(13, Timestamp.valueOf(now));
+            ps.setString(14, job.getMessage());
+            return ps;
+        }, keyHolder);
+
+        Number key = keyHolder.getKey();
+        if (key != null) {
+            job.setId(key.longValue());
+        }
+        return job;
+    }
+
+    /**
+     * Persists progress. Called after each batch has been written, so a
+     * restarted job resumes right after lastAttemptId.
+     */
+    public void checkpoint(ReverificationJob job) {
+        job.setUpdatedAt(LocalDateTime.now());
+        jdbcTemplate.update("""
+            UPDATE reverify_jobs
+            SET status = ?, route_hash = ?, last_attempt_id = ?, processed = ?,
+                changed = ?, skipped = ?, failed = ?, failed_attempt_ids = ?,
+                updated_at = ?, message = ?
+            WHERE id = ?
+            """,
+            job.getStatus(), job.getRouteHash(), job.getLastAttemptId(), job.getProcessed(),
+            job.getChanged(), job.getSkipped(), job.getFailed(), formatIds(job.getFailedAttemptIds()),
+            Timestamp.valueOf(job.getUpdatedAt()), job.getMessage(), job.getId());
+    }
+
+    public Optional<ReverificationJob> findById(Long id) {
+        List<ReverificationJob> list = jdbcTemplate.query(
+                "SELECT * FROM reverify_jobs WHERE id = ?", new JobRowMapper(), id);
+        return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
+    }
+
+    public Optional<ReverificationJob> findLatest() {
+        List<ReverificationJob> list = jdbcTemplate.query(
+                "SELECT * FROM reverify_jobs ORDER BY id DESC LIMIT 1", new JobRowMapper());
+        return list.isEmpty() ? Optional.empty() : Optional.of(list.get(0));
+    }
+
+    // failed_attempt_ids is a comma-separated list, NULL when empty
+
+    private static String formatIds(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Long id : ids) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(id);
+        }
+        return sb.toString();
+    }
+
+    private static List<Long> parseIds(String ids) {
+        if (ids == null || ids.isBlank()) {
+            return List.of();
+        }
+        List<Long> list = new ArrayList<>();
+        for (String id : ids.split(",")) {
+            list.add(Long.parseLong(id.trim()));
+        }
+        return list;
+    }
+
+    /** Jobs left RUNNING by a previous process (crash or restart). */
+    public List<ReverificationJob> findRunning() {
+        return jdbcTemplate.query(
+                "SELECT * FROM reverify_jobs WHERE status = ? ORDER BY id",
+                new JobRowMapper(), ReverificationJob.RUNNING);
+    }
+}
@@ -0,0 +1,339 @@
+package org.trail.attemptverifier.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.trail.attemptverifier.model.Attempt;
+import org.trail.attemptverifier.model.RunnerSummary;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * JDBC access to runner_summaries, the materialized per-(route, runner)
+ * aggregate behind the leaderboard and runner-stats endpoints.
+ *
+ * Kept current by recordAttempt() (called from AttemptRepository.save in the
+ * same transaction; recordAttempts() for write-behind batches) and, when bulk
+ * re-verification changes stored results, by refresh() for the rows of the
+ * re-verified attempts, in the transaction of their update.
+ */
+@Repository
+public class RunnerSummaryRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public RunnerSummaryRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // ------------------------------------------------------------
+    // RowMapper for DB → Model
+    // ------------------------------------------------------------
+    private static class RunnerSummaryRowMapper implements RowMapper<RunnerSummary> {
+        @Override
+        public RunnerSummary mapRow(ResultSet rs, int rowNum) throws SQLException {
+            RunnerSummary s = new RunnerSummary();
+            s.setRouteHash(rs.getString("route_hash"));
+            s.setRunnerId(rs.getString("runner_id"));
+            s.setAttempts(rs.getInt("attempts"));
+            s.setVerified(rs.getInt("verified"));
+            s.setFlagged(rs.getInt("flagged"));
+            s.setRejected(rs.getInt("rejected"));
+            s.setBestVerifiedScore(rs.getObject("best_verified_score", Double.class));
+            s.setBestAttemptId(rs.getObject("best_attempt_id", Long.class));
+            Timestamp ts = rs.getTimestamp("last_attempt_at");
+            s.setLastAttemptAt(ts != null ? ts.toLocalDateTime() : null);
+            return s;
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Incremental maintenance
+    // ------------------------------------------------------------
+    // best_attempt_id is assigned before best_verified_score, so both
+    // CASEs compare against the previous best. The COALESCE form (a NULL
+    // new score never wins, a NULL old score always loses) is what H2's
+    // MySQL mode can parse; "VALUES(x) IS NOT NULL" is not.
+    private static final String RECORD_SQL = """
+        INSERT INTO runner_summaries
+        (route_hash, runner_id, attempts, verified, flagged, rejected,
+         best_verified_score, best_attempt_id, last_attempt_at)
+        VALUES (?, ?, 1, ?, ?, ?, ?, ?, ?)
+        ON DUPLICATE KEY UPDATE
+            attempts = attempts + 1,
+            verified = verified + VALUES(verified),
+            flagged  = flagged  + VALUES(flagged),
+            rejected = rejected + VALUES(rejected),
+            best_attempt_id = CASE
+                WHEN COALESCE(VALUES(best_verified_score), -1E300) > COALESCE(best_verified_score, -1E300)
+                THEN VALUES(best_attempt_id) ELSE best_attempt_id END,
+            best_verified_score = CASE
+                WHEN COALESCE(VALUES(best_verified_score), -1E300) > COALESCE(best_verified_score, -1E300)
+                THEN VALUES(best_verified_score) ELSE best_verified_score END,
+            last_attempt_at = VALUES(last_attempt_at)
+        """;
+
+    /**
+     * Folds one newly saved attempt into its (route, runner) summary row.
+     * Attempts without a route hash (route unavailable) are not ranked.
+     */
+    public void recordAttempt(Attempt attempt) {
+        if (!isRanked(attempt)) {
+            return;
+        }
+        jdbcTemplate.update(RECORD_SQL, ps -> bindRecord(ps, attempt));
+    }
+
+    /**
+     * recordAttempt for a batch of saved attempts, as one JDBC batch.
+     */
+    public void recordAttempts(List<Attempt> attempts) {
+        List<Attempt> ranked = attempts.stream().filter(RunnerSummaryRepository::isRanked).toList();
+        if (!ranked.isEmpty()) {
+            jdbcTemplate.batchUpdate(RECORD_SQL, ranked, ranked.size(), RunnerSummaryRepository::bindRecord);
+        }
+    }
+
+    private static boolean isRanked(Attempt attempt) {
+        return attempt.getRouteHash() != null && attempt.getId() != null;
+    }
+
+    private static void bindRecord(PreparedStatement ps, Attempt attempt) throws SQLException {
+        boolean verified = "VERIFIED".equals(attempt.getResult());
+        ps.setString(1, attempt.getRouteHash());
+        ps.setString(2, attempt.getRunnerId());
+        ps.setInt(3, verified ? 1 : 0);
+        ps.setInt(4, "FLAGGED".equals(attempt.getResult()) ? 1 : 0);
+        ps.setInt(5, "REJECTED".equals(attempt.getResult()) ? 1 : 0);
+        ps.setObject(6, verified ? attempt.getDifficultyScore() : null, Types.DOUBLE);
+        ps.setObject(7, verified ? attempt.getId() : null, Types.BIGINT);
+        ps.setTimestamp(8, attempt.getAttemptTime() != null ? Timestamp.valueOf(attempt.getAttemptTime()) : null);
+    }
+
+    /**
+     * Recomputes the rows of the given keys from attempts, in the caller's
+     * transaction (AttemptRepository.batchUpdateVerification).
+     *
+     * The attempts of those keys are read with FOR UPDATE before any summary
+     * row is written, the same lock order as an upload (attempt, then its
+     * summary row): an upload that got in first is counted, one that comes
+     * later waits and adds itself on top. Keys left without attempts lose
+     * their row.
+     */
+    @Transactional
+    public void refresh(Collection<Key> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<Object> args = new ArrayList<>(keys.size() * 2);
+        for (Key key : keys) {
+            args.add(key.getRouteHash());
+            args.add(key.getRunnerId());
+        }
+        String sql = "SELECT id, route_hash, runner_id, result, difficulty_score, timestamp FROM attempts WHERE "
+                + String.join(" OR ", Collections.nCopies(keys.size(), "(route_hash = ? AND runner_id = ?)"))
+                + " FOR UPDATE";
+
+        Map<Key, RunnerSummary> fresh = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            Key key = new Key(rs.getString("route_hash"), rs.getString("runner_id"));
+            RunnerSummary s = fresh.computeIfAbsent(key, k -> {
+                RunnerSummary created = new RunnerSummary();
+                created.setRouteHash(k.getRouteHash());
+                created.setRunnerId(k.getRunnerId());
+                return created;
+            });
+            long id = rs.getLong("id");
+            double score = rs.getDouble("difficulty_score");
+            s.setAttempts(s.getAttempts() + 1);
+            switch (String.valueOf(rs.getString("result"))) {
+                case "VERIFIED":
+                    s.setVerified(s.getVerified() + 1);
+                    // Same order as the leaderboard: best score, then lowest id
+                    if (s.getBestVerifiedScore() == null || score > s.getBestVerifiedScore()
+                            || (score == s.getBestVerifiedScore() && id < s.getBestAttemptId())) {
+                        s.setBestVerifiedScore(score);
+                        s.setBestAttemptId(id);
+                    }
+                    break;
+                case "FLAGGED":
+                    s.setFlagged(s.getFlagged() + 1);
+                    break;
+                case "REJECTED":
+                    s.setRejected(s.getRejected() + 1);
+                    break;
+                default:
+                    break;
+            }
+            Timestamp ts = rs.getTimestamp("timestamp");
+            if (ts != null && (s.getLastAttemptAt() == null || ts.toLocalDateTime().isAfter(s.getLastAttemptAt()))) {
+                s.setLastAttemptAt(ts.toLocalDateTime());
+            }
+        }, args.toArray());
+
+        List<RunnerSummary> rows = new ArrayList<>(fresh.values());
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate("""
+                INSERT INTO runner_summaries
+                (route_hash, runner_id, attempts, verified, flagged, rejected,
+                 best_verified_score, best_attempt_id, last_attempt_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+                ON DUPLICATE KEY UPDATE
+                    attempts = VALUES(attempts),
+                    verified = VALUES(verified),
+                    flagged  = VALUES(flagged),
+                    rejected = VALUES(rejected),
+                    best_verified_score = VALUES(best_verified_score),
+                    best_attempt_id = VALUES(best_attempt_id),
+                    last_attempt_at = VALUES(last_attempt_at)
+                """, rows, rows.size(), (ps, r) -> {
+                ps.setString(1, r.getRouteHash());
+                ps.setString(2, r.getRunnerId());
+                ps.setInt(3, r.getAttempts());
+                ps.setInt(4, r.getVerified());
+                ps.setInt(5, r.getFlagged());
+                ps.setInt(6, r.getRejected());
+                ps.setObject(7, r.getBestVerifiedScore(), Types.DOUBLE);
+                ps.setObject(8, r.getBestAttemptId(), Types.BIGINT);
+                ps.setTimestamp(9, r.getLastAttemptAt() != null ? Timestamp.valueOf(r.getLastAttemptAt()) : null);
+            });
+        }
+
+        List<Key> emptied = keys.stream().filter(k -> !fresh.containsKey(k)).toList();
+        if (!emptied.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM runner_summaries WHERE route_hash = ? AND runner_id = ?",
+                    emptied, emptied.size(), (ps, k) -> {
+                        ps.setString(1, k.getRouteHash());
+                        ps.setString(2, k.getRunnerId());
+                    });
+        }
+    }
+
+    public void deleteAll() {
+        jdbcTemplate.update("DELETE FROM runner_summaries");
+    }
+
+    // ------------------------------------------------------------
+    // Queries (all index-backed, cost O(page))
+    // ------------------------------------------------------------
+    /**
+     * Leaderboard page for one route: runners with at least one VERIFIED
+     * attempt, best difficulty score first.
+     */
+    public List<RunnerSummary> findLeaderboard(String routeHash, int offset, int limit) {
+        String sql = """
+            SELECT * FROM runner_summaries
+            WHERE route_hash = ? AND best_verified_score IS NOT NULL
+            ORDER BY best_verified_score DESC, best_attempt_id ASC
+            LIMIT ? OFFSET ?
+            """;
+        return jdbcTemplate.query(sql, new RunnerSummaryRowMapper(), routeHash, limit, offset);
+    }
+
+    /** One runner's summaries across all routes, most recent first. */
+    public List<RunnerSummary> findByRunnerId(String runnerId) {
+        String sql = """
+            SELECT * FROM runner_summaries
+            WHERE runner_id = ?
+            ORDER BY last_attempt_at DESC
+            """;
+        return jdbcTemplate.query(sql, new RunnerSummaryRowMapper(), runnerId);
+    }
+
+    /**
+     * Per-route totals: distinct runners, verified finishers and attempts.
+     * Scans summary rows (one per runner and route), never attempts.
+     */
+    public List<RouteTotals> findRouteTotals() {
+        String sql = """
+            SELECT route_hash,
+                   COUNT(*) AS runners,
+                   SUM(CASE WHEN verified > 0 THEN 1 ELSE 0 END) AS finishers,
+                   SUM(attempts) AS attempts
+            FROM runner_summaries
+            GROUP BY route_hash
+            ORDER BY finishers DESC
+            """;
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new RouteTotals(
+                rs.getString("route_hash"),
+                rs.getInt("runners"),
+                rs.getInt("finishers"),
+                rs.getInt("attempts")));
+    }
+
+    /**
+     * Primary key of a summary row: route version and runner.
+     */
+    public static class Key {
+        private final String routeHash;
+        private final String runnerId;
+
+        public Key(String routeHash, String runnerId) {
+            this.routeHash = routeHash;
+            this.runnerId = runnerId;
+        }
+
+        public String getRouteHash() {
+            return routeHash;
+        }
+
+        public String getRunnerId() {
+            return runnerId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && routeHash.equals(k.routeHash) && runnerId.equals(k.runnerId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(routeHash, runnerId);
+        }
+    }
+
+    /**
+     * Aggregate counts for one route.
+     */
+    public static class RouteTotals {
+        private final String routeHash;
+        private final int runners;
+        private final int verifiedFinishers;
+        private final int attempts;
+
+        public RouteTotals(String routeHash, int runners, int verifiedFinishers, int attempts) {
+            this.routeHash = routeHash;
+            this.runners = runners;
+            this.verifiedFinishers = verifiedFinishers;
+            this.attempts = attempts;
+        }
+
+        public String getRouteHash() {
+            return routeHash;
+        }
+
+        public int getRunners() {
+            return runners;
+        }
+
+        public int getVerifiedFinishers() {
+            return verifiedFinishers;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+}
@@ -0,0 +1,558 @@
+package org.trail.attemptverifier.repository;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.trail.attemptverifier.model.Attempt;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Write-behind AttemptStore (verifier.write-behind.enabled=true).
+ *
+ * save() takes an id from a block reserved in id_blocks, queues the attempt
+ * and returns at once; a single flusher thread inserts queued attempts in
+ * multi-row JDBC batches, one transaction per flush, after flush-interval-ms
+ * or max-batch-rows, whichever comes first. Writes registered through
+ * afterSave() (checkpoint splits, packed track) run on the flusher right
+ * after that commit, so their failures never roll back attempts.
+ *
+ * Reads see queued attempts: findById and findByContentHash look at the
+ * queue first, other queries wait for the attempts queued before them.
+ *
+ * The unique key (route_hash, gpx_sha256, runner_id) only exists in the
+ * table, so queued attempts are also indexed by it: save() claims the key
+ * with one putIfAbsent, and the claim is released once the row is written
+ * (the table's key takes over) or dropped.
+ *
+ * A row that cannot be written (the batch is retried row by row) goes back
+ * to the flusher up to max-retries times, retry-delay-ms apart, and stays
+ * readable meanwhile. After that it is dead-lettered: written as JSON to
+ * dead-letter-dir and queued again on the next start, so an id handed out
+ * with 201 is not lost for good. Its dependent writes are not kept: the
+ * packed track is rebuilt from the GPX on first read, the checkpoint splits
+ * by re-verification. A unique-key clash is not retried: that file, route
+ * and runner are already stored.
+ *
+ * strict=true makes save() wait for its flush, so an upload is acknowledged
+ * only once durable (and a unique-key clash surfaces as usual). Otherwise a
+ * crash loses at most the queued attempts.
+ *
+ * Ids are assigned by the application, so every instance writing to the same
+ * database must use write-behind (or none).
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(name = "verifier.write-behind.enabled", havingValue = "true")
+public class WriteBehindAttemptStore implements AttemptStore {
+
+    private final AttemptRepository delegate;
+    private final TransactionTemplate tx;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader attemptReader;
+
+    private final boolean strict;
+    private final long flushIntervalMs;
+    private final int maxBatchRows;
+    private final long enqueueTimeoutMs;
+    private final int idBlockSize;
+    private final int maxRetries;
+    private final long retryDelayMs;
+    private final Path deadLetterDir;
+
+    private final BlockingQueue<Pending> queue;
+    private final Map<Long, Pending> pendingById = new ConcurrentHashMap<>();
+    private final Map<String, Pending> pendingByContent = new ConcurrentHashMap<>();
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    /** Ids reserved but not handed out yet: [nextId, blockEnd). */
+    private long nextId;
+    private long blockEnd;
+
+    public WriteBehindAttemptStore(AttemptRepository delegate,
+                                   PlatformTransactionManager transactionManager,
+                                   ObjectMapper objectMapper,
+                                   @Value("${verifier.write-behind.strict:false}") boolean strict,
+                                   @Value("${verifier.write-behind.flush-interval-ms:50}") long flushIntervalMs,
+                                   @Value("${verifier.write-behind.max-batch-rows:100}") int maxBatchRows,
+                                   @Value("${verifier.write-behind.queue-capacity:2000}") int queueCapacity,
+                                   @Value("${verifier.write-behind.enqueue-timeout-ms:5000}") long enqueueTimeoutMs,
+                                   @Value("${verifier.write-behind.id-block-size:100}") int idBlockSize,
+                                   @Value("${verifier.write-behind.max-retries:3}") int maxRetries,
+                                   @Value("${verifier.write-behind.retry-delay-ms:1000}") long retryDelayMs,
+                                   @Value("${verifier.write-behind.dead-letter-dir:data/write-behind-dead-letter}") String deadLetterDir) {
+        this.delegate = delegate;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.attemptReader = objectMapper.readerFor(Attempt.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.strict = strict;
+        this.flushIntervalMs = Math.max(1, flushIntervalMs);
+        this.maxBatchRows = Math.max(1, maxBatchRows);
+        this.enqueueTimeoutMs = Math.max(0, enqueueTimeoutMs);
+        this.idBlockSize = Math.max(1, idBlockSize);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryDelayMs = Math.max(0, retryDelayMs);
+        this.deadLetterDir = Paths.get(deadLetterDir).toAbsolutePath().normalize();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+
+        this.flusher = new Thread(this::flushLoop, "attempt-write-behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+
+        requeueDeadLetters();
+    }
+
+    /**
+     * A queued attempt, the writes waiting for its row, and its flush outcome.
+     */
+    private static final class Pending {
+        final Attempt attempt;
+        final Long id;
+        final CompletableFuture<Void> flushed = new CompletableFuture<>();
+        private List<Runnable> dependentWrites = new ArrayList<>();
+
+        /** Flusher thread only: failed writes, when to try again, and its dead-letter file. */
+        int failures;
+        long retryAt;
+        Path deadLetter;
+
+        Pending(Attempt attempt, Long id) {
+            this.attempt = attempt;
+            this.id = id;
+        }
+
+        /** Adds a write to run with the flush; false if the flush already committed. */
+        synchronized boolean addDependentWrite(Runnable write) {
+            if (dependentWrites == null) {
+                return false;
+            }
+            dependentWrites.add(write);
+            return true;
+        }
+
+        /** Row is committed: returns the waiting writes; later ones run directly. */
+        synchronized List<Runnable> markWritten() {
+            List<Runnable> writes = dependentWrites != null ? dependentWrites : List.of();
+            dependentWrites = null;
+            return writes;
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Writes
+    // ------------------------------------------------------------
+
+    @Override
+    public Attempt save(Attempt attempt) {
+        if (!running) {
+            throw new IllegalStateException("Attempt store is shutting down.");
+        }
+        Long id = takeId();
+        Pending pending = new Pending(attempt, id);
+
+        // The unique key only exists in the table: claim it among queued attempts
+        String key = contentKey(attempt);
+        if (key != null) {
+            Pending queued = pendingByContent.putIfAbsent(key, pending);
+            if (queued != null) {
+                throw new DuplicateKeyException("Attempt #" + queued.id
+                        + " with the same route, file and runner is waiting to be written.");
+            }
+        }
+
+        attempt.setId(id);
+        pendingById.put(id, pending);
+        try {
+            if (!queue.offer(pending, enqueueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                forget(pending);
+                throw new IllegalStateException("Write-behind queue is full; try again shortly.");
+            }
+        } catch (InterruptedException e) {
+            forget(pending);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing attempt.", e);
+        }
+
+        if (strict) {
+            await(pending.flushed);
+        }
+        return attempt;
+    }
+
+    @Override
+    public void afterSave(Attempt attempt, Runnable dependentWrites) {
+        Pending pending = attempt.getId() != null ? pendingById.get(attempt.getId()) : null;
+        if (pending == null || !pending.addDependentWrite(dependentWrites)) {
+            dependentWrites.run();
+        }
+    }
+
+    @Override
+    public int batchUpdateVerification(List<Attempt> attempts) {
+        awaitQueued();
+        return delegate.batchUpdateVerification(attempts);
+    }
+
+    @Override
+    public synchronized int resetAll() {
+        awaitQueued();
+        int deleted = delegate.resetAll();
+        nextId = 0;
+        blockEnd = 0;
+        return deleted;
+    }
+
+    // ------------------------------------------------------------
+    // Reads
+    // ------------------------------------------------------------
+
+    @Override
+    public Optional<Attempt> findById(Long id) {
+        Pending pending = pendingById.get(id);
+        return pending != null ? Optional.of(pending.attempt) : delegate.findById(id);
+    }
+
+    @Override
+    public List<Attempt> findByContentHash(String routeHash, String gpxSha256) {
+        List<Attempt> found = new ArrayList<>(delegate.findByContentHash(routeHash, gpxSha256));
+        for (Pending p : pendingById.values()) {
+            // Committed rows stay pending until their flush finishes: count them once
+            if (found.stream().anyMatch(a -> p.id.equals(a.getId()))) {
+                continue;
+            }
+            if (routeHash != null && routeHash.equals(p.attempt.getRouteHash())
+                    && gpxSha256 != null && gpxSha256.equals(p.attempt.getGpxSha256())) {
+                found.add(p.attempt);
+            }
+        }
+        found.sort((a, b) -> Long.compare(a.getId(), b.getId()));
+        return found;
+    }
+
+    @Override
+    public List<Attempt> findAll() {
+        awaitQueued();
+        return delegate.findAll();
+    }
+
+    @Override
+    public List<Attempt> findByRunnerId(String runnerId) {
+        awaitQueued();
+        return delegate.findByRunnerId(runnerId);
+    }
+
+    @Override
+    public List<Attempt> findByResult(String result) {
+        awaitQueued();
+        return delegate.findByResult(result);
+    }
+
+    @Override
+    public List<Attempt> findByRunnerIdAndResult(String runnerId, String result) {
+        awaitQueued();
+        return delegate.findByRunnerIdAndResult(runnerId, result);
+    }
+
+    @Override
+    public List<Attempt> findBatchAfterId(long afterId, int limit, String skipRouteHash) {
+        awaitQueued();
+        return delegate.findBatchAfterId(afterId, limit, skipRouteHash);
+    }
+
+    @Override
+    public int countAttempts() {
+        awaitQueued();
+        return delegate.countAttempts();
+    }
+
+    @Override
+    public Optional<Resource> findLegacyGpxData(Long id, String gpxSha256) {
+        return delegate.findLegacyGpxData(id, gpxSha256);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Flusher
+    // ------------------------------------------------------------
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatchRows);
+        // Rows to write again, in retryAt order (the delay is the same for all)
+        Deque<Pending> retries = new ArrayDeque<>();
+        while (running || !queue.isEmpty() || !retries.isEmpty()) {
+            try {
+                // Retries whose delay is up go first; at shutdown all of them
+                while (!retries.isEmpty() && batch.size() < maxBatchRows
+                        && (!running || retries.peek().retryAt - System.nanoTime() <= 0)) {
+                    batch.add(retries.poll());
+                }
+                if (batch.isEmpty()) {
+                    Pending first;
+                    if (retries.isEmpty()) {
+                        first = running ? queue.take() : queue.poll();
+                    } else {
+                        first = queue.poll(retries.peek().retryAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    }
+                    if (first == null) {
+                        if (retries.isEmpty()) {
+                            break;
+                        }
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < maxBatchRows && running) {
+                    long waitNanos = deadline - System.nanoTime();
+                    Pending next = waitNanos > 0 ? queue.poll(waitNanos, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown: drain what is left without waiting
+                queue.drainTo(batch, maxBatchRows - batch.size());
+            }
+            if (!batch.isEmpty()) {
+                flush(batch, retries);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch, Deque<Pending> retries) {
+        try {
+            writeInOneTransaction(batch);
+        } catch (RuntimeException e) {
+            // One bad row (e.g. a unique-key clash with another instance) must not
+            // sink the rest: retry row by row
+            System.err.println("[WriteBehindAttemptStore] Batch of " + batch.size()
+                    + " failed (" + e.getMessage() + "); retrying row by row.");
+            for (Pending p : batch) {
+                try {
+                    writeInOneTransaction(List.of(p));
+                } catch (DuplicateKeyException rowError) {
+                    System.err.println("[WriteBehindAttemptStore] Dropping attempt #" + p.id
+                            + ", already stored: " + rowError.getMessage());
+                    deleteDeadLetter(p);
+                    forget(p);
+                    p.flushed.completeExceptionally(rowError);
+                } catch (RuntimeException rowError) {
+                    p.failures++;
+                    if (running && p.failures <= maxRetries) {
+                        System.err.println("[WriteBehindAttemptStore] Attempt #" + p.id + " not written ("
+                                + rowError.getMessage() + "); retry " + p.failures + " of " + maxRetries
+                                + " in " + retryDelayMs + " ms.");
+                        p.retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryDelayMs);
+                        retries.add(p);
+                    } else {
+                        deadLetter(p, rowError);
+                    }
+                }
+            }
+        }
+    }
+
+    private void writeInOneTransaction(List<Pending> batch) {
+        List<Attempt> attempts = new ArrayList<>(batch.size());
+        for (Pending p : batch) {
+            attempts.add(p.attempt);
+        }
+        tx.executeWithoutResult(status -> delegate.insertBatchWithIds(attempts));
+
+        for (Pending p : batch) {
+            deleteDeadLetter(p);
+            forget(p);
+            p.flushed.complete(null);
+            p.markWritten().forEach(Runnable::run);
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Dead letters
+    // ------------------------------------------------------------
+
+    /**
+     * Writes a row that ran out of retries to dead-letter-dir and drops it
+     * from the queue; save() in strict mode gets the error.
+     */
+    private void deadLetter(Pending p, RuntimeException error) {
+        Path file = deadLetterDir.resolve("attempt-" + p.id + ".json");
+        try {
+            Files.createDirectories(deadLetterDir);
+            Path tmp = Files.createTempFile(deadLetterDir, "attempt-" + p.id, ".tmp");
+            try {
+                objectMapper.writeValue(tmp.toFile(), p.attempt);
+                try {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            System.err.println("[WriteBehindAttemptStore] Attempt #" + p.id + " not written after "
+                    + p.failures + " tries (" + error.getMessage() + "); saved to " + file
+                    + " for the next start.");
+        } catch (IOException e) {
+            System.err.println("[WriteBehindAttemptStore] Attempt #" + p.id + " LOST: not written ("
+                    + error.getMessage() + ") and dead letter failed: " + e.getMessage());
+        }
+        forget(p);
+        p.flushed.completeExceptionally(error);
+    }
+
+    /** Queues the attempts dead-lettered by earlier runs again, in id order. */
+    private void requeueDeadLetters() {
+        if (!Files.isDirectory(deadLetterDir)) {
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(deadLetterDir, "attempt-*.json")) {
+            dir.forEach(files::add);
+        } catch (IOException e) {
+            System.err.println("[WriteBehindAttemptStore] Could not list " + deadLetterDir + ": " + e.getMessage());
+            return;
+        }
+        List<Pending> requeued = new ArrayList<>();
+        for (Path file : files) {
+            try {
+                Attempt attempt = attemptReader.readValue(file.toFile());
+                Pending p = new Pending(attempt, attempt.getId());
+                p.deadLetter = file;
+                requeued.add(p);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("[WriteBehindAttemptStore] Skipping unreadable dead letter " + file
+                        + ": " + e.getMessage());
+            }
+        }
+        requeued.sort((a, b) -> Long.compare(a.id, b.id));
+        for (Pending p : requeued) {
+            String key = contentKey(p.attempt);
+            if (key != null && pendingByContent.putIfAbsent(key, p) != null) {
+                continue;
+            }
+            pendingById.put(p.id, p);
+            try {
+                queue.put(p);
+            } catch (InterruptedException e) {
+                forget(p);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (!requeued.isEmpty()) {
+            System.out.println("[WriteBehindAttemptStore] Queued " + requeued.size()
+                    + " dead-lettered attempt(s) from " + deadLetterDir + " again.");
+        }
+    }
+
+    private static void deleteDeadLetter(Pending p) {
+        if (p.deadLetter == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(p.deadLetter);
+        } catch (IOException e) {
+            System.err.println("[WriteBehindAttemptStore] Could not delete " + p.deadLetter + ": " + e.getMessage());
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------
+
+    private synchronized long takeId() {
+        if (nextId >= blockEnd) {
+            nextId = delegate.allocateIds(idBlockSize);
+            blockEnd = nextId + idBlockSize;
+        }
+        return nextId++;
+    }
+
+    /** Waits until every attempt queued before this call is written. */
+    private void awaitQueued() {
+        for (Pending p : new ArrayList<>(pendingById.values())) {
+            try {
+                await(p.flushed);
+            } catch (RuntimeException ignored) {
+                // A dropped row is not this reader's problem
+            }
+        }
+    }
+
+    private static void await(CompletableFuture<Void> flushed) {
+        try {
+            flushed.get(1, TimeUnit.MINUTES);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Attempt was not written within a minute.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for attempt write.", e);
+        }
+    }
+
+    /** Removes a queued attempt from both indexes (written, dropped or never queued). */
+    private void forget(Pending p) {
+        pendingById.remove(p.id, p);
+        String key = contentKey(p.attempt);
+        if (key != null) {
+            pendingByContent.remove(key, p);
+        }
+    }
+
+    /**
+     * (route_hash, gpx_sha256, runner_id) as one map key, or null when a hash
+     * is missing (the table's unique key does not apply to NULLs either).
+     * Both hashes are 64 hex characters, so plain concatenation is unambiguous.
+     */
+    private static String contentKey(Attempt a) {
+        if (a.getRouteHash() == null || a.getGpxSha256() == null) {
+            return null;
+        }
+        return a.getRouteHash() + a.getGpxSha256() + a.getRunnerId();
+    }
+}
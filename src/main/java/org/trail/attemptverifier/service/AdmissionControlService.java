@@ -0,0 +1,282 @@
+package org.trail.attemptverifier.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for POST /api/attempts/upload.
+ *
+ * - Per-runner token bucket (verifier.admission.runner-per-minute, burst
+ *   runner-burst): a runner over its rate gets 429 right away.
+ * - Global budget of upload bytes being processed at once
+ *   (verifier.admission.max-inflight-mb). Each upload takes permits equal to
+ *   its size in KiB, since parse memory (bytes + DOM + point list) grows with
+ *   the file. A request waits at most queue-wait-ms for room, and only
+ *   max-queued requests may wait; otherwise 503.
+ *
+ * Both rejections carry a Retry-After hint. Counters are served by
+ * GET /api/admin/admission.
+ */
+@Service
+public class AdmissionControlService {
+
+    /** Idle buckets are dropped once this many runners are tracked. */
+    private static final int MAX_TRACKED_RUNNERS = 10_000;
+
+    private final int capacityKb;
+    private final Semaphore inFlightKb;
+    private final long queueWaitMs;
+    private final int maxQueued;
+    private final int retryAfterSeconds;
+    private final double runnerTokensPerSecond;
+    private final double runnerBurst;
+
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejectedRate = new AtomicLong();
+    private final AtomicLong rejectedBusy = new AtomicLong();
+
+    public AdmissionControlService(@Value("${verifier.admission.max-inflight-mb:150}") int maxInflightMb,
+                                   @Value("${verifier.admission.queue-wait-ms:2000}") long queueWaitMs,
+                                   @Value("${verifier.admission.max-queued:16}") int maxQueued,
+                                   @Value("${verifier.admission.retry-after-s:5}") int retryAfterSeconds,
+                                   @Value("${verifier.admission.runner-per-minute:6}") double runnerPerMinute,
+                                   @Value("${verifier.admission.runner-burst:3}") int runnerBurst) {
+        this.capacityKb = Math.max(1, maxInflightMb) * 1024;
+        this.inFlightKb = new Semaphore(capacityKb, true);
+        this.queueWaitMs = Math.max(0, queueWaitMs);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+        this.runnerTokensPerSecond = runnerPerMinute / 60.0;
+        this.runnerBurst = Math.max(1, runnerBurst);
+    }
+
+    /**
+     * Upload over budget; status is 429 (runner rate) or 503 (server busy).
+     */
+    public static class AdmissionRejectedException extends RuntimeException {
+        private final int status;
+        private final long retryAfterSeconds;
+
+        public AdmissionRejectedException(int status, long retryAfterSeconds, String message) {
+            super(message);
+            this.status = status;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public long getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    /**
+     * Admitted upload; close() returns its share of the budget.
+     */
+    public final class Permit implements AutoCloseable {
+        private final int weightKb;
+        private boolean released;
+
+        private Permit(int weightKb) {
+            this.weightKb = weightKb;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                active.decrementAndGet();
+                inFlightKb.release(weightKb);
+            }
+        }
+    }
+
+    /**
+     * Admits one upload of sizeBytes for runnerId, waiting briefly for room.
+     *
+     * @throws AdmissionRejectedException when the runner or the server is over budget
+     */
+    public Permit admit(String runnerId, long sizeBytes) {
+        TokenBucket bucket = bucketFor(runnerId);
+        double waitSeconds = bucket.tryTake();
+        if (waitSeconds > 0) {
+            rejectedRate.incrementAndGet();
+            throw new AdmissionRejectedException(429, (long) Math.ceil(waitSeconds),
+                    "Upload rate limit reached for runner " + runnerId + ".");
+        }
+
+        // A single file larger than the whole budget still gets through, alone
+        int weightKb = (int) Math.min(capacityKb, Math.max(1, (sizeBytes + 1023) / 1024));
+        if (!acquire(weightKb)) {
+            // Not the runner's fault: give the token back
+            bucket.refund();
+            rejectedBusy.incrementAndGet();
+            throw new AdmissionRejectedException(503, retryAfterSeconds,
+                    "Server is busy verifying other uploads; retry later.");
+        }
+        active.incrementAndGet();
+        admitted.incrementAndGet();
+        return new Permit(weightKb);
+    }
+
+    public Stats getStats() {
+        return new Stats(capacityKb / 1024, (capacityKb - inFlightKb.availablePermits()) / 1024.0,
+                active.get(), queued.get(), maxQueued, buckets.size(),
+                admitted.get(), rejectedRate.get(), rejectedBusy.get());
+    }
+
+    // ------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------
+
+    private boolean acquire(int weightKb) {
+        if (inFlightKb.tryAcquire(weightKb)) {
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            return false;
+        }
+        try {
+            return inFlightKb.tryAcquire(weightKb, queueWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    private TokenBucket bucketFor(String runnerId) {
+        if (buckets.size() > MAX_TRACKED_RUNNERS) {
+            // A full bucket carries no state worth keeping
+            Iterator<TokenBucket> it = buckets.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().isFull()) {
+                    it.remove();
+                }
+            }
+        }
+        return buckets.computeIfAbsent(runnerId, id -> new TokenBucket(runnerBurst, runnerTokensPerSecond));
+    }
+
+    /**
+     * Classic token bucket, refilled lazily on access.
+     */
+    private static final class TokenBucket {
+        private final double capacity;
+        private final double perSecond;
+        private double tokens;
+        private long lastNanos;
+
+        TokenBucket(double capacity, double perSecond) {
+            this.capacity = capacity;
+            this.perSecond = perSecond;
+            this.tokens = capacity;
+            this.lastNanos = System.nanoTime();
+        }
+
+        /** Takes a token; returns 0, or the seconds until one is available. */
+        synchronized double tryTake() {
+            refill();
+            if (tokens >= 1.0) {
+                tokens -= 1.0;
+                return 0;
+            }
+            return perSecond > 0 ? (1.0 - tokens) / perSecond : Double.MAX_VALUE;
+        }
+
+        synchronized void refund() {
+            tokens = Math.min(capacity, tokens + 1.0);
+        }
+
+        synchronized boolean isFull() {
+            refill();
+            return tokens >= capacity;
+        }
+
+        private void refill() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastNanos) / 1e9 * perSecond);
+            lastNanos = now;
+        }
+    }
+
+    /**
+     * Snapshot of limits and current load.
+     */
+    public static class Stats {
+        private final int maxInflightMb;
+        private final double inflightMb;
+        private final int activeUploads;
+        private final int queuedUploads;
+        private final int maxQueued;
+        private final int trackedRunners;
+        private final long admitted;
+        private final long rejectedRateLimited;
+        private final long rejectedBusy;
+
+        public Stats(int maxInflightMb, double inflightMb, int activeUploads, int queuedUploads,
+                     int maxQueued, int trackedRunners, long admitted,
+                     long rejectedRateLimited, long rejectedBusy) {
+            this.maxInflightMb = maxInflightMb;
+            this.inflightMb = inflightMb;
+            this.activeUploads = activeUploads;
+            this.queuedUploads = queuedUploads;
+            this.maxQueued = maxQueued;
+            this.trackedRunners = trackedRunners;
+            this.admitted = admitted;
+            this.rejectedRateLimited = rejectedRateLimited;
+            this.rejectedBusy = rejectedBusy;
+        }
+
+        public int getMaxInflightMb() {
+            return maxInflightMb;
+        }
+
+        public double getInflightMb() {
+            return inflightMb;
+        }
+
+        public int getActiveUploads() {
+            return activeUploads;
+        }
+
+        public int getQueuedUploads() {
+            return queuedUploads;
+        }
+
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public int getTrackedRunners() {
+            return trackedRunners;
+        }
+
+        public long getAdmitted() {
+            return admitted;
+        }
+
+        public long getRejectedRateLimited() {
+            return rejectedRateLimited;
+        }
+
+        public long getRejectedBusy() {
+            return rejectedBusy;
+        }
+    }
+}
@@ -1,15 +1,28 @@
 package org.trail.attemptverifier.service;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import org.trail.attemptverifier.model.Attempt;
+import org.trail.attemptverifier.model.Checkpoint;
+import org.trail.attemptverifier.model.CheckpointSplit;
 import org.trail.attemptverifier.model.TrackPoint;
-import org.trail.attemptverifier.repository.AttemptRepository;
+import org.trail.attemptverifier.repository.AttemptStore;
+import org.trail.attemptverifier.repository.CheckpointSplitRepository;
+import org.trail.attemptverifier.repository.GpxBlobStore;
 import org.trail.attemptverifier.service.oop.CoverageCalculator;
 import org.trail.attemptverifier.service.oop.DifficultyModel;
 import org.trail.attemptverifier.service.oop.DefaultCoverageCalculator;
 import org.trail.attemptverifier.service.oop.DefaultDifficultyModel;
-import org.trail.attemptverifier.util.GpxParser;
+import org.trail.attemptverifier.util.CheckpointMatcher;
+import org.trail.attemptverifier.util.ContentHash;
+import org.trail.attemptverifier.util.DerivedTrack;
+import org.trail.attemptverifier.util.Excursions;
+import org.trail.attemptverifier.util.ParseLimits;
+import org.trail.attemptverifier.util.RouteProgress;
+import org.trail.attemptverifier.util.TrackFileReader;
 import org.trail.attemptverifier.util.TrackMetrics;
 
 import java.io.ByteArrayInputStream;
@@ -17,6 +30,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
 
 /**
  * Core business logic for verifying runner GPX attempts.
@@ -28,34 +43,75 @@ import java.util.List;
 @Service
 public class AttemptVerifierService {
 
-    private final AttemptRepository attemptRepository;
-    private final GpxParser gpxParser;
+    private final AttemptStore attemptStore;
+    private final TrackFileReader trackFileReader;
     private final RouteService routeService;
+    private final GpxBlobStore gpxBlobStore;
+    private final DerivedTrackService derivedTrackService;
+    private final CheckpointSplitRepository checkpointSplitRepository;
 
     // OOP strategy instances (polymorphism)
     private final DifficultyModel difficultyModel = new DefaultDifficultyModel();
     private final CoverageCalculator coverageCalculator = new DefaultCoverageCalculator();
 
-    // Route coverage tolerance threshold
-    private static final double COVERAGE_TOLERANCE_M = 30.0;
+    // Route coverage tolerance threshold (verifier.coverage-tolerance-m)
+    private final double coverageToleranceM;
 
-    public AttemptVerifierService(AttemptRepository attemptRepository,
-                                  GpxParser gpxParser,
-                                  RouteService routeService) {
-        this.attemptRepository = attemptRepository;
-        this.gpxParser = gpxParser;
+    // Distance at which a track point counts as reaching a checkpoint
+    private final double checkpointRadiusM;
+
+    // Route progress (RouteProgress): bridging of sparse points and the
+    // shortest uncovered stretch that counts as a skipped section
+    private final double progressMaxBridgeM;
+    private final double progressMinBridgeRatio;
+    private final double progressMinSkipM;
+
+    // Classify by route completion and skipped sections instead of the
+    // share of points near the route (verifier.progress.classify)
+    private final boolean progressClassify;
+
+    public AttemptVerifierService(AttemptStore attemptStore,
+                                  TrackFileReader trackFileReader,
+                                  RouteService routeService,
+                                  GpxBlobStore gpxBlobStore,
+                                  DerivedTrackService derivedTrackService,
+                                  CheckpointSplitRepository checkpointSplitRepository,
+                                  @Value("${verifier.coverage-tolerance-m:30.0}") double coverageToleranceM,
+                                  @Value("${verifier.checkpoints.radius-m:50.0}") double checkpointRadiusM,
+                                  @Value("${verifier.progress.max-bridge-m:300.0}") double progressMaxBridgeM,
+                                  @Value("${verifier.progress.min-bridge-ratio:0.5}") double progressMinBridgeRatio,
+                                  @Value("${verifier.progress.min-skip-m:500.0}") double progressMinSkipM,
+                                  @Value("${verifier.progress.classify:false}") boolean progressClassify) {
+        this.attemptStore = attemptStore;
+        this.trackFileReader = trackFileReader;
         this.routeService = routeService;
+        this.gpxBlobStore = gpxBlobStore;
+        this.derivedTrackService = derivedTrackService;
+        this.checkpointSplitRepository = checkpointSplitRepository;
+        this.coverageToleranceM = coverageToleranceM;
+        this.checkpointRadiusM = checkpointRadiusM;
+        this.progressMaxBridgeM = progressMaxBridgeM;
+        this.progressMinBridgeRatio = progressMinBridgeRatio;
+        this.progressMinSkipM = progressMinSkipM;
+        this.progressClassify = progressClassify;
+    }
+
+    public double getCoverageToleranceM() {
+        return coverageToleranceM;
     }
 
     /**
      * Main verification pipeline:
      * 1. Read GPX bytes
-     * 2. Parse → TrackPoint list
+     *    (hash them; identical files already verified on this route short-circuit here)
+     * 2. Parse → TrackPoint list (GPX, TCX or FIT, sniffed by TrackFileReader)
      * 3. Load official route
-     * 4. Compute metrics (distance, elevation, coverage, deviation)
+     * 4. Compute metrics (distance, elevation, time, checkpoints, coverage, deviation,
+     *    progress along the route)
      * 5. Score difficulty (strategy)
      * 6. Classify (VERIFIED / FLAGGED / REJECTED)
-     * 7. Persist Attempt (including raw GPX bytes) into DB
+     * 7. Persist Attempt into DB (raw GPX bytes go to the GpxBlobStore by hash)
+     * 8. Persist the derived packed track, so later reads skip GPX parsing
      */
     public Attempt verifyAttempt(MultipartFile gpxFile, String runnerId) throws IOException {
 
@@ -68,48 +124,127 @@ public class AttemptVerifierService {
         } catch (IOException e) {
             System.err.println("[AttemptVerifierService] Failed to read GPX bytes: " + e.getMessage());
             // In this case we truly have no bytes to store
-            return buildRejectedAttempt(runnerId, "Could not read GPX file.", null);
+            return buildRejectedAttempt(runnerId, "Could not read GPX file.", null, null);
+        }
+
+        String gpxSha256 = ContentHash.sha256Hex(rawBytes);
+        RouteSnapshot route = routeService.getRoute();
+        String routeHash = route != null ? route.getHash() : null;
+
+        Attempt known = findKnownAttempt(routeHash, gpxSha256, runnerId);
+        if (known != null) {
+            return known;
         }
 
+        // Keep the original file for ANY classification, so the GPX viewer
+        // can still display what the user uploaded. Idempotent per hash.
+        gpxBlobStore.put(gpxSha256, rawBytes);
+
         // ---------------------------------------
-        // Step 2 — Parse GPX
+        // Step 2 — Parse GPX / TCX / FIT
         // ---------------------------------------
         List<TrackPoint> attemptTrack;
         try (InputStream in = new ByteArrayInputStream(rawBytes)) {
-            attemptTrack = gpxParser.parse(in);
+            attemptTrack = trackFileReader.read(in);
+        } catch (ParseLimits.LimitExceededException e) {
+            System.err.println("[AttemptVerifierService] Parse limit exceeded: " + e.getMessage());
+            return buildRejectedAttempt(runnerId, "Track file rejected: " + e.getMessage() + ".",
+                    gpxSha256, routeHash);
         } catch (Exception e) {
             System.err.println("[AttemptVerifierService] GPX parse error: " + e.getMessage());
-            // Still store the original bytes so the user can inspect the file on the map
-            return buildRejectedAttempt(runnerId, "Invalid GPX content.", rawBytes);
+            // Original bytes are already stored, so the user can inspect the file on the map
+            return buildRejectedAttempt(runnerId, "Invalid GPX content.", gpxSha256, routeHash);
         }
 
         if (attemptTrack.isEmpty()) {
             // Parsed but no usable points — still keep the file
-            return buildRejectedAttempt(runnerId, "No valid track points found.", rawBytes);
+            return buildRejectedAttempt(runnerId, "No valid track points found.", gpxSha256, routeHash);
         }
 
         // ---------------------------------------
-        // Step 3 — Load official route
+        // Step 3 — Official route (loaded above)
         // ---------------------------------------
-        List<TrackPoint> route = routeService.getTrackPoints();
-        if (route == null || route.isEmpty()) {
+        if (route == null) {
             // Backend configuration problem; keep attempt & file
-            return buildRejectedAttempt(runnerId, "Official route not available.", rawBytes);
+            return buildRejectedAttempt(runnerId, "Official route not available.", gpxSha256, routeHash);
         }
 
+        // ---------------------------------------
+        // Steps 4–6 — Metrics, score, classification
+        // (the derived track's per-point chainage gives route progress)
+        // ---------------------------------------
+        Optional<DerivedTrack> derived = derivedTrackService.build(attemptTrack, route.getIndex(), coverageToleranceM);
+        Attempt attempt = new Attempt();
+        attempt.setRunnerId(runnerId);
+        attempt.setAttemptTime(LocalDateTime.now());
+        attempt.setGpxSha256(gpxSha256);
+        applyVerification(attempt, attemptTrack, route, derived.orElse(null));
+
+        // ---------------------------------------
+        // Step 7 — Persist Attempt
+        // ---------------------------------------
+        Attempt saved = saveOrResolveDuplicate(attempt);
+
+        // ---------------------------------------
+        // Step 8 — Derived track (cache of the GPX), built above and
+        // written with the checkpoint splits once the row exists
+        // ---------------------------------------
+        attemptStore.afterSave(saved, () -> {
+            if (saved == attempt) {
+                storeCheckpointSplits(saved);
+            }
+            derived.ifPresent(d -> derivedTrackService.save(saved.getId(), d));
+        });
+
+        return saved;
+    }
+
+    /**
+     * Steps 4–6 of the pipeline, shared by uploads and bulk re-verification:
+     * computes metrics of attemptTrack against the given route version and
+     * writes them, the difficulty score, the classification and the route hash
+     * into attempt. Does not persist anything.
+     */
+    public void applyVerification(Attempt attempt, List<TrackPoint> attemptTrack, RouteSnapshot route) {
+        applyVerification(attempt, attemptTrack, route,
+                derivedTrackService.build(attemptTrack, route.getIndex(), coverageToleranceM).orElse(null));
+    }
+
+    /**
+     * Same, reusing a derived track already built against route (its
+     * on-route flags and chainage give the route progress metrics; null
+     * leaves them empty).
+     */
+    public void applyVerification(Attempt attempt, List<TrackPoint> attemptTrack, RouteSnapshot route,
+                                  DerivedTrack derived) {
+        List<TrackPoint> routePoints = route.getPoints();
+
         // ---------------------------------------
         // Step 4 — Compute metrics
         // ---------------------------------------
-        double distanceKm = TrackMetrics.computeTotalDistanceKm(attemptTrack);
-        double elevationGainM = TrackMetrics.computeElevationGainM(attemptTrack);
+        // One pass: distance, filtered elevation gain, elapsed/moving time, pace, speed spikes,
+        // recording gaps and the ordered checkpoint check with split times
+        List<Checkpoint> checkpoints = route.getCheckpoints();
+        CheckpointMatcher checkpointMatcher = checkpoints.isEmpty()
+                ? null
+                : new CheckpointMatcher(checkpoints, checkpointRadiusM);
+        TrackMetrics trackMetrics = TrackMetrics.fromTrack(
+                attemptTrack, checkpointMatcher, route.getElevationFilter().create());
+        double distanceKm = trackMetrics.getDistanceKm();
+        double elevationGainM = trackMetrics.getElevationGainM();
 
-        double coverageRatio = coverageCalculator.computeCoverage(
-                attemptTrack,
-                route,
-                COVERAGE_TOLERANCE_M
-        );
+        // Share of attempt points within the tolerance of the route: from the
+        // derived track's on-route flags (distance to the nearest route
+        // segment) when there is one, else from the vertex-based calculator
+        double coverageRatio = derived != null
+                ? derived.getOnRouteShare()
+                : coverageCalculator.computeCoverage(attemptTrack, routePoints, coverageToleranceM);
+
+        double maxDeviationM = TrackMetrics.computeMaxDeviationMeters(attemptTrack, routePoints);
 
-        double maxDeviationM = TrackMetrics.computeMaxDeviationMeters(attemptTrack, route);
+        // Progress along the route: furthest point reached, share of the
+        // route distance covered, sections skipped on the way
+        RouteProgress progress = derived != null ? computeProgress(derived, route.getIndex().lengthM()) : null;
 
         // ---------------------------------------
         // Step 5 — OOP difficulty score
@@ -124,38 +259,233 @@ public class AttemptVerifierService {
         // ---------------------------------------
         // Step 6 — Classification
         // ---------------------------------------
+        // Share of attempt points near the route; with verifier.progress.classify
+        // the share of the route distance covered, when it is known
+        boolean byProgress = progressClassify && progress != null;
+        double completion = byProgress ? progress.getCompletion() : coverageRatio;
         String result;
-        if (coverageRatio < 0.50 || Double.isNaN(maxDeviationM)) {
+        if (completion < 0.50 || Double.isNaN(maxDeviationM)) {
             result = "REJECTED";
-        } else if (coverageRatio < 0.90) {
+        } else if (completion < 0.90) {
             result = "FLAGGED";
         } else {
             result = "VERIFIED";
         }
 
-        // ---------------------------------------
-        // Step 7 — Build and persist Attempt
-        // ---------------------------------------
-        Attempt attempt = new Attempt();
-        attempt.setRunnerId(runnerId);
-        attempt.setAttemptTime(LocalDateTime.now());
+        // Teleports / vehicle rides / skipped aid stations: good coverage alone is not enough
+        String message = "Verification completed using OOP strategy classes.";
+        StringBuilder issues = new StringBuilder();
+        Integer spikes = trackMetrics.getSpeedSpikes();
+        if (spikes != null && spikes > 0) {
+            issues.append(' ').append(spikes).append(" speed spike(s) above ")
+                    .append(Math.round(TrackMetrics.MAX_PLAUSIBLE_SPEED_MPS * 3.6)).append(" km/h.");
+        }
+        if (checkpointMatcher != null && checkpointMatcher.getReachedCount() < checkpointMatcher.getTotal()) {
+            issues.append(' ').append(checkpointMatcher.getReachedCount()).append(" of ")
+                    .append(checkpointMatcher.getTotal()).append(" checkpoints reached in order.");
+        }
+        if (byProgress && !progress.getSkipped().isEmpty()) {
+            issues.append(' ').append(progress.getSkipped().size())
+                    .append(String.format(" route section(s) skipped, %.1f km in total.", progress.getSkippedKm()));
+        }
+        if (byProgress && progress.getCompletion() < 0.90) {
+            issues.append(String.format(" %.0f%% of the route distance covered.", progress.getCompletion() * 100));
+        }
+        if (issues.length() > 0 && !"REJECTED".equals(result)) {
+            result = "FLAGGED";
+            message = "Verification completed;" + issues;
+        }
+
         attempt.setDistanceKm(distanceKm);
         attempt.setElevationGainM(elevationGainM);
         attempt.setDifficultyScore(difficultyScore);
         attempt.setCoverageRatio(coverageRatio);
         attempt.setMaxDeviationM(maxDeviationM);
+        attempt.setElapsedSeconds(trackMetrics.getElapsedSeconds());
+        attempt.setMovingSeconds(trackMetrics.getMovingSeconds());
+        attempt.setAvgPaceSecPerKm(trackMetrics.getAvgPaceSecPerKm());
+        attempt.setMaxSpeedKmh(trackMetrics.getMaxSpeedKmh());
+        attempt.setSpeedSpikes(spikes);
+        attempt.setCheckpointsReached(checkpointMatcher != null ? checkpointMatcher.getReachedCount() : null);
+        attempt.setCheckpointsTotal(checkpointMatcher != null ? checkpointMatcher.getTotal() : null);
+        attempt.setCheckpointSplits(checkpointMatcher != null ? checkpointMatcher.getSplits() : List.of());
+        attempt.setProgressKm(progress != null ? progress.getProgressKm() : null);
+        attempt.setRouteCompletion(progress != null ? progress.getCompletion() : null);
+        attempt.setSkippedKm(progress != null ? progress.getSkippedKm() : null);
+        attempt.setTrackSegments(trackMetrics.getTrackSegments());
+        attempt.setGapKm(trackMetrics.getGapKm());
         attempt.setResult(result);
-        attempt.setMessage("Verification completed using OOP strategy classes.");
-        attempt.setGpxData(rawBytes);   // store GPX bytes for ANY classification
+        attempt.setMessage(message);
+        attempt.setRouteHash(route.getHash());
+    }
+
+    /**
+     * Dedup lookup by content hash (single indexed query).
+     *  - Same runner, same file, same route → return the stored attempt as-is
+     *    (retries after timeouts, uploads from phone + desktop).
+     *  - Different runner, same file → reuse the stored metrics without parsing,
+     *    and store a new row that references the already stored file by hash.
+     * Returns null when the file has not been seen on this route.
+     */
+    private Attempt findKnownAttempt(String routeHash, String gpxSha256, String runnerId) {
+        if (routeHash == null) {
+            return null;
+        }
+
+        List<Attempt> known = attemptStore.findByContentHash(routeHash, gpxSha256);
+        if (known.isEmpty()) {
+            return null;
+        }
+
+        for (Attempt a : known) {
+            if (runnerId.equals(a.getRunnerId())) {
+                System.out.println("[AttemptVerifierService] Duplicate upload of attempt #" + a.getId()
+                        + " by runner " + runnerId + " — returning stored result.");
+                return a;
+            }
+        }
+
+        Attempt original = known.get(0);
+        Attempt attempt = new Attempt();
+        attempt.setRunnerId(runnerId);
+        attempt.setAttemptTime(LocalDateTime.now());
+        attempt.setDistanceKm(original.getDistanceKm());
+        attempt.setElevationGainM(original.getElevationGainM());
+        attempt.setDifficultyScore(original.getDifficultyScore());
+        attempt.setCoverageRatio(original.getCoverageRatio());
+        attempt.setMaxDeviationM(original.getMaxDeviationM());
+        attempt.setElapsedSeconds(original.getElapsedSeconds());
+        attempt.setMovingSeconds(original.getMovingSeconds());
+        attempt.setAvgPaceSecPerKm(original.getAvgPaceSecPerKm());
+        attempt.setMaxSpeedKmh(original.getMaxSpeedKmh());
+        attempt.setSpeedSpikes(original.getSpeedSpikes());
+        attempt.setCheckpointsReached(original.getCheckpointsReached());
+        attempt.setCheckpointsTotal(original.getCheckpointsTotal());
+        attempt.setProgressKm(original.getProgressKm());
+        attempt.setRouteCompletion(original.getRouteCompletion());
+        attempt.setSkippedKm(original.getSkippedKm());
+        attempt.setTrackSegments(original.getTrackSegments());
+        attempt.setGapKm(original.getGapKm());
+        attempt.setResult(original.getResult());
+        attempt.setMessage("Identical GPX already verified as attempt #" + original.getId()
+                + "; metrics reused.");
+        // No second copy: the blob store is keyed by gpx_sha256
+        attempt.setGpxSha256(gpxSha256);
+        attempt.setRouteHash(routeHash);
+
+        Attempt saved = saveOrResolveDuplicate(attempt);
+        if (saved == attempt) {
+            attemptStore.afterSave(saved, () -> {
+                derivedTrackService.copy(original.getId(), saved.getId());
+                copyCheckpointSplits(original.getId(), saved.getId());
+            });
+        }
+        return saved;
+    }
+
+    /**
+     * Saves the attempt. If a concurrent upload of the same file by the same
+     * runner won the race on the unique index, returns that row instead.
+     */
+    private Attempt saveOrResolveDuplicate(Attempt attempt) {
+        try {
+            return attemptStore.save(attempt);
+        } catch (DuplicateKeyException e) {
+            return attemptStore.findByContentHash(attempt.getRouteHash(), attempt.getGpxSha256())
+                    .stream()
+                    .filter(a -> attempt.getRunnerId().equals(a.getRunnerId()))
+                    .findFirst()
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    /**
+     * Writes attempt.getCheckpointSplits() to attempt_checkpoints.
+     * Failures are logged only: the splits are recomputed by re-verification.
+     */
+    public void storeCheckpointSplits(Attempt attempt) {
+        try {
+            checkpointSplitRepository.replaceAll(attempt.getId(), attempt.getCheckpointSplits());
+        } catch (RuntimeException e) {
+            System.err.println("[AttemptVerifierService] Could not store checkpoint splits for attempt #"
+                    + attempt.getId() + ": " + e.getMessage());
+        }
+    }
+
+    private void copyCheckpointSplits(Long fromAttemptId, Long toAttemptId) {
+        try {
+            checkpointSplitRepository.copy(fromAttemptId, toAttemptId);
+        } catch (RuntimeException e) {
+            System.err.println("[AttemptVerifierService] Could not copy checkpoint splits to attempt #"
+                    + toAttemptId + ": " + e.getMessage());
+        }
+    }
+
+    private RouteProgress computeProgress(DerivedTrack derived, double routeLengthM) {
+        return RouteProgress.compute(derived, routeLengthM, progressMaxBridgeM, progressMinBridgeRatio,
+                progressMinSkipM);
+    }
 
-        return attemptRepository.save(attempt);
+    /**
+     * Route progress of a stored attempt (furthest point, completion and
+     * skipped sections) from the chainage in its derived track. Tracks
+     * stored without chainage are derived again from the GPX and written
+     * back. Empty if the attempt has no readable track or no route is loaded.
+     */
+    public Optional<RouteProgress> loadRouteProgress(Long attemptId) {
+        RouteSnapshot route = routeService.getRoute();
+        if (route == null) {
+            return Optional.empty();
+        }
+        return loadDerivedTrack(attemptId, route, DerivedTrack::hasChainage)
+                .map(d -> computeProgress(d, route.getIndex().lengthM()));
+    }
+
+    /**
+     * Off-route excursions of a stored attempt, as found at verification
+     * time. Tracks stored before excursions were recorded, or with another
+     * excursion minimum, are derived again from the GPX and written back.
+     * Empty if the attempt has no readable track or no route is loaded.
+     */
+    public Optional<Excursions> loadExcursions(Long attemptId) {
+        RouteSnapshot route = routeService.getRoute();
+        if (route == null) {
+            return Optional.empty();
+        }
+        return loadDerivedTrack(attemptId, route, derivedTrackService::hasCurrentExcursions)
+                .map(DerivedTrack::getExcursions);
+    }
+
+    /**
+     * Stored derived track if it has what the caller needs, otherwise
+     * derived again from the GPX against route and stored.
+     */
+    private Optional<DerivedTrack> loadDerivedTrack(Long attemptId, RouteSnapshot route,
+                                                    Predicate<DerivedTrack> usable) {
+        Optional<DerivedTrack> derived = derivedTrackService.load(attemptId).filter(usable);
+        if (derived.isPresent()) {
+            return derived;
+        }
+        List<TrackPoint> points = readAttemptTrack(attemptId);
+        if (points.isEmpty()) {
+            return Optional.empty();
+        }
+        return derivedTrackService.store(attemptId, points, route.getIndex(), coverageToleranceM);
+    }
+
+    /**
+     * Per-checkpoint splits of a stored attempt, in route order.
+     */
+    public List<CheckpointSplit> loadCheckpointSplits(Long attemptId) {
+        return checkpointSplitRepository.findByAttemptId(attemptId);
     }
 
     /**
      * Helper for standardizing rejected attempts.
-     * rawBytes may be null if we truly could not read the file.
+     * gpxSha256 is null if we truly could not read the file.
      */
-    private Attempt buildRejectedAttempt(String runnerId, String message, byte[] rawBytes) {
+    private Attempt buildRejectedAttempt(String runnerId, String message,
+                                         String gpxSha256, String routeHash) {
         Attempt attempt = new Attempt();
         attempt.setRunnerId(runnerId);
         attempt.setAttemptTime(LocalDateTime.now());
@@ -166,31 +496,89 @@ public class AttemptVerifierService {
         attempt.setMaxDeviationM(null);
         attempt.setResult("REJECTED");
         attempt.setMessage(message);
-        // Keep the original file bytes if we have them,
+        // Reference the stored file if we have one,
         // so the GPX viewer can still display what the user uploaded.
-        attempt.setGpxData(rawBytes);
-        return attemptRepository.save(attempt);
+        attempt.setGpxSha256(gpxSha256);
+        attempt.setRouteHash(routeHash);
+        return saveOrResolveDuplicate(attempt);
     }
 
     /**
-     * Load and parse the stored GPX for a given attempt.
-     * Used by /api/attempts/{id}/track for the map.
+     * Load the track of a given attempt for the map.
+     * Used by /api/attempts/{id}/track.
+     *
+     * Reads the derived packed track first; only if it is missing (attempts
+     * stored before it existed) the raw GPX is parsed, and the derived track
+     * is written back so the next read is cheap.
+     *
+     * @param level simplification level, 0 = full resolution (see TrackSimplifier)
      */
-    public List<TrackPoint> loadAttemptTrack(Long attemptId) {
-        return attemptRepository.findById(attemptId)
-                .map(attempt -> {
-                    byte[] data = attempt.getGpxData();
-                    if (data == null || data.length == 0) {
-                        return List.<TrackPoint>of();
-                    }
-                    try (InputStream in = new ByteArrayInputStream(data)) {
-                        return gpxParser.parse(in);
-                    } catch (IOException e) {
-                        System.err.println("[AttemptVerifierService] Failed to re-parse GPX from DB: "
-                                + e.getMessage());
-                        return List.<TrackPoint>of();
-                    }
-                })
-                .orElse(List.of());
+    public List<TrackPoint> loadAttemptTrack(Long attemptId, int level) {
+        Optional<DerivedTrack> derived = derivedTrackService.load(attemptId);
+        if (derived.isPresent()) {
+            return derived.get().simplified(level).toTrackPoints();
+        }
+
+        List<TrackPoint> points = parseStoredGpx(attemptId);
+        if (points.isEmpty()) {
+            return points;
+        }
+
+        // Backfill for next time
+        return derivedTrackService.store(attemptId, points, routeService.getRouteIndex(), coverageToleranceM)
+                .map(d -> d.simplified(level).toTrackPoints())
+                .orElse(points);
+    }
+
+    /**
+     * Full-resolution track of an attempt: derived track if stored, otherwise
+     * parsed from the raw file. Nothing is written back.
+     */
+    public List<TrackPoint> readAttemptTrack(Long attemptId) {
+        return derivedTrackService.load(attemptId)
+                .map(d -> d.getTrack().toTrackPoints())
+                .orElseGet(() -> parseStoredGpx(attemptId));
+    }
+
+    private List<TrackPoint> parseStoredGpx(Long attemptId) {
+        Optional<Resource> gpx = loadAttemptGpx(attemptId);
+        if (gpx.isEmpty()) {
+            return List.of();
+        }
+        try {
+            if (gpx.get().isFile()) {
+                // Filesystem blob store: memory-mapped, no stream
+                return trackFileReader.read(gpx.get().getFile().toPath());
+            }
+            try (InputStream in = gpx.get().getInputStream()) {
+                return trackFileReader.read(in);
+            }
+        } catch (IOException | ParseLimits.LimitExceededException e) {
+            System.err.println("[AttemptVerifierService] Failed to re-parse stored GPX: "
+                    + e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Resolve the raw uploaded file of an attempt as a streamable Resource.
+     * Looks in the GpxBlobStore by content hash, then falls back to the
+     * gpx_data column for rows written before the blob store existed.
+     */
+    public Optional<Resource> loadAttemptGpx(Long attemptId) {
+        Optional<Attempt> found = attemptStore.findById(attemptId);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+
+        String sha = found.get().getGpxSha256();
+        if (sha != null) {
+            Optional<Resource> stored = gpxBlobStore.find(sha);
+            if (stored.isPresent()) {
+                return stored;
+            }
+        }
+
+        return attemptStore.findLegacyGpxData(attemptId, sha);
     }
 }
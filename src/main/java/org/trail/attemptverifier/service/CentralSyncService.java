@@ -0,0 +1,369 @@
+package org.trail.attemptverifier.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.trail.attemptverifier.model.Attempt;
+import org.trail.attemptverifier.model.CheckpointSplit;
+import org.trail.attemptverifier.repository.AttemptCellRepository;
+import org.trail.attemptverifier.repository.AttemptMetricsRepository;
+import org.trail.attemptverifier.repository.AttemptRepository;
+import org.trail.attemptverifier.repository.AttemptStore;
+import org.trail.attemptverifier.repository.AttemptSyncRepository;
+import org.trail.attemptverifier.repository.CheckpointSplitRepository;
+import org.trail.attemptverifier.repository.DatabaseGpxBlobStore;
+import org.trail.attemptverifier.repository.GpxBlobStore;
+import org.trail.attemptverifier.repository.RunnerSummaryRepository;
+import org.trail.attemptverifier.util.TrackCells;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes attempts recorded on an embedded node (profile "embedded", H2 file)
+ * to the central MySQL once it is reachable.
+ *
+ * Enabled by verifier.sync.central.url. Every interval-s it takes the oldest
+ * attempts without an attempt_sync row and, per attempt, in one central
+ * transaction: inserts the attempt (which also updates the central runner
+ * summary), its checkpoint splits, packed track and geohash cells (which
+ * also update the central heatmap), and optionally the raw
+ * GPX into central gpx_blobs. The central id is then recorded locally.
+ *
+ * An attempt whose (route, file, runner) already exists centrally is linked
+ * to the existing row instead of duplicated, so a crash between the central
+ * commit and the local mark is harmless. Attempts re-verified locally after
+ * being synced are not pushed again; run a re-verification centrally instead.
+ *
+ * A push that fails for one attempt (bad row, constraint violation) is
+ * counted in its attempt_sync row and the round moves on to the next id;
+ * after verifier.sync.max-failures failures the attempt is left out until
+ * POST /api/admin/sync. Only a lost connection to central stops the round.
+ */
+@Service
+public class CentralSyncService {
+
+    private final AttemptStore attemptStore;
+    private final AttemptSyncRepository syncRepository;
+    private final CheckpointSplitRepository checkpointSplitRepository;
+    private final AttemptMetricsRepository attemptMetricsRepository;
+    private final AttemptCellRepository attemptCellRepository;
+    private final GpxBlobStore gpxBlobStore;
+
+    private final String centralUrl;
+    private final String centralUsername;
+    private final String centralPassword;
+    private final long intervalSeconds;
+    private final int batchSize;
+    private final boolean copyGpx;
+    private final int blobWriteTimeoutSeconds;
+    private final int maxFailures;
+
+    private final ScheduledExecutorService scheduler;
+
+    private HikariDataSource centralDataSource;
+    private Central central;
+
+    private volatile LocalDateTime lastRunAt;
+    private volatile int lastSynced;
+    private volatile int lastFailed;
+    private volatile long totalSynced;
+    private volatile String lastError;
+
+    public CentralSyncService(AttemptStore attemptStore,
+                              AttemptSyncRepository syncRepository,
+                              CheckpointSplitRepository checkpointSplitRepository,
+                              AttemptMetricsRepository attemptMetricsRepository,
+                              AttemptCellRepository attemptCellRepository,
+                              GpxBlobStore gpxBlobStore,
+                              @Value("${verifier.sync.central.url:}") String centralUrl,
+                              @Value("${verifier.sync.central.username:}") String centralUsername,
+                              @Value("${verifier.sync.central.password:}") String centralPassword,
+                              @Value("${verifier.sync.interval-s:60}") long intervalSeconds,
+                              @Value("${verifier.sync.batch-size:50}") int batchSize,
+                              @Value("${verifier.sync.copy-gpx:false}") boolean copyGpx,
+                              @Value("${verifier.blob-store.write-timeout-s:30}") int blobWriteTimeoutSeconds,
+                              @Value("${verifier.sync.max-failures:10}") int maxFailures) {
+        this.attemptStore = attemptStore;
+        this.syncRepository = syncRepository;
+        this.checkpointSplitRepository = checkpointSplitRepository;
+        this.attemptMetricsRepository = attemptMetricsRepository;
+        this.attemptCellRepository = attemptCellRepository;
+        this.gpxBlobStore = gpxBlobStore;
+        this.centralUrl = centralUrl == null ? "" : centralUrl.trim();
+        this.centralUsername = centralUsername;
+        this.centralPassword = centralPassword;
+        this.intervalSeconds = Math.max(1, intervalSeconds);
+        this.batchSize = Math.max(1, batchSize);
+        this.copyGpx = copyGpx;
+        this.blobWriteTimeoutSeconds = blobWriteTimeoutSeconds;
+        this.maxFailures = Math.max(1, maxFailures);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "central-sync");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    public boolean isEnabled() {
+        return !centralUrl.isEmpty();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (isEnabled()) {
+            scheduler.scheduleWithFixedDelay(this::runQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Runs one sync round in the background now. Attempts that reached the
+     * failure limit are tried again.
+     *
+     * @throws IllegalStateException if no central database is configured
+     */
+    public void syncNow() {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Central sync is not configured (verifier.sync.central.url).");
+        }
+        int reset = syncRepository.resetFailures();
+        if (reset > 0) {
+            System.out.println("[CentralSyncService] Retrying " + reset + " attempt(s) that failed before");
+        }
+        scheduler.execute(this::runQuietly);
+    }
+
+    public SyncStatus getStatus() {
+        return new SyncStatus(isEnabled(), syncRepository.countUnsynced(), syncRepository.countFailing(),
+                lastRunAt, lastSynced, lastFailed, totalSynced, lastError);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        scheduler.shutdownNow();
+        if (centralDataSource != null) {
+            centralDataSource.close();
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Sync round
+    // ------------------------------------------------------------
+
+    private void runQuietly() {
+        try {
+            runOnce();
+        } catch (RuntimeException e) {
+            // Central unreachable is the normal offline case: keep the rows and retry next round
+            lastError = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+            System.err.println("[CentralSyncService] Sync stopped: " + lastError);
+        }
+    }
+
+    /**
+     * Pushes unsynced attempts batch by batch, each at most once per round.
+     */
+    private synchronized void runOnce() {
+        lastRunAt = LocalDateTime.now();
+        lastSynced = 0;
+        lastFailed = 0;
+        String firstError = null;
+        Central c = central();
+
+        long afterId = 0;
+        List<Long> ids;
+        while (!(ids = syncRepository.findUnsyncedIds(afterId, maxFailures, batchSize)).isEmpty()) {
+            for (Long id : ids) {
+                afterId = id;
+                Optional<Attempt> local = attemptStore.findById(id);
+                if (local.isEmpty()) {
+                    continue;
+                }
+                Long centralId;
+                try {
+                    centralId = push(c, local.get());
+                } catch (DataAccessResourceFailureException | CannotCreateTransactionException e) {
+                    // central went away: stop the round, the attempt is not at fault
+                    throw e;
+                } catch (RuntimeException e) {
+                    String error = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                    int failures = syncRepository.markFailed(id, error);
+                    System.err.println("[CentralSyncService] Attempt #" + id + " failed (" + failures + "/"
+                            + maxFailures + "): " + error);
+                    if (firstError == null) {
+                        firstError = "Attempt #" + id + ": " + error;
+                    }
+                    lastFailed++;
+                    continue;
+                }
+                syncRepository.markSynced(id, centralId);
+                lastSynced++;
+                totalSynced++;
+            }
+        }
+        lastError = firstError;
+    }
+
+    private Long push(Central c, Attempt attempt) {
+        Long localId = attempt.getId();
+        List<CheckpointSplit> splits = checkpointSplitRepository.findByAttemptId(localId);
+        Optional<byte[]> packed = attemptMetricsRepository.findPackedTrack(localId);
+        TrackCells cells = attemptCellRepository.findByAttemptId(localId);
+        byte[] gpx = copyGpx ? readGpx(attempt.getGpxSha256()) : null;
+
+        return c.tx.execute(status -> {
+            for (Attempt existing : c.attempts.findByContentHash(attempt.getRouteHash(), attempt.getGpxSha256())) {
+                if (existing.getRunnerId().equals(attempt.getRunnerId())) {
+                    return existing.getId();
+                }
+            }
+
+            // A copy gets the central id; the local attempt keeps its own
+            Attempt central = new Attempt(attempt);
+            central.setId(null);
+            c.attempts.save(central);
+            c.checkpoints.replaceAll(central.getId(), splits);
+            if (packed.isPresent()) {
+                c.metrics.savePackedTrack(central.getId(), packed.get(), central.getElapsedSeconds());
+            }
+            if (!cells.isEmpty()) {
+                c.cells.replace(central.getId(), cells);
+            }
+            if (gpx != null) {
+                c.blobs.put(central.getGpxSha256(), gpx);
+            }
+            return central.getId();
+        });
+    }
+
+    private byte[] readGpx(String sha256) {
+        if (sha256 == null) {
+            return null;
+        }
+        Optional<Resource> res = gpxBlobStore.find(sha256);
+        if (res.isEmpty()) {
+            return null;
+        }
+        try (InputStream in = res.get().getInputStream()) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            System.err.println("[CentralSyncService] Could not read GPX " + sha256 + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Central-side repositories: the same JDBC classes as locally, on a small
+     * pool of their own. Created on first use so an offline start is fine.
+     */
+    private synchronized Central central() {
+        if (central == null) {
+            HikariDataSource ds = new HikariDataSource();
+            ds.setPoolName("central-sync");
+            ds.setJdbcUrl(centralUrl);
+            ds.setUsername(centralUsername);
+            ds.setPassword(centralPassword);
+            ds.setMaximumPoolSize(2);
+            ds.setMinimumIdle(0);
+            // Do not fail construction while the central database is unreachable
+            ds.setInitializationFailTimeout(-1);
+            centralDataSource = ds;
+            central = new Central(new JdbcTemplate(ds), blobWriteTimeoutSeconds);
+        }
+        return central;
+    }
+
+    private static final class Central {
+        final AttemptRepository attempts;
+        final CheckpointSplitRepository checkpoints;
+        final AttemptMetricsRepository metrics;
+        final AttemptCellRepository cells;
+        final DatabaseGpxBlobStore blobs;
+        final TransactionTemplate tx;
+
+        Central(JdbcTemplate jdbc, int blobWriteTimeoutSeconds) {
+            this.attempts = new AttemptRepository(jdbc, new RunnerSummaryRepository(jdbc));
+            this.checkpoints = new CheckpointSplitRepository(jdbc);
+            this.metrics = new AttemptMetricsRepository(jdbc);
+            this.cells = new AttemptCellRepository(jdbc);
+            this.blobs = new DatabaseGpxBlobStore(jdbc, blobWriteTimeoutSeconds);
+            this.tx = new TransactionTemplate(new DataSourceTransactionManager(jdbc.getDataSource()));
+        }
+    }
+
+    /**
+     * Sync progress for GET /api/admin/sync.
+     */
+    public static class SyncStatus {
+        private final boolean enabled;
+        private final int pending;
+        private final int failing;
+        private final LocalDateTime lastRunAt;
+        private final int lastSynced;
+        private final int lastFailed;
+        private final long totalSynced;
+        private final String lastError;
+
+        public SyncStatus(boolean enabled, int pending, int failing, LocalDateTime lastRunAt,
+                          int lastSynced, int lastFailed, long totalSynced, String lastError) {
+            this.enabled = enabled;
+            this.pending = pending;
+            this.failing = failing;
+            this.lastRunAt = lastRunAt;
+            this.lastSynced = lastSynced;
+            this.lastFailed = lastFailed;
+            this.totalSynced = totalSynced;
+            this.lastError = lastError;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public int getPending() {
+            return pending;
+        }
+
+        /** Pending attempts whose last push failed (see attempt_sync.last_error). */
+        public int getFailing() {
+            return failing;
+        }
+
+        public LocalDateTime getLastRunAt() {
+            return lastRunAt;
+        }
+
+        public int getLastSynced() {
+            return lastSynced;
+        }
+
+        public int getLastFailed() {
+            return lastFailed;
+        }
+
+        public long getTotalSynced() {
+            return totalSynced;
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.trail.attemptverifier.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.trail.attemptverifier.model.TrackPoint;
+import org.trail.attemptverifier.repository.AttemptCellRepository;
+import org.trail.attemptverifier.repository.AttemptMetricsRepository;
+import org.trail.attemptverifier.util.DerivedTrack;
+import org.trail.attemptverifier.util.DerivedTrackCodec;
+import org.trail.attemptverifier.util.PackedTrack;
+import org.trail.attemptverifier.util.RouteIndex;
+import org.trail.attemptverifier.util.TrackCells;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Builds, stores and loads the per-attempt derived track
+ * (packed coordinates + simplification levels + on/off-route flags).
+ *
+ * The derived track is a cache of the raw GPX: writing it may fail without
+ * failing the upload, and readers fall back to parsing the stored file.
+ * The attempt's spatial index rows (attempt_cells / heatmap_cells) are
+ * written alongside it, under the same rule.
+ *
+ * Off-route runs shorter than verifier.excursions.min-points points or
+ * min-length-m meters are not listed as excursions, only counted in the
+ * totals (see Excursions).
+ */
+@Service
+public class DerivedTrackService {
+
+    private final AttemptMetricsRepository attemptMetricsRepository;
+    private final AttemptCellRepository attemptCellRepository;
+    private final int excursionMinPoints;
+    private final int excursionMinLengthM;
+
+    public DerivedTrackService(AttemptMetricsRepository attemptMetricsRepository,
+                               AttemptCellRepository attemptCellRepository,
+                               @Value("${verifier.excursions.min-points:3}") int excursionMinPoints,
+                               @Value("${verifier.excursions.min-length-m:0}") int excursionMinLengthM) {
+        this.attemptMetricsRepository = attemptMetricsRepository;
+        this.attemptCellRepository = attemptCellRepository;
+        this.excursionMinPoints = Math.max(1, excursionMinPoints);
+        this.excursionMinLengthM = Math.max(0, excursionMinLengthM);
+    }
+
+    /**
+     * Derive and persist the packed track of an attempt against the given route index.
+     * Returns the derived track, or empty if it could not be built or stored.
+     */
+    public Optional<DerivedTrack> store(Long attemptId, List<TrackPoint> attemptTrack,
+                                        RouteIndex routeIndex, double toleranceM) {
+        if (attemptId == null) {
+            return Optional.empty();
+        }
+        Optional<DerivedTrack> derived = build(attemptTrack, routeIndex, toleranceM);
+        return derived.isPresent() && save(attemptId, derived.get()) ? derived : Optional.empty();
+    }
+
+    /**
+     * Derives the packed track without storing it (CPU only, no database).
+     */
+    public Optional<DerivedTrack> build(List<TrackPoint> attemptTrack, RouteIndex routeIndex, double toleranceM) {
+        if (attemptTrack.isEmpty() || routeIndex == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(DerivedTrack.build(PackedTrack.fromTrackPoints(attemptTrack), routeIndex, toleranceM,
+                    excursionMinPoints, excursionMinLengthM));
+        } catch (RuntimeException e) {
+            System.err.println("[DerivedTrackService] Could not build packed track: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Persists a derived track built by build(). Returns false if the write failed.
+     */
+    public boolean save(Long attemptId, DerivedTrack derived) {
+        index(attemptId, derived);
+        try {
+            attemptMetricsRepository.savePackedTrack(attemptId, DerivedTrackCodec.encode(derived),
+                    derived.getTrack().elapsedSeconds());
+            return true;
+        } catch (RuntimeException e) {
+            System.err.println("[DerivedTrackService] Could not store packed track for attempt #"
+                    + attemptId + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the attempt's geohash cells (and its share of the heatmap).
+     */
+    private void index(Long attemptId, DerivedTrack derived) {
+        try {
+            attemptCellRepository.replace(attemptId, TrackCells.of(derived.getTrack(), derived.getOnRoute()));
+        } catch (RuntimeException e) {
+            System.err.println("[DerivedTrackService] Could not index cells of attempt #"
+                    + attemptId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Whether a derived track has excursions found with the configured
+     * minimum (false for tracks stored before format 5 unless the minimum
+     * is 1 point, 0 m).
+     */
+    public boolean hasCurrentExcursions(DerivedTrack derived) {
+        return derived.hasExcursions()
+                && derived.getExcursions().getMinPoints() == excursionMinPoints
+                && derived.getExcursions().getMinLengthM() == excursionMinLengthM;
+    }
+
+    /**
+     * Stored derived track of an attempt, or empty if missing / unreadable.
+     */
+    public Optional<DerivedTrack> load(Long attemptId) {
+        try {
+            return attemptMetricsRepository.findPackedTrack(attemptId)
+                    .map(DerivedTrackCodec::decode);
+        } catch (RuntimeException e) {
+            System.err.println("[DerivedTrackService] Ignoring unreadable packed track for attempt #"
+                    + attemptId + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Share the derived track of an identical earlier upload with a new attempt row.
+     */
+    public void copy(Long fromAttemptId, Long toAttemptId) {
+        try {
+            attemptMetricsRepository.copyPackedTrack(fromAttemptId, toAttemptId);
+        } catch (RuntimeException e) {
+            System.err.println("[DerivedTrackService] Could not copy packed track to attempt #"
+                    + toAttemptId + ": " + e.getMessage());
+        }
+        try {
+            attemptCellRepository.copy(fromAttemptId, toAttemptId);
+        } catch (RuntimeException e) {
+            System.err.println("[DerivedTrackService] Could not copy cells to attempt #"
+                    + toAttemptId + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package org.trail.attemptverifier.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.trail.attemptverifier.model.Attempt;
+import org.trail.attemptverifier.repository.AttemptStore;
+import org.trail.attemptverifier.repository.IdempotencyKeyRepository;
+import org.trail.attemptverifier.repository.IdempotencyKeyRepository.IdempotencyRecord;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Makes POST /api/attempts/upload idempotent per Idempotency-Key header.
+ *
+ * Lookup order for a key:
+ *  1. bounded in-memory LRU (retries of a burst hit here, no DB round trip)
+ *  2. idempotency_keys table (other instances, restarts)
+ *  3. a request with the same key still running → wait for its result
+ *  4. otherwise run the upload and record key → attempt id
+ *
+ * A key always belongs to the runner who used it first; reusing it for
+ * another runner is rejected. Keys expire after ttl-hours, in memory as in
+ * the table. If another instance records the same key between the lookup
+ * and the insert, its attempt is the answer for both requests.
+ */
+@Service
+public class IdempotencyService {
+
+    /** Purge expired rows from idempotency_keys after this many inserts. */
+    private static final int PURGE_EVERY = 1000;
+
+    private final IdempotencyKeyRepository keyRepository;
+    private final AttemptStore attemptStore;
+    private final long ttlHours;
+    private final long inFlightWaitMs;
+
+    private final Map<String, IdempotencyRecord> recent;
+    private final ConcurrentHashMap<String, CompletableFuture<Attempt>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger insertsSincePurge = new AtomicInteger();
+
+    public IdempotencyService(IdempotencyKeyRepository keyRepository,
+                              AttemptStore attemptStore,
+                              @Value("${verifier.idempotency.cache-size:10000}") int cacheSize,
+                              @Value("${verifier.idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${verifier.idempotency.in-flight-wait-ms:30000}") long inFlightWaitMs) {
+        this.keyRepository = keyRepository;
+        this.attemptStore = attemptStore;
+        this.ttlHours = ttlHours;
+        this.inFlightWaitMs = inFlightWaitMs;
+
+        int maxEntries = Math.max(1, cacheSize);
+        this.recent = new LinkedHashMap<>(Math.min(maxEntries, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Result of an idempotent upload; replayed = answered from an earlier request.
+     */
+    public static class Outcome {
+        private final Attempt attempt;
+        private final boolean replayed;
+
+        Outcome(Attempt attempt, boolean replayed) {
+            this.attempt = attempt;
+            this.replayed = replayed;
+        }
+
+        public Attempt getAttempt() {
+            return attempt;
+        }
+
+        public boolean isReplayed() {
+            return replayed;
+        }
+    }
+
+    /**
+     * Key reused by another runner, or still held by a running request.
+     */
+    public static class KeyConflictException extends RuntimeException {
+        public KeyConflictException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Runs upload once per key.
+     *
+     * @throws KeyConflictException if the key was used by another runner,
+     *                               or the first request with it is still running after the wait
+     */
+    public Outcome execute(String key, String runnerId, Callable<Attempt> upload) throws Exception {
+        Optional<Attempt> previous = findPrevious(key, runnerId);
+        if (previous.isPresent()) {
+            return new Outcome(previous.get(), true);
+        }
+
+        CompletableFuture<Attempt> mine = new CompletableFuture<>();
+        CompletableFuture<Attempt> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return new Outcome(awaitRunning(key, runnerId, running), true);
+        }
+
+        try {
+            // Re-check: the owner of the key may have finished between lookup and putIfAbsent
+            previous = findPrevious(key, runnerId);
+            if (previous.isPresent()) {
+                mine.complete(previous.get());
+                return new Outcome(previous.get(), true);
+            }
+
+            Attempt attempt = upload.call();
+            Attempt answer = attempt.getId() != null
+                    ? record(key, new IdempotencyRecord(runnerId, attempt.getId(), LocalDateTime.now()), attempt)
+                    : attempt;
+            mine.complete(answer);
+            return new Outcome(answer, answer != attempt);
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /** Forgets all keys (attempt ids restart after DELETE /api/attempts/reset). */
+    public void clear() {
+        synchronized (recent) {
+            recent.clear();
+        }
+        keyRepository.deleteAll();
+    }
+
+    // ------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------
+
+    private Optional<Attempt> findPrevious(String key, String runnerId) {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(ttlHours);
+        IdempotencyRecord rec;
+        synchronized (recent) {
+            rec = recent.get(key);
+            if (rec != null && rec.getCreatedAt().isBefore(cutoff)) {
+                recent.remove(key);
+                rec = null;
+            }
+        }
+        if (rec == null) {
+            rec = keyRepository.find(key, cutoff).orElse(null);
+            if (rec == null) {
+                return Optional.empty();
+            }
+            remember(key, rec);
+        }
+        if (!rec.getRunnerId().equals(runnerId)) {
+            throw new KeyConflictException("Idempotency-Key was already used by another runner.");
+        }
+        return attemptStore.findById(rec.getAttemptId());
+    }
+
+    private Attempt awaitRunning(String key, String runnerId, CompletableFuture<Attempt> running)
+            throws Exception {
+        Attempt attempt;
+        try {
+            attempt = running.get(inFlightWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new KeyConflictException("A request with this Idempotency-Key is still being processed.");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        if (!attempt.getRunnerId().equals(runnerId)) {
+            throw new KeyConflictException("Idempotency-Key was already used by another runner.");
+        }
+        return attempt;
+    }
+
+    /**
+     * Stores key → attempt and returns the attempt the key stands for: this
+     * one, or the one another request (or instance) recorded first.
+     *
+     * @throws KeyConflictException if that request came from another runner
+     */
+    private Attempt record(String key, IdempotencyRecord rec, Attempt attempt) {
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minusHours(ttlHours);
+            // 0 rows: the key was stored first elsewhere, or its expired row is not purged yet
+            if (!keyRepository.insert(key, rec)) {
+                Optional<IdempotencyRecord> first = keyRepository.find(key, cutoff);
+                if (first.isEmpty()) {
+                    keyRepository.deleteExpired(key, cutoff);
+                    if (!keyRepository.insert(key, rec)) {
+                        first = keyRepository.find(key, cutoff);
+                    }
+                }
+                if (first.isPresent()) {
+                    return answerWith(key, first.get(), rec, attempt);
+                }
+            }
+            if (insertsSincePurge.incrementAndGet() >= PURGE_EVERY) {
+                insertsSincePurge.set(0);
+                keyRepository.deleteOlderThan(cutoff);
+            }
+        } catch (KeyConflictException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // The in-memory entry still covers retries against this instance
+            System.err.println("[IdempotencyService] Could not store Idempotency-Key: " + e.getMessage());
+        }
+        remember(key, rec);
+        return attempt;
+    }
+
+    private Attempt answerWith(String key, IdempotencyRecord first, IdempotencyRecord mine, Attempt attempt) {
+        if (!first.getRunnerId().equals(mine.getRunnerId())) {
+            throw new KeyConflictException("Idempotency-Key was already used by another runner.");
+        }
+        remember(key, first);
+        if (first.getAttemptId() == mine.getAttemptId()) {
+            return attempt;
+        }
+        System.err.println("[IdempotencyService] Idempotency-Key was recorded first for attempt #"
+                + first.getAttemptId() + "; answering with it instead of #" + mine.getAttemptId() + ".");
+        return attemptStore.findById(first.getAttemptId()).orElse(attempt);
+    }
+
+    private void remember(String key, IdempotencyRecord rec) {
+        synchronized (recent) {
+            recent.put(key, rec);
+        }
+    }
+}
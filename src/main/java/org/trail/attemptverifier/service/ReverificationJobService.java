@@ -0,0 +1,307 @@
+package org.trail.attemptverifier.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.trail.attemptverifier.model.Attempt;
+import org.trail.attemptverifier.model.ReverificationJob;
+import org.trail.attemptverifier.model.TrackPoint;
+import org.trail.attemptverifier.repository.AttemptStore;
+import org.trail.attemptverifier.repository.ReverificationJobRepository;
+import org.trail.attemptverifier.util.DerivedTrack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admin-triggered background job that re-verifies stored attempts after the
+ * official route or the coverage tolerance changed.
+ *
+ * - Streams attempts in keyset batches (id &gt; lastId ORDER BY id LIMIT n),
+ *   so memory stays bounded regardless of table size.
+ * - Re-analyses each batch in parallel on a small pool of low-priority
+ *   threads, against one RouteSnapshot for the whole run.
+ * - Writes each batch with a single JDBC batchUpdate, in one transaction with
+ *   the runner_summaries rows it changes, then checkpoints the last attempt
+ *   id in reverify_jobs; a job left RUNNING by a crash resumes from there on
+ *   the next startup. A batch that cannot be written fails the job; an
+ *   attempt that cannot be re-analysed is counted in failed (first ids in
+ *   failedAttemptIds), left unchanged, and the job goes on.
+ * - Throttled: bounded worker count plus a pause between batches, so live
+ *   uploads keep getting CPU and pooled connections.
+ */
+@Service
+public class ReverificationJobService {
+
+    private final AttemptStore attemptStore;
+    private final ReverificationJobRepository jobRepository;
+    private final AttemptVerifierService attemptVerifierService;
+    private final DerivedTrackService derivedTrackService;
+    private final RouteService routeService;
+
+    private final int batchSize;
+    private final long batchPauseMs;
+    private final ExecutorService workers;
+    private final ExecutorService coordinator;
+
+    private volatile ReverificationJob current;
+    private volatile boolean cancelRequested;
+
+    public ReverificationJobService(AttemptStore attemptStore,
+                                    ReverificationJobRepository jobRepository,
+                                    AttemptVerifierService attemptVerifierService,
+                                    DerivedTrackService derivedTrackService,
+                                    RouteService routeService,
+                                    @Value("${verifier.reverify.batch-size:200}") int batchSize,
+                                    @Value("${verifier.reverify.threads:0}") int threads,
+                                    @Value("${verifier.reverify.batch-pause-ms:250}") long batchPauseMs) {
+        this.attemptStore = attemptStore;
+        this.jobRepository = jobRepository;
+        this.attemptVerifierService = attemptVerifierService;
+        this.derivedTrackService = derivedTrackService;
+        this.routeService = routeService;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchPauseMs = Math.max(0, batchPauseMs);
+
+        // Default: half the cores, at most 4 — leaves room for live uploads
+        int poolSize = threads > 0
+                ? threads
+                : Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        this.workers = Executors.newFixedThreadPool(poolSize, namedThreads("reverify-worker"));
+        this.coordinator = Executors.newSingleThreadExecutor(namedThreads("reverify-job"));
+    }
+
+    // ------------------------------------------------------------
+    // Control
+    // ------------------------------------------------------------
+
+    /**
+     * Starts a new job against the currently loaded route.
+     *
+     * @param staleOnly only attempts whose route_hash differs from the current route
+     * @throws IllegalStateException if a job is already running or no route is loaded
+     */
+    public synchronized ReverificationJob start(boolean staleOnly) {
+        if (current != null) {
+            throw new IllegalStateException("Re-verification job #" + current.getId() + " is already running.");
+        }
+        RouteSnapshot route = routeService.getRoute();
+        if (route == null) {
+            throw new IllegalStateException("Official route not available.");
+        }
+
+        ReverificationJob job = new ReverificationJob();
+        job.setStatus(ReverificationJob.RUNNING);
+        job.setRouteHash(route.getHash());
+        job.setToleranceM(attemptVerifierService.getCoverageToleranceM());
+        job.setStaleOnly(staleOnly);
+        job.setTotalAttempts(attemptStore.countAttempts());
+        jobRepository.insert(job);
+
+        launch(job, route);
+        return job;
+    }
+
+    /**
+     * Asks the running job to stop after its current batch.
+     * Returns false if nothing is running.
+     */
+    public boolean cancel() {
+        if (current == null) {
+            return false;
+        }
+        cancelRequested = true;
+        return true;
+    }
+
+    /** Live progress for the running job, stored progress otherwise. */
+    public Optional<ReverificationJob> findJob(Long id) {
+        ReverificationJob running = current;
+        if (running != null && Objects.equals(running.getId(), id)) {
+            return Optional.of(running);
+        }
+        return jobRepository.findById(id);
+    }
+
+    public Optional<ReverificationJob> findLatestJob() {
+        ReverificationJob running = current;
+        return running != null ? Optional.of(running) : jobRepository.findLatest();
+    }
+
+    /**
+     * Resumes a job interrupted by a crash or restart, from its last checkpoint.
+     * Only if route version and tolerance are still the ones the job started
+     * with; otherwise the job is cancelled and the operator starts a fresh one.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void resumeInterruptedJobs() {
+        List<ReverificationJob> running;
+        try {
+            running = jobRepository.findRunning();
+        } catch (RuntimeException e) {
+            System.err.println("[ReverificationJobService] Could not check for interrupted jobs: " + e.getMessage());
+            return;
+        }
+
+        RouteSnapshot route = routeService.getRoute();
+        for (int i = 0; i < running.size(); i++) {
+            ReverificationJob job = running.get(i);
+            boolean newest = i == running.size() - 1;
+            boolean sameSettings = route != null
+                    && route.getHash().equals(job.getRouteHash())
+                    && job.getToleranceM() == attemptVerifierService.getCoverageToleranceM();
+            if (newest && sameSettings) {
+                System.out.println("[ReverificationJobService] Resuming job #" + job.getId()
+                        + " after attempt #" + job.getLastAttemptId());
+                launch(job, route);
+            } else {
+                job.setStatus(ReverificationJob.CANCELLED);
+                job.setMessage("Interrupted; route/tolerance changed or superseded before resume.");
+                jobRepository.checkpoint(job);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Interrupt rather than cancel: the job stays RUNNING and resumes on next start
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    // ------------------------------------------------------------
+    // Job loop
+    // ------------------------------------------------------------
+
+    private void launch(ReverificationJob job, RouteSnapshot route) {
+        current = job;
+        cancelRequested = false;
+        coordinator.submit(() -> run(job, route));
+    }
+
+    private void run(ReverificationJob job, RouteSnapshot route) {
+        String skipHash = job.isStaleOnly() ? route.getHash() : null;
+        try {
+            while (!cancelRequested) {
+                List<Attempt> batch = attemptStore.findBatchAfterId(
+                        job.getLastAttemptId(), batchSize, skipHash);
+                if (batch.isEmpty()) {
+                    break;
+                }
+
+                // Re-analyse in parallel
+                AtomicInteger changed = new AtomicInteger();
+                List<Future<Attempt>> futures = new ArrayList<>(batch.size());
+                for (Attempt attempt : batch) {
+                    futures.add(workers.submit(() -> reverify(attempt, route, job.getToleranceM(), changed)));
+                }
+                List<Attempt> updates = new ArrayList<>(batch.size());
+                int failed = 0;
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        Attempt updated = futures.get(i).get();
+                        if (updated != null) {
+                            updates.add(updated);
+                        }
+                    } catch (ExecutionException e) {
+                        // One bad attempt (unreadable GPX, corrupt row) is recorded and left unchanged
+                        recordFailure(job, batch.get(i), e.getCause() != null ? e.getCause() : e);
+                        failed++;
+                    }
+                }
+
+                // One batched write per page (with the runner summaries it moves), then checkpoint
+                attemptStore.batchUpdateVerification(updates);
+
+                job.setProcessed(job.getProcessed() + batch.size());
+                job.setChanged(job.getChanged() + changed.get());
+                job.setSkipped(job.getSkipped() + batch.size() - updates.size() - failed);
+                job.setLastAttemptId(batch.get(batch.size() - 1).getId());
+                jobRepository.checkpoint(job);
+
+                if (batchPauseMs > 0) {
+                    Thread.sleep(batchPauseMs);
+                }
+            }
+            job.setStatus(cancelRequested ? ReverificationJob.CANCELLED : ReverificationJob.COMPLETED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // Left RUNNING on purpose: resumed from the checkpoint on next startup
+            System.err.println("[ReverificationJobService] Job #" + job.getId() + " interrupted at attempt #"
+                    + job.getLastAttemptId());
+            current = null;
+            return;
+        } catch (RuntimeException e) {
+            job.setStatus(ReverificationJob.FAILED);
+            job.setMessage(e.getMessage());
+            System.err.println("[ReverificationJobService] Job #" + job.getId() + " failed: " + e.getMessage());
+        }
+
+        try {
+            jobRepository.checkpoint(job);
+        } finally {
+            current = null;
+        }
+        System.out.println("[ReverificationJobService] Job #" + job.getId() + " " + job.getStatus()
+                + ": " + job.getProcessed() + " processed, " + job.getChanged() + " changed, "
+                + job.getSkipped() + " skipped, " + job.getFailed() + " failed"
+                + (job.getFailed() > 0 ? " (attempts " + job.getFailedAttemptIds() + ")" : "") + ".");
+    }
+
+    private void recordFailure(ReverificationJob job, Attempt attempt, Throwable cause) {
+        job.setFailed(job.getFailed() + 1);
+        if (job.getFailedAttemptIds().size() < ReverificationJob.MAX_FAILED_IDS) {
+            List<Long> ids = new ArrayList<>(job.getFailedAttemptIds());
+            ids.add(attempt.getId());
+            job.setFailedAttemptIds(List.copyOf(ids));
+        }
+        System.err.println("[ReverificationJobService] Job #" + job.getId() + ": attempt #" + attempt.getId()
+                + " not re-verified (" + cause + "); left unchanged.");
+    }
+
+    /**
+     * Re-runs steps 4–6 of the verification pipeline for one stored attempt and
+     * refreshes its derived track. Returns the updated attempt, or null if it has
+     * no readable track (left unchanged).
+     */
+    private Attempt reverify(Attempt attempt, RouteSnapshot route, double toleranceM, AtomicInteger changed) {
+        List<TrackPoint> points = attemptVerifierService.readAttemptTrack(attempt.getId());
+        if (points.isEmpty()) {
+            return null;
+        }
+
+        String oldResult = attempt.getResult();
+        Double oldCoverage = attempt.getCoverageRatio();
+
+        Optional<DerivedTrack> derived = derivedTrackService.build(points, route.getIndex(), toleranceM);
+        attemptVerifierService.applyVerification(attempt, points, route, derived.orElse(null));
+        derived.ifPresent(d -> derivedTrackService.save(attempt.getId(), d));
+        attemptVerifierService.storeCheckpointSplits(attempt);
+
+        if (!Objects.equals(oldResult, attempt.getResult())
+                || !Objects.equals(oldCoverage, attempt.getCoverageRatio())) {
+            changed.incrementAndGet();
+        }
+        return attempt;
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        };
+    }
+}
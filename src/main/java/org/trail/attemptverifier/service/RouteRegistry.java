@@ -0,0 +1,509 @@
+package org.trail.attemptverifier.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.trail.attemptverifier.model.TrackPoint;
+import org.trail.attemptverifier.util.ContentHash;
+import org.trail.attemptverifier.util.DerivedTrack;
+import org.trail.attemptverifier.util.MappedGpxReader;
+import org.trail.attemptverifier.util.PackedTrack;
+import org.trail.attemptverifier.util.RouteIndex;
+import org.trail.attemptverifier.util.RouteProgress;
+import org.trail.attemptverifier.util.RouteSignature;
+import org.trail.attemptverifier.util.TrackFileReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * All known routes (the official route plus every *.gpx in
+ * verifier.routes.directory) and route auto-detection for a track:
+ * which race did this file come from, and how sure are we?
+ *
+ * Detection runs in two stages so it stays cheap with hundreds of routes:
+ *
+ *  1. Prefilter: routes whose bounding box misses the track's are dropped;
+ *     for the rest, shared geohash cells (RouteSignature) are counted
+ *     through an inverted index cell → routes, so the cost grows with the
+ *     track's cells, not with the number of routes. Score: harmonic mean
+ *     of the share of track cells on the route and of route cells on the
+ *     track.
+ *  2. Full match: the best `candidates` routes are matched point by point
+ *     (on-route flags and chainage at the coverage tolerance, then
+ *     RouteProgress) in parallel.
+ *     Confidence = harmonic mean of the share of track points on the route
+ *     and the route completion, so a 50K run scores low against the 100K
+ *     it is part of (low completion) and vice versa (points off route).
+ *
+ * Routes with the official route's hash are the same route and appear once.
+ * The registry is loaded on first use; reload() re-reads the directory.
+ */
+@Service
+public class RouteRegistry {
+
+    public static final String OFFICIAL = "official";
+
+    private final RouteService routeService;
+    private final TrackFileReader trackFileReader;
+    private final MappedGpxReader mappedGpxReader;
+    private final String directory;
+    private final int candidates;
+    private final double minConfidence;
+    private final double toleranceM;
+    private final double progressMaxBridgeM;
+    private final double progressMinBridgeRatio;
+    private final double progressMinSkipM;
+    private final ExecutorService workers;
+
+    private List<Entry> directoryRoutes;
+    private Entry officialRoute;
+    private Routes current;
+
+    public RouteRegistry(RouteService routeService,
+                         TrackFileReader trackFileReader,
+                         MappedGpxReader mappedGpxReader,
+                         @Value("${verifier.routes.directory:gpx}") String directory,
+                         @Value("${verifier.routes.detect.candidates:3}") int candidates,
+                         @Value("${verifier.routes.detect.min-confidence:0.6}") double minConfidence,
+                         @Value("${verifier.routes.detect.threads:0}") int threads,
+                         @Value("${verifier.coverage-tolerance-m:30.0}") double toleranceM,
+                         @Value("${verifier.progress.max-bridge-m:300.0}") double progressMaxBridgeM,
+                         @Value("${verifier.progress.min-bridge-ratio:0.5}") double progressMinBridgeRatio,
+                         @Value("${verifier.progress.min-skip-m:500.0}") double progressMinSkipM) {
+        this.routeService = routeService;
+        this.trackFileReader = trackFileReader;
+        this.mappedGpxReader = mappedGpxReader;
+        this.directory = directory;
+        this.candidates = Math.max(1, candidates);
+        this.minConfidence = minConfidence;
+        this.toleranceM = toleranceM;
+        this.progressMaxBridgeM = progressMaxBridgeM;
+        this.progressMinBridgeRatio = progressMinBridgeRatio;
+        this.progressMinSkipM = progressMinSkipM;
+
+        int poolSize = threads > 0
+                ? threads
+                : Math.max(1, Math.min(this.candidates, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger n = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread t = new Thread(r, "route-match-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // ------------------------------------------------------------
+    // Registry
+    // ------------------------------------------------------------
+
+    /** Registered routes, the official one first. */
+    public List<RouteInfo> list() {
+        Routes routes = routes();
+        List<RouteInfo> out = new ArrayList<>(routes.entries.size());
+        for (Entry e : routes.entries) {
+            out.add(e.info());
+        }
+        return out;
+    }
+
+    /** Re-reads the route directory on next use. */
+    public synchronized void reload() {
+        directoryRoutes = null;
+        officialRoute = null;
+        current = null;
+    }
+
+    /**
+     * Current routes with their inverted cell index, rebuilt only when
+     * RouteService has loaded a different official route or after reload().
+     */
+    private synchronized Routes routes() {
+        if (directoryRoutes == null) {
+            directoryRoutes = loadDirectory();
+        }
+        RouteSnapshot snapshot = routeService.getRoute();
+        String officialHash = officialRoute != null ? officialRoute.hash : null;
+        String snapshotHash = snapshot != null ? snapshot.getHash() : null;
+        if (current != null && Objects.equals(officialHash, snapshotHash)) {
+            return current;
+        }
+        officialRoute = snapshot == null ? null : new Entry(OFFICIAL, snapshot.getHash(),
+                PackedTrack.fromTrackPoints(snapshot.getPoints()), snapshot.getIndex(), true);
+
+        List<Entry> entries = new ArrayList<>(directoryRoutes.size() + 1);
+        if (officialRoute != null) {
+            entries.add(officialRoute);
+        }
+        for (Entry e : directoryRoutes) {
+            if (officialRoute == null || !officialRoute.hash.equals(e.hash)) {
+                entries.add(e);
+            }
+        }
+        current = new Routes(entries);
+        return current;
+    }
+
+    private List<Entry> loadDirectory() {
+        List<Entry> entries = new ArrayList<>();
+        Path dir = Paths.get(directory);
+        if (!Files.isDirectory(dir)) {
+            System.err.println("[RouteRegistry] Route directory not found: " + dir.toAbsolutePath());
+            return entries;
+        }
+        long start = System.nanoTime();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.{gpx,GPX}")) {
+            for (Path file : files) {
+                try {
+                    MappedByteBuffer data = MappedGpxReader.map(file);
+                    List<TrackPoint> points = mappedGpxReader.read(data, file);
+                    if (points.size() < 2) {
+                        continue;
+                    }
+                    PackedTrack track = PackedTrack.fromTrackPoints(points);
+                    String name = file.getFileName().toString().replaceFirst("\\.(?i)gpx$", "");
+                    entries.add(new Entry(name, ContentHash.sha256Hex(data.duplicate()), track,
+                            RouteIndex.build(track), false));
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("[RouteRegistry] Skipping route " + file + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[RouteRegistry] Failed to list " + dir + ": " + e.getMessage());
+        }
+        entries.sort(Comparator.comparing(e -> e.name));
+        System.out.println("[RouteRegistry] " + entries.size() + " route(s) registered from " + dir
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms.");
+        return entries;
+    }
+
+    // ------------------------------------------------------------
+    // Detection
+    // ------------------------------------------------------------
+
+    /**
+     * Reads a GPX, TCX or FIT file and detects its route.
+     *
+     * @throws IllegalArgumentException if the file has no track points
+     */
+    public Detection detect(InputStream file) throws IOException {
+        List<TrackPoint> points = trackFileReader.read(file);
+        if (points.size() < 2) {
+            throw new IllegalArgumentException("No valid track points found in the file.");
+        }
+        return detect(points);
+    }
+
+    /**
+     * Best matching route for a track, with confidence, and the candidates
+     * that were fully matched. `best` is null when no route reaches
+     * verifier.routes.detect.min-confidence.
+     */
+    public Detection detect(List<TrackPoint> points) {
+        long start = System.nanoTime();
+        Routes routes = routes();
+        PackedTrack track = PackedTrack.fromTrackPoints(points);
+        RouteSignature signature = RouteSignature.of(track);
+        if (track.size() < 2 || routes.entries.isEmpty()) {
+            return new Detection(null, List.of(), routes.entries.size(), 0, elapsedMs(start));
+        }
+
+        // Stage 1: bounding boxes, then shared cells via the inverted index
+        int[] shared = new int[routes.entries.size()];
+        for (long cell : signature.getCells()) {
+            int[] ids = routes.cellIndex.get(cell);
+            if (ids != null) {
+                for (int id : ids) shared[id]++;
+            }
+        }
+        double marginDeg = toleranceM / 111_320.0;
+        List<Candidate> shortlist = new ArrayList<>();
+        int boxHits = 0;
+        for (int id = 0; id < shared.length; id++) {
+            Entry route = routes.entries.get(id);
+            if (!signature.intersects(route.signature, marginDeg)) {
+                continue;
+            }
+            boxHits++;
+            if (shared[id] == 0) {
+                continue;
+            }
+            double trackShare = (double) shared[id] / signature.cellCount();
+            double routeShare = (double) shared[id] / route.signature.cellCount();
+            shortlist.add(new Candidate(route, harmonic(trackShare, routeShare)));
+        }
+        shortlist.sort(Comparator.comparingDouble(Candidate::getPrefilterScore).reversed());
+        if (shortlist.size() > candidates) {
+            shortlist = new ArrayList<>(shortlist.subList(0, candidates));
+        }
+
+        // Stage 2: full match of the shortlist, in parallel
+        List<Future<?>> futures = new ArrayList<>(shortlist.size());
+        for (Candidate c : shortlist) {
+            futures.add(workers.submit(() -> match(track, c)));
+        }
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Route detection interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Route matching failed: " + e.getCause(), e.getCause());
+            }
+        }
+        shortlist.sort(Comparator.comparingDouble(Candidate::getConfidence).reversed());
+
+        Candidate best = !shortlist.isEmpty() && shortlist.get(0).getConfidence() >= minConfidence
+                ? shortlist.get(0) : null;
+        Detection detection = new Detection(best, shortlist, routes.entries.size(), boxHits, elapsedMs(start));
+        System.out.println("[RouteRegistry] Detected " + (best != null ? best.getRoute() : "no route")
+                + " among " + routes.entries.size() + " route(s), " + shortlist.size()
+                + " fully matched, in " + detection.getElapsedMs() + " ms.");
+        return detection;
+    }
+
+    /**
+     * On-route flags and chainage of the track against one route. Only the
+     * tolerance around each point is searched (RouteIndex.nearestWithin), so
+     * the many off-route points of a wrong route stay cheap; no detail
+     * levels are computed.
+     */
+    private void match(PackedTrack track, Candidate c) {
+        RouteIndex index = c.entry.index;
+        int n = track.size();
+        double[] lat = track.latitudes();
+        double[] lon = track.longitudes();
+        boolean[] onRoute = new boolean[n];
+        int[] nearestSegment = new int[n];
+        int[] chainageM = new int[n];
+        int on = 0;
+
+        RouteIndex.Match m = new RouteIndex.Match();
+        for (int i = 0; i < n; i++) {
+            if (index.nearestWithin(lat[i], lon[i], toleranceM, m)) {
+                onRoute[i] = true;
+                nearestSegment[i] = m.getSegment();
+                chainageM[i] = (int) Math.round(m.getChainageM());
+                on++;
+            }
+        }
+
+        DerivedTrack derived = new DerivedTrack(track, null, onRoute, nearestSegment, chainageM, null);
+        double onRouteShare = (double) on / n;
+        double completion = RouteProgress.compute(derived, index.lengthM(),
+                progressMaxBridgeM, progressMinBridgeRatio, progressMinSkipM).getCompletion();
+        c.setMatch(onRouteShare, completion, harmonic(onRouteShare, completion));
+    }
+
+    private static double harmonic(double a, double b) {
+        return a + b > 0 ? 2 * a * b / (a + b) : 0.0;
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    // ------------------------------------------------------------
+    // Internal structures
+    // ------------------------------------------------------------
+
+    private static final class Entry {
+        final String name;
+        final String hash;
+        final RouteIndex index;
+        final RouteSignature signature;
+        final boolean official;
+
+        Entry(String name, String hash, PackedTrack track, RouteIndex index, boolean official) {
+            this.name = name;
+            this.hash = hash;
+            this.index = index;
+            this.signature = RouteSignature.of(track);
+            this.official = official;
+        }
+
+        RouteInfo info() {
+            return new RouteInfo(name, hash, index.lengthM() / 1000.0, signature.cellCount(), official);
+        }
+    }
+
+    /** Route list plus geohash cell → route positions in that list. */
+    private static final class Routes {
+        final List<Entry> entries;
+        final Map<Long, int[]> cellIndex;
+
+        Routes(List<Entry> entries) {
+            this.entries = entries;
+            Map<Long, List<Integer>> build = new HashMap<>();
+            for (int id = 0; id < entries.size(); id++) {
+                for (long cell : entries.get(id).signature.getCells()) {
+                    build.computeIfAbsent(cell, k -> new ArrayList<>(2)).add(id);
+                }
+            }
+            this.cellIndex = new HashMap<>(build.size() * 2);
+            for (Map.Entry<Long, List<Integer>> e : build.entrySet()) {
+                this.cellIndex.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+    }
+
+    // ------------------------------------------------------------
+    // DTOs
+    // ------------------------------------------------------------
+
+    public static class RouteInfo {
+        private final String name;
+        private final String hash;
+        private final double lengthKm;
+        private final int cells;
+        private final boolean official;
+
+        public RouteInfo(String name, String hash, double lengthKm, int cells, boolean official) {
+            this.name = name;
+            this.hash = hash;
+            this.lengthKm = lengthKm;
+            this.cells = cells;
+            this.official = official;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public double getLengthKm() {
+            return lengthKm;
+        }
+
+        /** Geohash cells in the route's signature. */
+        public int getCells() {
+            return cells;
+        }
+
+        public boolean isOfficial() {
+            return official;
+        }
+    }
+
+    public static class Candidate {
+        private final Entry entry;
+        private final double prefilterScore;
+        private double onRouteShare;
+        private double completion;
+        private double confidence;
+
+        Candidate(Entry entry, double prefilterScore) {
+            this.entry = entry;
+            this.prefilterScore = prefilterScore;
+        }
+
+        void setMatch(double onRouteShare, double completion, double confidence) {
+            this.onRouteShare = onRouteShare;
+            this.completion = completion;
+            this.confidence = confidence;
+        }
+
+        public String getRoute() {
+            return entry.name;
+        }
+
+        public String getRouteHash() {
+            return entry.hash;
+        }
+
+        public boolean isOfficial() {
+            return entry.official;
+        }
+
+        /** Geohash cell overlap score that put the route on the shortlist, 0.0–1.0. */
+        public double getPrefilterScore() {
+            return prefilterScore;
+        }
+
+        /** Share of the track's points within the coverage tolerance of the route. */
+        public double getOnRouteShare() {
+            return onRouteShare;
+        }
+
+        /** Share of the route distance covered by the track. */
+        public double getCompletion() {
+            return completion;
+        }
+
+        public double getConfidence() {
+            return confidence;
+        }
+    }
+
+    public static class Detection {
+        private final Candidate best;
+        private final List<Candidate> candidates;
+        private final int routesRegistered;
+        private final int routesInBoundingBox;
+        private final long elapsedMs;
+
+        public Detection(Candidate best, List<Candidate> candidates, int routesRegistered,
+                         int routesInBoundingBox, long elapsedMs) {
+            this.best = best;
+            this.candidates = candidates;
+            this.routesRegistered = routesRegistered;
+            this.routesInBoundingBox = routesInBoundingBox;
+            this.elapsedMs = elapsedMs;
+        }
+
+        /** Best route name, or null if none is confident enough. */
+        public String getRoute() {
+            return best != null ? best.getRoute() : null;
+        }
+
+        public Double getConfidence() {
+            return best != null ? best.getConfidence() : null;
+        }
+
+        public boolean isOfficial() {
+            return best != null && best.isOfficial();
+        }
+
+        /** Fully matched candidates, best first. */
+        public List<Candidate> getCandidates() {
+            return candidates;
+        }
+
+        public int getRoutesRegistered() {
+            return routesRegistered;
+        }
+
+        public int getRoutesInBoundingBox() {
+            return routesInBoundingBox;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+    }
+}
@@ -1,54 +1,282 @@
 package org.trail.attemptverifier.service;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
+import org.trail.attemptverifier.model.Checkpoint;
 import org.trail.attemptverifier.model.TrackPoint;
+import org.trail.attemptverifier.service.oop.ElevationFilterSpec;
+import org.trail.attemptverifier.util.ContentHash;
 import org.trail.attemptverifier.util.GpxParser;
+import org.trail.attemptverifier.util.MappedGpxReader;
+import org.trail.attemptverifier.util.PackedTrack;
+import org.trail.attemptverifier.util.RouteIndex;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 /**
- * Loads the official route GPX from the classpath and caches the parsed TrackPoints.
+ * Loads the official route GPX and caches it as a RouteSnapshot:
+ * the parsed TrackPoints, the SHA-256 of the route file (so attempts can
+ * record exactly which route version they were verified against) and a
+ * RouteIndex for fast nearest-route lookups, plus the ordered checkpoints
+ * derived from the route's waypoints or from distance markers.
+ *
+ * The location defaults to the classpath copy written by set_official_route.sh;
+ * pointing verifier.route.location at a file: URL lets organizers swap the
+ * route and call reload() without rebuilding. A route that is a plain file
+ * (file: URL, or the classpath copy outside a jar) is memory-mapped and
+ * scanned by MappedGpxReader, in parallel chunks when it is large.
+ *
+ * With verifier.route.preload (default) the route is parsed and indexed
+ * right after startup instead of on the first upload, so a freshly scaled
+ * worker does not pay for it on a runner's request.
  */
 @Service
 public class RouteService {
 
-    private static final String OFFICIAL_ROUTE_PATH = "classpath:gpx/route_official.gpx";
-
     private final GpxParser gpxParser;
+    private final MappedGpxReader mappedGpxReader;
     private final ResourceLoader resourceLoader;
+    private final String routeLocation;
+    private final double checkpointMaxOffsetM;
+    private final double checkpointIntervalKm;
+    private final String defaultElevationFilter;
+    private final Environment environment;
+    private final boolean preload;
 
-    private List<TrackPoint> cachedRoute;
+    private RouteSnapshot cachedRoute;
 
-    public RouteService(GpxParser gpxParser, ResourceLoader resourceLoader) {
+    public RouteService(GpxParser gpxParser,
+                        MappedGpxReader mappedGpxReader,
+                        ResourceLoader resourceLoader,
+                        @Value("${verifier.route.location:classpath:gpx/route_official.gpx}")
+                        String routeLocation,
+                        @Value("${verifier.checkpoints.max-offset-m:100.0}") double checkpointMaxOffsetM,
+                        @Value("${verifier.checkpoints.interval-km:0}") double checkpointIntervalKm,
+                        @Value("${verifier.elevation.filter:window:9+hysteresis:2}") String defaultElevationFilter,
+                        Environment environment,
+                        @Value("${verifier.route.preload:true}") boolean preload) {
         this.gpxParser = gpxParser;
+        this.mappedGpxReader = mappedGpxReader;
         this.resourceLoader = resourceLoader;
+        this.routeLocation = routeLocation;
+        this.checkpointMaxOffsetM = checkpointMaxOffsetM;
+        this.checkpointIntervalKm = checkpointIntervalKm;
+        this.defaultElevationFilter = defaultElevationFilter;
+        this.environment = environment;
+        this.preload = preload;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        if (preload) {
+            long start = System.nanoTime();
+            RouteSnapshot route = getRoute();
+            if (route != null) {
+                System.out.println("[RouteService] Route preloaded in "
+                        + (System.nanoTime() - start) / 1_000_000 + " ms.");
+            }
+        }
     }
 
     /**
-     * Returns the official route TrackPoints. Parsed once and cached for subsequent calls.
+     * Current route snapshot. Loaded once and cached for subsequent calls.
+     * Returns null if the route is missing or has no points.
      */
-    public List<TrackPoint> getTrackPoints() {
+    public synchronized RouteSnapshot getRoute() {
         if (cachedRoute != null) {
             return cachedRoute;
         }
 
-        Resource routeResource = resourceLoader.getResource(OFFICIAL_ROUTE_PATH);
+        Resource routeResource = resourceLoader.getResource(routeLocation);
         if (!routeResource.exists()) {
-            System.err.println("[RouteService] Official route GPX not found at " + OFFICIAL_ROUTE_PATH);
-            return Collections.emptyList();
+            System.err.println("[RouteService] Official route GPX not found at " + routeLocation);
+            return null;
         }
 
-        try (InputStream in = routeResource.getInputStream()) {
-            cachedRoute = gpxParser.parse(in);
+        try {
+            List<TrackPoint> points;
+            List<Checkpoint> waypoints;
+            String hash;
+            if (routeResource.isFile()) {
+                Path path = routeResource.getFile().toPath();
+                MappedByteBuffer data = MappedGpxReader.map(path);
+                points = mappedGpxReader.read(data, path);
+                hash = ContentHash.sha256Hex(data.duplicate());
+                try (InputStream in = Files.newInputStream(path)) {
+                    waypoints = gpxParser.parseWaypoints(in);
+                }
+            } else {
+                byte[] routeBytes;
+                try (InputStream in = routeResource.getInputStream()) {
+                    routeBytes = in.readAllBytes();
+                }
+                points = gpxParser.parse(new ByteArrayInputStream(routeBytes));
+                waypoints = gpxParser.parseWaypoints(new ByteArrayInputStream(routeBytes));
+                hash = ContentHash.sha256Hex(routeBytes);
+            }
+            if (points.isEmpty()) {
+                System.err.println("[RouteService] Official route has no track points: " + routeLocation);
+                return null;
+            }
+            RouteIndex index = RouteIndex.build(PackedTrack.fromTrackPoints(points));
+            List<Checkpoint> checkpoints = buildCheckpoints(waypoints, points, index);
+            ElevationFilterSpec elevationFilter = resolveElevationFilter();
+            cachedRoute = new RouteSnapshot(
+                    points,
+                    hash,
+                    index,
+                    checkpoints,
+                    elevationFilter);
+            System.out.println("[RouteService] Route loaded with " + checkpoints.size()
+                    + " checkpoint(s), elevation filter " + elevationFilter + ".");
             return cachedRoute;
         } catch (IOException e) {
             System.err.println("[RouteService] Failed to read official route: " + e.getMessage());
-            return Collections.emptyList();
+            return null;
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Checkpoints
+    // ------------------------------------------------------------
+
+    /**
+     * Ordered route checkpoints:
+     *  - &lt;wpt&gt; elements in document order, snapped onto the route; waypoints
+     *    farther than verifier.checkpoints.max-offset-m from it are points of
+     *    interest, not checkpoints, and are dropped;
+     *  - otherwise, if verifier.checkpoints.interval-km &gt; 0, distance markers
+     *    every interval plus the finish.
+     */
+    private List<Checkpoint> buildCheckpoints(List<Checkpoint> waypoints,
+                                              List<TrackPoint> routePoints,
+                                              RouteIndex index) {
+        List<Checkpoint> out = new ArrayList<>();
+        if (index.segmentCount() == 0) {
+            return out;
+        }
+
+        RouteIndex.Match match = new RouteIndex.Match();
+        for (Checkpoint wpt : waypoints) {
+            index.nearest(wpt.getLatitude(), wpt.getLongitude(), match);
+            if (match.getDistanceM() > checkpointMaxOffsetM) {
+                continue;
+            }
+            TrackPoint a = routePoints.get(match.getSegment());
+            TrackPoint b = routePoints.get(match.getSegment() + 1);
+            double f = match.getFraction();
+            out.add(new Checkpoint(out.size() + 1, wpt.getName(),
+                    a.getLatitude() + f * (b.getLatitude() - a.getLatitude()),
+                    a.getLongitude() + f * (b.getLongitude() - a.getLongitude()),
+                    match.getChainageM()));
+        }
+
+        if (out.isEmpty() && checkpointIntervalKm > 0) {
+            double step = checkpointIntervalKm * 1000.0;
+            double length = index.lengthM();
+            int seg = 0;
+            for (double target = step; ; target += step) {
+                boolean finish = target >= length;
+                if (finish) {
+                    target = length;
+                }
+                // Chainage is monotonic: advance to the segment containing target
+                while (seg < index.segmentCount() - 1 && index.chainageAt(seg + 1) < target) {
+                    seg++;
+                }
+                double segStart = index.chainageAt(seg);
+                double segLen = index.chainageAt(seg + 1) - segStart;
+                double f = segLen > 0 ? (target - segStart) / segLen : 0.0;
+                TrackPoint a = routePoints.get(seg);
+                TrackPoint b = routePoints.get(seg + 1);
+                String name = finish ? "Finish" : String.format("KM %.1f", target / 1000.0);
+                out.add(new Checkpoint(out.size() + 1, name,
+                        a.getLatitude() + f * (b.getLatitude() - a.getLatitude()),
+                        a.getLongitude() + f * (b.getLongitude() - a.getLongitude()),
+                        target));
+                if (finish) {
+                    break;
+                }
+            }
+        }
+        return out;
+    }
+
+    // ------------------------------------------------------------
+    // Elevation filter
+    // ------------------------------------------------------------
+
+    /**
+     * verifier.elevation.route-filter.&lt;route file name without extension&gt;
+     * if set (e.g. ...route-filter.route_official=kalman:0.5,9), otherwise
+     * verifier.elevation.filter. An invalid spec falls back to raw gain.
+     */
+    private ElevationFilterSpec resolveElevationFilter() {
+        String fileName = routeLocation.substring(routeLocation.lastIndexOf('/') + 1);
+        int dot = fileName.lastIndexOf('.');
+        String routeName = dot > 0 ? fileName.substring(0, dot) : fileName;
+
+        String spec = environment.getProperty("verifier.elevation.route-filter." + routeName,
+                defaultElevationFilter);
+        try {
+            return ElevationFilterSpec.parse(spec);
+        } catch (IllegalArgumentException e) {
+            System.err.println("[RouteService] " + e.getMessage() + "; using raw elevation gain.");
+            return ElevationFilterSpec.RAW;
         }
     }
+
+    /**
+     * Drops the cached route and loads it again from verifier.route.location.
+     * Returns the new snapshot (null if it could not be loaded).
+     */
+    public synchronized RouteSnapshot reload() {
+        cachedRoute = null;
+        return getRoute();
+    }
+
+    /**
+     * Returns the official route TrackPoints (empty if unavailable).
+     */
+    public List<TrackPoint> getTrackPoints() {
+        RouteSnapshot route = getRoute();
+        return route != null ? route.getPoints() : Collections.emptyList();
+    }
+
+    /**
+     * SHA-256 of the official route file, or null if the route could not be loaded.
+     */
+    public String getRouteHash() {
+        RouteSnapshot route = getRoute();
+        return route != null ? route.getHash() : null;
+    }
+
+    /**
+     * Ordered checkpoints of the official route (empty if none or unavailable).
+     */
+    public List<Checkpoint> getCheckpoints() {
+        RouteSnapshot route = getRoute();
+        return route != null ? route.getCheckpoints() : Collections.emptyList();
+    }
+
+    /**
+     * Spatial index over the official route, or null if the route could not be loaded.
+     */
+    public RouteIndex getRouteIndex() {
+        RouteSnapshot route = getRoute();
+        return route != null ? route.getIndex() : null;
+    }
 }
@@ -0,0 +1,57 @@
+package org.trail.attemptverifier.service;
+
+import org.trail.attemptverifier.model.Checkpoint;
+import org.trail.attemptverifier.model.TrackPoint;
+import org.trail.attemptverifier.service.oop.ElevationFilterSpec;
+import org.trail.attemptverifier.util.RouteIndex;
+
+import java.util.List;
+
+/**
+ * One loaded version of the official route: parsed points, content hash,
+ * spatial index, checkpoints and elevation filter, always consistent with
+ * each other.
+ *
+ * Immutable; RouteService swaps the whole snapshot on reload, so a
+ * long-running job can keep verifying against the version it started with.
+ */
+public final class RouteSnapshot {
+
+    private final List<TrackPoint> points;
+    private final String hash;
+    private final RouteIndex index;
+    private final List<Checkpoint> checkpoints;
+    private final ElevationFilterSpec elevationFilter;
+
+    public RouteSnapshot(List<TrackPoint> points, String hash, RouteIndex index,
+                         List<Checkpoint> checkpoints, ElevationFilterSpec elevationFilter) {
+        this.points = List.copyOf(points);
+        this.hash = hash;
+        this.index = index;
+        this.checkpoints = List.copyOf(checkpoints);
+        this.elevationFilter = elevationFilter;
+    }
+
+    public List<TrackPoint> getPoints() {
+        return points;
+    }
+
+    /** SHA-256 of the route file. */
+    public String getHash() {
+        return hash;
+    }
+
+    public RouteIndex getIndex() {
+        return index;
+    }
+
+    /** Checkpoints in the order they must be reached. */
+    public List<Checkpoint> getCheckpoints() {
+        return checkpoints;
+    }
+
+    /** Elevation smoothing used for attempts on this route. */
+    public ElevationFilterSpec getElevationFilter() {
+        return elevationFilter;
+    }
+}
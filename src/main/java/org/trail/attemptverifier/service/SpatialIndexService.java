@@ -0,0 +1,323 @@
+package org.trail.attemptverifier.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.trail.attemptverifier.repository.AttemptCellRepository;
+import org.trail.attemptverifier.repository.AttemptCellRepository.AreaAttempt;
+import org.trail.attemptverifier.repository.AttemptCellRepository.HeatmapCell;
+import org.trail.attemptverifier.util.Geohash;
+import org.trail.attemptverifier.util.TrackCells;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Area and heatmap queries over the geohash index written by
+ * DerivedTrackService (attempt_cells / heatmap_cells).
+ *
+ * A box is turned into at most maxRanges geohash cells (the finest
+ * precision that stays under the limit), and each cell into one contiguous
+ * range of stored cells, so the database only does index range scans.
+ * Areas are therefore snapped outwards to cell edges; the response says
+ * at which precision.
+ */
+@Service
+public class SpatialIndexService {
+
+    private final AttemptCellRepository attemptCellRepository;
+    private final int maxRanges;
+    private final int maxHeatmapCells;
+
+    public SpatialIndexService(AttemptCellRepository attemptCellRepository,
+                               @Value("${verifier.spatial.max-ranges:64}") int maxRanges,
+                               @Value("${verifier.spatial.heatmap.max-cells:10000}") int maxHeatmapCells) {
+        this.attemptCellRepository = attemptCellRepository;
+        // one geohash character is 32 cells, so any box is coverable
+        this.maxRanges = Math.max(32, maxRanges);
+        this.maxHeatmapCells = Math.max(1, maxHeatmapCells);
+    }
+
+    // ------------------------------------------------------------
+    // Area query
+    // ------------------------------------------------------------
+
+    /**
+     * Attempts with recorded points inside the box, most points first.
+     */
+    public AreaResult findAttempts(double minLat, double minLon, double maxLat, double maxLon, int limit) {
+        long start = System.nanoTime();
+        Cover cover = cover(minLat, minLon, maxLat, maxLon, TrackCells.PRECISION);
+        List<AreaAttempt> attempts = attemptCellRepository.findAttemptsInRanges(cover.ranges, limit);
+        return new AreaResult(minLat, minLon, maxLat, maxLon, cover.precision, cover.cells,
+                attempts, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // ------------------------------------------------------------
+    // Heatmap tiles
+    // ------------------------------------------------------------
+
+    /**
+     * Pre-aggregated cells of a web-mercator (slippy map) tile. Coarser
+     * cells for lower zoom levels, so a tile stays a few hundred cells.
+     */
+    public HeatmapTile heatmapTile(int z, int x, int y) {
+        double n = 1L << z;
+        double west = x / n * 360.0 - 180.0;
+        double east = (x + 1) / n * 360.0 - 180.0;
+        double north = Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y / n))));
+        double south = Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * (y + 1) / n))));
+        int precision = heatmapPrecision(z);
+
+        Cover cover = cover(south, west, north, east, precision);
+        List<HeatmapCell> rows = attemptCellRepository.findHeatmapCells(precision, cover.ranges, maxHeatmapCells + 1);
+        boolean truncated = rows.size() > maxHeatmapCells;
+
+        List<TileCell> cells = new ArrayList<>();
+        long maxPoints = 0;
+        for (int i = 0; i < rows.size() && i < maxHeatmapCells; i++) {
+            HeatmapCell row = rows.get(i);
+            double[] b = Geohash.bounds(row.getCell(), precision);
+            // the covering cells may reach past the tile
+            if (b[0] >= north || b[0] + b[2] <= south || b[1] >= east || b[1] + b[3] <= west) {
+                continue;
+            }
+            cells.add(new TileCell(Geohash.toBase32(row.getCell(), precision), b[0], b[1],
+                    b[0] + b[2], b[1] + b[3], row.getPoints(), row.getOffRoutePoints(), row.getAttempts()));
+            maxPoints = Math.max(maxPoints, row.getPoints());
+        }
+        return new HeatmapTile(z, x, y, precision, south, west, north, east, maxPoints, truncated, cells);
+    }
+
+    /** Geohash length per zoom: ~4.9 km up to z10, ~1.2 km up to z13, then ~150 m. */
+    static int heatmapPrecision(int z) {
+        if (z <= 10) return 5;
+        if (z <= 13) return 6;
+        return TrackCells.PRECISION;
+    }
+
+    // -------------------------
+    // Helpers
+    // -------------------------
+
+    private static class Cover {
+        int precision;
+        int cells;
+        List<long[]> ranges = new ArrayList<>();
+    }
+
+    /**
+     * Ranges of cells at `target` precision covering the box, from the
+     * finest covering with at most maxRanges cells; neighbouring cells
+     * with consecutive codes are merged into one range.
+     */
+    private Cover cover(double minLat, double minLon, double maxLat, double maxLon, int target) {
+        Cover cover = new Cover();
+        long[] cells = null;
+        for (int p = target; p >= 1 && cells == null; p--) {
+            cells = Geohash.covering(minLat, minLon, maxLat, maxLon, p, maxRanges);
+            cover.precision = p;
+        }
+        cover.cells = cells.length;
+        for (int i = 0; i < cells.length; i++) {
+            long first = cells[i];
+            while (i + 1 < cells.length && cells[i + 1] == cells[i] + 1) {
+                i++;
+            }
+            cover.ranges.add(new long[]{
+                    Geohash.rangeStart(first, cover.precision, target),
+                    Geohash.rangeEnd(cells[i], cover.precision, target)});
+        }
+        return cover;
+    }
+
+    // ------------------------------------------------------------
+    // DTOs
+    // ------------------------------------------------------------
+
+    public static class AreaResult {
+        private final double minLat;
+        private final double minLon;
+        private final double maxLat;
+        private final double maxLon;
+        private final int cellPrecision;
+        private final int cells;
+        private final List<AreaAttempt> attempts;
+        private final long elapsedMs;
+
+        public AreaResult(double minLat, double minLon, double maxLat, double maxLon,
+                          int cellPrecision, int cells, List<AreaAttempt> attempts, long elapsedMs) {
+            this.minLat = minLat;
+            this.minLon = minLon;
+            this.maxLat = maxLat;
+            this.maxLon = maxLon;
+            this.cellPrecision = cellPrecision;
+            this.cells = cells;
+            this.attempts = attempts;
+            this.elapsedMs = elapsedMs;
+        }
+
+        public double getMinLat() {
+            return minLat;
+        }
+
+        public double getMinLon() {
+            return minLon;
+        }
+
+        public double getMaxLat() {
+            return maxLat;
+        }
+
+        public double getMaxLon() {
+            return maxLon;
+        }
+
+        /** Geohash length the box was snapped to. */
+        public int getCellPrecision() {
+            return cellPrecision;
+        }
+
+        /** Number of covering cells. */
+        public int getCells() {
+            return cells;
+        }
+
+        public List<AreaAttempt> getAttempts() {
+            return attempts;
+        }
+
+        public long getElapsedMs() {
+            return elapsedMs;
+        }
+    }
+
+    public static class HeatmapTile {
+        private final int z;
+        private final int x;
+        private final int y;
+        private final int precision;
+        private final double south;
+        private final double west;
+        private final double north;
+        private final double east;
+        private final long maxPoints;
+        private final boolean truncated;
+        private final List<TileCell> cells;
+
+        public HeatmapTile(int z, int x, int y, int precision, double south, double west,
+                           double north, double east, long maxPoints, boolean truncated, List<TileCell> cells) {
+            this.z = z;
+            this.x = x;
+            this.y = y;
+            this.precision = precision;
+            this.south = south;
+            this.west = west;
+            this.north = north;
+            this.east = east;
+            this.maxPoints = maxPoints;
+            this.truncated = truncated;
+            this.cells = cells;
+        }
+
+        public int getZ() {
+            return z;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getPrecision() {
+            return precision;
+        }
+
+        public double getSouth() {
+            return south;
+        }
+
+        public double getWest() {
+            return west;
+        }
+
+        public double getNorth() {
+            return north;
+        }
+
+        public double getEast() {
+            return east;
+        }
+
+        /** Largest cell count in the tile, for colour scaling. */
+        public long getMaxPoints() {
+            return maxPoints;
+        }
+
+        /** True if more than verifier.spatial.heatmap.max-cells cells matched. */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        public List<TileCell> getCells() {
+            return cells;
+        }
+    }
+
+    public static class TileCell {
+        private final String geohash;
+        private final double south;
+        private final double west;
+        private final double north;
+        private final double east;
+        private final long points;
+        private final long offRoutePoints;
+        private final int attempts;
+
+        public TileCell(String geohash, double south, double west, double north, double east,
+                        long points, long offRoutePoints, int attempts) {
+            this.geohash = geohash;
+            this.south = south;
+            this.west = west;
+            this.north = north;
+            this.east = east;
+            this.points = points;
+            this.offRoutePoints = offRoutePoints;
+            this.attempts = attempts;
+        }
+
+        public String getGeohash() {
+            return geohash;
+        }
+
+        public double getSouth() {
+            return south;
+        }
+
+        public double getWest() {
+            return west;
+        }
+
+        public double getNorth() {
+            return north;
+        }
+
+        public double getEast() {
+            return east;
+        }
+
+        public long getPoints() {
+            return points;
+        }
+
+        public long getOffRoutePoints() {
+            return offRoutePoints;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+}
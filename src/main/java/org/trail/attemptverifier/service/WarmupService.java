@@ -0,0 +1,271 @@
+package org.trail.attemptverifier.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+import org.trail.attemptverifier.model.Attempt;
+import org.trail.attemptverifier.model.TrackPoint;
+import org.trail.attemptverifier.repository.AttemptStore;
+import org.trail.attemptverifier.util.ContentHash;
+import org.trail.attemptverifier.util.DerivedTrack;
+import org.trail.attemptverifier.util.DerivedTrackCodec;
+import org.trail.attemptverifier.util.TrackFileReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Startup warmup (verifier.warmup.enabled): before the instance reports
+ * ready, a bundled GPX (the official route by default) is verified again
+ * and again through the real pipeline: hash, parse, metrics, coverage,
+ * checkpoints, packed track encode/decode, a dedup lookup and Jackson
+ * serialization of the result. Nothing is written to the database.
+ *
+ * It runs inside the ApplicationReadyEvent, so Spring only switches the
+ * readiness state to ACCEPTING_TRAFFIC (GET /api/health/ready) once the
+ * JIT has compiled the hot loops. Iterations stop once a few in a row are
+ * within steady-tolerance of the fastest one without beating it clearly,
+ * or at max-iterations / max-ms.
+ *
+ * exit-after=true stops the JVM after the warmup; appcds.sh uses it as the
+ * training run that records the AppCDS archive.
+ */
+@Service
+public class WarmupService {
+
+    /** Consecutive iterations near the best time that count as steady state. */
+    private static final int STEADY_RUNS = 3;
+
+    private final TrackFileReader trackFileReader;
+    private final RouteService routeService;
+    private final AttemptVerifierService attemptVerifierService;
+    private final DerivedTrackService derivedTrackService;
+    private final AttemptStore attemptStore;
+    private final ObjectMapper objectMapper;
+    private final ResourceLoader resourceLoader;
+
+    private final boolean enabled;
+    private final String gpxLocation;
+    private final int maxIterations;
+    private final long maxMs;
+    private final double steadyTolerance;
+    private final boolean exitAfter;
+
+    private volatile Report report;
+
+    public WarmupService(TrackFileReader trackFileReader,
+                         RouteService routeService,
+                         AttemptVerifierService attemptVerifierService,
+                         DerivedTrackService derivedTrackService,
+                         AttemptStore attemptStore,
+                         ObjectMapper objectMapper,
+                         ResourceLoader resourceLoader,
+                         @Value("${verifier.warmup.enabled:true}") boolean enabled,
+                         @Value("${verifier.warmup.gpx:${verifier.route.location:classpath:gpx/route_official.gpx}}")
+                         String gpxLocation,
+                         @Value("${verifier.warmup.max-iterations:40}") int maxIterations,
+                         @Value("${verifier.warmup.max-ms:15000}") long maxMs,
+                         @Value("${verifier.warmup.steady-tolerance:0.15}") double steadyTolerance,
+                         @Value("${verifier.warmup.exit-after:false}") boolean exitAfter) {
+        this.trackFileReader = trackFileReader;
+        this.routeService = routeService;
+        this.attemptVerifierService = attemptVerifierService;
+        this.derivedTrackService = derivedTrackService;
+        this.attemptStore = attemptStore;
+        this.objectMapper = objectMapper;
+        this.resourceLoader = resourceLoader;
+        this.enabled = enabled;
+        this.gpxLocation = gpxLocation;
+        this.maxIterations = Math.max(1, maxIterations);
+        this.maxMs = Math.max(0, maxMs);
+        this.steadyTolerance = Math.max(0, steadyTolerance);
+        this.exitAfter = exitAfter;
+    }
+
+    /**
+     * Runs after the other ready listeners (route preload) and before Spring
+     * publishes ACCEPTING_TRAFFIC.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void warmUp(ApplicationReadyEvent event) {
+        if (enabled) {
+            try {
+                report = run();
+                System.out.println("[WarmupService] " + report);
+            } catch (RuntimeException | IOException e) {
+                // A failed warmup only costs speed: report ready anyway
+                System.err.println("[WarmupService] Warmup skipped: " + e.getMessage());
+            }
+        }
+        if (exitAfter) {
+            System.exit(SpringApplication.exit(event.getApplicationContext(), () -> 0));
+        }
+    }
+
+    /**
+     * Result of the startup warmup, or null if it is disabled or failed.
+     */
+    public Report getReport() {
+        return report;
+    }
+
+    // ------------------------------------------------------------
+    // Warmup loop
+    // ------------------------------------------------------------
+
+    private Report run() throws IOException {
+        long uptimeAtStart = ManagementFactory.getRuntimeMXBean().getUptime();
+        RouteSnapshot route = routeService.getRoute();
+        if (route == null) {
+            throw new IllegalStateException("official route not available");
+        }
+        byte[] gpx = readGpx();
+
+        long deadline = System.nanoTime() + maxMs * 1_000_000L;
+        double firstMs = 0;
+        double bestMs = Double.MAX_VALUE;
+        double lastMs = 0;
+        int nearBest = 0;
+        int iterations = 0;
+        boolean steady = false;
+
+        while (iterations < maxIterations && System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            verifyOnce(gpx, route);
+            lastMs = (System.nanoTime() - start) / 1e6;
+            iterations++;
+            if (iterations == 1) {
+                firstMs = lastMs;
+            }
+
+            if (lastMs * (1 + steadyTolerance) < bestMs) {
+                // Still getting clearly faster: restart the count from here
+                nearBest = 1;
+            } else {
+                nearBest = lastMs <= bestMs * (1 + steadyTolerance) ? nearBest + 1 : 0;
+            }
+            bestMs = Math.min(bestMs, lastMs);
+            if (nearBest >= STEADY_RUNS) {
+                steady = true;
+                break;
+            }
+        }
+
+        long uptimeAtEnd = ManagementFactory.getRuntimeMXBean().getUptime();
+        return new Report(iterations, firstMs, lastMs, bestMs, steady,
+                uptimeAtEnd - uptimeAtStart, uptimeAtEnd);
+    }
+
+    /**
+     * One upload's worth of work, minus the writes.
+     */
+    private void verifyOnce(byte[] gpx, RouteSnapshot route) throws IOException {
+        String sha256 = ContentHash.sha256Hex(gpx);
+        attemptStore.findByContentHash(route.getHash(), sha256);
+
+        List<TrackPoint> track = trackFileReader.read(new ByteArrayInputStream(gpx));
+        if (track.isEmpty()) {
+            throw new IllegalStateException("warmup GPX has no track points: " + gpxLocation);
+        }
+
+        Optional<DerivedTrack> derived = derivedTrackService.build(
+                track, route.getIndex(), attemptVerifierService.getCoverageToleranceM());
+        Attempt attempt = new Attempt();
+        attempt.setRunnerId("warmup");
+        attempt.setAttemptTime(LocalDateTime.now());
+        attempt.setGpxSha256(sha256);
+        attemptVerifierService.applyVerification(attempt, track, route, derived.orElse(null));
+
+        if (derived.isPresent()) {
+            DerivedTrackCodec.decode(DerivedTrackCodec.encode(derived.get()));
+        }
+
+        objectMapper.writeValueAsBytes(attempt);
+        objectMapper.writeValueAsBytes(track);
+    }
+
+    private byte[] readGpx() throws IOException {
+        Resource resource = resourceLoader.getResource(gpxLocation);
+        if (!resource.exists()) {
+            throw new IOException("warmup GPX not found at " + gpxLocation);
+        }
+        try (InputStream in = resource.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Warmup timings for GET /api/health/ready and the startup log.
+     */
+    public static class Report {
+        private final int iterations;
+        private final double firstMs;
+        private final double lastMs;
+        private final double bestMs;
+        private final boolean steady;
+        private final long warmupMs;
+        private final long readyAtUptimeMs;
+
+        public Report(int iterations, double firstMs, double lastMs, double bestMs,
+                      boolean steady, long warmupMs, long readyAtUptimeMs) {
+            this.iterations = iterations;
+            this.firstMs = firstMs;
+            this.lastMs = lastMs;
+            this.bestMs = bestMs;
+            this.steady = steady;
+            this.warmupMs = warmupMs;
+            this.readyAtUptimeMs = readyAtUptimeMs;
+        }
+
+        public int getIterations() {
+            return iterations;
+        }
+
+        public double getFirstMs() {
+            return firstMs;
+        }
+
+        public double getLastMs() {
+            return lastMs;
+        }
+
+        public double getBestMs() {
+            return bestMs;
+        }
+
+        /** False if max-iterations or max-ms ended the warmup first. */
+        public boolean isSteady() {
+            return steady;
+        }
+
+        public long getWarmupMs() {
+            return warmupMs;
+        }
+
+        /** JVM uptime when the warmup finished: startup-to-steady-state time. */
+        public long getReadyAtUptimeMs() {
+            return readyAtUptimeMs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Warmup %s after %d iteration(s) in %d ms: first %.1f ms, last %.1f ms,"
+                            + " best %.1f ms; steady state %d ms after JVM start.",
+                    steady ? "reached steady state" : "stopped", iterations, warmupMs,
+                    firstMs, lastMs, bestMs, readyAtUptimeMs);
+        }
+    }
+}
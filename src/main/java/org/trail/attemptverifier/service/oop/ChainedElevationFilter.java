@@ -0,0 +1,23 @@
+package org.trail.attemptverifier.service.oop;
+
+/**
+ * Runs several filters in sequence (e.g. moving window, then hysteresis),
+ * each consuming the previous one's output.
+ */
+public class ChainedElevationFilter implements ElevationFilter {
+
+    private final ElevationFilter[] stages;
+
+    public ChainedElevationFilter(ElevationFilter... stages) {
+        this.stages = stages;
+    }
+
+    @Override
+    public double filter(double elevationM) {
+        double v = elevationM;
+        for (ElevationFilter stage : stages) {
+            v = stage.filter(v);
+        }
+        return v;
+    }
+}
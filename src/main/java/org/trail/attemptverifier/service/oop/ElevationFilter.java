@@ -0,0 +1,20 @@
+package org.trail.attemptverifier.service.oop;
+
+/**
+ * Streaming smoothing stage for track elevations, applied before elevation
+ * gain is summed. OOP: interface so noise models can be swapped per route
+ * (see ElevationFilterSpec).
+ *
+ * Implementations keep O(1) state and are NOT thread-safe: create one
+ * instance per track.
+ */
+public interface ElevationFilter {
+
+    /**
+     * Feeds the next raw elevation in track order.
+     *
+     * @param elevationM raw elevation in meters, NaN if the point has none
+     * @return filtered elevation, or NaN while no value is available
+     */
+    double filter(double elevationM);
+}
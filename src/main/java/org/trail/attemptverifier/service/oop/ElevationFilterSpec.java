@@ -0,0 +1,118 @@
+package org.trail.attemptverifier.service.oop;
+
+import java.util.Locale;
+
+/**
+ * Parsed, immutable description of an elevation filter, e.g. from
+ * verifier.elevation.filter. Creates a fresh (stateful) filter per track.
+ *
+ * Syntax:
+ *   raw
+ *   hysteresis:&lt;thresholdM&gt;                        e.g. hysteresis:5
+ *   window:&lt;points&gt;                                 e.g. window:7
+ *   kalman:&lt;processNoise&gt;,&lt;measurementNoise&gt;      e.g. kalman:0.5,9
+ *
+ * Stages can be chained with '+', e.g. window:9+hysteresis:2.
+ */
+public final class ElevationFilterSpec {
+
+    public static final ElevationFilterSpec RAW = new ElevationFilterSpec("raw", 0, 0, null);
+
+    private final String type;
+    private final double p1;
+    private final double p2;
+    private final ElevationFilterSpec next;   // following stage, or null
+
+    private ElevationFilterSpec(String type, double p1, double p2, ElevationFilterSpec next) {
+        this.type = type;
+        this.p1 = p1;
+        this.p2 = p2;
+        this.next = next;
+    }
+
+    /**
+     * @throws IllegalArgumentException on an unknown type or bad parameters
+     */
+    public static ElevationFilterSpec parse(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return RAW;
+        }
+        String s = spec.trim().toLowerCase(Locale.ROOT);
+        int plus = s.indexOf('+');
+        if (plus >= 0) {
+            ElevationFilterSpec head = parse(s.substring(0, plus));
+            ElevationFilterSpec tail = parse(s.substring(plus + 1));
+            return new ElevationFilterSpec(head.type, head.p1, head.p2, tail);
+        }
+        int colon = s.indexOf(':');
+        String type = colon < 0 ? s : s.substring(0, colon);
+        String[] args = colon < 0 ? new String[0] : s.substring(colon + 1).split(",");
+
+        try {
+            switch (type) {
+                case "raw":
+                    return RAW;
+                case "hysteresis":
+                    return new ElevationFilterSpec(type, positive(args, 0, 3.0), 0, null);
+                case "window":
+                    return new ElevationFilterSpec(type, Math.rint(positive(args, 0, 5)), 0, null);
+                case "kalman":
+                    return new ElevationFilterSpec(type, positive(args, 0, 0.5), positive(args, 1, 9.0), null);
+                default:
+                    throw new IllegalArgumentException("Unknown elevation filter '" + spec + "'");
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad elevation filter parameters in '" + spec + "'");
+        }
+    }
+
+    private static double positive(String[] args, int i, double defaultValue) {
+        if (i >= args.length || args[i].isBlank()) {
+            return defaultValue;
+        }
+        double v = Double.parseDouble(args[i].trim());
+        if (!(v > 0)) {
+            throw new NumberFormatException();
+        }
+        return v;
+    }
+
+    /** New filter instance for one track. */
+    public ElevationFilter create() {
+        if (next != null) {
+            return new ChainedElevationFilter(createStage(), next.create());
+        }
+        return createStage();
+    }
+
+    private ElevationFilter createStage() {
+        switch (type) {
+            case "hysteresis":
+                return new HysteresisElevationFilter(p1);
+            case "window":
+                return new MovingAverageElevationFilter((int) p1);
+            case "kalman":
+                return new KalmanElevationFilter(p1, p2);
+            default:
+                return new RawElevationFilter();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return next != null ? stageString() + "+" + next : stageString();
+    }
+
+    private String stageString() {
+        switch (type) {
+            case "hysteresis":
+                return "hysteresis:" + p1;
+            case "window":
+                return "window:" + (int) p1;
+            case "kalman":
+                return "kalman:" + p1 + "," + p2;
+            default:
+                return "raw";
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package org.trail.attemptverifier.service.oop;
+
+/**
+ * Hysteresis (dead band): the output only moves once the raw elevation has
+ * left a band of ±thresholdM around the last accepted value, so jitter
+ * smaller than the threshold never adds gain.
+ */
+public class HysteresisElevationFilter implements ElevationFilter {
+
+    private final double thresholdM;
+    private double anchor = Double.NaN;
+
+    public HysteresisElevationFilter(double thresholdM) {
+        this.thresholdM = thresholdM;
+    }
+
+    @Override
+    public double filter(double elevationM) {
+        if (Double.isNaN(elevationM)) {
+            return anchor;
+        }
+        if (Double.isNaN(anchor) || Math.abs(elevationM - anchor) >= thresholdM) {
+            anchor = elevationM;
+        }
+        return anchor;
+    }
+}
@@ -0,0 +1,42 @@
+package org.trail.attemptverifier.service.oop;
+
+/**
+ * One-dimensional Kalman filter with a constant-elevation model.
+ *
+ * processNoise     variance (m²) the true elevation may drift per point
+ * measurementNoise variance (m²) of a single GPS/barometric reading
+ *
+ * A higher measurement/process ratio smooths more.
+ */
+public class KalmanElevationFilter implements ElevationFilter {
+
+    private final double processNoise;
+    private final double measurementNoise;
+
+    private double estimate = Double.NaN;
+    private double variance;
+
+    public KalmanElevationFilter(double processNoise, double measurementNoise) {
+        this.processNoise = processNoise;
+        this.measurementNoise = measurementNoise;
+    }
+
+    @Override
+    public double filter(double elevationM) {
+        if (Double.isNaN(elevationM)) {
+            return estimate;
+        }
+        if (Double.isNaN(estimate)) {
+            estimate = elevationM;
+            variance = measurementNoise;
+            return estimate;
+        }
+        // Predict
+        variance += processNoise;
+        // Update
+        double gain = variance / (variance + measurementNoise);
+        estimate += gain * (elevationM - estimate);
+        variance *= (1.0 - gain);
+        return estimate;
+    }
+}
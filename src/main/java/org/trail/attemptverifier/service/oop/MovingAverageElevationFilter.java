@@ -0,0 +1,33 @@
+package org.trail.attemptverifier.service.oop;
+
+/**
+ * Trailing moving average over the last {@code window} elevations
+ * (fixed-size ring buffer, running sum).
+ */
+public class MovingAverageElevationFilter implements ElevationFilter {
+
+    private final double[] ring;
+    private int count;
+    private int pos;
+    private double sum;
+
+    public MovingAverageElevationFilter(int window) {
+        this.ring = new double[Math.max(1, window)];
+    }
+
+    @Override
+    public double filter(double elevationM) {
+        if (Double.isNaN(elevationM)) {
+            return count == 0 ? Double.NaN : sum / count;
+        }
+        if (count == ring.length) {
+            sum -= ring[pos];
+        } else {
+            count++;
+        }
+        ring[pos] = elevationM;
+        sum += elevationM;
+        pos = (pos + 1) % ring.length;
+        return sum / count;
+    }
+}
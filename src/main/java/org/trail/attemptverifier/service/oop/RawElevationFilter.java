@@ -0,0 +1,12 @@
+package org.trail.attemptverifier.service.oop;
+
+/**
+ * Pass-through: every raw delta counts (the original gain computation).
+ */
+public class RawElevationFilter implements ElevationFilter {
+
+    @Override
+    public double filter(double elevationM) {
+        return elevationM;
+    }
+}
@@ -0,0 +1,117 @@
+package org.trail.attemptverifier.util;
+
+import org.trail.attemptverifier.model.Checkpoint;
+import org.trail.attemptverifier.model.CheckpointSplit;
+import org.trail.attemptverifier.model.TrackPoint;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming, order-enforcing checkpoint check. Fed one attempt point at a
+ * time from the metrics pass (TrackMetrics.fromTrack), so split times come
+ * out of the same traversal.
+ *
+ * The matcher only ever moves forward: a point reaches checkpoint j if it is
+ * within radiusM of it and j is not behind the last reached checkpoint.
+ * Reaching j marks every still-pending checkpoint before j as missed, so a
+ * checkpoint visited out of order never counts. Among several candidates
+ * the lowest sequence wins, and after reaching a checkpoint the runner has
+ * to leave its radius before the next one can match — so on out-and-back
+ * routes the same aid station on the way back is not taken early.
+ */
+public final class CheckpointMatcher {
+
+    private static final double METERS_PER_DEG_LAT = 111_320.0;
+
+    private final List<Checkpoint> checkpoints;
+    private final double radiusM;
+    private final double[] mPerDegLon;
+    private final CheckpointSplit[] splits;
+
+    private int next;                  // first checkpoint that can still be reached
+    private int lingering = -1;        // last reached checkpoint while still inside its radius
+    private int reachedCount;
+    private long startTime = TrackPoint.NO_TIME;
+    private long lastReachedTime = TrackPoint.NO_TIME;
+
+    public CheckpointMatcher(List<Checkpoint> checkpoints, double radiusM) {
+        this.checkpoints = checkpoints;
+        this.radiusM = radiusM;
+        int k = checkpoints.size();
+        this.mPerDegLon = new double[k];
+        this.splits = new CheckpointSplit[k];
+        for (int j = 0; j < k; j++) {
+            Checkpoint cp = checkpoints.get(j);
+            mPerDegLon[j] = METERS_PER_DEG_LAT * Math.cos(Math.toRadians(cp.getLatitude()));
+            splits[j] = new CheckpointSplit(cp);
+        }
+    }
+
+    /**
+     * Processes the next attempt point.
+     *
+     * @param time point timestamp in epoch millis, or TrackPoint.NO_TIME
+     */
+    public void accept(int index, double lat, double lon, long time) {
+        if (startTime == TrackPoint.NO_TIME) {
+            startTime = time;
+        }
+        if (lingering >= 0) {
+            if (within(lingering, lat, lon)) {
+                return;
+            }
+            lingering = -1;
+        }
+        for (int j = next; j < checkpoints.size(); j++) {
+            if (within(j, lat, lon)) {
+                reach(j, index, time);
+                return;
+            }
+        }
+    }
+
+    private boolean within(int j, double lat, double lon) {
+        Checkpoint cp = checkpoints.get(j);
+        // Cheap box test before the great-circle distance
+        if (Math.abs(lat - cp.getLatitude()) * METERS_PER_DEG_LAT > radiusM
+                || Math.abs(lon - cp.getLongitude()) * mPerDegLon[j] > radiusM) {
+            return false;
+        }
+        return TrackMetrics.haversineMeters(lat, lon, cp.getLatitude(), cp.getLongitude()) <= radiusM;
+    }
+
+    private void reach(int j, int index, long time) {
+        CheckpointSplit s = splits[j];
+        s.setReached(true);
+        s.setPointIndex(index);
+        if (time != TrackPoint.NO_TIME) {
+            s.setReachedAt(Instant.ofEpochMilli(time));
+            s.setElapsedSeconds(Math.floorDiv(time - startTime, 1000L));
+            long from = lastReachedTime != TrackPoint.NO_TIME ? lastReachedTime : startTime;
+            s.setSplitSeconds(Math.floorDiv(time - from, 1000L));
+            lastReachedTime = time;
+        }
+        reachedCount++;
+        next = j + 1;
+        lingering = j;
+    }
+
+    public int getReachedCount() {
+        return reachedCount;
+    }
+
+    public int getTotal() {
+        return splits.length;
+    }
+
+    /** Per-checkpoint outcome in route order. */
+    public List<CheckpointSplit> getSplits() {
+        List<CheckpointSplit> out = new ArrayList<>(splits.length);
+        for (CheckpointSplit s : splits) {
+            out.add(s);
+        }
+        return out;
+    }
+}
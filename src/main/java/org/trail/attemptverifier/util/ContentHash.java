@@ -0,0 +1,60 @@
+package org.trail.attemptverifier.util;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 content hashing for uploaded GPX files and route files.
+ *
+ * The hex digest is used as the deduplication key for attempts:
+ * identical bytes uploaded against the same route resolve to the
+ * same stored verification instead of being parsed again.
+ */
+public final class ContentHash {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ContentHash() {
+    }
+
+    /**
+     * Returns the lowercase hex SHA-256 digest (64 chars) of the given bytes.
+     */
+    public static String sha256Hex(byte[] data) {
+        MessageDigest digest = newSha256();
+        return toHex(digest.digest(data));
+    }
+
+    /**
+     * Digest of the buffer's remaining bytes (e.g. a mapped file); the
+     * buffer's position is advanced to its limit.
+     */
+    public static String sha256Hex(ByteBuffer data) {
+        MessageDigest digest = newSha256();
+        digest.update(data);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns a fresh SHA-256 digest, for callers that hash incrementally.
+     */
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE is required to ship SHA-256
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xFF;
+            out[i * 2] = HEX[v >>> 4];
+            out[i * 2 + 1] = HEX[v & 0x0F];
+        }
+        return new String(out);
+    }
+}
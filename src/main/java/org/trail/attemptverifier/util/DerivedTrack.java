@@ -0,0 +1,153 @@
+package org.trail.attemptverifier.util;
+
+/**
+ * Everything we derive from an attempt's track at verification time,
+ * so map views and re-verification don't have to parse the GPX again:
+ *
+ *  - the packed track itself (coordinates, elevation, time, GPX segment
+ *    boundaries from format 3 on)
+ *  - Douglas–Peucker detail level per point (TrackSimplifier)
+ *  - per-point on/off-route flag at the verification tolerance
+ *  - per-point index of the nearest route segment (RouteIndex)
+ *  - per-point chainage: whole meters along the route of the closest
+ *    route point (RouteProgress), null for tracks stored before format 2
+ *  - off-route excursions (Excursions), null for tracks stored before
+ *    format 4
+ *
+ * Serialized compactly by DerivedTrackCodec.
+ */
+public final class DerivedTrack {
+
+    private final PackedTrack track;
+    private final byte[] levels;
+    private final boolean[] onRoute;
+    private final int[] nearestSegment;
+    private final int[] chainageM;
+    private final Excursions excursions;
+
+    public DerivedTrack(PackedTrack track, byte[] levels, boolean[] onRoute, int[] nearestSegment,
+                        int[] chainageM, Excursions excursions) {
+        this.track = track;
+        this.levels = levels;
+        this.onRoute = onRoute;
+        this.nearestSegment = nearestSegment;
+        this.chainageM = chainageM;
+        this.excursions = excursions;
+    }
+
+    /**
+     * Builds the derived data in one sweep over the track, listing every
+     * off-route run as an excursion.
+     *
+     * @param toleranceM max distance from the route for a point to count as on-route
+     */
+    public static DerivedTrack build(PackedTrack track, RouteIndex routeIndex, double toleranceM) {
+        return build(track, routeIndex, toleranceM, 1, 0);
+    }
+
+    /**
+     * Builds the derived data in one sweep over the track.
+     *
+     * @param toleranceM          max distance from the route for a point to count as on-route
+     * @param excursionMinPoints  fewest points of a listed excursion (see Excursions)
+     * @param excursionMinLengthM shortest listed excursion in meters
+     */
+    public static DerivedTrack build(PackedTrack track, RouteIndex routeIndex, double toleranceM,
+                                     int excursionMinPoints, int excursionMinLengthM) {
+        int n = track.size();
+        boolean[] onRoute = new boolean[n];
+        int[] nearestSegment = new int[n];
+        int[] chainageM = new int[n];
+
+        double[] lat = track.latitudes();
+        double[] lon = track.longitudes();
+        RouteIndex.Match match = new RouteIndex.Match();
+        Excursions.Tracker excursions = new Excursions.Tracker(track, chainageM,
+                excursionMinPoints, excursionMinLengthM);
+        for (int i = 0; i < n; i++) {
+            routeIndex.nearest(lat[i], lon[i], match);
+            onRoute[i] = match.getDistanceM() <= toleranceM;
+            nearestSegment[i] = match.getSegment();
+            chainageM[i] = (int) Math.round(match.getChainageM());
+            excursions.accept(i, onRoute[i], match.getDistanceM());
+        }
+
+        return new DerivedTrack(track, TrackSimplifier.computeLevels(track), onRoute, nearestSegment, chainageM,
+                excursions.finish());
+    }
+
+    public PackedTrack getTrack() {
+        return track;
+    }
+
+    public byte[] getLevels() {
+        return levels;
+    }
+
+    public boolean[] getOnRoute() {
+        return onRoute;
+    }
+
+    /** Share of points within the verification tolerance of the route, 0.0–1.0. */
+    public double getOnRouteShare() {
+        if (onRoute.length == 0) {
+            return 0.0;
+        }
+        int on = 0;
+        for (boolean b : onRoute) {
+            if (b) on++;
+        }
+        return (double) on / onRoute.length;
+    }
+
+    public int[] getNearestSegment() {
+        return nearestSegment;
+    }
+
+    /** Per-point meters along the route, or null for a format 1 track. */
+    public int[] getChainageM() {
+        return chainageM;
+    }
+
+    public boolean hasChainage() {
+        return chainageM != null;
+    }
+
+    /** Off-route excursions, or null for a track stored before format 4. */
+    public Excursions getExcursions() {
+        return excursions;
+    }
+
+    public boolean hasExcursions() {
+        return excursions != null;
+    }
+
+    /**
+     * Track reduced to the points whose detail level is at least minLevel
+     * (0 = full resolution, TrackSimplifier.MAX_LEVEL = coarsest).
+     */
+    public PackedTrack simplified(int minLevel) {
+        if (minLevel <= 0) {
+            return track;
+        }
+        double[] lat = track.latitudes();
+        double[] lon = track.longitudes();
+        double[] ele = track.elevations();
+        long[] time = track.timesMillis();
+        int[] starts = track.segmentStarts();
+
+        // Segment endpoints are at MAX_LEVEL, so every segment start survives
+        PackedTrack.Builder b = new PackedTrack.Builder();
+        int s = 0;
+        for (int i = 0; i < track.size(); i++) {
+            if (s < starts.length && starts[s] == i) {
+                b.startSegment();
+                s++;
+            }
+            if (levels[i] >= minLevel) {
+                b.add(lat[i], lon[i], ele[i], time[i]);
+            }
+        }
+        return b.build();
+    }
+}
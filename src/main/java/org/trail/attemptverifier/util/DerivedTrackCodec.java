@@ -0,0 +1,443 @@
+package org.trail.attemptverifier.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact binary encoding of a DerivedTrack (stored in attempt_metrics.packed_track).
+ *
+ * Layout (format 5):
+ *   'D' 'T' version
+ *   varint  pointCount
+ *   lat/lon     1e-7 degree fixed point, zigzag-varint deltas, interleaved
+ *   elevation   column mode + decimeters, zigzag-varint deltas
+ *   time        column mode + epoch millis, zigzag-varint deltas
+ *   levels      2 bits per point
+ *   onRoute     1 bit per point
+ *   segments    zigzag-varint deltas of nearest route segment index
+ *   chainage    zigzag-varint deltas of whole meters along the route
+ *   gpx segments varint count, then varint deltas of the segment start indexes
+ *   excursions  varint count, then per excursion: varint start index (delta
+ *               from the previous end), varint extra points, varint length
+ *               in meters, varint max deviation in decimeters, bounding box
+ *               as zigzag 1e-7 degree offsets of its south-west corner from
+ *               the first point and varint height / width
+ *   excursion totals  varint min points, varint min length in meters,
+ *               varint short runs, varint off-route points, varint
+ *               off-route length in meters, varint max deviation in
+ *               decimeters (short runs included in the last three)
+ *
+ * Format 4 (no totals) is read as built without a minimum, its totals
+ * summed from the listed excursions. Format 3 (no excursions) is read with
+ * excursions null, format 2 (no gpx
+ * segments either) as a single segment, format 1 (no chainage column
+ * either) with chainage null.
+ * Column mode: 0 = no values, 1 = every point has one,
+ *              2 = presence bitmap follows, then values for present points.
+ *
+ * Consecutive GPS fixes are close together, so most deltas fit in one or
+ * two bytes; a typical point costs ~8 bytes instead of ~150 bytes of XML.
+ */
+public final class DerivedTrackCodec {
+
+    // First format that has each column
+    static final int FORMAT_FIRST = 1;
+    static final int FORMAT_CHAINAGE = 2;
+    static final int FORMAT_SEGMENTS = 3;
+    static final int FORMAT_EXCURSIONS = 4;
+    static final int FORMAT_EXCURSION_TOTALS = 5;
+
+    public static final int FORMAT_VERSION = FORMAT_EXCURSION_TOTALS;
+
+    private static final double COORD_SCALE = 1e7;
+    private static final double ELE_SCALE = 10.0;
+
+    private static final int MODE_NONE = 0;
+    private static final int MODE_ALL = 1;
+    private static final int MODE_PARTIAL = 2;
+
+    private DerivedTrackCodec() {
+    }
+
+    // ------------------------------------------------------------
+    // Encode
+    // ------------------------------------------------------------
+    public static byte[] encode(DerivedTrack derived) {
+        PackedTrack t = derived.getTrack();
+        int n = t.size();
+        Writer w = new Writer(n * 10 + 16);
+
+        w.put('D');
+        w.put('T');
+        w.put(FORMAT_VERSION);
+        w.varint(n);
+
+        // Coordinates
+        double[] lat = t.latitudes();
+        double[] lon = t.longitudes();
+        long prevLat = 0, prevLon = 0;
+        for (int i = 0; i < n; i++) {
+            long qLat = Math.round(lat[i] * COORD_SCALE);
+            long qLon = Math.round(lon[i] * COORD_SCALE);
+            w.zigzag(qLat - prevLat);
+            w.zigzag(qLon - prevLon);
+            prevLat = qLat;
+            prevLon = qLon;
+        }
+
+        // Elevation
+        double[] ele = t.elevations();
+        boolean[] hasEle = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            hasEle[i] = !Double.isNaN(ele[i]);
+        }
+        writePresence(w, hasEle);
+        long prev = 0;
+        for (int i = 0; i < n; i++) {
+            if (hasEle[i]) {
+                long q = Math.round(ele[i] * ELE_SCALE);
+                w.zigzag(q - prev);
+                prev = q;
+            }
+        }
+
+        // Time
+        long[] time = t.timesMillis();
+        boolean[] hasTime = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            hasTime[i] = time[i] != PackedTrack.NO_TIME;
+        }
+        writePresence(w, hasTime);
+        prev = 0;
+        for (int i = 0; i < n; i++) {
+            if (hasTime[i]) {
+                w.zigzag(time[i] - prev);
+                prev = time[i];
+            }
+        }
+
+        // Levels (2 bits each)
+        byte[] levels = derived.getLevels();
+        for (int i = 0; i < n; i += 4) {
+            int b = 0;
+            for (int k = 0; k < 4 && i + k < n; k++) {
+                b |= (levels[i + k] & 0x3) << (k * 2);
+            }
+            w.put(b);
+        }
+
+        // On-route flags
+        writeBits(w, derived.getOnRoute());
+
+        // Nearest route segments
+        int[] seg = derived.getNearestSegment();
+        long prevSeg = 0;
+        for (int i = 0; i < n; i++) {
+            w.zigzag(seg[i] - prevSeg);
+            prevSeg = seg[i];
+        }
+
+        // Chainage along the route
+        int[] chainage = derived.getChainageM();
+        long prevChainage = 0;
+        for (int i = 0; i < n; i++) {
+            w.zigzag(chainage[i] - prevChainage);
+            prevChainage = chainage[i];
+        }
+
+        // GPX segment boundaries
+        int[] starts = t.segmentStarts();
+        w.varint(starts.length);
+        int prevStart = 0;
+        for (int start : starts) {
+            w.varint(start - prevStart);
+            prevStart = start;
+        }
+
+        // Off-route excursions
+        if (!derived.hasExcursions()) {
+            throw new IllegalArgumentException("Derived track has no excursions");
+        }
+        Excursions all = derived.getExcursions();
+        List<Excursions.Excursion> excursions = all.getExcursions();
+        w.varint(excursions.size());
+        int prevEnd = 0;
+        for (Excursions.Excursion e : excursions) {
+            w.varint(e.getStartIndex() - prevEnd);
+            w.varint(e.getEndIndex() - e.getStartIndex());
+            w.varint(Math.round(e.getLengthM()));
+            w.varint(Math.round(e.getMaxDeviationM() * 10));
+            long south = Math.round(e.getMinLat() * COORD_SCALE);
+            long west = Math.round(e.getMinLon() * COORD_SCALE);
+            w.zigzag(south - Math.round(lat[e.getStartIndex()] * COORD_SCALE));
+            w.zigzag(west - Math.round(lon[e.getStartIndex()] * COORD_SCALE));
+            w.varint(Math.round(e.getMaxLat() * COORD_SCALE) - south);
+            w.varint(Math.round(e.getMaxLon() * COORD_SCALE) - west);
+            prevEnd = e.getEndIndex();
+        }
+        w.varint(all.getMinPoints());
+        w.varint(all.getMinLengthM());
+        w.varint(all.getShortRuns());
+        w.varint(all.getOffRoutePoints());
+        w.varint(Math.round(all.getTotalLengthKm() * 1000.0));
+        w.varint(Math.round(all.getMaxDeviationM() * 10));
+
+        return w.toByteArray();
+    }
+
+    // ------------------------------------------------------------
+    // Decode
+    // ------------------------------------------------------------
+    public static DerivedTrack decode(byte[] data) {
+        Reader r = new Reader(data);
+        if (r.get() != 'D' || r.get() != 'T') {
+            throw new IllegalArgumentException("Not a packed track");
+        }
+        int version = r.get();
+        if (version < FORMAT_FIRST || version > FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported packed track format " + version);
+        }
+        int n = (int) r.varint();
+
+        double[] lat = new double[n];
+        double[] lon = new double[n];
+        long qLat = 0, qLon = 0;
+        for (int i = 0; i < n; i++) {
+            qLat += r.zigzag();
+            qLon += r.zigzag();
+            lat[i] = qLat / COORD_SCALE;
+            lon[i] = qLon / COORD_SCALE;
+        }
+
+        double[] ele = new double[n];
+        boolean[] hasEle = readPresence(r, n);
+        long acc = 0;
+        for (int i = 0; i < n; i++) {
+            if (hasEle[i]) {
+                acc += r.zigzag();
+                ele[i] = acc / ELE_SCALE;
+            } else {
+                ele[i] = Double.NaN;
+            }
+        }
+
+        long[] time = new long[n];
+        boolean[] hasTime = readPresence(r, n);
+        acc = 0;
+        for (int i = 0; i < n; i++) {
+            if (hasTime[i]) {
+                acc += r.zigzag();
+                time[i] = acc;
+            } else {
+                time[i] = PackedTrack.NO_TIME;
+            }
+        }
+
+        byte[] levels = new byte[n];
+        for (int i = 0; i < n; i += 4) {
+            int b = r.get();
+            for (int k = 0; k < 4 && i + k < n; k++) {
+                levels[i + k] = (byte) ((b >>> (k * 2)) & 0x3);
+            }
+        }
+
+        boolean[] onRoute = readBits(r, n);
+
+        int[] seg = new int[n];
+        long prevSeg = 0;
+        for (int i = 0; i < n; i++) {
+            prevSeg += r.zigzag();
+            seg[i] = (int) prevSeg;
+        }
+
+        int[] chainage = null;
+        if (version >= FORMAT_CHAINAGE) {
+            chainage = new int[n];
+            long prevChainage = 0;
+            for (int i = 0; i < n; i++) {
+                prevChainage += r.zigzag();
+                chainage[i] = (int) prevChainage;
+            }
+        }
+
+        int[] starts = new int[0];
+        if (version >= FORMAT_SEGMENTS) {
+            starts = new int[(int) r.varint()];
+            int prevStart = 0;
+            for (int s = 0; s < starts.length; s++) {
+                prevStart += (int) r.varint();
+                starts[s] = prevStart;
+            }
+        }
+
+        PackedTrack.Builder b = new PackedTrack.Builder(n);
+        int s = 0;
+        for (int i = 0; i < n; i++) {
+            if (s < starts.length && starts[s] == i) {
+                b.startSegment();
+                s++;
+            }
+            b.add(lat[i], lon[i], ele[i], time[i]);
+        }
+        PackedTrack track = b.build();
+
+        Excursions excursions = null;
+        if (version >= FORMAT_EXCURSIONS) {
+            int count = (int) r.varint();
+            List<Excursions.Excursion> list = new ArrayList<>(count);
+            int prevEnd = 0;
+            for (int k = 0; k < count; k++) {
+                int start = prevEnd + (int) r.varint();
+                int end = start + (int) r.varint();
+                if (end >= n) {
+                    throw new IllegalArgumentException("Excursion past the end of the track");
+                }
+                double lengthM = r.varint();
+                double maxDeviationM = r.varint() / 10.0;
+                long south = Math.round(lat[start] * COORD_SCALE) + r.zigzag();
+                long west = Math.round(lon[start] * COORD_SCALE) + r.zigzag();
+                long north = south + r.varint();
+                long east = west + r.varint();
+                list.add(new Excursions.Excursion(track, chainage, start, end, lengthM, maxDeviationM,
+                        south / COORD_SCALE, west / COORD_SCALE, north / COORD_SCALE, east / COORD_SCALE));
+                prevEnd = end;
+            }
+            if (version >= FORMAT_EXCURSION_TOTALS) {
+                int minPoints = (int) r.varint();
+                int minLengthM = (int) r.varint();
+                int shortRuns = (int) r.varint();
+                int offRoutePoints = (int) r.varint();
+                double offRouteLengthM = r.varint();
+                double maxDeviationM = r.varint() / 10.0;
+                excursions = new Excursions(list, offRoutePoints, offRouteLengthM, maxDeviationM, shortRuns,
+                        minPoints, minLengthM);
+            } else {
+                excursions = new Excursions(list);
+            }
+        }
+        return new DerivedTrack(track, levels, onRoute, seg, chainage, excursions);
+    }
+
+    // ------------------------------------------------------------
+    // Column helpers
+    // ------------------------------------------------------------
+    private static void writePresence(Writer w, boolean[] present) {
+        int count = 0;
+        for (boolean p : present) {
+            if (p) count++;
+        }
+        if (count == 0) {
+            w.put(MODE_NONE);
+        } else if (count == present.length) {
+            w.put(MODE_ALL);
+        } else {
+            w.put(MODE_PARTIAL);
+            writeBits(w, present);
+        }
+    }
+
+    private static boolean[] readPresence(Reader r, int n) {
+        int mode = r.get();
+        boolean[] present = new boolean[n];
+        if (mode == MODE_ALL) {
+            Arrays.fill(present, true);
+        } else if (mode == MODE_PARTIAL) {
+            present = readBits(r, n);
+        }
+        return present;
+    }
+
+    private static void writeBits(Writer w, boolean[] bits) {
+        for (int i = 0; i < bits.length; i += 8) {
+            int b = 0;
+            for (int k = 0; k < 8 && i + k < bits.length; k++) {
+                if (bits[i + k]) b |= 1 << k;
+            }
+            w.put(b);
+        }
+    }
+
+    private static boolean[] readBits(Reader r, int n) {
+        boolean[] bits = new boolean[n];
+        for (int i = 0; i < n; i += 8) {
+            int b = r.get();
+            for (int k = 0; k < 8 && i + k < n; k++) {
+                bits[i + k] = (b & (1 << k)) != 0;
+            }
+        }
+        return bits;
+    }
+
+    // ------------------------------------------------------------
+    // Varint I/O
+    // ------------------------------------------------------------
+    private static final class Writer {
+        private byte[] buf;
+        private int pos;
+
+        Writer(int capacity) {
+            buf = new byte[Math.max(capacity, 16)];
+        }
+
+        void put(int b) {
+            if (pos == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            buf[pos++] = (byte) b;
+        }
+
+        void varint(long v) {
+            while ((v & ~0x7FL) != 0) {
+                put((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            put((int) v);
+        }
+
+        void zigzag(long v) {
+            varint((v << 1) ^ (v >> 63));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buf;
+        private int pos;
+
+        Reader(byte[] buf) {
+            this.buf = buf;
+        }
+
+        int get() {
+            if (pos >= buf.length) {
+                throw new IllegalArgumentException("Packed track truncated");
+            }
+            return buf[pos++] & 0xFF;
+        }
+
+        long varint() {
+            long result = 0;
+            int shift = 0;
+            while (true) {
+                int b = get();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+                if (shift > 63) {
+                    throw new IllegalArgumentException("Malformed varint");
+                }
+            }
+        }
+
+        long zigzag() {
+            long v = varint();
+            return (v >>> 1) ^ -(v & 1);
+        }
+    }
+}
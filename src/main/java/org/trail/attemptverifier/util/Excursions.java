@@ -0,0 +1,314 @@
+package org.trail.attemptverifier.util;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Off-route excursions of an attempt: maximal runs of consecutive points
+ * farther than the verification tolerance from the route. A recording gap
+ * (new GPX segment) ends an excursion.
+ *
+ * Found by a Tracker fed from the DerivedTrack.build sweep, which already
+ * has each point's distance to the route. An on-route point outside an
+ * excursion costs one branch; objects are only created when an excursion
+ * ends. Stored with the derived track (DerivedTrackCodec format 4, totals
+ * and minimum from format 5).
+ *
+ * Minimum: a run shorter than minPoints points or minLengthM meters (GPS
+ * jitter across the tolerance, typically one or two fixes) is not listed.
+ * It still counts in the totals (off-route points, length, max deviation)
+ * and in shortRuns. Tracks stored before format 5 were built without a
+ * minimum (1 point, 0 m).
+ *
+ * Per excursion:
+ *  - first and last point index, and the chainage (m along the route) of
+ *    the route point nearest to each
+ *  - length: track distance from the first to the last point
+ *  - time of the first and last point and the duration between them,
+ *    null without timestamps
+ *  - largest distance from the route and bounding box of the points
+ */
+public final class Excursions {
+
+    private final List<Excursion> excursions;
+    private final int offRoutePoints;
+    private final double offRouteLengthM;
+    private final double maxDeviationM;
+    private final int shortRuns;
+    private final int minPoints;
+    private final int minLengthM;
+
+    /**
+     * Every run listed (no minimum): the totals are taken from the list.
+     */
+    public Excursions(List<Excursion> excursions) {
+        this.excursions = excursions;
+        int points = 0;
+        double lengthM = 0.0;
+        double max = 0.0;
+        for (Excursion e : excursions) {
+            points += e.getPoints();
+            lengthM += e.lengthM;
+            max = Math.max(max, e.maxDeviationM);
+        }
+        this.offRoutePoints = points;
+        this.offRouteLengthM = lengthM;
+        this.maxDeviationM = max;
+        this.shortRuns = 0;
+        this.minPoints = 1;
+        this.minLengthM = 0;
+    }
+
+    /**
+     * @param excursions      runs that reach the minimum
+     * @param offRoutePoints  points of all runs, short ones included
+     * @param offRouteLengthM length of all runs
+     * @param maxDeviationM   largest distance from the route over all runs
+     * @param shortRuns       runs below the minimum
+     */
+    public Excursions(List<Excursion> excursions, int offRoutePoints, double offRouteLengthM,
+                      double maxDeviationM, int shortRuns, int minPoints, int minLengthM) {
+        this.excursions = excursions;
+        this.offRoutePoints = offRoutePoints;
+        this.offRouteLengthM = offRouteLengthM;
+        this.maxDeviationM = maxDeviationM;
+        this.shortRuns = shortRuns;
+        this.minPoints = minPoints;
+        this.minLengthM = minLengthM;
+    }
+
+    /** Listed excursions (runs that reach the minimum). */
+    public int getCount() {
+        return excursions.size();
+    }
+
+    /** Off-route points of all runs, short ones included. */
+    public int getOffRoutePoints() {
+        return offRoutePoints;
+    }
+
+    /** Length of all runs, short ones included. */
+    public double getTotalLengthKm() {
+        return offRouteLengthM / 1000.0;
+    }
+
+    /** Largest distance from the route over all runs, 0 if there are none. */
+    public double getMaxDeviationM() {
+        return maxDeviationM;
+    }
+
+    /** Runs below the minimum, counted in the totals only. */
+    public int getShortRuns() {
+        return shortRuns;
+    }
+
+    public int getMinPoints() {
+        return minPoints;
+    }
+
+    public int getMinLengthM() {
+        return minLengthM;
+    }
+
+    public List<Excursion> getExcursions() {
+        return excursions;
+    }
+
+    /**
+     * One contiguous run of off-route points.
+     */
+    public static final class Excursion {
+        private final int startIndex;
+        private final int endIndex;
+        private final Integer startChainageM;
+        private final Integer endChainageM;
+        private final double lengthM;
+        private final long startTimeMillis;
+        private final long endTimeMillis;
+        private final double maxDeviationM;
+        private final double minLat;
+        private final double minLon;
+        private final double maxLat;
+        private final double maxLon;
+
+        /**
+         * Chainage and times are taken from the track at startIndex / endIndex.
+         *
+         * @param chainageM per-point chainage of the derived track, or null
+         */
+        public Excursion(PackedTrack track, int[] chainageM, int startIndex, int endIndex,
+                         double lengthM, double maxDeviationM,
+                         double minLat, double minLon, double maxLat, double maxLon) {
+            this.startIndex = startIndex;
+            this.endIndex = endIndex;
+            this.startChainageM = chainageM != null ? chainageM[startIndex] : null;
+            this.endChainageM = chainageM != null ? chainageM[endIndex] : null;
+            this.lengthM = lengthM;
+            this.startTimeMillis = track.timesMillis()[startIndex];
+            this.endTimeMillis = track.timesMillis()[endIndex];
+            this.maxDeviationM = maxDeviationM;
+            this.minLat = minLat;
+            this.minLon = minLon;
+            this.maxLat = maxLat;
+            this.maxLon = maxLon;
+        }
+
+        public int getStartIndex() {
+            return startIndex;
+        }
+
+        public int getEndIndex() {
+            return endIndex;
+        }
+
+        public int getPoints() {
+            return endIndex - startIndex + 1;
+        }
+
+        public Integer getStartChainageM() {
+            return startChainageM;
+        }
+
+        public Integer getEndChainageM() {
+            return endChainageM;
+        }
+
+        public double getLengthM() {
+            return lengthM;
+        }
+
+        public Instant getStartTime() {
+            return startTimeMillis != PackedTrack.NO_TIME ? Instant.ofEpochMilli(startTimeMillis) : null;
+        }
+
+        public Instant getEndTime() {
+            return endTimeMillis != PackedTrack.NO_TIME ? Instant.ofEpochMilli(endTimeMillis) : null;
+        }
+
+        /** Seconds from the first to the last point, or null without both timestamps. */
+        public Long getDurationSeconds() {
+            if (startTimeMillis == PackedTrack.NO_TIME || endTimeMillis == PackedTrack.NO_TIME) {
+                return null;
+            }
+            return (endTimeMillis - startTimeMillis) / 1000;
+        }
+
+        public double getMaxDeviationM() {
+            return maxDeviationM;
+        }
+
+        public double getMinLat() {
+            return minLat;
+        }
+
+        public double getMinLon() {
+            return minLon;
+        }
+
+        public double getMaxLat() {
+            return maxLat;
+        }
+
+        public double getMaxLon() {
+            return maxLon;
+        }
+    }
+
+    /**
+     * Collects excursions while the track is swept in order. Call accept
+     * once per point (after its chainage is known), then finish.
+     */
+    public static final class Tracker {
+        private final PackedTrack track;
+        private final int[] chainageM;
+        private final int minPoints;
+        private final int minLengthM;
+        private final double[] lat;
+        private final double[] lon;
+        private final int[] segmentStarts;
+        private final List<Excursion> done = new ArrayList<>();
+
+        private int totalPoints;
+        private double totalLengthM;
+        private double totalMaxDeviationM;
+        private int shortRuns;
+
+        private int nextSegment;
+        private int first = -1;
+        private int last;
+        private double lengthM;
+        private double maxDeviationM;
+        private double minLat, minLon, maxLat, maxLon;
+
+        /** Lists every run. */
+        public Tracker(PackedTrack track, int[] chainageM) {
+            this(track, chainageM, 1, 0);
+        }
+
+        /**
+         * @param minPoints  fewest points of a listed excursion
+         * @param minLengthM shortest listed excursion in meters
+         */
+        public Tracker(PackedTrack track, int[] chainageM, int minPoints, int minLengthM) {
+            this.track = track;
+            this.chainageM = chainageM;
+            this.minPoints = Math.max(1, minPoints);
+            this.minLengthM = Math.max(0, minLengthM);
+            this.lat = track.latitudes();
+            this.lon = track.longitudes();
+            this.segmentStarts = track.segmentStarts();
+        }
+
+        public void accept(int i, boolean onRoute, double deviationM) {
+            boolean segmentStart = nextSegment < segmentStarts.length && segmentStarts[nextSegment] == i;
+            if (segmentStart) {
+                nextSegment++;
+            }
+            if (first >= 0 && (onRoute || segmentStart)) {
+                close();
+            }
+            if (onRoute) {
+                return;
+            }
+
+            if (first < 0) {
+                first = i;
+                lengthM = 0.0;
+                maxDeviationM = deviationM;
+                minLat = maxLat = lat[i];
+                minLon = maxLon = lon[i];
+            } else {
+                lengthM += TrackMetrics.haversineMeters(lat[last], lon[last], lat[i], lon[i]);
+                maxDeviationM = Math.max(maxDeviationM, deviationM);
+                minLat = Math.min(minLat, lat[i]);
+                maxLat = Math.max(maxLat, lat[i]);
+                minLon = Math.min(minLon, lon[i]);
+                maxLon = Math.max(maxLon, lon[i]);
+            }
+            last = i;
+        }
+
+        public Excursions finish() {
+            if (first >= 0) {
+                close();
+            }
+            return new Excursions(done, totalPoints, totalLengthM, totalMaxDeviationM, shortRuns,
+                    minPoints, minLengthM);
+        }
+
+        private void close() {
+            int points = last - first + 1;
+            totalPoints += points;
+            totalLengthM += lengthM;
+            totalMaxDeviationM = Math.max(totalMaxDeviationM, maxDeviationM);
+            if (points >= minPoints && lengthM >= minLengthM) {
+                done.add(new Excursion(track, chainageM, first, last, lengthM, maxDeviationM,
+                        minLat, minLon, maxLat, maxLon));
+            } else {
+                shortRuns++;
+            }
+            first = -1;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package org.trail.attemptverifier.util;
+
+import org.springframework.stereotype.Component;
+import org.trail.attemptverifier.model.TrackPoint;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Garmin FIT (Flexible and Interoperable Data Transfer) decoder for the
+ * activity files written by Garmin, COROS, Suunto and Wahoo watches.
+ *
+ * Streams the binary records once and only decodes what a track needs:
+ *  - record (global message 20): timestamp, position_lat/long in
+ *    semicircles, altitude or enhanced_altitude (scale 5, offset 500 m)
+ *  - event (global message 21): a timer stop makes the next point a
+ *    segmentStart, like a new &lt;trkseg&gt; in GPX
+ * Every other message, developer field and unknown field is skipped by its
+ * size from the definition. Compressed-timestamp headers and big-endian
+ * definitions are handled; chained FIT files are read one after the other.
+ * The header CRC of a 14-byte header is checked unless it is 0 ("not
+ * computed"), since the header carries the data size everything else
+ * relies on. The file CRC is not: a corrupted record still fails on its
+ * structure or on the route checks. The ParseLimits point cap applies as
+ * records are read.
+ */
+@Component
+public class FitReader implements TrackReader {
+
+    /** Seconds between the Unix epoch and the FIT epoch (1989-12-31T00:00:00Z). */
+    private static final long FIT_EPOCH_S = 631_065_600L;
+
+    private static final double SEMICIRCLES_TO_DEG = 180.0 / 2147483648.0;
+
+    private static final int MESG_RECORD = 20;
+    private static final int MESG_EVENT = 21;
+
+    private static final int FIELD_TIMESTAMP = 253;
+    private static final int FIELD_LAT = 0;
+    private static final int FIELD_LON = 1;
+    private static final int FIELD_ALTITUDE = 2;
+    private static final int FIELD_ENHANCED_ALTITUDE = 78;
+    private static final int FIELD_EVENT = 0;
+    private static final int FIELD_EVENT_TYPE = 1;
+
+    private static final int EVENT_TIMER = 0;
+    private static final int EVENT_TYPE_STOP = 1;
+    private static final int EVENT_TYPE_STOP_ALL = 4;
+
+    private static final int[] CRC_TABLE = {
+            0x0000, 0xCC01, 0xD801, 0x1400, 0xF001, 0x3C00, 0x2800, 0xE401,
+            0xA001, 0x6C00, 0x7800, 0xB401, 0x5000, 0x9C01, 0x8801, 0x4400
+    };
+
+    private final ParseLimits limits;
+
+    public FitReader(ParseLimits limits) {
+        this.limits = limits;
+    }
+
+    @Override
+    public String format() {
+        return "FIT";
+    }
+
+    /**
+     * File header: size byte 12 or 14, ".FIT" at bytes 8–11.
+     */
+    @Override
+    public boolean accepts(byte[] head, int length) {
+        return length >= 12
+                && (head[0] == 12 || head[0] == 14)
+                && head[8] == '.' && head[9] == 'F' && head[10] == 'I' && head[11] == 'T';
+    }
+
+    @Override
+    public List<TrackPoint> read(InputStream inputStream) {
+        List<TrackPoint> points = new ArrayList<>();
+        try {
+            Input in = new Input(inputStream instanceof BufferedInputStream
+                    ? inputStream : new BufferedInputStream(inputStream));
+            int files = 0;
+            int first;
+            while ((first = in.optionalU8()) >= 0) {
+                if (files > 0 && first != 12 && first != 14) {
+                    break; // padding after the last chained file
+                }
+                readFile(in, first, points);
+                files++;
+            }
+            if (files == 0) {
+                throw new IOException("empty file");
+            }
+        } catch (ParseLimits.LimitExceededException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[FitReader] ERROR decoding FIT: " + e.getMessage());
+            return new ArrayList<>();
+        }
+
+        System.out.println("[FitReader] Returning " + points.size() + " valid TrackPoint(s).");
+        return points;
+    }
+
+    // ------------------------------------------------------------
+    // File and record decoding
+    // ------------------------------------------------------------
+
+    private void readFile(Input in, int headerSize, List<TrackPoint> points) throws IOException {
+        if (headerSize != 12 && headerSize != 14) {
+            throw new IOException("bad header size " + headerSize);
+        }
+        byte[] header = new byte[headerSize - 1];
+        in.readFully(header, header.length);
+        long dataSize = (header[3] & 0xFFL) | (header[4] & 0xFFL) << 8
+                | (header[5] & 0xFFL) << 16 | (header[6] & 0xFFL) << 24;
+        if (header[7] != '.' || header[8] != 'F' || header[9] != 'I' || header[10] != 'T') {
+            throw new IOException("missing .FIT signature");
+        }
+        if (headerSize == 14) {
+            int stored = (header[11] & 0xFF) | (header[12] & 0xFF) << 8;
+            if (stored != 0 && stored != crc(crc(0, headerSize), header, 11)) {
+                throw new IOException("header CRC mismatch");
+            }
+        }
+
+        Definition[] definitions = new Definition[16];
+        byte[] message = new byte[256];
+        long timestamp = -1;      // last FIT timestamp, for compressed headers
+        boolean segmentStart = true;
+
+        long end = in.position() + dataSize;
+        while (in.position() < end) {
+            int h = in.u8();
+
+            if ((h & 0x80) != 0) {
+                // Compressed timestamp header: data message, 5-bit time offset
+                Definition def = definition(definitions, (h >> 5) & 0x3);
+                message = in.readMessage(message, def.size);
+                if (timestamp >= 0) {
+                    int offset = h & 0x1F;
+                    long t = (timestamp & ~0x1FL) + offset;
+                    if (offset < (timestamp & 0x1F)) {
+                        t += 0x20;
+                    }
+                    timestamp = t;
+                }
+                if (def.global == MESG_RECORD) {
+                    segmentStart = addRecord(def, message, timestamp, segmentStart, points);
+                    limits.checkPoints(points.size());
+                }
+            } else if ((h & 0x40) != 0) {
+                definitions[h & 0x0F] = readDefinition(in, (h & 0x20) != 0);
+            } else {
+                Definition def = definition(definitions, h & 0x0F);
+                message = in.readMessage(message, def.size);
+                if (def.timestamp >= 0) {
+                    long t = def.u32(message, def.timestamp);
+                    if (t != 0xFFFFFFFFL) {
+                        timestamp = t;
+                    }
+                }
+                if (def.global == MESG_RECORD) {
+                    segmentStart = addRecord(def, message, timestamp, segmentStart, points);
+                    limits.checkPoints(points.size());
+                } else if (def.global == MESG_EVENT && def.event >= 0 && def.eventType >= 0
+                        && (message[def.event] & 0xFF) == EVENT_TIMER) {
+                    int type = message[def.eventType] & 0xFF;
+                    if (type == EVENT_TYPE_STOP || type == EVENT_TYPE_STOP_ALL) {
+                        segmentStart = true;
+                    }
+                }
+            }
+        }
+        in.skip(2); // file CRC
+    }
+
+    /**
+     * Adds the point of a record message if it has a position. Returns the
+     * segmentStart flag for the next point.
+     */
+    private static boolean addRecord(Definition def, byte[] m, long timestamp,
+                                     boolean segmentStart, List<TrackPoint> points) {
+        if (def.lat < 0 || def.lon < 0) {
+            return segmentStart;
+        }
+        int lat = (int) def.u32(m, def.lat);
+        int lon = (int) def.u32(m, def.lon);
+        if (lat == Integer.MAX_VALUE || lon == Integer.MAX_VALUE) {
+            return segmentStart; // no GPS fix
+        }
+
+        Double ele = null;
+        if (def.enhancedAltitude >= 0) {
+            long v = def.u32(m, def.enhancedAltitude);
+            if (v != 0xFFFFFFFFL) ele = v / 5.0 - 500.0;
+        }
+        if (ele == null && def.altitude >= 0) {
+            int v = def.u16(m, def.altitude);
+            if (v != 0xFFFF) ele = v / 5.0 - 500.0;
+        }
+
+        long time = timestamp >= 0 ? (FIT_EPOCH_S + timestamp) * 1000L : TrackPoint.NO_TIME;
+
+        TrackPoint point = new TrackPoint(lat * SEMICIRCLES_TO_DEG, lon * SEMICIRCLES_TO_DEG, ele, time);
+        point.setSegmentStart(segmentStart);
+        points.add(point);
+        return false;
+    }
+
+    private static Definition readDefinition(Input in, boolean developerData) throws IOException {
+        in.u8(); // reserved
+        boolean bigEndian = in.u8() == 1;
+        int b0 = in.u8();
+        int b1 = in.u8();
+        Definition def = new Definition(bigEndian ? (b0 << 8) | b1 : (b1 << 8) | b0, bigEndian);
+
+        int fields = in.u8();
+        int offset = 0;
+        for (int f = 0; f < fields; f++) {
+            int num = in.u8();
+            int size = in.u8();
+            in.u8(); // base type
+            def.field(num, size, offset);
+            offset += size;
+        }
+        if (developerData) {
+            int devFields = in.u8();
+            for (int f = 0; f < devFields; f++) {
+                in.u8();
+                offset += in.u8();
+                in.u8();
+            }
+        }
+        def.size = offset;
+        return def;
+    }
+
+    /** FIT CRC-16 of the first length bytes of data, continuing from crc. */
+    private static int crc(int crc, byte[] data, int length) {
+        for (int i = 0; i < length; i++) {
+            crc = crc(crc, data[i] & 0xFF);
+        }
+        return crc;
+    }
+
+    private static int crc(int crc, int b) {
+        int tmp = CRC_TABLE[crc & 0xF];
+        crc = (crc >> 4) & 0x0FFF;
+        crc = crc ^ tmp ^ CRC_TABLE[b & 0xF];
+        tmp = CRC_TABLE[crc & 0xF];
+        crc = (crc >> 4) & 0x0FFF;
+        return crc ^ tmp ^ CRC_TABLE[(b >> 4) & 0xF];
+    }
+
+    private static Definition definition(Definition[] definitions, int local) throws IOException {
+        Definition def = definitions[local];
+        if (def == null) {
+            throw new IOException("data message before its definition (local type " + local + ")");
+        }
+        return def;
+    }
+
+    /**
+     * Layout of one local message type: total size and the byte offsets of
+     * the fields we read (-1 when absent or of an unexpected size).
+     */
+    private static final class Definition {
+        final int global;
+        final boolean bigEndian;
+        int size;
+        int timestamp = -1;
+        int lat = -1;
+        int lon = -1;
+        int altitude = -1;
+        int enhancedAltitude = -1;
+        int event = -1;
+        int eventType = -1;
+
+        Definition(int global, boolean bigEndian) {
+            this.global = global;
+            this.bigEndian = bigEndian;
+        }
+
+        void field(int num, int size, int offset) {
+            if (num == FIELD_TIMESTAMP && size == 4) {
+                timestamp = offset;
+            } else if (global == MESG_RECORD) {
+                if (num == FIELD_LAT && size == 4) lat = offset;
+                else if (num == FIELD_LON && size == 4) lon = offset;
+                else if (num == FIELD_ALTITUDE && size == 2) altitude = offset;
+                else if (num == FIELD_ENHANCED_ALTITUDE && size == 4) enhancedAltitude = offset;
+            } else if (global == MESG_EVENT) {
+                if (num == FIELD_EVENT && size == 1) event = offset;
+                else if (num == FIELD_EVENT_TYPE && size == 1) eventType = offset;
+            }
+        }
+
+        long u32(byte[] m, int o) {
+            return bigEndian
+                    ? (m[o] & 0xFFL) << 24 | (m[o + 1] & 0xFFL) << 16 | (m[o + 2] & 0xFFL) << 8 | (m[o + 3] & 0xFFL)
+                    : (m[o + 3] & 0xFFL) << 24 | (m[o + 2] & 0xFFL) << 16 | (m[o + 1] & 0xFFL) << 8 | (m[o] & 0xFFL);
+        }
+
+        int u16(byte[] m, int o) {
+            return bigEndian
+                    ? (m[o] & 0xFF) << 8 | (m[o + 1] & 0xFF)
+                    : (m[o + 1] & 0xFF) << 8 | (m[o] & 0xFF);
+        }
+    }
+
+    /**
+     * Byte input with a position counter (the data size in the file header
+     * is the only end-of-records marker).
+     */
+    private static final class Input {
+        private final InputStream in;
+        private long position;
+
+        Input(InputStream in) {
+            this.in = in;
+        }
+
+        long position() {
+            return position;
+        }
+
+        /** Next byte, or -1 at a clean end of input. */
+        int optionalU8() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                position++;
+            }
+            return b;
+        }
+
+        int u8() throws IOException {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("truncated FIT file");
+            }
+            position++;
+            return b;
+        }
+
+        void readFully(byte[] buf, int length) throws IOException {
+            int n = in.readNBytes(buf, 0, length);
+            position += n;
+            if (n < length) {
+                throw new EOFException("truncated FIT file");
+            }
+        }
+
+        /** Reads a message of the given size, growing buf if needed. */
+        byte[] readMessage(byte[] buf, int size) throws IOException {
+            byte[] target = size <= buf.length ? buf : new byte[size];
+            readFully(target, size);
+            return target;
+        }
+
+        void skip(int n) throws IOException {
+            for (int i = 0; i < n; i++) {
+                if (optionalU8() < 0) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.trail.attemptverifier.util;
+
+import java.util.Arrays;
+
+/**
+ * Geohash cells as plain longs: latitude and longitude bisected
+ * alternately, longitude first, 5 bits per base-32 character.
+ *
+ * Working with the bits instead of the string keeps cell sets sortable
+ * long[] arrays; toBase32 gives the familiar form ("u0k1m9") for output.
+ *
+ * Cell size per precision (characters):
+ *  - 5: ~4.9 km x 4.9 km
+ *  - 6: ~1.2 km x 0.61 km
+ *  - 7: ~153 m x 153 m
+ */
+public final class Geohash {
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private Geohash() {
+    }
+
+    /**
+     * Cell of a coordinate at the given precision (1–12 characters).
+     */
+    public static long encode(double lat, double lon, int precision) {
+        double latLo = -90.0, latHi = 90.0;
+        double lonLo = -180.0, lonHi = 180.0;
+        long bits = 0;
+        int total = precision * 5;
+        for (int i = 0; i < total; i++) {
+            bits <<= 1;
+            if ((i & 1) == 0) {
+                double mid = (lonLo + lonHi) / 2;
+                if (lon >= mid) {
+                    bits |= 1;
+                    lonLo = mid;
+                } else {
+                    lonHi = mid;
+                }
+            } else {
+                double mid = (latLo + latHi) / 2;
+                if (lat >= mid) {
+                    bits |= 1;
+                    latLo = mid;
+                } else {
+                    latHi = mid;
+                }
+            }
+        }
+        return bits;
+    }
+
+    /** Base-32 string of a cell. */
+    public static String toBase32(long cell, int precision) {
+        char[] out = new char[precision];
+        for (int i = precision - 1; i >= 0; i--) {
+            out[i] = BASE32[(int) (cell & 0x1F)];
+            cell >>>= 5;
+        }
+        return new String(out);
+    }
+
+    /**
+     * Cells at the given precision that cover the box, sorted, or null if
+     * there would be more than maxCells (the caller then tries a coarser
+     * precision).
+     */
+    public static long[] covering(double minLat, double minLon, double maxLat, double maxLon,
+                                  int precision, int maxCells) {
+        int total = precision * 5;
+        int lonBits = (total + 1) / 2;
+        int latBits = total / 2;
+        double height = 180.0 / (1L << latBits);
+        double width = 360.0 / (1L << lonBits);
+        long lat0 = index(minLat + 90.0, height, latBits);
+        long lat1 = index(maxLat + 90.0, height, latBits);
+        long lon0 = index(minLon + 180.0, width, lonBits);
+        long lon1 = index(maxLon + 180.0, width, lonBits);
+
+        long count = (lat1 - lat0 + 1) * (lon1 - lon0 + 1);
+        if (count > maxCells) {
+            return null;
+        }
+        long[] cells = new long[(int) count];
+        int n = 0;
+        for (long la = lat0; la <= lat1; la++) {
+            for (long lo = lon0; lo <= lon1; lo++) {
+                cells[n++] = fromIndexes(la, lo, precision);
+            }
+        }
+        Arrays.sort(cells);
+        return cells;
+    }
+
+    /**
+     * First cell at precision `finer` inside a cell of precision
+     * `precision`; with rangeEnd, the contiguous block of its sub-cells.
+     */
+    public static long rangeStart(long cell, int precision, int finer) {
+        return cell << (5 * (finer - precision));
+    }
+
+    public static long rangeEnd(long cell, int precision, int finer) {
+        return ((cell + 1) << (5 * (finer - precision))) - 1;
+    }
+
+    /** The enclosing cell at a coarser precision. */
+    public static long parent(long cell, int precision, int coarser) {
+        return cell >>> (5 * (precision - coarser));
+    }
+
+    /**
+     * South-west corner and size of a cell: {lat, lon, heightDeg, widthDeg}.
+     */
+    public static double[] bounds(long cell, int precision) {
+        int total = precision * 5;
+        int lonBits = (total + 1) / 2;
+        int latBits = total / 2;
+        long lonIdx = 0, latIdx = 0;
+        for (int i = 0; i < total; i++) {
+            long bit = (cell >>> (total - 1 - i)) & 1;
+            if ((i & 1) == 0) {
+                lonIdx = (lonIdx << 1) | bit;
+            } else {
+                latIdx = (latIdx << 1) | bit;
+            }
+        }
+        double height = 180.0 / (1L << latBits);
+        double width = 360.0 / (1L << lonBits);
+        return new double[]{-90.0 + latIdx * height, -180.0 + lonIdx * width, height, width};
+    }
+
+    private static long fromIndexes(long latIdx, long lonIdx, int precision) {
+        int total = precision * 5;
+        int lonBit = (total + 1) / 2 - 1;
+        int latBit = total / 2 - 1;
+        long bits = 0;
+        for (int i = 0; i < total; i++) {
+            bits <<= 1;
+            if ((i & 1) == 0) {
+                bits |= (lonIdx >>> lonBit--) & 1;
+            } else {
+                bits |= (latIdx >>> latBit--) & 1;
+            }
+        }
+        return bits;
+    }
+
+    private static long index(double offset, double size, int bits) {
+        long max = (1L << bits) - 1;
+        long i = (long) Math.floor(offset / size);
+        return i < 0 ? 0 : Math.min(i, max);
+    }
+}
@@ -1,77 +1,249 @@
 package org.trail.attemptverifier.util;
 
 import org.springframework.stereotype.Component;
+import org.trail.attemptverifier.model.Checkpoint;
 import org.trail.attemptverifier.model.TrackPoint;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.*;
 
 import java.io.InputStream;
-import java.time.Instant;
-import java.time.format.DateTimeParseException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Robust GPX Parser using DOM.
+ * Robust GPX Parser.
  *
- * Why DOM instead of regex?
- *  - Handles namespaces correctly
+ * Why an XML parser instead of regex?
+ *  - Handles namespaces correctly (elements are matched by local name, so
+ *    prefixed files like &lt;ns0:trkpt&gt; parse too)
  *  - Properly handles nested tags
  *  - Rejects malformed XML early
  *  - Matches industrial GPX tool output
  *
+ * Track points are streamed with StAX: no DOM is built for an upload, and
+ * the ParseLimits caps (points, nesting depth, text length) are checked as
+ * the file is read. Coordinates, elevations and times are decoded from the
+ * reused text buffer by XmlValueDecoder, without a String per value.
+ * Route waypoints still use DOM (small, trusted file).
+ *
+ * Hardening: both factories are created and configured once. DOCTYPE
+ * declarations are refused (DOM) or never processed (StAX), and external
+ * entities, DTDs and XInclude are off, so entity-expansion uploads fail on
+ * their first entity reference. DocumentBuilders are reused per thread.
+ *
+ * Segments: every &lt;trkseg&gt; (and so every &lt;trk&gt;) starts with a
+ * point flagged segmentStart, set in the same streaming pass.
+ *
  * Demonstrates:
  *  - Abstraction (service layer depends only on parse() result)
  *  - Encapsulation (implementation hidden)
  */
 @Component
-public class GpxParser {
+public class GpxParser implements TrackReader {
+
+    private final ParseLimits limits;
+    private final XMLInputFactory staxFactory;
+    private final ThreadLocal<DocumentBuilder> domBuilder;
+
+    public GpxParser(ParseLimits limits) {
+        this.limits = limits;
+
+        staxFactory = XMLInputFactory.newInstance();
+        staxFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        staxFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        staxFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
+        domFactory.setNamespaceAware(true);
+        domFactory.setXIncludeAware(false);
+        domFactory.setExpandEntityReferences(false);
+        try {
+            domFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            domFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            domFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            domFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            domFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("XML parser does not support secure processing", e);
+        }
+        domFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        domFactory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+
+        domBuilder = ThreadLocal.withInitial(() -> {
+            try {
+                return domFactory.newDocumentBuilder();
+            } catch (ParserConfigurationException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Override
+    public String format() {
+        return "GPX";
+    }
 
+    /**
+     * A gpx root element (&lt;gpx or a prefixed &lt;ns:gpx) within the sniffed
+     * bytes. TrackFileReader also falls back to GPX when no reader accepts a file.
+     */
+    @Override
+    public boolean accepts(byte[] head, int length) {
+        String s = new String(head, 0, length, StandardCharsets.ISO_8859_1);
+        return s.contains("<gpx") || s.contains(":gpx ");
+    }
+
+    @Override
+    public List<TrackPoint> read(InputStream in) {
+        return parse(in);
+    }
+
+    /**
+     * Track points in document order. Malformed XML gives an empty list;
+     * crossing a ParseLimits cap throws ParseLimits.LimitExceededException.
+     */
     public List<TrackPoint> parse(InputStream inputStream) {
         List<TrackPoint> points = new ArrayList<>();
+        XMLStreamReader xml = null;
 
         try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setNamespaceAware(true);
+            xml = staxFactory.createXMLStreamReader(inputStream);
 
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc = builder.parse(inputStream);
+            StringBuilder text = new StringBuilder(32);
+            int depth = 0;
+            int textChars = 0;
+            int pointDepth = -1;         // depth of the open <trkpt>, -1 outside
+            boolean collecting = false;  // inside <ele> or <time> of a point
+            boolean segmentStart = true;
+            double lat = Double.NaN;
+            double lon = Double.NaN;
+            Double ele = null;
+            long time = XmlValueDecoder.NO_TIME;
+
+            while (xml.hasNext()) {
+                int event = xml.next();
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        limits.checkDepth(++depth);
+                        textChars = 0;
+                        String name = xml.getLocalName();
+                        if (pointDepth < 0) {
+                            if ("trkpt".equals(name)) {
+                                pointDepth = depth;
+                                lat = XmlValueDecoder.parseDouble(xml.getAttributeValue(null, "lat"));
+                                lon = XmlValueDecoder.parseDouble(xml.getAttributeValue(null, "lon"));
+                                ele = null;
+                                time = XmlValueDecoder.NO_TIME;
+                            } else if ("trkseg".equals(name) || "trk".equals(name)) {
+                                segmentStart = true;
+                            }
+                        } else if (depth == pointDepth + 1 && ("ele".equals(name) || "time".equals(name))) {
+                            collecting = true;
+                            text.setLength(0);
+                        }
+                        break;
+
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        textChars += xml.getTextLength();
+                        limits.checkText(textChars);
+                        if (collecting) {
+                            text.append(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+                        }
+                        break;
 
-            NodeList trkptNodes = doc.getElementsByTagName("trkpt");
-            System.out.println("[GpxParser] DOM found " + trkptNodes.getLength() + " trkpt nodes.");
+                    case XMLStreamConstants.END_ELEMENT:
+                        textChars = 0;
+                        if (collecting) {
+                            collecting = false;
+                            if ("ele".equals(xml.getLocalName())) {
+                                double v = XmlValueDecoder.parseDouble(text);
+                                ele = Double.isNaN(v) ? null : v;
+                            } else {
+                                time = XmlValueDecoder.parseEpochMillis(text);
+                            }
+                        } else if (depth == pointDepth) {
+                            pointDepth = -1;
+                            // Latitude + Longitude (required by GPX spec); skip corrupted points
+                            if (!Double.isNaN(lat) && !Double.isNaN(lon)) {
+                                TrackPoint point = new TrackPoint(lat, lon, ele, time);
+                                point.setSegmentStart(segmentStart);
+                                segmentStart = false;
+                                points.add(point);
+                                limits.checkPoints(points.size());
+                            }
+                        }
+                        depth--;
+                        break;
 
-            for (int i = 0; i < trkptNodes.getLength(); i++) {
-                Node node = trkptNodes.item(i);
+                    default:
+                        break;
+                }
+            }
+
+        } catch (XMLStreamException e) {
+            System.err.println("[GpxParser] ERROR parsing GPX via StAX: " + e.getMessage());
+            points = new ArrayList<>();
+        } finally {
+            if (xml != null) {
+                try {
+                    xml.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+
+        System.out.println("[GpxParser] Returning " + points.size() + " valid TrackPoint(s).");
+        return points;
+    }
+
+    /**
+     * Parses the top-level &lt;wpt&gt; elements in document order
+     * (used for route checkpoints). Chainage is left at 0.
+     */
+    public List<Checkpoint> parseWaypoints(InputStream inputStream) {
+        List<Checkpoint> waypoints = new ArrayList<>();
+
+        try {
+            DocumentBuilder builder = domBuilder.get();
+            builder.reset();
+            Document doc = builder.parse(inputStream);
+
+            NodeList wptNodes = doc.getElementsByTagNameNS("*", "wpt");
+            for (int i = 0; i < wptNodes.getLength(); i++) {
+                Node node = wptNodes.item(i);
                 if (node.getNodeType() != Node.ELEMENT_NODE) continue;
 
                 Element el = (Element) node;
-
-                // Latitude + Longitude (required by GPX spec)
                 Double lat = parseDoubleAttr(el, "lat");
                 Double lon = parseDoubleAttr(el, "lon");
-
                 if (lat == null || lon == null) {
-                    continue; // skip corrupted points
+                    continue;
                 }
 
-                // Elevation (optional)
-                Double ele = parseChildDouble(el, "ele");
-
-                // Time (optional)
-                Instant time = parseChildTime(el, "time");
+                NodeList names = el.getElementsByTagNameNS("*", "name");
+                String name = names.getLength() > 0
+                        ? names.item(0).getTextContent().trim()
+                        : "WPT " + (waypoints.size() + 1);
 
-                points.add(new TrackPoint(lat, lon, ele, time));
+                waypoints.add(new Checkpoint(waypoints.size() + 1, name, lat, lon, 0.0));
             }
 
         } catch (Exception e) {
-            System.err.println("[GpxParser] ERROR parsing GPX via DOM: " + e.getMessage());
+            System.err.println("[GpxParser] ERROR parsing GPX waypoints via DOM: " + e.getMessage());
         }
 
-        System.out.println("[GpxParser] Returning " + points.size() + " valid TrackPoint(s).");
-        return points;
+        return waypoints;
     }
 
     // -------------------------
@@ -80,34 +252,7 @@ public class GpxParser {
 
     private Double parseDoubleAttr(Element el, String attrName) {
         if (!el.hasAttribute(attrName)) return null;
-        try {
-            return Double.parseDouble(el.getAttribute(attrName));
-        } catch (NumberFormatException ignored) {
-            return null;
-        }
-    }
-
-    private Double parseChildDouble(Element parent, String tagName) {
-        NodeList list = parent.getElementsByTagName(tagName);
-        if (list.getLength() == 0) return null;
-
-        String val = list.item(0).getTextContent().trim();
-        try {
-            return Double.parseDouble(val);
-        } catch (Exception ignored) {
-            return null;
-        }
-    }
-
-    private Instant parseChildTime(Element parent, String tagName) {
-        NodeList list = parent.getElementsByTagName(tagName);
-        if (list.getLength() == 0) return null;
-
-        String val = list.item(0).getTextContent().trim();
-        try {
-            return Instant.parse(val);
-        } catch (DateTimeParseException ignored) {
-            return null;
-        }
+        double v = XmlValueDecoder.parseDouble(el.getAttribute(attrName));
+        return Double.isNaN(v) ? null : v;
     }
 }
@@ -0,0 +1,556 @@
+package org.trail.attemptverifier.util;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.trail.attemptverifier.model.TrackPoint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * GPX track parsing for file-backed sources (the official route, stored
+ * upload blobs): the file is memory-mapped and its bytes are scanned in
+ * place, without an InputStream, a char decoder or a copy.
+ *
+ * Files larger than chunk-bytes are split at &lt;trkpt boundaries into up to
+ * `threads` chunks that are scanned in parallel and concatenated in order.
+ * A chunk owns the points whose start tag lies in it; a &lt;trkseg&gt; seen
+ * after its last point carries over to the next chunk's first point.
+ *
+ * The scanner only understands what a track needs: &lt;trkpt lat lon&gt;
+ * (any namespace prefix), its direct &lt;ele&gt; / &lt;time&gt; children and
+ * &lt;trk&gt; / &lt;trkseg&gt; starts. Comments, CDATA, processing
+ * instructions and DOCTYPEs between elements are skipped, never
+ * interpreted, and values are decoded by XmlValueDecoder over a view of the
+ * mapped bytes. It does not check well-formedness, so it is not used for
+ * uploads (those went through GpxParser when they were accepted).
+ *
+ * Whole files are handed to GpxParser instead when the scan finds no
+ * points, or when a value is not plain text: an &lt;ele&gt; / &lt;time&gt;
+ * holding CDATA, a comment or an entity reference, or a &lt;trkpt&gt; tag
+ * with an entity in it. Those decode differently byte by byte, and no
+ * device writes them, so the rare file pays for a second read rather than
+ * the scanner growing an entity decoder.
+ */
+@Component
+public class MappedGpxReader {
+
+    private static final byte[] TRKPT = ascii("trkpt");
+    private static final byte[] TRKSEG = ascii("trkseg");
+    private static final byte[] TRK = ascii("trk");
+    private static final byte[] ELE = ascii("ele");
+    private static final byte[] TIME = ascii("time");
+    private static final byte[] LAT = ascii("lat");
+    private static final byte[] LON = ascii("lon");
+
+    /** How far back a chunk boundary looks for an unclosed comment or CDATA section. */
+    private static final int MARKUP_LOOKBACK = 64 * 1024;
+
+    private final GpxParser gpxParser;
+    private final ParseLimits limits;
+    private final int chunkBytes;
+    private final int threads;
+    private final ExecutorService workers;
+
+    public MappedGpxReader(GpxParser gpxParser,
+                           ParseLimits limits,
+                           @Value("${verifier.parse.mapped.chunk-bytes:1048576}") int chunkBytes,
+                           @Value("${verifier.parse.mapped.threads:0}") int threads) {
+        this.gpxParser = gpxParser;
+        this.limits = limits;
+        this.chunkBytes = Math.max(64 * 1024, chunkBytes);
+        // Default: all cores, at most 8 — a parse is short and bursty
+        this.threads = threads > 0
+                ? threads
+                : Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger n = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.threads, r -> {
+            Thread t = new Thread(r, "gpx-scan-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Maps a whole file read-only. The mapping is released when the buffer
+     * is garbage collected.
+     */
+    public static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("file too large to map: " + size + " bytes");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+    }
+
+    public List<TrackPoint> read(Path file) throws IOException {
+        return read(map(file), file);
+    }
+
+    /**
+     * Track points of a GPX file in document order.
+     *
+     * @param data the mapped content of file
+     * @param file the file itself, re-read through GpxParser if the scan finds no points
+     */
+    public List<TrackPoint> read(ByteBuffer data, Path file) throws IOException {
+        int size = data.limit();
+        int[] starts = chunkStarts(data, size);
+
+        List<Chunk> chunks = new ArrayList<>(starts.length);
+        if (starts.length == 1) {
+            chunks.add(scan(data, 0, size, true));
+        } else {
+            List<Future<Chunk>> futures = new ArrayList<>(starts.length);
+            for (int k = 0; k < starts.length; k++) {
+                int from = starts[k];
+                int to = k + 1 < starts.length ? starts[k + 1] : size;
+                boolean first = k == 0;
+                futures.add(workers.submit(() -> scan(data, from, to, first)));
+            }
+            for (Future<Chunk> future : futures) {
+                chunks.add(await(future));
+            }
+        }
+
+        for (Chunk chunk : chunks) {
+            if (chunk.unsupported) {
+                return reparse(file, "Markup or entities in a track point value");
+            }
+        }
+        List<TrackPoint> points = merge(chunks);
+        if (points.isEmpty()) {
+            return reparse(file, "No track points found by the byte scanner");
+        }
+
+        System.out.println("[MappedGpxReader] Returning " + points.size() + " valid TrackPoint(s) from "
+                + chunks.size() + " chunk(s).");
+        return points;
+    }
+
+    private List<TrackPoint> reparse(Path file, String reason) throws IOException {
+        System.err.println("[MappedGpxReader] " + reason + ", re-reading " + file.getFileName() + " with GpxParser.");
+        try (InputStream in = Files.newInputStream(file)) {
+            return gpxParser.parse(in);
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Chunking
+    // ------------------------------------------------------------
+
+    /**
+     * Chunk start offsets: 0, then the first &lt;trkpt at or after each even
+     * split of the file. Package-private for tests.
+     */
+    int[] chunkStarts(ByteBuffer data, int size) {
+        int count = (int) Math.min(threads, Math.max(1L, size / chunkBytes));
+        int[] starts = new int[count];
+        int n = 1;
+        for (int k = 1; k < count; k++) {
+            int pos = nextPointTag(data, (int) ((long) size * k / count), size);
+            if (pos < 0) {
+                break;
+            }
+            if (pos > starts[n - 1]) {
+                starts[n++] = pos;
+            }
+        }
+        return n == count ? starts : Arrays.copyOf(starts, n);
+    }
+
+    /**
+     * Offset of the next "&lt;trkpt" or "&lt;prefix:trkpt" start tag that is
+     * not inside a comment or CDATA section, or -1.
+     */
+    private static int nextPointTag(ByteBuffer data, int from, int size) {
+        for (int lt = indexOf(data, (byte) '<', from, size); lt >= 0; lt = indexOf(data, (byte) '<', lt + 1, size)) {
+            int nameStart = lt + 1;
+            int nameEnd = nameEnd(data, nameStart, size);
+            if (nameEnd > nameStart && equalsAscii(data, localStart(data, nameStart, nameEnd), nameEnd, TRKPT)
+                    && !insideMarkup(data, lt)) {
+                return lt;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether pos lies in a comment or CDATA section opened at most
+     * MARKUP_LOOKBACK bytes earlier: the nearest opener before it comes
+     * after the nearest closer.
+     */
+    private static boolean insideMarkup(ByteBuffer data, int pos) {
+        int floor = Math.max(0, pos - MARKUP_LOOKBACK);
+        for (int i = pos - 1; i >= floor; i--) {
+            byte c = data.get(i);
+            if (c == '>' && i >= 2 && (data.get(i - 1) == '-' && data.get(i - 2) == '-'
+                    || data.get(i - 1) == ']' && data.get(i - 2) == ']')) {
+                return false;
+            }
+            if (c == '<' && (startsWith(data, i, pos, "<!--") || startsWith(data, i, pos, "<![CDATA["))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<TrackPoint> merge(List<Chunk> chunks) {
+        int total = 0;
+        for (Chunk chunk : chunks) {
+            total += chunk.points.size();
+        }
+        limits.checkPoints(total);
+
+        List<TrackPoint> points = new ArrayList<>(total);
+        boolean pendingSegment = false;
+        for (Chunk chunk : chunks) {
+            if (chunk.points.isEmpty()) {
+                pendingSegment |= chunk.openSegment;
+                continue;
+            }
+            if (pendingSegment) {
+                chunk.points.get(0).setSegmentStart(true);
+            }
+            pendingSegment = chunk.openSegment;
+            points.addAll(chunk.points);
+        }
+        return points;
+    }
+
+    private static Chunk await(Future<Chunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while scanning GPX", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ParseLimits.LimitExceededException limit) {
+                throw limit;
+            }
+            throw new IOException("GPX scan failed: " + e.getCause(), e.getCause());
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Scanning
+    // ------------------------------------------------------------
+
+    /**
+     * Points whose start tag lies in [from, to). The last point may be read
+     * past `to`.
+     */
+    private Chunk scan(ByteBuffer data, int from, int to, boolean first) {
+        int size = data.limit();
+        List<TrackPoint> points = new ArrayList<>(Math.max(16, (to - from) / 128));
+        AsciiView text = new AsciiView(data);
+
+        boolean segmentStart = first;
+        boolean inPoint = false;
+        int depth = 0;
+        double lat = Double.NaN;
+        double lon = Double.NaN;
+        Double ele = null;
+        long time = XmlValueDecoder.NO_TIME;
+
+        int pos = from;
+        while (true) {
+            int lt = indexOf(data, (byte) '<', pos, size);
+            if (lt < 0 || (!inPoint && lt >= to)) {
+                break;
+            }
+            byte next = lt + 1 < size ? data.get(lt + 1) : 0;
+
+            if (next == '!' || next == '?') {
+                pos = skipMarkup(data, lt, size);
+                if (pos < 0) break;
+                continue;
+            }
+
+            boolean closing = next == '/';
+            int nameStart = closing ? lt + 2 : lt + 1;
+            int nameEnd = nameEnd(data, nameStart, size);
+            int localStart = localStart(data, nameStart, nameEnd);
+            int gt = tagEnd(data, nameEnd, size);
+            if (gt < 0) {
+                break;
+            }
+            pos = gt + 1;
+
+            if (closing) {
+                if (inPoint && --depth == 0) {
+                    inPoint = false;
+                    segmentStart = emit(points, lat, lon, ele, time, segmentStart);
+                }
+                continue;
+            }
+
+            boolean selfClosing = data.get(gt - 1) == '/';
+            if (!inPoint) {
+                if (equalsAscii(data, localStart, nameEnd, TRKPT)) {
+                    if (indexOf(data, (byte) '&', nameEnd, gt) >= 0) {
+                        return Chunk.UNSUPPORTED;
+                    }
+                    lat = attribute(data, nameEnd, gt, LAT, text);
+                    lon = attribute(data, nameEnd, gt, LON, text);
+                    ele = null;
+                    time = XmlValueDecoder.NO_TIME;
+                    if (selfClosing) {
+                        segmentStart = emit(points, lat, lon, ele, time, segmentStart);
+                    } else {
+                        inPoint = true;
+                        depth = 1;
+                    }
+                } else if (equalsAscii(data, localStart, nameEnd, TRKSEG)
+                        || equalsAscii(data, localStart, nameEnd, TRK)) {
+                    segmentStart = true;
+                }
+            } else if (!selfClosing) {
+                depth++;
+                if (depth == 2) {
+                    boolean isEle = equalsAscii(data, localStart, nameEnd, ELE);
+                    if (isEle || equalsAscii(data, localStart, nameEnd, TIME)) {
+                        int close = indexOf(data, (byte) '<', pos, size);
+                        if (close < 0) break;
+                        if (close + 1 >= size || data.get(close + 1) != '/'
+                                || indexOf(data, (byte) '&', pos, close) >= 0) {
+                            return Chunk.UNSUPPORTED;
+                        }
+                        text.set(pos, close);
+                        if (isEle) {
+                            double v = XmlValueDecoder.parseDouble(text);
+                            ele = Double.isNaN(v) ? null : v;
+                        } else {
+                            time = XmlValueDecoder.parseEpochMillis(text);
+                        }
+                        pos = close; // its end tag is read next
+                    }
+                }
+            }
+        }
+
+        return new Chunk(points, segmentStart, false);
+    }
+
+    /** Adds the point if it has a position; returns the next segmentStart flag. */
+    private boolean emit(List<TrackPoint> points, double lat, double lon, Double ele, long time,
+                         boolean segmentStart) {
+        if (Double.isNaN(lat) || Double.isNaN(lon)) {
+            return segmentStart; // corrupted point, skipped like GpxParser does
+        }
+        TrackPoint point = new TrackPoint(lat, lon, ele, time);
+        point.setSegmentStart(segmentStart);
+        points.add(point);
+        limits.checkPoints(points.size());
+        return false;
+    }
+
+    /** Position after a comment, CDATA section, DOCTYPE or processing instruction, or -1. */
+    private static int skipMarkup(ByteBuffer data, int lt, int size) {
+        if (startsWith(data, lt, size, "<!--")) {
+            int end = indexOf(data, "-->", lt + 4, size);
+            return end < 0 ? -1 : end + 3;
+        }
+        if (startsWith(data, lt, size, "<![CDATA[")) {
+            int end = indexOf(data, "]]>", lt + 9, size);
+            return end < 0 ? -1 : end + 3;
+        }
+        int gt = tagEnd(data, lt + 2, size);
+        return gt < 0 ? -1 : gt + 1;
+    }
+
+    /**
+     * Numeric value of an attribute in the tag bytes [from, to), NaN if
+     * absent or not a number.
+     */
+    private static double attribute(ByteBuffer data, int from, int to, byte[] name, AsciiView view) {
+        int i = from;
+        while (i < to) {
+            byte c = data.get(i);
+            if (c == '"' || c == '\'') {
+                int close = indexOf(data, c, i + 1, to);
+                if (close < 0) return Double.NaN;
+                i = close + 1;
+                continue;
+            }
+            if (c <= ' ' && equalsAscii(data, i + 1, Math.min(to, i + 1 + name.length), name)) {
+                int j = skipSpaces(data, i + 1 + name.length, to);
+                if (j < to && data.get(j) == '=') {
+                    j = skipSpaces(data, j + 1, to);
+                    byte quote = j < to ? data.get(j) : 0;
+                    if (quote == '"' || quote == '\'') {
+                        int close = indexOf(data, quote, j + 1, to);
+                        if (close < 0) return Double.NaN;
+                        view.set(j + 1, close);
+                        return XmlValueDecoder.parseDouble(view);
+                    }
+                }
+            }
+            i++;
+        }
+        return Double.NaN;
+    }
+
+    // -------------------------
+    // Byte helpers
+    // -------------------------
+
+    private static int indexOf(ByteBuffer data, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data.get(i) == b) return i;
+        }
+        return -1;
+    }
+
+    private static int indexOf(ByteBuffer data, String s, int from, int size) {
+        byte first = (byte) s.charAt(0);
+        for (int i = indexOf(data, first, from, size); i >= 0; i = indexOf(data, first, i + 1, size)) {
+            if (startsWith(data, i, size, s)) return i;
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(ByteBuffer data, int pos, int size, String s) {
+        if (pos + s.length() > size) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (data.get(pos + i) != s.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /** Position of the '&gt;' closing a tag, skipping quoted attribute values, or -1. */
+    private static int tagEnd(ByteBuffer data, int from, int size) {
+        for (int i = from; i < size; i++) {
+            byte c = data.get(i);
+            if (c == '>') {
+                return i;
+            }
+            if (c == '"' || c == '\'') {
+                i = indexOf(data, c, i + 1, size);
+                if (i < 0) return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int nameEnd(ByteBuffer data, int from, int size) {
+        int i = from;
+        while (i < size) {
+            byte c = data.get(i);
+            if (c <= ' ' && c >= 0 || c == '/' || c == '>') break;
+            i++;
+        }
+        return i;
+    }
+
+    /** Start of the local part of a possibly prefixed name. */
+    private static int localStart(ByteBuffer data, int nameStart, int nameEnd) {
+        int start = nameStart;
+        for (int i = nameStart; i < nameEnd; i++) {
+            if (data.get(i) == ':') start = i + 1;
+        }
+        return start;
+    }
+
+    private static boolean equalsAscii(ByteBuffer data, int from, int to, byte[] s) {
+        if (to - from != s.length) return false;
+        for (int i = 0; i < s.length; i++) {
+            if (data.get(from + i) != s[i]) return false;
+        }
+        return true;
+    }
+
+    private static int skipSpaces(ByteBuffer data, int from, int to) {
+        int i = from;
+        while (i < to && data.get(i) <= ' ' && data.get(i) >= 0) i++;
+        return i;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Points of one chunk, whether a new segment was opened after its last
+     * point, and whether the scan stopped at a value it does not decode.
+     */
+    private static final class Chunk {
+        static final Chunk UNSUPPORTED = new Chunk(List.of(), false, true);
+
+        final List<TrackPoint> points;
+        final boolean openSegment;
+        final boolean unsupported;
+
+        Chunk(List<TrackPoint> points, boolean openSegment, boolean unsupported) {
+            this.points = points;
+            this.openSegment = openSegment;
+            this.unsupported = unsupported;
+        }
+    }
+
+    /**
+     * Reusable CharSequence over a byte range of the mapped file, so
+     * XmlValueDecoder reads the value where it lies. Values are ASCII.
+     */
+    private static final class AsciiView implements CharSequence {
+        private final ByteBuffer data;
+        private int start;
+        private int end;
+
+        AsciiView(ByteBuffer data) {
+            this.data = data;
+        }
+
+        void set(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (data.get(start + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            char[] chars = new char[to - from];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = charAt(from + i);
+            }
+            return new String(chars);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+}
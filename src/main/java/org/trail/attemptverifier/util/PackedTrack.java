@@ -0,0 +1,211 @@
+package org.trail.attemptverifier.util;
+
+import org.trail.attemptverifier.model.TrackPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar, primitive-array form of a track.
+ *
+ * Compared to List&lt;TrackPoint&gt; this avoids one object (plus a boxed
+ * Double) per point, and lets metric loops run over plain arrays.
+ *
+ * Missing values:
+ *  - elevation → NaN
+ *  - time      → NO_TIME
+ *
+ * Segments: segmentStarts holds the index of the first point of every
+ * &lt;trkseg&gt; after the first one, ascending (empty for a single segment).
+ *
+ * The arrays returned by the accessors are the internal ones (no copy);
+ * callers must treat them as read-only.
+ */
+public final class PackedTrack {
+
+    /** Marker for points without a &lt;time&gt; element (TrackPoint.NO_TIME). */
+    public static final long NO_TIME = TrackPoint.NO_TIME;
+
+    private final int size;
+    private final double[] lat;
+    private final double[] lon;
+    private final double[] ele;
+    private final long[] timeMillis;
+    private final int[] segmentStarts;
+
+    private PackedTrack(int size, double[] lat, double[] lon, double[] ele, long[] timeMillis,
+                        int[] segmentStarts) {
+        this.size = size;
+        this.lat = lat;
+        this.lon = lon;
+        this.ele = ele;
+        this.timeMillis = timeMillis;
+        this.segmentStarts = segmentStarts;
+    }
+
+    public static PackedTrack fromTrackPoints(List<TrackPoint> points) {
+        Builder b = new Builder(points.size());
+        for (TrackPoint p : points) {
+            if (p.isSegmentStart()) {
+                b.startSegment();
+            }
+            b.add(p.getLatitude(),
+                  p.getLongitude(),
+                  p.getElevation() != null ? p.getElevation() : Double.NaN,
+                  p.getTimeMillis());
+        }
+        return b.build();
+    }
+
+    public List<TrackPoint> toTrackPoints() {
+        List<TrackPoint> out = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            out.add(new TrackPoint(
+                    lat[i],
+                    lon[i],
+                    Double.isNaN(ele[i]) ? null : ele[i],
+                    timeMillis[i]));
+        }
+        if (size > 0) {
+            out.get(0).setSegmentStart(true);
+        }
+        for (int s : segmentStarts) {
+            out.get(s).setSegmentStart(true);
+        }
+        return out;
+    }
+
+    // ---- Accessors ----
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public double[] latitudes() {
+        return lat;
+    }
+
+    public double[] longitudes() {
+        return lon;
+    }
+
+    public double[] elevations() {
+        return ele;
+    }
+
+    public long[] timesMillis() {
+        return timeMillis;
+    }
+
+    /** First point index of every segment after the first, ascending. */
+    public int[] segmentStarts() {
+        return segmentStarts;
+    }
+
+    public int segmentCount() {
+        return size == 0 ? 0 : segmentStarts.length + 1;
+    }
+
+    /**
+     * Seconds between the first and the last timestamped point, or null if
+     * fewer than two points carry a time. Scans inward from both ends only.
+     */
+    public Long elapsedSeconds() {
+        int first = 0;
+        while (first < size && timeMillis[first] == NO_TIME) {
+            first++;
+        }
+        int last = size - 1;
+        while (last > first && timeMillis[last] == NO_TIME) {
+            last--;
+        }
+        if (last <= first || timeMillis[last] <= timeMillis[first]) {
+            return null;
+        }
+        return (timeMillis[last] - timeMillis[first]) / 1000;
+    }
+
+    // ---- Builder ----
+
+    /**
+     * Growable builder used by parsers and decoders. Arrays are trimmed on build().
+     */
+    public static final class Builder {
+        private double[] lat;
+        private double[] lon;
+        private double[] ele;
+        private long[] time;
+        private int size;
+        private int[] starts = new int[0];
+        private int startCount;
+
+        public Builder() {
+            this(1024);
+        }
+
+        public Builder(int expectedSize) {
+            int cap = Math.max(expectedSize, 16);
+            lat = new double[cap];
+            lon = new double[cap];
+            ele = new double[cap];
+            time = new long[cap];
+        }
+
+        public Builder add(double latitude, double longitude, double elevation, long timeMillis) {
+            if (size == lat.length) {
+                grow();
+            }
+            lat[size] = latitude;
+            lon[size] = longitude;
+            ele[size] = elevation;
+            time[size] = timeMillis;
+            size++;
+            return this;
+        }
+
+        /**
+         * The next point added begins a new segment. No-op before the first
+         * point and when called twice without a point in between.
+         */
+        public Builder startSegment() {
+            if (size > 0 && (startCount == 0 || starts[startCount - 1] != size)) {
+                if (startCount == starts.length) {
+                    starts = Arrays.copyOf(starts, Math.max(4, starts.length * 2));
+                }
+                starts[startCount++] = size;
+            }
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public PackedTrack build() {
+            // A segment start after the last point (trailing empty <trkseg>) is dropped
+            int n = startCount;
+            while (n > 0 && starts[n - 1] >= size) {
+                n--;
+            }
+            return new PackedTrack(size,
+                    Arrays.copyOf(lat, size),
+                    Arrays.copyOf(lon, size),
+                    Arrays.copyOf(ele, size),
+                    Arrays.copyOf(time, size),
+                    Arrays.copyOf(starts, n));
+        }
+
+        private void grow() {
+            int cap = lat.length + (lat.length >> 1);
+            lat = Arrays.copyOf(lat, cap);
+            lon = Arrays.copyOf(lon, cap);
+            ele = Arrays.copyOf(ele, cap);
+            time = Arrays.copyOf(time, cap);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.trail.attemptverifier.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hard caps applied by every TrackReader while it reads, so a pathological
+ * upload fails as soon as it crosses one instead of after it has been
+ * fully parsed (verifier.parse.*):
+ *
+ *  - max-points:     track points per file
+ *  - max-depth:      XML element nesting (GPX and TCX)
+ *  - max-text-chars: characters in one text run between two tags
+ *
+ * The total input size is already capped by the multipart limit and the
+ * admission control; DTDs and entities are never processed.
+ */
+@Component
+public class ParseLimits {
+
+    private final int maxPoints;
+    private final int maxDepth;
+    private final int maxTextChars;
+
+    public ParseLimits(@Value("${verifier.parse.max-points:1000000}") int maxPoints,
+                       @Value("${verifier.parse.max-depth:32}") int maxDepth,
+                       @Value("${verifier.parse.max-text-chars:8192}") int maxTextChars) {
+        this.maxPoints = Math.max(1, maxPoints);
+        this.maxDepth = Math.max(4, maxDepth);
+        this.maxTextChars = Math.max(64, maxTextChars);
+    }
+
+    public int getMaxPoints() {
+        return maxPoints;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getMaxTextChars() {
+        return maxTextChars;
+    }
+
+    /** Throws once pointCount exceeds max-points. */
+    public void checkPoints(int pointCount) {
+        if (pointCount > maxPoints) {
+            throw new LimitExceededException("more than " + maxPoints + " track points");
+        }
+    }
+
+    public void checkDepth(int depth) {
+        if (depth > maxDepth) {
+            throw new LimitExceededException("XML nested deeper than " + maxDepth + " elements");
+        }
+    }
+
+    public void checkText(int chars) {
+        if (chars > maxTextChars) {
+            throw new LimitExceededException("XML text longer than " + maxTextChars + " characters");
+        }
+    }
+
+    /**
+     * A file crossed one of the limits. Not swallowed by the readers: the
+     * upload is rejected with this message.
+     */
+    public static class LimitExceededException extends RuntimeException {
+        public LimitExceededException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package org.trail.attemptverifier.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spatial index over the segments of a route polyline.
+ *
+ * Route points are projected to a local equirectangular plane (meters)
+ * around the route's mean latitude, and every segment is registered in
+ * each 100 m grid cell its bounding box touches. A nearest-segment query
+ * scans grid rings outward from the query cell and stops as soon as no
+ * unvisited ring can hold a closer segment, so on-route points cost a
+ * handful of segment checks instead of a scan over the whole route.
+ *
+ * Cells are stored in CSR form (sorted keys + offsets + segment ids),
+ * which keeps the index compact and queries allocation-free.
+ *
+ * Besides distance, each match reports the segment index and the
+ * chainage (meters along the route) of the closest point.
+ */
+public final class RouteIndex {
+
+    private static final double CELL_SIZE_M = 100.0;
+
+    // Beyond this many rings (2 km) a brute-force scan is cheaper than ring search
+    private static final int MAX_RING = 20;
+
+    private static final double METERS_PER_DEG_LAT = 111_320.0;
+
+    private final int pointCount;
+    private final int segmentCount;
+    private final double[] x;
+    private final double[] y;
+    private final double[] chainage;
+
+    private final double lat0;
+    private final double lon0;
+    private final double metersPerDegLon;
+
+    private final double minX, minY, maxX, maxY;
+
+    private final long[] cellKeys;
+    private final int[] cellStart;
+    private final int[] cellSegments;
+
+    private RouteIndex(PackedTrack route) {
+        int n = route.size();
+        if (n == 0) {
+            throw new IllegalArgumentException("Cannot index an empty route");
+        }
+        double[] lat = route.latitudes();
+        double[] lon = route.longitudes();
+
+        double latSum = 0.0;
+        for (int i = 0; i < n; i++) {
+            latSum += lat[i];
+        }
+        this.lat0 = latSum / n;
+        this.lon0 = lon[0];
+        this.metersPerDegLon = METERS_PER_DEG_LAT * Math.cos(Math.toRadians(lat0));
+
+        this.pointCount = n;
+        this.segmentCount = Math.max(1, n - 1);
+        this.x = new double[n];
+        this.y = new double[n];
+        this.chainage = new double[n];
+
+        double bx0 = Double.MAX_VALUE, by0 = Double.MAX_VALUE;
+        double bx1 = -Double.MAX_VALUE, by1 = -Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            x[i] = projectX(lon[i]);
+            y[i] = projectY(lat[i]);
+            bx0 = Math.min(bx0, x[i]);
+            by0 = Math.min(by0, y[i]);
+            bx1 = Math.max(bx1, x[i]);
+            by1 = Math.max(by1, y[i]);
+            if (i > 0) {
+                chainage[i] = chainage[i - 1]
+                        + TrackMetrics.haversineMeters(lat[i - 1], lon[i - 1], lat[i], lon[i]);
+            }
+        }
+        this.minX = bx0;
+        this.minY = by0;
+        this.maxX = bx1;
+        this.maxY = by1;
+
+        // ---- Register segments in grid cells ----
+        Map<Long, List<Integer>> cells = new HashMap<>();
+        for (int s = 0; s < segmentCount; s++) {
+            int a = s;
+            int b = Math.min(s + 1, n - 1);
+            int cx0 = cell(Math.min(x[a], x[b]));
+            int cx1 = cell(Math.max(x[a], x[b]));
+            int cy0 = cell(Math.min(y[a], y[b]));
+            int cy1 = cell(Math.max(y[a], y[b]));
+            for (int cx = cx0; cx <= cx1; cx++) {
+                for (int cy = cy0; cy <= cy1; cy++) {
+                    cells.computeIfAbsent(key(cx, cy), k -> new ArrayList<>(4)).add(s);
+                }
+            }
+        }
+
+        long[] keys = new long[cells.size()];
+        int k = 0;
+        int total = 0;
+        for (Map.Entry<Long, List<Integer>> e : cells.entrySet()) {
+            keys[k++] = e.getKey();
+            total += e.getValue().size();
+        }
+        Arrays.sort(keys);
+
+        this.cellKeys = keys;
+        this.cellStart = new int[keys.length + 1];
+        this.cellSegments = new int[total];
+        int pos = 0;
+        for (int i = 0; i < keys.length; i++) {
+            cellStart[i] = pos;
+            for (int seg : cells.get(keys[i])) {
+                cellSegments[pos++] = seg;
+            }
+        }
+        cellStart[keys.length] = pos;
+    }
+
+    public static RouteIndex build(PackedTrack route) {
+        return new RouteIndex(route);
+    }
+
+    // ---- Route facts ----
+
+    public int pointCount() {
+        return pointCount;
+    }
+
+    public int segmentCount() {
+        return segmentCount;
+    }
+
+    /** Total route length in meters. */
+    public double lengthM() {
+        return chainage[pointCount - 1];
+    }
+
+    /** Meters along the route at the given route point. */
+    public double chainageAt(int routePointIndex) {
+        return chainage[routePointIndex];
+    }
+
+    // ---- Queries ----
+
+    /**
+     * Finds the closest point on the route to (lat, lon) and writes it into out.
+     * Never allocates; reuse one Match per thread.
+     */
+    public Match nearest(double lat, double lon, Match out) {
+        double px = projectX(lon);
+        double py = projectY(lat);
+
+        out.distanceM = Double.MAX_VALUE;
+        out.segment = 0;
+        out.fraction = 0.0;
+
+        double reach = MAX_RING * CELL_SIZE_M;
+        boolean nearBox = px >= minX - reach && px <= maxX + reach
+                && py >= minY - reach && py <= maxY + reach;
+
+        if (nearBox) {
+            int qx = cell(px);
+            int qy = cell(py);
+            for (int r = 0; r <= MAX_RING; r++) {
+                for (int cx = qx - r; cx <= qx + r; cx++) {
+                    boolean edgeColumn = cx == qx - r || cx == qx + r;
+                    int step = edgeColumn ? 1 : 2 * r;
+                    for (int cy = qy - r; cy <= qy + r; cy += Math.max(step, 1)) {
+                        scanCell(key(cx, cy), px, py, out);
+                    }
+                }
+                // Nothing in ring r+1 or beyond can be closer than r cells
+                if (out.distanceM <= r * CELL_SIZE_M) {
+                    finish(out);
+                    return out;
+                }
+            }
+        }
+
+        // Far from the route: brute force (rare; wrong-race uploads and big detours)
+        for (int s = 0; s < segmentCount; s++) {
+            checkSegment(s, px, py, out);
+        }
+        finish(out);
+        return out;
+    }
+
+    /**
+     * Like nearest(), but only looks maxM around the query: returns false,
+     * without the brute-force fallback, when the route is farther away.
+     * For on/off-route tests where off-route points are common (matching
+     * a track against routes it may not belong to).
+     */
+    public boolean nearestWithin(double lat, double lon, double maxM, Match out) {
+        double px = projectX(lon);
+        double py = projectY(lat);
+
+        out.distanceM = Double.MAX_VALUE;
+        out.segment = 0;
+        out.fraction = 0.0;
+
+        if (px < minX - maxM || px > maxX + maxM || py < minY - maxM || py > maxY + maxM) {
+            return false;
+        }
+        int rings = (int) (maxM / CELL_SIZE_M) + 1;
+        int qx = cell(px);
+        int qy = cell(py);
+        for (int r = 0; r <= rings; r++) {
+            for (int cx = qx - r; cx <= qx + r; cx++) {
+                boolean edgeColumn = cx == qx - r || cx == qx + r;
+                int step = edgeColumn ? 1 : 2 * r;
+                for (int cy = qy - r; cy <= qy + r; cy += Math.max(step, 1)) {
+                    scanCell(key(cx, cy), px, py, out);
+                }
+            }
+            if (out.distanceM <= r * CELL_SIZE_M) {
+                break;
+            }
+        }
+        if (out.distanceM > maxM) {
+            return false;
+        }
+        finish(out);
+        return true;
+    }
+
+    // ---- Internals ----
+
+    private void scanCell(long key, double px, double py, Match out) {
+        int idx = Arrays.binarySearch(cellKeys, key);
+        if (idx < 0) {
+            return;
+        }
+        for (int i = cellStart[idx]; i < cellStart[idx + 1]; i++) {
+            checkSegment(cellSegments[i], px, py, out);
+        }
+    }
+
+    private void checkSegment(int s, double px, double py, Match out) {
+        int a = s;
+        int b = Math.min(s + 1, pointCount - 1);
+        double ax = x[a], ay = y[a];
+        double dx = x[b] - ax, dy = y[b] - ay;
+        double len2 = dx * dx + dy * dy;
+
+        double t = 0.0;
+        if (len2 > 0.0) {
+            t = ((px - ax) * dx + (py - ay) * dy) / len2;
+            t = t < 0.0 ? 0.0 : (t > 1.0 ? 1.0 : t);
+        }
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        double d = Math.sqrt(cx * cx + cy * cy);
+
+        if (d < out.distanceM) {
+            out.distanceM = d;
+            out.segment = s;
+            out.fraction = t;
+        }
+    }
+
+    private void finish(Match out) {
+        int a = out.segment;
+        int b = Math.min(a + 1, pointCount - 1);
+        out.chainageM = chainage[a] + out.fraction * (chainage[b] - chainage[a]);
+    }
+
+    private double projectX(double lonDeg) {
+        return (lonDeg - lon0) * metersPerDegLon;
+    }
+
+    private double projectY(double latDeg) {
+        return (latDeg - lat0) * METERS_PER_DEG_LAT;
+    }
+
+    private static int cell(double meters) {
+        return (int) Math.floor(meters / CELL_SIZE_M);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    // ---- Result holder ----
+
+    /**
+     * Mutable result of a nearest() query.
+     */
+    public static final class Match {
+        private int segment;
+        private double fraction;
+        private double distanceM;
+        private double chainageM;
+
+        /** Index of the closest route segment (between route points segment and segment+1). */
+        public int getSegment() {
+            return segment;
+        }
+
+        /** Position along that segment, 0.0–1.0. */
+        public double getFraction() {
+            return fraction;
+        }
+
+        /** Distance from the query point to the route, in meters. */
+        public double getDistanceM() {
+            return distanceM;
+        }
+
+        /** Meters along the route at the closest point. */
+        public double getChainageM() {
+            return chainageM;
+        }
+    }
+}
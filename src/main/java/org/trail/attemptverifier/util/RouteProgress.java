@@ -0,0 +1,181 @@
+package org.trail.attemptverifier.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Progress of an attempt along the route, from the per-point chainage and
+ * on-route flags stored in its DerivedTrack (no geometry is recomputed).
+ *
+ * The route is split into BIN_M bins. An on-route point covers its own bin,
+ * and two consecutive on-route points also cover every bin between them
+ * unless the runner cannot have followed the route in between: the
+ * straight-line distance between the two points is less than
+ * minBridgeRatio times their distance along the route. Sparse sampling of
+ * the route itself keeps the two close (a few switchbacks at most); a
+ * shortcut across a loop covers much less ground than the chainage it
+ * skips. Jumps of at most maxBridgeM along the route are always bridged,
+ * since GPS noise dominates there.
+ *
+ *  - progress: end of the furthest covered stretch of at least
+ *    MIN_STRETCH_BINS bins. A lone point near the finish, e.g. the start of
+ *    a loop course matched to the route's end, does not count as progress.
+ *  - completion: covered route distance / route length.
+ *  - skipped sections: uncovered stretches of at least minSkipM before the
+ *    progress point. The part after it is "not reached", not skipped.
+ */
+public final class RouteProgress {
+
+    /** Route resolution of the coverage bins, in meters. */
+    public static final double BIN_M = 25.0;
+
+    private static final int MIN_STRETCH_BINS = 4;
+
+    private final double routeLengthM;
+    private final double progressM;
+    private final double coveredM;
+    private final List<Section> skipped;
+
+    private RouteProgress(double routeLengthM, double progressM, double coveredM, List<Section> skipped) {
+        this.routeLengthM = routeLengthM;
+        this.progressM = progressM;
+        this.coveredM = coveredM;
+        this.skipped = skipped;
+    }
+
+    /**
+     * @param derived      derived track with per-point on-route flags and chainage
+     * @param routeLengthM total route length
+     * @param maxBridgeM     along-route jump between consecutive points always counted as covered
+     * @param minBridgeRatio straight-line / along-route distance below which a longer jump is a shortcut
+     * @param minSkipM       shortest uncovered stretch reported as skipped
+     */
+    public static RouteProgress compute(DerivedTrack derived, double routeLengthM,
+                                        double maxBridgeM, double minBridgeRatio, double minSkipM) {
+        boolean[] onRoute = derived.getOnRoute();
+        int[] chainageM = derived.getChainageM();
+        double[] lat = derived.getTrack().latitudes();
+        double[] lon = derived.getTrack().longitudes();
+        int bins = Math.max(1, (int) Math.ceil(routeLengthM / BIN_M));
+        boolean[] covered = new boolean[bins];
+
+        int prev = -1;
+        for (int i = 0; i < onRoute.length; i++) {
+            if (!onRoute[i]) {
+                prev = -1;
+                continue;
+            }
+            int bin = bin(chainageM[i], bins);
+            covered[bin] = true;
+            if (prev >= 0 && bridged(lat, lon, chainageM, prev, i, maxBridgeM, minBridgeRatio)) {
+                int from = Math.min(bin(chainageM[prev], bins), bin);
+                int to = Math.max(bin(chainageM[prev], bins), bin);
+                for (int b = from; b <= to; b++) {
+                    covered[b] = true;
+                }
+            }
+            prev = i;
+        }
+
+        // Furthest stretch long enough to be real progress
+        int progressBins = 0;
+        int run = 0;
+        double coveredM = 0.0;
+        for (int b = 0; b < bins; b++) {
+            if (covered[b]) {
+                run++;
+                coveredM += binLength(b, routeLengthM);
+                if (run >= MIN_STRETCH_BINS || b == run - 1) {
+                    progressBins = b + 1;
+                }
+            } else {
+                run = 0;
+            }
+        }
+        double progressM = Math.min(routeLengthM, progressBins * BIN_M);
+
+        List<Section> skipped = new ArrayList<>();
+        int gapStart = -1;
+        for (int b = 0; b <= progressBins; b++) {
+            boolean gap = b < progressBins && !covered[b];
+            if (gap && gapStart < 0) {
+                gapStart = b;
+            } else if (!gap && gapStart >= 0) {
+                double from = gapStart * BIN_M;
+                double to = Math.min(routeLengthM, b * BIN_M);
+                if (to - from >= minSkipM) {
+                    skipped.add(new Section(from, to));
+                }
+                gapStart = -1;
+            }
+        }
+
+        return new RouteProgress(routeLengthM, progressM, coveredM, skipped);
+    }
+
+    /** Whether the runner can have followed the route from point a to point b. */
+    private static boolean bridged(double[] lat, double[] lon, int[] chainageM, int a, int b,
+                                   double maxBridgeM, double minBridgeRatio) {
+        int alongM = Math.abs(chainageM[b] - chainageM[a]);
+        if (alongM <= maxBridgeM) {
+            return true;
+        }
+        return TrackMetrics.haversineMeters(lat[a], lon[a], lat[b], lon[b]) >= minBridgeRatio * alongM;
+    }
+
+    private static int bin(int chainageM, int bins) {
+        int b = (int) (chainageM / BIN_M);
+        return b < 0 ? 0 : Math.min(b, bins - 1);
+    }
+
+    private static double binLength(int b, double routeLengthM) {
+        return Math.min(BIN_M, routeLengthM - b * BIN_M);
+    }
+
+    public double getRouteLengthKm() {
+        return routeLengthM / 1000.0;
+    }
+
+    /** Furthest continuous progress along the route, in km. */
+    public double getProgressKm() {
+        return progressM / 1000.0;
+    }
+
+    /** Share of the route distance covered, 0.0–1.0. */
+    public double getCompletion() {
+        return routeLengthM > 0 ? Math.min(1.0, coveredM / routeLengthM) : 0.0;
+    }
+
+    public double getSkippedKm() {
+        double m = 0.0;
+        for (Section s : skipped) {
+            m += s.toM - s.fromM;
+        }
+        return m / 1000.0;
+    }
+
+    public List<Section> getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Stretch of the route between two chainages.
+     */
+    public static final class Section {
+        private final double fromM;
+        private final double toM;
+
+        public Section(double fromM, double toM) {
+            this.fromM = fromM;
+            this.toM = toM;
+        }
+
+        public double getFromKm() {
+            return fromM / 1000.0;
+        }
+
+        public double getToKm() {
+            return toM / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.trail.attemptverifier.util;
+
+import java.util.Arrays;
+
+/**
+ * Coarse footprint of a route or track, used to shortlist candidate routes
+ * before any point-by-point matching:
+ *
+ *  - bounding box in degrees
+ *  - sorted, distinct geohash cells (PRECISION characters, ~1.2 x 0.6 km)
+ *    the line passes through. Segments are walked in STEP_M steps, so a
+ *    sparse route still marks every cell between its points; recording
+ *    gaps (segment starts) are not bridged.
+ */
+public final class RouteSignature {
+
+    public static final int PRECISION = 6;
+
+    private static final double STEP_M = 150.0;
+
+    private final double minLat, maxLat, minLon, maxLon;
+    private final long[] cells;
+
+    private RouteSignature(double minLat, double maxLat, double minLon, double maxLon, long[] cells) {
+        this.minLat = minLat;
+        this.maxLat = maxLat;
+        this.minLon = minLon;
+        this.maxLon = maxLon;
+        this.cells = cells;
+    }
+
+    public static RouteSignature of(PackedTrack track) {
+        int n = track.size();
+        if (n == 0) {
+            return new RouteSignature(0, 0, 0, 0, new long[0]);
+        }
+        double[] lat = track.latitudes();
+        double[] lon = track.longitudes();
+        int[] starts = track.segmentStarts();
+
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        long[] buf = new long[Math.max(16, n)];
+        int size = 0;
+        int s = 0;
+        long last = Long.MIN_VALUE;
+
+        for (int i = 0; i < n; i++) {
+            minLat = Math.min(minLat, lat[i]);
+            maxLat = Math.max(maxLat, lat[i]);
+            minLon = Math.min(minLon, lon[i]);
+            maxLon = Math.max(maxLon, lon[i]);
+
+            boolean gap = s < starts.length && starts[s] == i;
+            if (gap) s++;
+
+            int steps = 1;
+            if (i > 0 && !gap) {
+                double d = TrackMetrics.haversineMeters(lat[i - 1], lon[i - 1], lat[i], lon[i]);
+                steps = Math.max(1, (int) Math.ceil(d / STEP_M));
+            }
+            for (int k = 1; k <= steps; k++) {
+                long cell;
+                if (steps == 1) {
+                    cell = Geohash.encode(lat[i], lon[i], PRECISION);
+                } else {
+                    double f = (double) k / steps;
+                    cell = Geohash.encode(lat[i - 1] + (lat[i] - lat[i - 1]) * f,
+                            lon[i - 1] + (lon[i] - lon[i - 1]) * f, PRECISION);
+                }
+                if (cell != last) {
+                    if (size == buf.length) buf = Arrays.copyOf(buf, size * 2);
+                    buf[size++] = cell;
+                    last = cell;
+                }
+            }
+        }
+
+        long[] cells = Arrays.copyOf(buf, size);
+        Arrays.sort(cells);
+        int distinct = 0;
+        for (int i = 0; i < cells.length; i++) {
+            if (i == 0 || cells[i] != cells[distinct - 1]) {
+                cells[distinct++] = cells[i];
+            }
+        }
+        return new RouteSignature(minLat, maxLat, minLon, maxLon, Arrays.copyOf(cells, distinct));
+    }
+
+    /**
+     * Whether the bounding boxes overlap once this one is widened by marginDeg.
+     */
+    public boolean intersects(RouteSignature other, double marginDeg) {
+        return minLat - marginDeg <= other.maxLat && other.minLat <= maxLat + marginDeg
+                && minLon - marginDeg <= other.maxLon && other.minLon <= maxLon + marginDeg;
+    }
+
+    /** Sorted distinct geohash cells. */
+    public long[] getCells() {
+        return cells;
+    }
+
+    public int cellCount() {
+        return cells.length;
+    }
+
+    public double getMinLat() {
+        return minLat;
+    }
+
+    public double getMaxLat() {
+        return maxLat;
+    }
+
+    public double getMinLon() {
+        return minLon;
+    }
+
+    public double getMaxLon() {
+        return maxLon;
+    }
+}
@@ -0,0 +1,156 @@
+package org.trail.attemptverifier.util;
+
+import org.springframework.stereotype.Component;
+import org.trail.attemptverifier.model.TrackPoint;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Garmin Training Center (TCX) reader using StAX.
+ *
+ * The document is streamed element by element; no DOM is built, so memory
+ * stays at the point list, and the ParseLimits caps are checked as it goes.
+ * Values are decoded from the reused text buffer by XmlValueDecoder.
+ * Factory hardening matches GpxParser: no DTDs, no external entities.
+ * Each &lt;Track&gt; (a new one starts after every pause and lap) begins a
+ * new segment. Trackpoints without a &lt;Position&gt; (indoor, GPS lost)
+ * are skipped like corrupted GPX points.
+ */
+@Component
+public class TcxReader implements TrackReader {
+
+    private static final Set<String> VALUE_ELEMENTS =
+            Set.of("Time", "LatitudeDegrees", "LongitudeDegrees", "AltitudeMeters");
+
+    private final ParseLimits limits;
+    private final XMLInputFactory factory;
+
+    public TcxReader(ParseLimits limits) {
+        this.limits = limits;
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    @Override
+    public String format() {
+        return "TCX";
+    }
+
+    @Override
+    public boolean accepts(byte[] head, int length) {
+        return new String(head, 0, length, StandardCharsets.ISO_8859_1).contains("<TrainingCenterDatabase");
+    }
+
+    @Override
+    public List<TrackPoint> read(InputStream in) {
+        List<TrackPoint> points = new ArrayList<>();
+        XMLStreamReader xml = null;
+
+        try {
+            xml = factory.createXMLStreamReader(in);
+
+            StringBuilder text = new StringBuilder(32);
+            int depth = 0;
+            int textChars = 0;
+            boolean inPoint = false;
+            String collecting = null;    // value element of the point being read
+            boolean segmentStart = true;
+            double lat = Double.NaN;
+            double lon = Double.NaN;
+            Double ele = null;
+            long time = XmlValueDecoder.NO_TIME;
+
+            while (xml.hasNext()) {
+                int event = xml.next();
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        limits.checkDepth(++depth);
+                        textChars = 0;
+                        String name = xml.getLocalName();
+                        if ("Track".equals(name)) {
+                            segmentStart = true;
+                        } else if ("Trackpoint".equals(name)) {
+                            inPoint = true;
+                            lat = Double.NaN;
+                            lon = Double.NaN;
+                            ele = null;
+                            time = XmlValueDecoder.NO_TIME;
+                        } else if (inPoint && VALUE_ELEMENTS.contains(name)) {
+                            collecting = name;
+                            text.setLength(0);
+                        }
+                        break;
+
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                        textChars += xml.getTextLength();
+                        limits.checkText(textChars);
+                        if (collecting != null) {
+                            text.append(xml.getTextCharacters(), xml.getTextStart(), xml.getTextLength());
+                        }
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        depth--;
+                        textChars = 0;
+                        if (collecting != null) {
+                            switch (collecting) {
+                                case "Time":
+                                    time = XmlValueDecoder.parseEpochMillis(text);
+                                    break;
+                                case "LatitudeDegrees":
+                                    lat = XmlValueDecoder.parseDouble(text);
+                                    break;
+                                case "LongitudeDegrees":
+                                    lon = XmlValueDecoder.parseDouble(text);
+                                    break;
+                                default:
+                                    double v = XmlValueDecoder.parseDouble(text);
+                                    ele = Double.isNaN(v) ? null : v;
+                                    break;
+                            }
+                            collecting = null;
+                        } else if ("Trackpoint".equals(xml.getLocalName())) {
+                            inPoint = false;
+                            if (Double.isNaN(lat) || Double.isNaN(lon)) {
+                                break; // no position
+                            }
+                            TrackPoint point = new TrackPoint(lat, lon, ele, time);
+                            point.setSegmentStart(segmentStart);
+                            segmentStart = false;
+                            points.add(point);
+                            limits.checkPoints(points.size());
+                        }
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+
+        } catch (XMLStreamException e) {
+            System.err.println("[TcxReader] ERROR parsing TCX via StAX: " + e.getMessage());
+            return new ArrayList<>();
+        } finally {
+            if (xml != null) {
+                try {
+                    xml.close();
+                } catch (XMLStreamException ignored) {
+                }
+            }
+        }
+
+        System.out.println("[TcxReader] Returning " + points.size() + " valid TrackPoint(s).");
+        return points;
+    }
+}
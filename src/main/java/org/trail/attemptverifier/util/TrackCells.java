@@ -0,0 +1,79 @@
+package org.trail.attemptverifier.util;
+
+import java.util.Arrays;
+
+/**
+ * Where a track went, as geohash cells of PRECISION characters (~150 m):
+ * per cell, how many of its points fall there and how many of those were
+ * off the route. Cells are sorted, so the attempt_cells rows and the
+ * heatmap deltas are written in key order.
+ *
+ * Only recorded points are counted; a track sampled more sparsely than
+ * the cell size can pass through a cell without a row for it.
+ */
+public final class TrackCells {
+
+    public static final int PRECISION = 7;
+
+    private final long[] cells;
+    private final int[] points;
+    private final int[] offRoutePoints;
+
+    public TrackCells(long[] cells, int[] points, int[] offRoutePoints) {
+        this.cells = cells;
+        this.points = points;
+        this.offRoutePoints = offRoutePoints;
+    }
+
+    /**
+     * @param onRoute per-point on-route flags (DerivedTrack), or null to count every point as on route
+     */
+    public static TrackCells of(PackedTrack track, boolean[] onRoute) {
+        int n = track.size();
+        double[] lat = track.latitudes();
+        double[] lon = track.longitudes();
+
+        // cell << 1 | off-route bit, so one sort groups both counts
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            boolean off = onRoute != null && !onRoute[i];
+            keys[i] = Geohash.encode(lat[i], lon[i], PRECISION) << 1 | (off ? 1 : 0);
+        }
+        Arrays.sort(keys);
+
+        long[] cells = new long[n];
+        int[] points = new int[n];
+        int[] offRoute = new int[n];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            long cell = keys[i] >>> 1;
+            if (size == 0 || cells[size - 1] != cell) {
+                cells[size++] = cell;
+            }
+            points[size - 1]++;
+            offRoute[size - 1] += (int) (keys[i] & 1);
+        }
+        return new TrackCells(Arrays.copyOf(cells, size), Arrays.copyOf(points, size),
+                Arrays.copyOf(offRoute, size));
+    }
+
+    public int size() {
+        return cells.length;
+    }
+
+    public boolean isEmpty() {
+        return cells.length == 0;
+    }
+
+    public long cell(int i) {
+        return cells[i];
+    }
+
+    public int points(int i) {
+        return points[i];
+    }
+
+    public int offRoutePoints(int i) {
+        return offRoutePoints[i];
+    }
+}
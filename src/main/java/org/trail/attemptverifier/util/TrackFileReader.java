@@ -0,0 +1,87 @@
+package org.trail.attemptverifier.util;
+
+import org.springframework.stereotype.Component;
+import org.trail.attemptverifier.model.TrackPoint;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Entry point for uploaded activity files: sniffs the first SNIFF_BYTES
+ * bytes and hands the stream to the matching TrackReader (FIT, TCX, GPX),
+ * so the file is read once and never converted. Anything not recognised
+ * goes to the GPX parser, which rejects it as before.
+ *
+ * Files already on disk (stored blobs) can be read by path instead: the file
+ * is memory-mapped, sniffed from the mapping, and GPX goes through
+ * MappedGpxReader without any stream.
+ */
+@Component
+public class TrackFileReader {
+
+    /** Enough for a FIT header or an XML prolog plus the root element. */
+    public static final int SNIFF_BYTES = 1024;
+
+    private final List<TrackReader> readers;
+    private final GpxParser gpxParser;
+    private final MappedGpxReader mappedGpxReader;
+
+    public TrackFileReader(FitReader fitReader, TcxReader tcxReader, GpxParser gpxParser,
+                           MappedGpxReader mappedGpxReader) {
+        this.readers = List.of(fitReader, tcxReader, gpxParser);
+        this.gpxParser = gpxParser;
+        this.mappedGpxReader = mappedGpxReader;
+    }
+
+    /**
+     * Reads all track points of a GPX, TCX or FIT file.
+     */
+    public List<TrackPoint> read(InputStream inputStream) throws IOException {
+        BufferedInputStream in = inputStream instanceof BufferedInputStream b
+                ? b : new BufferedInputStream(inputStream);
+        in.mark(SNIFF_BYTES);
+        byte[] head = new byte[SNIFF_BYTES];
+        int length = in.readNBytes(head, 0, SNIFF_BYTES);
+        in.reset();
+
+        TrackReader reader = detect(head, length);
+        System.out.println("[TrackFileReader] Reading " + reader.format() + " file.");
+        return reader.read(in);
+    }
+
+    /**
+     * Reads all track points of a GPX, TCX or FIT file on disk.
+     */
+    public List<TrackPoint> read(Path file) throws IOException {
+        MappedByteBuffer data = MappedGpxReader.map(file);
+        int length = Math.min(SNIFF_BYTES, data.limit());
+        byte[] head = new byte[length];
+        data.get(0, head, 0, length);
+
+        TrackReader reader = detect(head, length);
+        System.out.println("[TrackFileReader] Reading " + reader.format() + " file " + file.getFileName() + ".");
+        if (reader == gpxParser) {
+            return mappedGpxReader.read(data, file);
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            return reader.read(in);
+        }
+    }
+
+    /**
+     * Reader for a file starting with head[0..length), GPX if none matches.
+     */
+    public TrackReader detect(byte[] head, int length) {
+        for (TrackReader reader : readers) {
+            if (reader.accepts(head, length)) {
+                return reader;
+            }
+        }
+        return gpxParser;
+    }
+}
@@ -1,6 +1,8 @@
 package org.trail.attemptverifier.util;
 
 import org.trail.attemptverifier.model.TrackPoint;
+import org.trail.attemptverifier.service.oop.ElevationFilter;
+import org.trail.attemptverifier.service.oop.RawElevationFilter;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -18,6 +20,17 @@ public class TrackMetrics {
     private double coverageRatio;      // 0.0 – 1.0
     private double maxDeviationM;      // meters
 
+    // ---- Time-based fields (null when the track has no timestamps) ----
+    private Long elapsedSeconds;       // first to last timestamp
+    private Long movingSeconds;        // segments faster than MOVING_SPEED_MPS
+    private Double avgPaceSecPerKm;    // moving time / moving distance
+    private Double maxSpeedKmh;        // fastest plausible segment
+    private Integer speedSpikes;       // runs above MAX_PLAUSIBLE_SPEED_MPS (see fromTrack)
+
+    // ---- Recording gaps (see fromTrack) ----
+    private int trackSegments;         // <trkseg> count
+    private double gapKm;              // straight-line km across gaps, not in distanceKm
+
     // ---- Constructors ----
 
     /** Empty metrics (default values = 0) */
@@ -75,19 +88,79 @@ public class TrackMetrics {
         this.maxDeviationM = maxDeviationM;
     }
 
+    public Long getElapsedSeconds() {
+        return elapsedSeconds;
+    }
+
+    public void setElapsedSeconds(Long elapsedSeconds) {
+        this.elapsedSeconds = elapsedSeconds;
+    }
+
+    public Long getMovingSeconds() {
+        return movingSeconds;
+    }
+
+    public void setMovingSeconds(Long movingSeconds) {
+        this.movingSeconds = movingSeconds;
+    }
+
+    public Double getAvgPaceSecPerKm() {
+        return avgPaceSecPerKm;
+    }
+
+    public void setAvgPaceSecPerKm(Double avgPaceSecPerKm) {
+        this.avgPaceSecPerKm = avgPaceSecPerKm;
+    }
+
+    public Double getMaxSpeedKmh() {
+        return maxSpeedKmh;
+    }
+
+    public void setMaxSpeedKmh(Double maxSpeedKmh) {
+        this.maxSpeedKmh = maxSpeedKmh;
+    }
+
+    public Integer getSpeedSpikes() {
+        return speedSpikes;
+    }
+
+    public void setSpeedSpikes(Integer speedSpikes) {
+        this.speedSpikes = speedSpikes;
+    }
+
+    public int getTrackSegments() {
+        return trackSegments;
+    }
+
+    public void setTrackSegments(int trackSegments) {
+        this.trackSegments = trackSegments;
+    }
+
+    public double getGapKm() {
+        return gapKm;
+    }
+
+    public void setGapKm(double gapKm) {
+        this.gapKm = gapKm;
+    }
+
+    /** Fastest plausible pace (sec/km), derived from maxSpeedKmh. */
+    public Double getMaxPaceSecPerKm() {
+        return maxSpeedKmh != null && maxSpeedKmh > 0 ? 3600.0 / maxSpeedKmh : null;
+    }
+
     // ---- Factory method to compute metrics from points ----
 
     public static TrackMetrics fromTracks(List<TrackPoint> attempt,
                                           List<TrackPoint> route,
                                           double toleranceMeters) {
 
-        double distance = computeTotalDistanceKm(attempt);
-        double gain = computeElevationGainM(attempt);
+        TrackMetrics metrics = fromTrack(attempt);
 
-        double cov = computeCoverageRatio(attempt, route, toleranceMeters);
-        double dev = computeMaxDeviationMeters(attempt, route);
+        metrics.setCoverageRatio(computeCoverageRatio(attempt, route, toleranceMeters));
+        metrics.setMaxDeviationM(computeMaxDeviationMeters(attempt, route));
 
-        return new TrackMetrics(distance, gain, cov, dev);
+        return metrics;
     }
 
     // ---- Static helper methods ----
@@ -95,6 +168,193 @@ public class TrackMetrics {
     private static final double EARTH_RADIUS_M = 6371000.0;
     private static final int MAX_POINTS = 5000;
 
+    /** Below this speed a segment counts as standing still (≈1.8 km/h). */
+    public static final double MOVING_SPEED_MPS = 0.5;
+
+    /** Faster than any runner sustains on trail (≈30 km/h). */
+    public static final double MAX_PLAUSIBLE_SPEED_MPS = 8.5;
+
+    /**
+     * A run of consecutive too-fast segments is a spike only if it covers at
+     * least this distance; shorter runs are ordinary GPS jitter.
+     */
+    public static final double SPIKE_MIN_DISTANCE_M = 50.0;
+
+    /**
+     * Paused watch: a time step of at least PAUSE_MIN_S that is also
+     * PAUSE_SAMPLING_FACTOR times the previous step. The relative part keeps
+     * trackers that only log every few minutes from turning into gaps.
+     */
+    public static final double PAUSE_MIN_S = 60.0;
+    public static final double PAUSE_SAMPLING_FACTOR = 10.0;
+
+    /**
+     * Distance, raw elevation gain and all time-based metrics in a single pass
+     * over the track (coverage/deviation are left at 0).
+     *
+     * Speed spikes: consecutive segments faster than MAX_PLAUSIBLE_SPEED_MPS
+     * (or with distance but no elapsed time) are merged into one run; a run
+     * covering more than SPIKE_MIN_DISTANCE_M counts as one spike. That
+     * catches a single teleport as well as a ride in a vehicle sampled every
+     * second. Too-fast segments never contribute to maxSpeedKmh.
+     *
+     * Gaps: the step into a point flagged segmentStart (a new &lt;trkseg&gt;)
+     * and a paused-watch step (PAUSE_MIN_S) are not recorded movement. Their
+     * straight-line length goes to gapKm instead of distanceKm, and they add
+     * no moving time. A gap crossed faster than MAX_PLAUSIBLE_SPEED_MPS over
+     * more than SPIKE_MIN_DISTANCE_M still counts as a speed spike.
+     */
+    public static TrackMetrics fromTrack(List<TrackPoint> points) {
+        return fromTrack(points, null);
+    }
+
+    /**
+     * Same single pass, additionally feeding every point to a checkpoint
+     * matcher (may be null) so split times need no second scan.
+     */
+    public static TrackMetrics fromTrack(List<TrackPoint> points, CheckpointMatcher checkpoints) {
+        return fromTrack(points, checkpoints, null);
+    }
+
+    /**
+     * Same single pass; elevations go through elevationFilter (null = raw)
+     * before positive deltas are summed into the gain.
+     */
+    public static TrackMetrics fromTrack(List<TrackPoint> points,
+                                         CheckpointMatcher checkpoints,
+                                         ElevationFilter elevationFilter) {
+        TrackMetrics metrics = new TrackMetrics();
+        if (points == null || points.isEmpty()) {
+            return metrics;
+        }
+
+        double totalMeters = 0.0;
+        double gapMeters = 0.0;
+        int segments = 1;
+        double gain = 0.0;
+
+        long firstTime = TrackPoint.NO_TIME;
+        long lastTime = TrackPoint.NO_TIME;
+        double movingSeconds = 0.0;
+        double movingMeters = 0.0;
+        double maxSpeed = 0.0;
+        int spikes = 0;
+        double fastRunMeters = 0.0;
+        double lastStepSeconds = Double.NaN;
+
+        ElevationFilter filter = elevationFilter != null ? elevationFilter : new RawElevationFilter();
+
+        TrackPoint prev = points.get(0);
+        double prevEle = filter.filter(elevationOf(prev));
+        if (prev.hasTime()) {
+            firstTime = prev.getTimeMillis();
+            lastTime = firstTime;
+        }
+        if (checkpoints != null) {
+            checkpoints.accept(0, prev.getLatitude(), prev.getLongitude(), prev.getTimeMillis());
+        }
+
+        for (int i = 1; i < points.size(); i++) {
+            TrackPoint p = points.get(i);
+            if (checkpoints != null) {
+                checkpoints.accept(i, p.getLatitude(), p.getLongitude(), p.getTimeMillis());
+            }
+
+            double d = distanceMeters(prev, p);
+
+            // Seconds since the previous timed point (NaN if not comparable)
+            long t = p.getTimeMillis();
+            double dt = Double.NaN;
+            if (t != TrackPoint.NO_TIME && lastTime != TrackPoint.NO_TIME && prev.hasTime() && t >= lastTime) {
+                dt = (t - lastTime) / 1000.0;
+            }
+
+            boolean paused = dt >= PAUSE_MIN_S && dt >= lastStepSeconds * PAUSE_SAMPLING_FACTOR;
+            boolean gap = p.isSegmentStart() || paused;
+            if (p.isSegmentStart()) {
+                segments++;
+            }
+            if (gap) {
+                gapMeters += d;
+            } else {
+                totalMeters += d;
+            }
+
+            // Missing elevations don't break the chain: NaN keeps the last value
+            double ele = filter.filter(elevationOf(p));
+            if (!Double.isNaN(ele)) {
+                if (!Double.isNaN(prevEle) && ele > prevEle) {
+                    gain += (ele - prevEle);
+                }
+                prevEle = ele;
+            }
+
+            if (t != TrackPoint.NO_TIME) {
+                if (firstTime == TrackPoint.NO_TIME) {
+                    firstTime = t;
+                }
+                // Timed segment: compare with the previous timed point
+                if (!Double.isNaN(dt)) {
+                    double speed = dt > 0 ? d / dt : Double.POSITIVE_INFINITY;
+
+                    if (gap) {
+                        // Ends any fast run; the jump itself is one spike if implausible
+                        if (fastRunMeters > SPIKE_MIN_DISTANCE_M) {
+                            spikes++;
+                        }
+                        fastRunMeters = 0.0;
+                        if (speed > MAX_PLAUSIBLE_SPEED_MPS && d > SPIKE_MIN_DISTANCE_M) {
+                            spikes++;
+                        }
+                    } else if (speed > MAX_PLAUSIBLE_SPEED_MPS) {
+                        fastRunMeters += d;
+                    } else {
+                        if (fastRunMeters > SPIKE_MIN_DISTANCE_M) {
+                            spikes++;
+                        }
+                        fastRunMeters = 0.0;
+                        if (speed > maxSpeed) {
+                            maxSpeed = speed;
+                        }
+                    }
+
+                    if (!gap && dt > 0 && speed >= MOVING_SPEED_MPS) {
+                        movingSeconds += dt;
+                        movingMeters += d;
+                    }
+                    if (!gap && dt > 0) {
+                        lastStepSeconds = dt;
+                    }
+                }
+                if (lastTime == TrackPoint.NO_TIME || t > lastTime) {
+                    lastTime = t;
+                }
+            }
+            prev = p;
+        }
+        if (fastRunMeters > SPIKE_MIN_DISTANCE_M) {
+            spikes++;
+        }
+
+        metrics.setDistanceKm(totalMeters / 1000.0);
+        metrics.setElevationGainM(gain);
+        metrics.setTrackSegments(segments);
+        metrics.setGapKm(gapMeters / 1000.0);
+
+        if (firstTime != TrackPoint.NO_TIME && lastTime > firstTime) {
+            metrics.setElapsedSeconds((lastTime - firstTime) / 1000);
+            metrics.setMovingSeconds(Math.round(movingSeconds));
+            metrics.setAvgPaceSecPerKm(movingMeters > 0 ? movingSeconds / (movingMeters / 1000.0) : null);
+            metrics.setMaxSpeedKmh(maxSpeed * 3.6);
+            metrics.setSpeedSpikes(spikes);
+        }
+        return metrics;
+    }
+
+    /**
+     * Sum of the steps within each segment; the jump into a segmentStart
+     * point is not counted (pauses need timestamps: see fromTrack).
+     */
     public static double computeTotalDistanceKm(List<TrackPoint> points) {
         if (points == null || points.size() < 2) return 0.0;
 
@@ -103,6 +363,9 @@ public class TrackMetrics {
         for (int i = 1; i < points.size(); i++) {
             TrackPoint p1 = points.get(i - 1);
             TrackPoint p2 = points.get(i);
+            if (p2.isSegmentStart()) {
+                continue;
+            }
 
             totalMeters += haversineMeters(
                     p1.getLatitude(), p1.getLongitude(),
@@ -213,6 +476,11 @@ public class TrackMetrics {
         return out;
     }
 
+    private static double elevationOf(TrackPoint p) {
+        Double e = p.getElevation();
+        return e != null ? e : Double.NaN;
+    }
+
     private static double distanceMeters(TrackPoint p1, TrackPoint p2) {
         return haversineMeters(
                 p1.getLatitude(), p1.getLongitude(),
@@ -220,8 +488,11 @@ public class TrackMetrics {
         );
     }
 
-    private static double haversineMeters(double lat1Deg, double lon1Deg,
-                                          double lat2Deg, double lon2Deg) {
+    /**
+     * Great-circle distance in meters between two WGS84 coordinates.
+     */
+    public static double haversineMeters(double lat1Deg, double lon1Deg,
+                                         double lat2Deg, double lon2Deg) {
         double lat1 = Math.toRadians(lat1Deg);
         double lon1 = Math.toRadians(lon1Deg);
         double lat2 = Math.toRadians(lat2Deg);
@@ -0,0 +1,35 @@
+package org.trail.attemptverifier.util;
+
+import org.trail.attemptverifier.model.TrackPoint;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Reader for one activity file format (GPX, TCX, FIT).
+ *
+ * Every reader produces the same representation: track points in recording
+ * order, with segmentStart set on the first point of every recorded segment
+ * (GPX &lt;trkseg&gt;, TCX &lt;Track&gt;, FIT timer start after a stop).
+ * TrackFileReader picks the reader by sniffing the first bytes.
+ */
+public interface TrackReader {
+
+    /** Short name for logs: "GPX", "TCX", "FIT". */
+    String format();
+
+    /**
+     * True if a file starting with head[0..length) looks like this format.
+     * Only the first TrackFileReader.SNIFF_BYTES bytes are passed.
+     */
+    boolean accepts(byte[] head, int length);
+
+    /**
+     * Reads all track points. Malformed or truncated input is logged and
+     * gives an empty list rather than an exception or a partial track.
+     *
+     * @throws ParseLimits.LimitExceededException as soon as the file crosses
+     *         one of the ParseLimits caps
+     */
+    List<TrackPoint> read(InputStream in);
+}
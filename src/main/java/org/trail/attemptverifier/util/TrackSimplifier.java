@@ -0,0 +1,134 @@
+package org.trail.attemptverifier.util;
+
+import java.util.Arrays;
+
+/**
+ * Douglas–Peucker simplification, precomputed as per-point detail levels.
+ *
+ * Instead of storing one simplified copy per zoom level, every point gets
+ * the coarsest level at which it survives:
+ *
+ *   level 0 → only in the full-resolution track
+ *   level 1 → kept at  5 m tolerance
+ *   level 2 → kept at 20 m tolerance
+ *   level 3 → kept at 100 m tolerance
+ *
+ * A map view at level L draws the points with level &gt;= L. Endpoints are
+ * always at MAX_LEVEL, and so are the first and last point of every
+ * segment: each segment is simplified on its own.
+ */
+public final class TrackSimplifier {
+
+    public static final int MAX_LEVEL = 3;
+
+    private static final double[] TOLERANCES_M = {5.0, 20.0, 100.0};
+
+    private static final double METERS_PER_DEG_LAT = 111_320.0;
+
+    private TrackSimplifier() {
+    }
+
+    /**
+     * Computes the detail level of every point (see class doc).
+     */
+    public static byte[] computeLevels(PackedTrack track) {
+        int n = track.size();
+        byte[] levels = new byte[n];
+        if (n == 0) {
+            return levels;
+        }
+
+        // Local planar projection (meters) around the first point
+        double[] lat = track.latitudes();
+        double[] lon = track.longitudes();
+        double mPerDegLon = METERS_PER_DEG_LAT * Math.cos(Math.toRadians(lat[0]));
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = (lon[i] - lon[0]) * mPerDegLon;
+            y[i] = (lat[i] - lat[0]) * METERS_PER_DEG_LAT;
+        }
+
+        int[] starts = track.segmentStarts();
+        boolean[] keep = new boolean[n];
+        int[] stack = new int[64];
+        for (int level = 1; level <= MAX_LEVEL; level++) {
+            Arrays.fill(keep, false);
+            int from = 0;
+            for (int s = 0; s <= starts.length; s++) {
+                int to = s < starts.length ? starts[s] - 1 : n - 1;
+                stack = douglasPeucker(x, y, from, to, TOLERANCES_M[level - 1], keep, stack);
+                from = to + 1;
+            }
+            for (int i = 0; i < n; i++) {
+                if (keep[i]) {
+                    levels[i] = (byte) level;
+                }
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Iterative Douglas–Peucker over points from..to inclusive (explicit
+     * stack; tracks can have 100k+ points). Returns the possibly grown stack
+     * so it can be reused for the next segment and level.
+     */
+    private static int[] douglasPeucker(double[] x, double[] y, int from, int to, double tolerance,
+                                        boolean[] keep, int[] stack) {
+        keep[from] = true;
+        keep[to] = true;
+        if (to - from < 2) {
+            return stack;
+        }
+
+        double tol2 = tolerance * tolerance;
+        int sp = 0;
+        stack[sp++] = from;
+        stack[sp++] = to;
+
+        while (sp > 0) {
+            int last = stack[--sp];
+            int first = stack[--sp];
+
+            double ax = x[first], ay = y[first];
+            double dx = x[last] - ax, dy = y[last] - ay;
+            double len2 = dx * dx + dy * dy;
+
+            double maxD2 = -1.0;
+            int maxIdx = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d2 = segmentDistance2(x[i], y[i], ax, ay, dx, dy, len2);
+                if (d2 > maxD2) {
+                    maxD2 = d2;
+                    maxIdx = i;
+                }
+            }
+
+            if (maxIdx >= 0 && maxD2 > tol2) {
+                keep[maxIdx] = true;
+                if (sp + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[sp++] = first;
+                stack[sp++] = maxIdx;
+                stack[sp++] = maxIdx;
+                stack[sp++] = last;
+            }
+        }
+        return stack;
+    }
+
+    private static double segmentDistance2(double px, double py,
+                                           double ax, double ay,
+                                           double dx, double dy, double len2) {
+        double t = 0.0;
+        if (len2 > 0.0) {
+            t = ((px - ax) * dx + (py - ay) * dy) / len2;
+            t = t < 0.0 ? 0.0 : (t > 1.0 ? 1.0 : t);
+        }
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return cx * cx + cy * cy;
+    }
+}
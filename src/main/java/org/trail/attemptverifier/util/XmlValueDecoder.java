@@ -0,0 +1,209 @@
+package org.trail.attemptverifier.util;
+
+import org.trail.attemptverifier.model.TrackPoint;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Allocation-free decoding of the numbers and timestamps in GPX / TCX text.
+ *
+ * The readers hand over their reused StringBuilder (or the attribute String
+ * StAX already made) and the characters are scanned in place:
+ *
+ *  - parseDouble: plain decimals with up to 15 significant digits, e.g.
+ *    "47.1234567" or "-12.5". Mantissa and power of ten are both exact
+ *    doubles, so one division gives the correctly rounded value, the same
+ *    as Double.parseDouble.
+ *  - parseEpochMillis: "yyyy-MM-ddTHH:mm:ss[.fraction]Z", the form every
+ *    GPS device writes, computed straight from the calendar fields.
+ *
+ * Anything else (exponents, more digits, offsets like +02:00, leap seconds)
+ * falls back to the JDK parsers, so results never differ from them.
+ */
+public final class XmlValueDecoder {
+
+    /** Returned by parseEpochMillis for a missing or unreadable time (TrackPoint.NO_TIME). */
+    public static final long NO_TIME = TrackPoint.NO_TIME;
+
+    private static final int MAX_FAST_DIGITS = 15;
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    private XmlValueDecoder() {
+    }
+
+    // ------------------------------------------------------------
+    // Numbers
+    // ------------------------------------------------------------
+
+    /**
+     * Decimal value of the text, ignoring surrounding whitespace, or NaN if
+     * it is missing or not a number.
+     */
+    public static double parseDouble(CharSequence s) {
+        if (s == null) return Double.NaN;
+        int start = trimStart(s);
+        int end = trimEnd(s, start);
+        if (start == end) return Double.NaN;
+
+        int i = start;
+        boolean negative = false;
+        char c = s.charAt(i);
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;         // significant digits in the mantissa
+        int fraction = 0;       // digits after the point
+        boolean point = false;
+        boolean any = false;
+        for (; i < end; i++) {
+            c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                any = true;
+                if (point) fraction++;
+                if (mantissa == 0 && c == '0') continue; // leading zero
+                if (++digits > MAX_FAST_DIGITS) {
+                    return slowDouble(s, start, end);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                return slowDouble(s, start, end);
+            }
+        }
+        if (!any || fraction >= POW10.length) {
+            return slowDouble(s, start, end);
+        }
+
+        double v = mantissa / POW10[fraction];
+        return negative ? -v : v;
+    }
+
+    private static double slowDouble(CharSequence s, int start, int end) {
+        try {
+            return Double.parseDouble(s.subSequence(start, end).toString());
+        } catch (NumberFormatException ignored) {
+            return Double.NaN;
+        }
+    }
+
+    // ------------------------------------------------------------
+    // Timestamps
+    // ------------------------------------------------------------
+
+    /**
+     * UTC epoch millis of an ISO-8601 instant (fraction truncated to the
+     * millisecond, as Instant.toEpochMilli does), or NO_TIME.
+     */
+    public static long parseEpochMillis(CharSequence s) {
+        if (s == null) return NO_TIME;
+        int start = trimStart(s);
+        int end = trimEnd(s, start);
+        int len = end - start;
+
+        if (len < 20 || s.charAt(end - 1) != 'Z'
+                || s.charAt(start + 4) != '-' || s.charAt(start + 7) != '-'
+                || s.charAt(start + 10) != 'T'
+                || s.charAt(start + 13) != ':' || s.charAt(start + 16) != ':') {
+            return slowEpochMillis(s, start, end);
+        }
+
+        int year = digits(s, start, 4);
+        int month = digits(s, start + 5, 2);
+        int day = digits(s, start + 8, 2);
+        int hour = digits(s, start + 11, 2);
+        int minute = digits(s, start + 14, 2);
+        int second = digits(s, start + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return slowEpochMillis(s, start, end);
+        }
+
+        int millis = 0;
+        int pos = start + 19;
+        int zone = end - 1;
+        if (pos < zone) {
+            int fractionDigits = zone - pos - 1;
+            if (s.charAt(pos) != '.' || fractionDigits < 1 || fractionDigits > 9) {
+                return slowEpochMillis(s, start, end);
+            }
+            for (int i = 0; i < fractionDigits; i++) {
+                int d = s.charAt(pos + 1 + i) - '0';
+                if (d < 0 || d > 9) {
+                    return slowEpochMillis(s, start, end);
+                }
+                if (i < 3) {
+                    millis = millis * 10 + d;
+                }
+            }
+            for (int i = fractionDigits; i < 3; i++) {
+                millis *= 10;
+            }
+        }
+
+        long seconds = epochDay(year, month, day) * 86_400L + hour * 3_600L + minute * 60L + second;
+        return seconds * 1000L + millis;
+    }
+
+    private static long slowEpochMillis(CharSequence s, int start, int end) {
+        try {
+            return Instant.parse(s.subSequence(start, end).toString()).toEpochMilli();
+        } catch (DateTimeParseException | ArithmeticException ignored) {
+            return NO_TIME;
+        }
+    }
+
+    /** Days since 1970-01-01 of a proleptic Gregorian date. */
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468L;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        if (month == 2 && (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0))) {
+            return 29;
+        }
+        return DAYS_IN_MONTH[month - 1];
+    }
+
+    // -------------------------
+    // Helpers
+    // -------------------------
+
+    /** Value of count ASCII digits at pos, or -1. */
+    private static int digits(CharSequence s, int pos, int count) {
+        int v = 0;
+        for (int i = pos; i < pos + count; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    private static int trimStart(CharSequence s) {
+        int i = 0;
+        while (i < s.length() && s.charAt(i) <= ' ') i++;
+        return i;
+    }
+
+    private static int trimEnd(CharSequence s, int start) {
+        int end = s.length();
+        while (end > start && s.charAt(end - 1) <= ' ') end--;
+        return end;
+    }
+}
@@ -0,0 +1,160 @@
+-- Attempt Verifier schema for H2 in MySQL mode: the embedded profile
+-- (application-embedded.properties, H2 file) and the load test (H2 in memory).
+-- Same tables and keys as db/attempt_verifier_db 2.sql, minus the conceptual
+-- users/routes tables. Run on every start, so every statement is idempotent.
+
+CREATE TABLE IF NOT EXISTS attempts (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    runner_id VARCHAR(100) NOT NULL,
+    timestamp DATETIME NOT NULL,
+    distance_km DOUBLE NOT NULL,
+    elevation_gain_m DOUBLE NOT NULL,
+    difficulty_score DOUBLE NOT NULL,
+    coverage_ratio DOUBLE,
+    max_deviation_m DOUBLE,
+    gpx_data BLOB,
+    elapsed_time_s BIGINT,
+    moving_time_s BIGINT,
+    avg_pace_s_per_km DOUBLE,
+    max_speed_kmh DOUBLE,
+    speed_spikes INT,
+    checkpoints_reached INT,
+    checkpoints_total INT,
+    progress_km DOUBLE,
+    route_completion DOUBLE,
+    skipped_km DOUBLE,
+    track_segments INT,
+    gap_km DOUBLE,
+    gpx_sha256 CHAR(64),
+    route_hash CHAR(64),
+    result VARCHAR(20) NOT NULL,
+    message VARCHAR(255),
+    route_id BIGINT,
+    UNIQUE KEY uq_attempts_route_content (route_hash, gpx_sha256, runner_id),
+    KEY idx_attempts_gpx_sha256 (gpx_sha256)
+);
+
+-- Columns added after the first embedded release
+ALTER TABLE attempts ADD COLUMN IF NOT EXISTS progress_km DOUBLE;
+ALTER TABLE attempts ADD COLUMN IF NOT EXISTS route_completion DOUBLE;
+ALTER TABLE attempts ADD COLUMN IF NOT EXISTS skipped_km DOUBLE;
+ALTER TABLE attempts ADD COLUMN IF NOT EXISTS track_segments INT;
+ALTER TABLE attempts ADD COLUMN IF NOT EXISTS gap_km DOUBLE;
+
+CREATE TABLE IF NOT EXISTS attempt_metrics (
+    metric_id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    attempt_id BIGINT NOT NULL UNIQUE,
+    time_taken_seconds INT,
+    weather_conditions VARCHAR(100),
+    version_checked VARCHAR(50),
+    packed_track MEDIUMBLOB,
+    FOREIGN KEY (attempt_id) REFERENCES attempts(id)
+);
+
+CREATE TABLE IF NOT EXISTS gpx_blobs (
+    sha256 CHAR(64) PRIMARY KEY,
+    size_bytes BIGINT NOT NULL,
+    data LONGBLOB NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS reverify_jobs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    route_hash CHAR(64) NOT NULL,
+    tolerance_m DOUBLE NOT NULL,
+    stale_only BOOLEAN NOT NULL,
+    last_attempt_id BIGINT NOT NULL DEFAULT 0,
+    total_attempts INT NOT NULL DEFAULT 0,
+    processed INT NOT NULL DEFAULT 0,
+    changed INT NOT NULL DEFAULT 0,
+    skipped INT NOT NULL DEFAULT 0,
+    failed INT NOT NULL DEFAULT 0,
+    failed_attempt_ids VARCHAR(1000),
+    started_at DATETIME NOT NULL,
+    updated_at DATETIME NOT NULL,
+    message VARCHAR(255),
+    KEY idx_reverify_jobs_status (status)
+);
+
+-- Per-attempt failures added after the first embedded release
+ALTER TABLE reverify_jobs ADD COLUMN IF NOT EXISTS failed INT NOT NULL DEFAULT 0;
+ALTER TABLE reverify_jobs ADD COLUMN IF NOT EXISTS failed_attempt_ids VARCHAR(1000);
+
+CREATE TABLE IF NOT EXISTS runner_summaries (
+    route_hash CHAR(64) NOT NULL,
+    runner_id VARCHAR(100) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    verified INT NOT NULL DEFAULT 0,
+    flagged INT NOT NULL DEFAULT 0,
+    rejected INT NOT NULL DEFAULT 0,
+    best_verified_score DOUBLE,
+    best_attempt_id BIGINT,
+    last_attempt_at DATETIME,
+    PRIMARY KEY (route_hash, runner_id),
+    KEY idx_runner_summaries_board (route_hash, best_verified_score),
+    KEY idx_runner_summaries_runner (runner_id)
+);
+
+CREATE TABLE IF NOT EXISTS attempt_checkpoints (
+    attempt_id BIGINT NOT NULL,
+    seq INT NOT NULL,
+    name VARCHAR(255),
+    chainage_m DOUBLE NOT NULL,
+    reached BOOLEAN NOT NULL,
+    point_index INT,
+    reached_at DATETIME,
+    elapsed_s BIGINT,
+    split_s BIGINT,
+    PRIMARY KEY (attempt_id, seq),
+    FOREIGN KEY (attempt_id) REFERENCES attempts(id)
+);
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    idem_key VARCHAR(128) PRIMARY KEY,
+    runner_id VARCHAR(100) NOT NULL,
+    attempt_id BIGINT NOT NULL,
+    created_at DATETIME NOT NULL,
+    KEY idx_idempotency_keys_created (created_at)
+);
+
+CREATE TABLE IF NOT EXISTS attempt_sync (
+    attempt_id BIGINT PRIMARY KEY,
+    central_attempt_id BIGINT,
+    synced_at DATETIME,
+    failures INT NOT NULL DEFAULT 0,
+    last_error VARCHAR(500),
+    failed_at DATETIME,
+    FOREIGN KEY (attempt_id) REFERENCES attempts(id)
+);
+
+-- Failure tracking added after the first embedded release
+ALTER TABLE attempt_sync ALTER COLUMN central_attempt_id SET NULL;
+ALTER TABLE attempt_sync ALTER COLUMN synced_at SET NULL;
+ALTER TABLE attempt_sync ADD COLUMN IF NOT EXISTS failures INT NOT NULL DEFAULT 0;
+ALTER TABLE attempt_sync ADD COLUMN IF NOT EXISTS last_error VARCHAR(500);
+ALTER TABLE attempt_sync ADD COLUMN IF NOT EXISTS failed_at DATETIME;
+
+CREATE TABLE IF NOT EXISTS id_blocks (
+    name VARCHAR(50) PRIMARY KEY,
+    next_id BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS attempt_cells (
+    cell BIGINT NOT NULL,
+    attempt_id BIGINT NOT NULL,
+    points INT NOT NULL,
+    off_route_points INT NOT NULL,
+    PRIMARY KEY (cell, attempt_id),
+    KEY idx_attempt_cells_attempt (attempt_id),
+    FOREIGN KEY (attempt_id) REFERENCES attempts(id)
+);
+
+CREATE TABLE IF NOT EXISTS heatmap_cells (
+    precision_chars TINYINT NOT NULL,
+    cell BIGINT NOT NULL,
+    points BIGINT NOT NULL,
+    off_route_points BIGINT NOT NULL,
+    attempts INT NOT NULL,
+    PRIMARY KEY (precision_chars, cell)
+);
@@ -0,0 +1,77 @@
+package org.trail.attemptverifier;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.trail.attemptverifier.controller.AdminController;
+import org.trail.attemptverifier.controller.AttemptController;
+import org.trail.attemptverifier.controller.HealthController;
+import org.trail.attemptverifier.controller.LeaderboardController;
+import org.trail.attemptverifier.model.Attempt;
+import org.trail.attemptverifier.model.CheckpointSplit;
+import org.trail.attemptverifier.model.ReverificationJob;
+import org.trail.attemptverifier.model.RunnerSummary;
+import org.trail.attemptverifier.model.TrackPoint;
+import org.trail.attemptverifier.repository.AttemptCellRepository;
+import org.trail.attemptverifier.repository.RunnerSummaryRepository;
+import org.trail.attemptverifier.service.AdmissionControlService;
+import org.trail.attemptverifier.service.CentralSyncService;
+import org.trail.attemptverifier.service.RouteRegistry;
+import org.trail.attemptverifier.service.SpatialIndexService;
+import org.trail.attemptverifier.util.Excursions;
+import org.trail.attemptverifier.util.RouteProgress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Every body a controller can return, including those behind
+ * ResponseEntity&lt;?&gt; that Spring AOT cannot see, must be bound by
+ * reflection in the native image.
+ */
+class AttemptVerifierRuntimeHintsTest {
+
+    private static final Class<?>[] CONTROLLER_PAYLOADS = {
+            // AttemptController
+            Attempt.class,
+            TrackPoint.class,
+            CheckpointSplit.class,
+            RouteProgress.class,
+            RouteProgress.Section.class,
+            Excursions.class,
+            Excursions.Excursion.class,
+            AttemptController.ErrorResponse.class,
+            AttemptController.ResetResponse.class,
+            // LeaderboardController
+            LeaderboardController.LeaderboardPage.class,
+            RunnerSummary.class,
+            RunnerSummaryRepository.RouteTotals.class,
+            // AdminController
+            AdmissionControlService.Stats.class,
+            CentralSyncService.SyncStatus.class,
+            ReverificationJob.class,
+            AdminController.RouteInfo.class,
+            RouteRegistry.RouteInfo.class,
+            // RouteController
+            RouteRegistry.Detection.class,
+            RouteRegistry.Candidate.class,
+            // AreaController
+            SpatialIndexService.AreaResult.class,
+            AttemptCellRepository.AreaAttempt.class,
+            SpatialIndexService.HeatmapTile.class,
+            SpatialIndexService.TileCell.class,
+            // HealthController
+            HealthController.Readiness.class
+    };
+
+    @Test
+    void registersEveryControllerPayload() {
+        RuntimeHints hints = new RuntimeHints();
+        new AttemptVerifierRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        for (Class<?> type : CONTROLLER_PAYLOADS) {
+            assertThat(RuntimeHintsPredicates.reflection().onType(type))
+                    .as(type.getName())
+                    .accepts(hints);
+        }
+    }
+}
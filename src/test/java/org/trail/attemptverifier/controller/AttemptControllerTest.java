@@ -0,0 +1,228 @@
+package org.trail.attemptverifier.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.trail.attemptverifier.model.Attempt;
+import org.trail.attemptverifier.service.AdmissionControlService;
+import org.trail.attemptverifier.service.AttemptVerifierService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * AttemptController called directly, with the verification itself
+ * replaced by a stub.
+ */
+class AttemptControllerTest {
+
+    private static final int KB = 1024;
+
+    /** 1000 bytes, each its offset mod 251, so a wrong slice cannot match. */
+    private static final byte[] FILE = new byte[1000];
+
+    static {
+        for (int i = 0; i < FILE.length; i++) {
+            FILE[i] = (byte) (i % 251);
+        }
+    }
+
+    private StubVerifier verifier;
+
+    @BeforeEach
+    void createVerifier() {
+        verifier = new StubVerifier();
+    }
+
+    // -------------------------
+    // POST /api/attempts/upload: admission control
+    // -------------------------
+
+    @Test
+    void uploadOverTheRunnerRateIs429WithRetryAfter() {
+        // 6 per minute, burst 1
+        AttemptController controller = controller(new AdmissionControlService(150, 0, 0, 5, 6, 1));
+
+        assertThat(controller.uploadAttempt("r1", gpx(KB), null).getStatusCode().value()).isEqualTo(200);
+        ResponseEntity<?> limited = controller.uploadAttempt("r1", gpx(KB), null);
+
+        assertThat(limited.getStatusCode().value()).isEqualTo(429);
+        assertThat(limited.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("10");
+        assertThat(error(limited)).contains("rate limit");
+        assertThat(verifier.calls).isEqualTo(1);
+    }
+
+    @Test
+    void uploadWhileTheServerIsBusyIs503AndKeepsTheRunnersToken() {
+        // 1 MB budget, no queue, one upload per runner that never refills
+        AdmissionControlService admission = new AdmissionControlService(1, 0, 0, 7, 0, 1);
+        AttemptController controller = controller(admission);
+
+        ResponseEntity<?> busy;
+        try (AdmissionControlService.Permit other = admission.admit("r2", 1024 * KB)) {
+            busy = controller.uploadAttempt("r1", gpx(KB), null);
+        }
+
+        assertThat(busy.getStatusCode().value()).isEqualTo(503);
+        assertThat(busy.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("7");
+        assertThat(verifier.calls).isZero();
+        // the refunded token is the runner's only one
+        assertThat(controller.uploadAttempt("r1", gpx(KB), null).getStatusCode().value()).isEqualTo(200);
+        assertThat(controller.uploadAttempt("r1", gpx(KB), null).getStatusCode().value()).isEqualTo(429);
+    }
+
+    @Test
+    void failedVerificationReleasesItsKibWeight() {
+        AdmissionControlService admission = new AdmissionControlService(1, 0, 0, 5, 600, 100);
+        AttemptController controller = controller(admission);
+        verifier.failure = new IOException("truncated file");
+
+        ResponseEntity<?> failed = controller.uploadAttempt("r1", gpx(1024 * KB), null);
+
+        assertThat(failed.getStatusCode().value()).isEqualTo(500);
+        assertThat(error(failed)).contains("truncated file");
+        assertThat(verifier.inflightMbDuringCall).isEqualTo(1.0);
+        assertThat(admission.getStats().getInflightMb()).isZero();
+        assertThat(admission.getStats().getActiveUploads()).isZero();
+
+        // the whole budget is free again
+        verifier.failure = null;
+        assertThat(controller.uploadAttempt("r1", gpx(1024 * KB), null).getStatusCode().value()).isEqualTo(200);
+        assertThat(admission.getStats().getRejectedBusy()).isZero();
+    }
+
+    // -------------------------
+    // GET /api/attempts/{id}/gpx: Range
+    // -------------------------
+
+    @Test
+    void gpxWithoutARangeIsTheWholeFile() throws IOException {
+        AttemptController controller = gpxController();
+
+        ResponseEntity<StreamingResponseBody> whole = controller.getAttemptGpx(1L, null);
+
+        assertThat(whole.getStatusCode().value()).isEqualTo(200);
+        assertThat(whole.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+        assertThat(whole.getHeaders().getContentLength()).isEqualTo(FILE.length);
+        assertThat(body(whole)).isEqualTo(FILE);
+        assertThat(controller.getAttemptGpx(2L, null).getStatusCode().value()).isEqualTo(404);
+    }
+
+    @Test
+    void singleRangeIs206WithThoseBytes() throws IOException {
+        AttemptController controller = gpxController();
+
+        assertPartial(controller.getAttemptGpx(1L, "bytes=10-19"), 10, 19);
+        assertPartial(controller.getAttemptGpx(1L, "bytes=990-"), 990, 999);
+        assertPartial(controller.getAttemptGpx(1L, "bytes=-5"), 995, 999);
+        // an end past the file is cut to its last byte
+        assertPartial(controller.getAttemptGpx(1L, "bytes=995-5000"), 995, 999);
+    }
+
+    @Test
+    void rangeStartingPastTheEndIs416() {
+        AttemptController controller = gpxController();
+
+        for (String range : new String[] {"bytes=1000-", "bytes=1000-1010", "bytes=-0"}) {
+            ResponseEntity<StreamingResponseBody> unsatisfiable = controller.getAttemptGpx(1L, range);
+            assertThat(unsatisfiable.getStatusCode().value()).as(range).isEqualTo(416);
+            assertThat(unsatisfiable.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).as(range)
+                    .isEqualTo("bytes */1000");
+            assertThat(unsatisfiable.getBody()).as(range).isNull();
+        }
+    }
+
+    @Test
+    void multipleOrMalformedRangesGetTheWholeFile() throws IOException {
+        AttemptController controller = gpxController();
+
+        for (String range : new String[] {"bytes=0-1,5-6", "items=0-9", "bytes=9-1"}) {
+            ResponseEntity<StreamingResponseBody> whole = controller.getAttemptGpx(1L, range);
+            assertThat(whole.getStatusCode().value()).as(range).isEqualTo(200);
+            assertThat(body(whole)).as(range).isEqualTo(FILE);
+        }
+    }
+
+    // -------------------------
+    // Helpers
+    // -------------------------
+
+    private AttemptController gpxController() {
+        verifier.files.put(1L, FILE);
+        return controller(new AdmissionControlService(150, 0, 0, 5, 6, 3));
+    }
+
+    private static void assertPartial(ResponseEntity<StreamingResponseBody> response, int start, int end)
+            throws IOException {
+        assertThat(response.getStatusCode().value()).isEqualTo(206);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE))
+                .isEqualTo("bytes " + start + "-" + end + "/" + FILE.length);
+        assertThat(response.getHeaders().getContentLength()).isEqualTo(end - start + 1);
+        assertThat(body(response)).isEqualTo(Arrays.copyOfRange(FILE, start, end + 1));
+    }
+
+    private static byte[] body(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toByteArray();
+    }
+
+    private AttemptController controller(AdmissionControlService admission) {
+        verifier.admission = admission;
+        return new AttemptController(verifier, null, null, admission);
+    }
+
+    private static MockMultipartFile gpx(int bytes) {
+        return new MockMultipartFile("file", "attempt.gpx", "application/gpx+xml", new byte[bytes]);
+    }
+
+    private static String error(ResponseEntity<?> response) {
+        return ((AttemptController.ErrorResponse) response.getBody()).getError();
+    }
+
+    /**
+     * Returns a new attempt or throws the configured failure, and records
+     * the in-flight budget seen while it runs. Raw files come from files.
+     */
+    private static final class StubVerifier extends AttemptVerifierService {
+        final Map<Long, byte[]> files = new HashMap<>();
+        AdmissionControlService admission;
+        IOException failure;
+        int calls;
+        double inflightMbDuringCall;
+
+        StubVerifier() {
+            super(null, null, null, null, null, null, 30.0, 50.0, 300.0, 0.5, 500.0, false);
+        }
+
+        @Override
+        public Attempt verifyAttempt(MultipartFile gpxFile, String runnerId) throws IOException {
+            calls++;
+            inflightMbDuringCall = admission.getStats().getInflightMb();
+            if (failure != null) {
+                throw failure;
+            }
+            Attempt attempt = new Attempt(runnerId);
+            attempt.setId((long) calls);
+            attempt.setResult("VERIFIED");
+            return attempt;
+        }
+
+        @Override
+        public Optional<Resource> loadAttemptGpx(Long attemptId) {
+            return Optional.ofNullable(files.get(attemptId)).map(ByteArrayResource::new);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package org.trail.attemptverifier.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.trail.attemptverifier.model.Attempt;
+import org.trail.attemptverifier.model.RunnerSummary;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * runner_summaries as kept by AttemptRepository over an in-memory H2
+ * (schema-h2.sql).
+ */
+class RunnerSummaryRepositoryTest {
+
+    private static final String OLD_ROUTE = "a".repeat(64);
+    private static final String NEW_ROUTE = "b".repeat(64);
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 11, 8, 11, 33, 48);
+
+    private JdbcTemplate jdbc;
+    private RunnerSummaryRepository summaries;
+    private AttemptRepository attempts;
+    private final AtomicInteger files = new AtomicInteger();
+
+    @BeforeEach
+    void createDatabase() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/schema-h2.sql")).execute(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+        summaries = new RunnerSummaryRepository(jdbc);
+        attempts = new AttemptRepository(jdbc, summaries);
+    }
+
+    @Test
+    void eachSavedAttemptIsFoldedIntoItsRow() {
+        attempts.save(attempt("r1", OLD_ROUTE, "VERIFIED", 70.0, 0));
+        Attempt best = attempts.save(attempt("r1", OLD_ROUTE, "VERIFIED", 90.0, 1));
+        attempts.save(attempt("r1", OLD_ROUTE, "FLAGGED", 99.0, 2));
+        attempts.save(attempt("r1", OLD_ROUTE, "VERIFIED", 90.0, 3));   // ties do not take over
+        attempts.save(attempt("r1", OLD_ROUTE, "REJECTED", 10.0, 4));
+        attempts.save(attempt("r1", null, "VERIFIED", 95.0, 5));        // route unavailable: not ranked
+
+        RunnerSummary row = summary(OLD_ROUTE, "r1");
+        assertThat(row.getAttempts()).isEqualTo(5);
+        assertThat(row.getVerified()).isEqualTo(3);
+        assertThat(row.getFlagged()).isEqualTo(1);
+        assertThat(row.getRejected()).isEqualTo(1);
+        assertThat(row.getBestVerifiedScore()).isEqualTo(90.0);
+        assertThat(row.getBestAttemptId()).isEqualTo(best.getId());
+        assertThat(row.getLastAttemptAt()).isEqualTo(T0.plusDays(4));
+        assertThat(summaries.findByRunnerId("r1")).hasSize(1);
+    }
+
+    @Test
+    void batchInsertFoldsRowsLikeSingleSaves() {
+        List<Attempt> batch = List.of(
+                attempt("r1", OLD_ROUTE, "FLAGGED", 80.0, 0),
+                attempt("r1", OLD_ROUTE, "VERIFIED", 60.0, 1),
+                attempt("r1", OLD_ROUTE, "VERIFIED", 75.0, 2),
+                attempt("r2", OLD_ROUTE, "REJECTED", 20.0, 3));
+        long id = attempts.allocateIds(batch.size());
+        for (Attempt a : batch) {
+            a.setId(id++);
+        }
+        attempts.insertBatchWithIds(batch);
+
+        RunnerSummary r1 = summary(OLD_ROUTE, "r1");
+        assertThat(r1.getAttempts()).isEqualTo(3);
+        assertThat(r1.getVerified()).isEqualTo(2);
+        assertThat(r1.getFlagged()).isEqualTo(1);
+        assertThat(r1.getBestVerifiedScore()).isEqualTo(75.0);
+        assertThat(r1.getBestAttemptId()).isEqualTo(batch.get(2).getId());
+
+        RunnerSummary r2 = summary(OLD_ROUTE, "r2");
+        assertThat(r2.getAttempts()).isEqualTo(1);
+        assertThat(r2.getRejected()).isEqualTo(1);
+        assertThat(r2.getBestVerifiedScore()).isNull();
+        assertThat(r2.getBestAttemptId()).isNull();
+    }
+
+    @Test
+    void leaderboardRanksBestVerifiedScoreThenEarliestBestAttempt() {
+        attempts.save(attempt("slow", OLD_ROUTE, "VERIFIED", 50.0, 0));
+        attempts.save(attempt("tied-first", OLD_ROUTE, "VERIFIED", 80.0, 1));
+        attempts.save(attempt("fast", OLD_ROUTE, "VERIFIED", 95.0, 2));
+        attempts.save(attempt("tied-second", OLD_ROUTE, "VERIFIED", 80.0, 3));
+        attempts.save(attempt("slow", OLD_ROUTE, "FLAGGED", 99.0, 4));     // flagged never ranks
+        attempts.save(attempt("flagged-only", OLD_ROUTE, "FLAGGED", 99.0, 5));
+        attempts.save(attempt("fast", NEW_ROUTE, "VERIFIED", 10.0, 6));    // other route
+
+        assertThat(summaries.findLeaderboard(OLD_ROUTE, 0, 10))
+                .extracting(RunnerSummary::getRunnerId)
+                .containsExactly("fast", "tied-first", "tied-second", "slow");
+        assertThat(summaries.findLeaderboard(OLD_ROUTE, 1, 2))
+                .extracting(RunnerSummary::getRunnerId)
+                .containsExactly("tied-first", "tied-second");
+        assertThat(summaries.findLeaderboard(NEW_ROUTE, 0, 10))
+                .extracting(RunnerSummary::getRunnerId)
+                .containsExactly("fast");
+
+        assertThat(summaries.findRouteTotals()).satisfiesExactly(
+                old -> {
+                    assertThat(old.getRouteHash()).isEqualTo(OLD_ROUTE);
+                    assertThat(old.getRunners()).isEqualTo(5);
+                    assertThat(old.getVerifiedFinishers()).isEqualTo(4);
+                    assertThat(old.getAttempts()).isEqualTo(6);
+                },
+                other -> assertThat(other.getRouteHash()).isEqualTo(NEW_ROUTE));
+    }
+
+    @Test
+    void reverifiedBatchMovesCountsAndBestBetweenRouteVersions() {
+        Attempt best = attempts.save(attempt("r1", OLD_ROUTE, "VERIFIED", 90.0, 0));
+        Attempt second = attempts.save(attempt("r1", OLD_ROUTE, "VERIFIED", 70.0, 1));
+        Attempt flagged = attempts.save(attempt("r1", OLD_ROUTE, "FLAGGED", 50.0, 2));
+        Attempt other = attempts.save(attempt("r2", OLD_ROUTE, "VERIFIED", 60.0, 3));
+
+        // the new route version demotes the best attempt and promotes the flagged one
+        best.setRouteHash(NEW_ROUTE);
+        best.setResult("FLAGGED");
+        flagged.setRouteHash(NEW_ROUTE);
+        flagged.setResult("VERIFIED");
+        flagged.setDifficultyScore(55.0);
+        assertThat(attempts.batchUpdateVerification(List.of(best, flagged))).isEqualTo(2);
+
+        RunnerSummary oldRow = summary(OLD_ROUTE, "r1");
+        assertThat(oldRow.getAttempts()).isEqualTo(1);
+        assertThat(oldRow.getVerified()).isEqualTo(1);
+        assertThat(oldRow.getFlagged()).isZero();
+        assertThat(oldRow.getBestVerifiedScore()).isEqualTo(70.0);
+        assertThat(oldRow.getBestAttemptId()).isEqualTo(second.getId());
+        assertThat(oldRow.getLastAttemptAt()).isEqualTo(T0.plusDays(1));
+
+        RunnerSummary newRow = summary(NEW_ROUTE, "r1");
+        assertThat(newRow.getAttempts()).isEqualTo(2);
+        assertThat(newRow.getVerified()).isEqualTo(1);
+        assertThat(newRow.getFlagged()).isEqualTo(1);
+        assertThat(newRow.getBestVerifiedScore()).isEqualTo(55.0);
+        assertThat(newRow.getBestAttemptId()).isEqualTo(flagged.getId());
+        assertThat(newRow.getLastAttemptAt()).isEqualTo(T0.plusDays(2));
+
+        // r2 was not in the batch
+        assertThat(summary(OLD_ROUTE, "r2").getBestAttemptId()).isEqualTo(other.getId());
+    }
+
+    @Test
+    void rowOfAKeyLeftWithoutAttemptsIsDeleted() {
+        Attempt only = attempts.save(attempt("r1", OLD_ROUTE, "REJECTED", 10.0, 0));
+
+        only.setRouteHash(NEW_ROUTE);
+        attempts.batchUpdateVerification(List.of(only));
+
+        assertThat(summaries.findByRunnerId("r1")).singleElement().satisfies(s -> {
+            assertThat(s.getRouteHash()).isEqualTo(NEW_ROUTE);
+            assertThat(s.getRejected()).isEqualTo(1);
+            assertThat(s.getBestVerifiedScore()).isNull();
+        });
+    }
+
+    // -------------------------
+    // Helpers
+    // -------------------------
+
+    private Attempt attempt(String runnerId, String routeHash, String result, double score, int day) {
+        Attempt a = new Attempt(runnerId);
+        a.setAttemptTime(T0.plusDays(day));
+        a.setResult(result);
+        a.setDifficultyScore(score);
+        a.setRouteHash(routeHash);
+        a.setGpxSha256(String.format("%064x", files.incrementAndGet()));
+        return a;
+    }
+
+    private RunnerSummary summary(String routeHash, String runnerId) {
+        return summaries.findByRunnerId(runnerId).stream()
+                .filter(s -> s.getRouteHash().equals(routeHash))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,280 @@
+package org.trail.attemptverifier.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.trail.attemptverifier.model.Attempt;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * WriteBehindAttemptStore over an in-memory H2 (schema-h2.sql) and the
+ * real AttemptRepository, whose batch insert can be made to fail or wait.
+ */
+class WriteBehindAttemptStoreTest {
+
+    private static final String ROUTE = "a".repeat(64);
+
+    @TempDir
+    Path deadLetters;
+
+    private JdbcTemplate jdbc;
+    private ScriptedRepository repository;
+    private DataSourceTransactionManager transactionManager;
+    private final List<WriteBehindAttemptStore> stores = new ArrayList<>();
+
+    @BeforeEach
+    void createDatabase() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/schema-h2.sql")).execute(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+        repository = new ScriptedRepository(jdbc);
+        transactionManager = new DataSourceTransactionManager(dataSource);
+    }
+
+    @AfterEach
+    void shutdown() {
+        stores.forEach(WriteBehindAttemptStore::shutdown);
+    }
+
+    @Test
+    void idsComeFromReservedBlocksBeforeTheFlush() {
+        WriteBehindAttemptStore store = store(500, 100, 100, 5, 3);
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            Attempt saved = store.save(attempt("r" + i, i));
+            ids.add(saved.getId());
+            // readable by id while still queued
+            assertThat(store.findById(saved.getId())).containsSame(saved);
+        }
+
+        assertThat(ids).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L);
+        assertThat(jdbc.queryForObject("SELECT next_id FROM id_blocks WHERE name = 'attempts'", Long.class))
+                .isEqualTo(11L);
+        assertThat(store.countAttempts()).isEqualTo(7);
+        assertThat(store.findById(7L)).get().extracting(Attempt::getRunnerId).isEqualTo("r6");
+    }
+
+    @Test
+    void batchesAreWrittenInQueueOrderBeforeTheirDependentWrites() {
+        WriteBehindAttemptStore store = store(50, 3, 100, 100, 3);
+
+        List<Long> rowsSeenByDependentWrites = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 7; i++) {
+            Attempt saved = store.save(attempt("r" + i, i));
+            store.afterSave(saved, () -> rowsSeenByDependentWrites.add(jdbc.queryForObject(
+                    "SELECT COUNT(*) FROM attempts WHERE id = ?", Long.class, saved.getId())));
+        }
+
+        assertThat(store.findAll()).extracting(Attempt::getId).containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L, 6L, 7L);
+        List<Long> written = repository.batches.stream().flatMap(List::stream).toList();
+        assertThat(written).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L);
+        assertThat(repository.batches).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(3));
+        // reads wait for the rows, not for the writes that follow them
+        awaitUntil(() -> rowsSeenByDependentWrites.size() == 7);
+        assertThat(rowsSeenByDependentWrites).containsOnly(1L);
+    }
+
+    @Test
+    void fullQueueRejectsTheSaveAndReleasesItsClaim() throws InterruptedException {
+        WriteBehindAttemptStore store = store(1, 1, 1, 100, 3);
+        repository.gate = new CountDownLatch(1);
+
+        store.save(attempt("r1", 1));
+        assertThat(repository.entered.await(5, TimeUnit.SECONDS)).isTrue(); // flusher holds r1
+        store.save(attempt("r2", 2));                                       // fills the queue
+
+        Attempt rejected = attempt("r3", 3);
+        assertThatThrownBy(() -> store.save(rejected))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("queue is full");
+        assertThat(store.findById(rejected.getId())).isEmpty();
+
+        repository.gate.countDown();
+        Attempt again = store.save(attempt("r3", 3));
+        assertThat(again.getId()).isNotEqualTo(rejected.getId());
+        assertThat(store.findAll()).extracting(Attempt::getRunnerId).containsExactlyInAnyOrder("r1", "r2", "r3");
+    }
+
+    @Test
+    void sameContentIsRejectedWhileCommittedButNotYetForgotten() throws InterruptedException {
+        WriteBehindAttemptStore store = store(5000, 2, 100, 100, 3);
+
+        // first's dependent writes run after the commit, before second is forgotten;
+        // registered before second fills the batch, so they run on the flusher
+        Attempt first = store.save(attempt("r1", 1));
+        CountDownLatch inWindow = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        store.afterSave(first, () -> {
+            inWindow.countDown();
+            awaitQuietly(release);
+        });
+        Attempt second = store.save(attempt("r2", 2));
+        assertThat(inWindow.await(5, TimeUnit.SECONDS)).isTrue();
+
+        try {
+            assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM attempts", Integer.class)).isEqualTo(2);
+            assertThatThrownBy(() -> store.save(attempt("r2", 2)))
+                    .isInstanceOf(DuplicateKeyException.class)
+                    .hasMessageContaining("#" + second.getId());
+            assertThat(store.findByContentHash(ROUTE, sha(2)))
+                    .extracting(Attempt::getId).containsExactly(second.getId());
+        } finally {
+            release.countDown();
+        }
+
+        // once forgotten, the table's unique key rejects it, and only it
+        assertThat(store.findAll()).hasSize(2);
+        Attempt late = store.save(attempt("r2", 2));
+        Attempt other = store.save(attempt("r3", 3));
+        assertThat(store.findById(late.getId())).contains(late);
+        assertThat(store.findAll()).extracting(Attempt::getId)
+                .containsExactlyInAnyOrder(first.getId(), second.getId(), other.getId());
+        assertThat(store.findById(late.getId())).isEmpty();
+        assertThat(store.findByContentHash(ROUTE, sha(2)))
+                .extracting(Attempt::getId).containsExactly(second.getId());
+    }
+
+    @Test
+    void failedRowIsRetriedAndWrittenOnceTheDatabaseRecovers() {
+        WriteBehindAttemptStore store = store(1, 100, 100, 100, 3);
+        repository.failing = true;
+
+        Attempt saved = store.save(attempt("r1", 1));
+        awaitUntil(() -> repository.failures.get() >= 2);
+        assertThat(store.findById(saved.getId())).containsSame(saved);
+
+        repository.failing = false;
+        assertThat(store.findAll()).extracting(Attempt::getId).containsExactly(saved.getId());
+        assertThat(deadLetters).isEmptyDirectory();
+    }
+
+    @Test
+    void rowOutOfRetriesIsDeadLetteredAndQueuedAgainOnTheNextStart() {
+        WriteBehindAttemptStore store = store(1, 100, 100, 100, 2);
+        repository.failing = true;
+
+        Attempt saved = store.save(attempt("r1", 1));
+        Path letter = deadLetters.resolve("attempt-" + saved.getId() + ".json");
+        awaitUntil(() -> Files.exists(letter));
+        awaitUntil(() -> store.findById(saved.getId()).isEmpty());
+        // the first batch, then the row itself, for each of 1 + 2 tries
+        assertThat(repository.failures.get()).isEqualTo(6);
+
+        repository.failing = false;
+        store.shutdown();
+        WriteBehindAttemptStore restarted = store(1, 100, 100, 100, 2);
+
+        assertThat(restarted.findAll()).singleElement().satisfies(a -> {
+            assertThat(a.getId()).isEqualTo(saved.getId());
+            assertThat(a.getRunnerId()).isEqualTo("r1");
+            assertThat(a.getGpxSha256()).isEqualTo(sha(1));
+        });
+        awaitUntil(() -> !Files.exists(letter));
+        assertThat(restarted.save(attempt("r2", 2)).getId()).isGreaterThan(saved.getId());
+    }
+
+    // -------------------------
+    // Helpers
+    // -------------------------
+
+    private WriteBehindAttemptStore store(long flushIntervalMs, int maxBatchRows, int queueCapacity,
+                                          int idBlockSize, int maxRetries) {
+        WriteBehindAttemptStore store = new WriteBehindAttemptStore(repository, transactionManager,
+                new ObjectMapper().findAndRegisterModules(), false, flushIntervalMs, maxBatchRows,
+                queueCapacity, 50, idBlockSize, maxRetries, 10, deadLetters.toString());
+        stores.add(store);
+        return store;
+    }
+
+    private static Attempt attempt(String runnerId, int file) {
+        Attempt a = new Attempt(runnerId);
+        a.setAttemptTime(LocalDateTime.of(2024, 11, 8, 11, 33, 48));
+        a.setDistanceKm(10.5);
+        a.setElevationGainM(800);
+        a.setDifficultyScore(42.0);
+        a.setResult("VERIFIED");
+        a.setRouteHash(ROUTE);
+        a.setGpxSha256(sha(file));
+        return a;
+    }
+
+    private static String sha(int file) {
+        return String.format("%064x", file);
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition within 5 s").isLessThan(deadline);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records the ids of every batch written, and can fail every insert or
+     * hold the flusher at a gate.
+     */
+    private static final class ScriptedRepository extends AttemptRepository {
+        final List<List<Long>> batches = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger failures = new AtomicInteger();
+        final CountDownLatch entered = new CountDownLatch(1);
+        volatile boolean failing;
+        volatile CountDownLatch gate;
+
+        ScriptedRepository(JdbcTemplate jdbcTemplate) {
+            super(jdbcTemplate, new RunnerSummaryRepository(jdbcTemplate));
+        }
+
+        @Override
+        public void insertBatchWithIds(List<Attempt> attempts) {
+            entered.countDown();
+            if (gate != null) {
+                awaitQuietly(gate);
+            }
+            if (failing) {
+                failures.incrementAndGet();
+                throw new DataAccessResourceFailureException("database unavailable");
+            }
+            super.insertBatchWithIds(attempts);
+            batches.add(attempts.stream().map(Attempt::getId).toList());
+        }
+    }
+}
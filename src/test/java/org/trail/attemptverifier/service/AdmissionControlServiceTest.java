@@ -0,0 +1,112 @@
+package org.trail.attemptverifier.service;
+
+import org.junit.jupiter.api.Test;
+import org.trail.attemptverifier.service.AdmissionControlService.AdmissionRejectedException;
+import org.trail.attemptverifier.service.AdmissionControlService.Permit;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Token buckets and the KiB budget of AdmissionControlService, without
+ * the web layer.
+ */
+class AdmissionControlServiceTest {
+
+    private static final int KB = 1024;
+
+    @Test
+    void runnerOverItsRateGets429UntilTheNextToken() {
+        // 6 per minute: one token every 10 s, burst of 2
+        AdmissionControlService admission = new AdmissionControlService(150, 0, 0, 5, 6, 2);
+
+        admission.admit("r1", KB).close();
+        admission.admit("r1", KB).close();
+
+        assertThatThrownBy(() -> admission.admit("r1", KB))
+                .isInstanceOfSatisfying(AdmissionRejectedException.class, e -> {
+                    assertThat(e.getStatus()).isEqualTo(429);
+                    assertThat(e.getRetryAfterSeconds()).isEqualTo(10);
+                });
+        // other runners have their own bucket
+        admission.admit("r2", KB).close();
+
+        AdmissionControlService.Stats stats = admission.getStats();
+        assertThat(stats.getAdmitted()).isEqualTo(3);
+        assertThat(stats.getRejectedRateLimited()).isEqualTo(1);
+        assertThat(stats.getTrackedRunners()).isEqualTo(2);
+    }
+
+    @Test
+    void busyServerGets503AndGivesTheTokenBack() {
+        // 1 MB budget, no queue, one upload per runner that never refills
+        AdmissionControlService admission = new AdmissionControlService(1, 0, 0, 7, 0, 1);
+
+        Permit big = admission.admit("r1", 1024 * KB);
+        assertThatThrownBy(() -> admission.admit("r2", KB))
+                .isInstanceOfSatisfying(AdmissionRejectedException.class, e -> {
+                    assertThat(e.getStatus()).isEqualTo(503);
+                    assertThat(e.getRetryAfterSeconds()).isEqualTo(7);
+                });
+        big.close();
+
+        // r2's only token was refunded: admitted now, rate-limited after that
+        admission.admit("r2", KB).close();
+        assertThatThrownBy(() -> admission.admit("r2", KB))
+                .isInstanceOfSatisfying(AdmissionRejectedException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(429));
+        assertThat(admission.getStats().getRejectedBusy()).isEqualTo(1);
+    }
+
+    @Test
+    void permitsWeighTheUploadInKibAndAreReturnedOnce() {
+        AdmissionControlService admission = new AdmissionControlService(1, 0, 0, 5, 600, 100);
+
+        Permit first = admission.admit("r1", 600 * KB);
+        assertThatThrownBy(() -> admission.admit("r1", 500 * KB))
+                .isInstanceOf(AdmissionRejectedException.class);
+        // 423 KiB and 1 byte round up to 424 KiB, which is what is left
+        Permit second = admission.admit("r1", 423 * KB + 1);
+        assertThat(admission.getStats().getInflightMb()).isEqualTo(1.0);
+
+        first.close();
+        first.close();
+        assertThat(admission.getStats().getInflightMb()).isEqualTo(424 / 1024.0);
+        assertThat(admission.getStats().getActiveUploads()).isEqualTo(1);
+        second.close();
+
+        // a file larger than the whole budget still gets through, alone
+        try (Permit huge = admission.admit("r1", 50L * 1024 * KB)) {
+            assertThat(admission.getStats().getInflightMb()).isEqualTo(1.0);
+        }
+        assertThat(admission.getStats().getInflightMb()).isZero();
+        assertThat(admission.getStats().getActiveUploads()).isZero();
+    }
+
+    @Test
+    void queuedUploadIsAdmittedWhenRoomFreesUpWithinTheWait() throws Exception {
+        // one upload may wait up to 5 s
+        AdmissionControlService admission = new AdmissionControlService(1, 5000, 1, 5, 600, 100);
+        Permit holder = admission.admit("r1", 1024 * KB);
+
+        CompletableFuture<Permit> waiting = CompletableFuture.supplyAsync(() -> admission.admit("r2", 512 * KB));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (admission.getStats().getQueuedUploads() == 0) {
+            assertThat(System.nanoTime()).as("queued within 5 s").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+        // the queue is full: a third upload is turned away at once
+        assertThatThrownBy(() -> admission.admit("r3", KB))
+                .isInstanceOfSatisfying(AdmissionRejectedException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(503));
+
+        holder.close();
+        try (Permit admitted = waiting.get(5, TimeUnit.SECONDS)) {
+            assertThat(admission.getStats().getInflightMb()).isEqualTo(0.5);
+        }
+        assertThat(admission.getStats().getQueuedUploads()).isZero();
+    }
+}
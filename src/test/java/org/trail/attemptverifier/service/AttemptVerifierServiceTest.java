@@ -0,0 +1,106 @@
+package org.trail.attemptverifier.service;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.trail.attemptverifier.model.Attempt;
+import org.trail.attemptverifier.model.TrackPoint;
+import org.trail.attemptverifier.util.DerivedTrack;
+import org.trail.attemptverifier.util.GpxParser;
+import org.trail.attemptverifier.util.MappedGpxReader;
+import org.trail.attemptverifier.util.PackedTrack;
+import org.trail.attemptverifier.util.ParseLimits;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Classification of attempts against the bundled official route
+ * (applyVerification only: no database, no blob store).
+ */
+class AttemptVerifierServiceTest {
+
+    private static final double TOLERANCE_M = 30.0;
+
+    private static RouteSnapshot route;
+
+    @BeforeAll
+    static void loadRoute() {
+        ParseLimits limits = new ParseLimits(1_000_000, 32, 8192);
+        GpxParser parser = new GpxParser(limits);
+        RouteService routeService = new RouteService(parser, new MappedGpxReader(parser, limits, 1 << 20, 1),
+                new DefaultResourceLoader(), "classpath:gpx/route_official.gpx", 100.0, 0,
+                "window:9+hysteresis:2", new StandardEnvironment(), false);
+        route = routeService.getRoute();
+        assertThat(route).isNotNull();
+    }
+
+    @Test
+    void routeItselfIsVerified() {
+        Attempt attempt = verify(service(false), route.getPoints());
+
+        assertThat(attempt.getResult()).isEqualTo("VERIFIED");
+        assertThat(attempt.getCoverageRatio()).isEqualTo(1.0);
+    }
+
+    @Test
+    void routeWithFourOfFivePointsRemovedIsVerified() {
+        List<TrackPoint> sparse = everyNth(route.getPoints(), 5);
+
+        Attempt attempt = verify(service(false), sparse);
+        assertThat(attempt.getResult()).as(attempt.getMessage()).isEqualTo("VERIFIED");
+        assertThat(attempt.getSkippedKm()).isZero();
+
+        // and with the opt-in classification on route completion
+        Attempt byProgress = verify(service(true), sparse);
+        assertThat(byProgress.getResult()).as(byProgress.getMessage()).isEqualTo("VERIFIED");
+        assertThat(byProgress.getRouteCompletion()).isGreaterThan(0.99);
+    }
+
+    @Test
+    void firstHalfOfTheRouteIsNotVerified() {
+        List<TrackPoint> points = route.getPoints();
+        List<TrackPoint> firstHalf = points.subList(0, points.size() / 2);
+
+        // every point lies on the route, so only the missed checkpoints flag it
+        Attempt byPoints = verify(service(false), firstHalf);
+        assertThat(byPoints.getCoverageRatio()).isEqualTo(1.0);
+        assertThat(byPoints.getResult()).isEqualTo("FLAGGED");
+
+        // by route completion it is about half the course
+        Attempt byProgress = verify(service(true), firstHalf);
+        assertThat(byProgress.getRouteCompletion()).isLessThan(0.6);
+        assertThat(byProgress.getResult()).isNotEqualTo("VERIFIED");
+    }
+
+    // -------------------------
+    // Helpers
+    // -------------------------
+
+    private static AttemptVerifierService service(boolean classifyByProgress) {
+        return new AttemptVerifierService(null, null, null, null, null, null,
+                TOLERANCE_M, 50.0, 300.0, 0.5, 500.0, classifyByProgress);
+    }
+
+    private static Attempt verify(AttemptVerifierService service, List<TrackPoint> track) {
+        DerivedTrack derived = DerivedTrack.build(PackedTrack.fromTrackPoints(track), route.getIndex(), TOLERANCE_M);
+        Attempt attempt = new Attempt("runner");
+        service.applyVerification(attempt, track, route, derived);
+        return attempt;
+    }
+
+    /** Every nth point, plus the last one. */
+    private static List<TrackPoint> everyNth(List<TrackPoint> points, int n) {
+        List<TrackPoint> out = new ArrayList<>();
+        for (int i = 0; i < points.size(); i += n) {
+            out.add(points.get(i));
+        }
+        if ((points.size() - 1) % n != 0) {
+            out.add(points.get(points.size() - 1));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,136 @@
+package org.trail.attemptverifier.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.trail.attemptverifier.model.Attempt;
+import org.trail.attemptverifier.repository.AttemptRepository;
+import org.trail.attemptverifier.repository.IdempotencyKeyRepository;
+import org.trail.attemptverifier.repository.RunnerSummaryRepository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * IdempotencyService over an in-memory H2 (schema-h2.sql) with a one-hour TTL.
+ */
+class IdempotencyServiceTest {
+
+    private JdbcTemplate jdbc;
+    private AttemptRepository attempts;
+    private RacingKeyRepository keys;
+    private IdempotencyService service;
+    private final AtomicInteger files = new AtomicInteger();
+
+    @BeforeEach
+    void createDatabase() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/schema-h2.sql")).execute(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+        attempts = new AttemptRepository(jdbc, new RunnerSummaryRepository(jdbc));
+        keys = new RacingKeyRepository(jdbc);
+        service = new IdempotencyService(keys, attempts, 100, 1, 1000);
+    }
+
+    @Test
+    void replaysUntilTheKeyExpiresInMemoryToo() throws Exception {
+        Attempt first = attempts.save(attempt("r1"));
+        // recorded 1 s short of the one-hour TTL
+        insertKey("k", "r1", first.getId(), LocalDateTime.now().minusHours(1).plusSeconds(1));
+
+        IdempotencyService.Outcome replay = service.execute("k", "r1", () -> attempts.save(attempt("r1")));
+        assertThat(replay.isReplayed()).isTrue();
+        assertThat(replay.getAttempt().getId()).isEqualTo(first.getId());
+
+        Thread.sleep(1500);
+
+        // the cached entry has expired: the upload runs, its row replaces the expired one
+        IdempotencyService.Outcome fresh = service.execute("k", "r1", () -> attempts.save(attempt("r1")));
+        assertThat(fresh.isReplayed()).isFalse();
+        assertThat(fresh.getAttempt().getId()).isNotEqualTo(first.getId());
+        assertThat(storedAttemptId("k")).isEqualTo(fresh.getAttempt().getId());
+    }
+
+    @Test
+    void keyRecordedElsewhereFirstAnswersWithThatAttempt() throws Exception {
+        Attempt winner = attempts.save(attempt("r1"));
+        keys.rival("r1", winner.getId());
+
+        IdempotencyService.Outcome outcome = service.execute("k", "r1", () -> attempts.save(attempt("r1")));
+
+        assertThat(outcome.isReplayed()).isTrue();
+        assertThat(outcome.getAttempt().getId()).isEqualTo(winner.getId());
+        assertThat(storedAttemptId("k")).isEqualTo(winner.getId());
+        // and from the cache afterwards
+        assertThat(service.execute("k", "r1", () -> attempts.save(attempt("r1"))).getAttempt().getId())
+                .isEqualTo(winner.getId());
+    }
+
+    @Test
+    void keyRecordedElsewhereFirstByAnotherRunnerIsAConflict() {
+        Attempt other = attempts.save(attempt("r2"));
+        keys.rival("r2", other.getId());
+
+        assertThatThrownBy(() -> service.execute("k", "r1", () -> attempts.save(attempt("r1"))))
+                .isInstanceOf(IdempotencyService.KeyConflictException.class);
+        assertThat(storedAttemptId("k")).isEqualTo(other.getId());
+    }
+
+    // -------------------------
+    // Helpers
+    // -------------------------
+
+    private Attempt attempt(String runnerId) {
+        Attempt a = new Attempt(runnerId);
+        a.setAttemptTime(LocalDateTime.now());
+        a.setResult("VERIFIED");
+        a.setRouteHash("a".repeat(64));
+        a.setGpxSha256(String.format("%064x", files.incrementAndGet()));
+        return a;
+    }
+
+    private void insertKey(String key, String runnerId, long attemptId, LocalDateTime createdAt) {
+        jdbc.update("INSERT INTO idempotency_keys (idem_key, runner_id, attempt_id, created_at) VALUES (?, ?, ?, ?)",
+                key, runnerId, attemptId, Timestamp.valueOf(createdAt));
+    }
+
+    private Long storedAttemptId(String key) {
+        return jdbc.queryForObject("SELECT attempt_id FROM idempotency_keys WHERE idem_key = ?", Long.class, key);
+    }
+
+    /**
+     * Lets another instance record the key between the service's lookup
+     * and its insert.
+     */
+    private final class RacingKeyRepository extends IdempotencyKeyRepository {
+        private String rivalRunnerId;
+        private long rivalAttemptId;
+
+        RacingKeyRepository(JdbcTemplate jdbcTemplate) {
+            super(jdbcTemplate);
+        }
+
+        void rival(String runnerId, long attemptId) {
+            rivalRunnerId = runnerId;
+            rivalAttemptId = attemptId;
+        }
+
+        @Override
+        public boolean insert(String key, IdempotencyRecord record) {
+            if (rivalRunnerId != null) {
+                insertKey(key, rivalRunnerId, rivalAttemptId, LocalDateTime.now());
+                rivalRunnerId = null;
+            }
+            return super.insert(key, record);
+        }
+    }
+}
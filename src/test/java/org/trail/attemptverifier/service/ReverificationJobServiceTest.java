@@ -0,0 +1,157 @@
+package org.trail.attemptverifier.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.trail.attemptverifier.model.Attempt;
+import org.trail.attemptverifier.model.ReverificationJob;
+import org.trail.attemptverifier.model.TrackPoint;
+import org.trail.attemptverifier.repository.AttemptCellRepository;
+import org.trail.attemptverifier.repository.AttemptMetricsRepository;
+import org.trail.attemptverifier.repository.AttemptRepository;
+import org.trail.attemptverifier.repository.CheckpointSplitRepository;
+import org.trail.attemptverifier.repository.ReverificationJobRepository;
+import org.trail.attemptverifier.repository.RunnerSummaryRepository;
+import org.trail.attemptverifier.util.GpxParser;
+import org.trail.attemptverifier.util.MappedGpxReader;
+import org.trail.attemptverifier.util.ParseLimits;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A re-verification run over an in-memory H2 (schema-h2.sql) and the bundled
+ * official route, with tracks served from memory instead of the blob store.
+ */
+class ReverificationJobServiceTest {
+
+    private JdbcTemplate jdbc;
+    private AttemptRepository attempts;
+    private ReverificationJobRepository jobs;
+    private RouteService routeService;
+    private ReverificationJobService service;
+
+    @BeforeEach
+    void createDatabase() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/schema-h2.sql")).execute(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+        attempts = new AttemptRepository(jdbc, new RunnerSummaryRepository(jdbc));
+        jobs = new ReverificationJobRepository(jdbc);
+
+        ParseLimits limits = new ParseLimits(1_000_000, 32, 8192);
+        GpxParser parser = new GpxParser(limits);
+        routeService = new RouteService(parser, new MappedGpxReader(parser, limits, 1 << 20, 1),
+                new DefaultResourceLoader(), "classpath:gpx/route_official.gpx", 100.0, 0,
+                "window:9+hysteresis:2", new StandardEnvironment(), false);
+    }
+
+    @AfterEach
+    void shutdown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void attemptThatThrowsIsRecordedAndTheJobGoesOn() throws InterruptedException {
+        Attempt first = attempts.save(attempt(1));
+        Attempt broken = attempts.save(attempt(2));
+        Attempt last = attempts.save(attempt(3));
+        service = service(Set.of(broken.getId()), 2);
+
+        ReverificationJob job = awaitDone(service.start(false));
+
+        assertThat(job.getStatus()).isEqualTo(ReverificationJob.COMPLETED);
+        assertThat(job.getProcessed()).isEqualTo(3);
+        assertThat(job.getChanged()).isEqualTo(2);
+        assertThat(job.getSkipped()).isZero();
+        assertThat(job.getFailed()).isEqualTo(1);
+        assertThat(job.getFailedAttemptIds()).containsExactly(broken.getId());
+        assertThat(job.getLastAttemptId()).isEqualTo(last.getId());
+
+        // re-verified on both sides of the failure, the failed one left as it was
+        assertThat(attempts.findById(first.getId())).get().extracting(Attempt::getResult).isEqualTo("VERIFIED");
+        assertThat(attempts.findById(last.getId())).get().extracting(Attempt::getResult).isEqualTo("VERIFIED");
+        assertThat(attempts.findById(broken.getId())).get().extracting(Attempt::getResult).isEqualTo("PENDING");
+
+        // and stored with the job
+        ReverificationJob stored = jobs.findById(job.getId()).orElseThrow();
+        assertThat(stored.getFailed()).isEqualTo(1);
+        assertThat(stored.getFailedAttemptIds()).containsExactly(broken.getId());
+    }
+
+    @Test
+    void onlyTheFirstFailedIdsAreKept() throws InterruptedException {
+        int count = ReverificationJob.MAX_FAILED_IDS + 5;
+        for (int i = 0; i < count; i++) {
+            attempts.save(attempt(i));
+        }
+        service = service(null, 25);
+
+        ReverificationJob job = awaitDone(service.start(false));
+
+        assertThat(job.getStatus()).isEqualTo(ReverificationJob.COMPLETED);
+        assertThat(job.getFailed()).isEqualTo(count);
+        ReverificationJob stored = jobs.findById(job.getId()).orElseThrow();
+        assertThat(stored.getFailedAttemptIds()).hasSize(ReverificationJob.MAX_FAILED_IDS).doesNotHaveDuplicates();
+    }
+
+    // -------------------------
+    // Helpers
+    // -------------------------
+
+    /**
+     * Serves the official route as every attempt's track; attempts in
+     * failing (all of them when null) throw instead.
+     */
+    private ReverificationJobService service(Set<Long> failing, int batchSize) {
+        DerivedTrackService derivedTrackService = new DerivedTrackService(
+                new AttemptMetricsRepository(jdbc), new AttemptCellRepository(jdbc), 3, 0);
+        AttemptVerifierService verifier = new AttemptVerifierService(attempts, null, routeService, null,
+                derivedTrackService, new CheckpointSplitRepository(jdbc), 30.0, 50.0, 300.0, 0.5, 500.0, false) {
+            @Override
+            public List<TrackPoint> readAttemptTrack(Long attemptId) {
+                if (failing == null || failing.contains(attemptId)) {
+                    throw new IllegalStateException("corrupt track of #" + attemptId);
+                }
+                return routeService.getRoute().getPoints();
+            }
+        };
+        return new ReverificationJobService(attempts, jobs, verifier, derivedTrackService, routeService,
+                batchSize, 2, 0);
+    }
+
+    private ReverificationJob awaitDone(ReverificationJob started) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (true) {
+            ReverificationJob job = service.findJob(started.getId()).orElseThrow();
+            if (!ReverificationJob.RUNNING.equals(job.getStatus())) {
+                return job;
+            }
+            assertThat(System.nanoTime()).as("job done within 10 s").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static Attempt attempt(int file) {
+        Attempt a = new Attempt("r" + file);
+        a.setAttemptTime(LocalDateTime.of(2024, 11, 8, 11, 33, 48));
+        a.setResult("PENDING");
+        a.setRouteHash("a".repeat(64));
+        a.setGpxSha256(String.format("%064x", file));
+        return a;
+    }
+}
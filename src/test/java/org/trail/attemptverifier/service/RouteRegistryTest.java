@@ -0,0 +1,151 @@
+package org.trail.attemptverifier.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.trail.attemptverifier.model.TrackPoint;
+import org.trail.attemptverifier.util.GpxParser;
+import org.trail.attemptverifier.util.MappedGpxReader;
+import org.trail.attemptverifier.util.ParseLimits;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Route detection against a route directory built from the bundled
+ * official route: a byte copy of it, its first half, and the whole route
+ * moved 1° north.
+ */
+class RouteRegistryTest {
+
+    private static final ParseLimits LIMITS = new ParseLimits(1_000_000, 32, 8192);
+    private static final GpxParser PARSER = new GpxParser(LIMITS);
+
+    @TempDir
+    Path routes;
+
+    private MappedGpxReader reader;
+    private List<TrackPoint> official;
+    private RouteRegistry registry;
+
+    @BeforeEach
+    void createRoutes() throws IOException {
+        reader = new MappedGpxReader(PARSER, LIMITS, 1 << 20, 1);
+        RouteService routeService = new RouteService(PARSER, reader, new DefaultResourceLoader(),
+                "classpath:gpx/route_official.gpx", 100.0, 0, "window:9+hysteresis:2",
+                new StandardEnvironment(), false);
+        official = routeService.getRoute().getPoints();
+
+        try (InputStream in = getClass().getResourceAsStream("/gpx/route_official.gpx")) {
+            Files.copy(in, routes.resolve("official-copy.gpx"));
+        }
+        writeGpx("first-half", firstHalf(official));
+        writeGpx("moved", shifted(official, 1.0));
+
+        registry = new RouteRegistry(routeService, null, reader, routes.toString(),
+                3, 0.6, 2, 30.0, 300.0, 0.5, 500.0);
+    }
+
+    @AfterEach
+    void shutdown() {
+        registry.shutdown();
+        reader.shutdown();
+    }
+
+    @Test
+    void copyOfTheOfficialRouteIsRegisteredOnce() {
+        assertThat(registry.list()).extracting(RouteRegistry.RouteInfo::getName)
+                .containsExactly(RouteRegistry.OFFICIAL, "first-half", "moved");
+        assertThat(registry.list().get(0).isOfficial()).isTrue();
+    }
+
+    @Test
+    void wholeRouteRanksTheOfficialRouteAboveItsFirstHalf() {
+        RouteRegistry.Detection detection = registry.detect(official);
+
+        assertThat(detection.getRoute()).isEqualTo(RouteRegistry.OFFICIAL);
+        assertThat(detection.isOfficial()).isTrue();
+        assertThat(detection.getConfidence()).isCloseTo(1.0, within(0.02));
+        assertThat(detection.getRoutesRegistered()).isEqualTo(3);
+        // the moved route is dropped by its bounding box
+        assertThat(detection.getRoutesInBoundingBox()).isEqualTo(2);
+        assertThat(detection.getCandidates()).extracting(RouteRegistry.Candidate::getRoute)
+                .containsExactly(RouteRegistry.OFFICIAL, "first-half");
+
+        // every point of the half is on the route, but only about half the route is run
+        RouteRegistry.Candidate half = detection.getCandidates().get(1);
+        assertThat(half.getCompletion()).isGreaterThan(0.95);
+        assertThat(half.getOnRouteShare()).isBetween(0.4, 0.7);
+        assertThat(half.getConfidence()).isLessThan(detection.getConfidence());
+    }
+
+    @Test
+    void firstHalfRanksItsOwnRouteAboveTheWholeOne() {
+        RouteRegistry.Detection detection = registry.detect(firstHalf(official));
+
+        assertThat(detection.getRoute()).isEqualTo("first-half");
+        assertThat(detection.isOfficial()).isFalse();
+        RouteRegistry.Candidate whole = detection.getCandidates().get(1);
+        assertThat(whole.getRoute()).isEqualTo(RouteRegistry.OFFICIAL);
+        assertThat(whole.getOnRouteShare()).isGreaterThan(0.95);
+        assertThat(whole.getCompletion()).isBetween(0.3, 0.7);
+        assertThat(detection.getCandidates()).isSortedAccordingTo(
+                (a, b) -> Double.compare(b.getConfidence(), a.getConfidence()));
+    }
+
+    @Test
+    void trackAwayFromEveryRouteHasNoRoute() {
+        RouteRegistry.Detection moved = registry.detect(shifted(official, 1.0));
+        assertThat(moved.getRoute()).isEqualTo("moved");
+        assertThat(moved.getRoutesInBoundingBox()).isEqualTo(1);
+
+        RouteRegistry.Detection nowhere = registry.detect(shifted(official, 5.0));
+        assertThat(nowhere.getRoute()).isNull();
+        assertThat(nowhere.getConfidence()).isNull();
+        assertThat(nowhere.getCandidates()).isEmpty();
+        assertThat(nowhere.getRoutesInBoundingBox()).isZero();
+    }
+
+    // -------------------------
+    // Helpers
+    // -------------------------
+
+    private static List<TrackPoint> firstHalf(List<TrackPoint> points) {
+        return new ArrayList<>(points.subList(0, points.size() / 2));
+    }
+
+    private static List<TrackPoint> shifted(List<TrackPoint> points, double northDeg) {
+        List<TrackPoint> out = new ArrayList<>(points.size());
+        for (TrackPoint p : points) {
+            out.add(new TrackPoint(p.getLatitude() + northDeg, p.getLongitude(), p.getElevation(), p.getTimeMillis()));
+        }
+        return out;
+    }
+
+    private void writeGpx(String name, List<TrackPoint> points) throws IOException {
+        StringBuilder b = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<gpx xmlns=\"http://www.topografix.com/GPX/1/1\" version=\"1.1\" creator=\"test\">\n"
+                + "<trk><trkseg>\n");
+        for (TrackPoint p : points) {
+            b.append(String.format(Locale.ROOT, "<trkpt lat=\"%.7f\" lon=\"%.7f\">", p.getLatitude(), p.getLongitude()));
+            if (p.getElevation() != null) {
+                b.append(String.format(Locale.ROOT, "<ele>%.1f</ele>", p.getElevation()));
+            }
+            b.append("</trkpt>\n");
+        }
+        b.append("</trkseg></trk>\n</gpx>\n");
+        Files.writeString(routes.resolve(name + ".gpx"), b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,208 @@
+package org.trail.attemptverifier.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.trail.attemptverifier.model.Attempt;
+import org.trail.attemptverifier.repository.AttemptCellRepository;
+import org.trail.attemptverifier.repository.AttemptCellRepository.AreaAttempt;
+import org.trail.attemptverifier.repository.AttemptRepository;
+import org.trail.attemptverifier.repository.RunnerSummaryRepository;
+import org.trail.attemptverifier.util.Geohash;
+import org.trail.attemptverifier.util.TrackCells;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The geohash index (attempt_cells / heatmap_cells) written by
+ * AttemptCellRepository and read by SpatialIndexService, over an
+ * in-memory H2 (schema-h2.sql).
+ */
+class SpatialIndexServiceTest {
+
+    // P is the centre of a geohash-5 cell; Q is ~790 m east of it, in the
+    // same geohash-5 cell but another geohash-7 one; FAR is ~110 km north
+    private static final double[] P = centre(Geohash.encode(45.0, 6.0, 5), 5);
+    private static final double[] Q = {P[0], P[1] + 0.01};
+    private static final double[] FAR = {P[0] + 1.0, P[1]};
+
+    private JdbcTemplate jdbc;
+    private AttemptRepository attempts;
+    private AttemptCellRepository cells;
+    private SpatialIndexService spatial;
+    private final AtomicInteger files = new AtomicInteger();
+
+    @BeforeEach
+    void createDatabase() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("db/schema-h2.sql")).execute(dataSource);
+        jdbc = new JdbcTemplate(dataSource);
+        attempts = new AttemptRepository(jdbc, new RunnerSummaryRepository(jdbc));
+        cells = new AttemptCellRepository(jdbc);
+        spatial = new SpatialIndexService(cells, 64, 10_000);
+    }
+
+    @Test
+    void areaQueryRanksAttemptsByPointsInsideTheBox() {
+        long a = attempt("r1");
+        long b = attempt("r2");
+        long far = attempt("r3");
+        cells.replace(a, track(P, 10, 2, Q, 5, 0));
+        cells.replace(b, track(P, 20, 0));
+        cells.replace(far, track(FAR, 50, 0));
+
+        SpatialIndexService.AreaResult both = spatial.findAttempts(
+                P[0] - 0.001, P[1] - 0.001, Q[0] + 0.001, Q[1] + 0.001, 10);
+        assertThat(both.getCellPrecision()).isEqualTo(TrackCells.PRECISION);
+        assertThat(both.getAttempts()).extracting(AreaAttempt::getAttemptId).containsExactly(b, a);
+        AreaAttempt r1 = both.getAttempts().get(1);
+        assertThat(r1.getRunnerId()).isEqualTo("r1");
+        assertThat(r1.getPoints()).isEqualTo(15);
+        assertThat(r1.getOffRoutePoints()).isEqualTo(2);
+
+        // only Q: r1's points there, r2 never went
+        SpatialIndexService.AreaResult onlyQ = spatial.findAttempts(
+                Q[0] - 0.0005, Q[1] - 0.0005, Q[0] + 0.0005, Q[1] + 0.0005, 10);
+        assertThat(onlyQ.getAttempts()).singleElement().satisfies(x -> {
+            assertThat(x.getAttemptId()).isEqualTo(a);
+            assertThat(x.getPoints()).isEqualTo(5);
+        });
+
+        assertThat(spatial.findAttempts(P[0] - 0.001, P[1] - 0.001, Q[0] + 0.001, Q[1] + 0.001, 1)
+                .getAttempts()).extracting(AreaAttempt::getAttemptId).containsExactly(b);
+    }
+
+    @Test
+    void heatmapTileSumsEveryAttemptPerCell() {
+        long a = attempt("r1");
+        long b = attempt("r2");
+        cells.replace(a, track(P, 10, 2, Q, 5, 0));
+        cells.replace(b, track(P, 20, 1));
+
+        // z16: precision 7, P's cell holds both attempts
+        SpatialIndexService.HeatmapTile fine = tileAt(P, 16);
+        assertThat(fine.getPrecision()).isEqualTo(7);
+        SpatialIndexService.TileCell p = cell(fine, Geohash.toBase32(Geohash.encode(P[0], P[1], 7), 7));
+        assertThat(p.getPoints()).isEqualTo(30);
+        assertThat(p.getOffRoutePoints()).isEqualTo(3);
+        assertThat(p.getAttempts()).isEqualTo(2);
+        assertThat(fine.getMaxPoints()).isEqualTo(30);
+        assertThat(fine.isTruncated()).isFalse();
+
+        // z10: precision 5, P and Q are one cell and r1 counts once
+        SpatialIndexService.HeatmapTile coarse = tileAt(P, 10);
+        assertThat(coarse.getPrecision()).isEqualTo(5);
+        assertThat(coarse.getCells()).singleElement().satisfies(c -> {
+            assertThat(c.getGeohash()).isEqualTo(Geohash.toBase32(Geohash.encode(P[0], P[1], 5), 5));
+            assertThat(c.getPoints()).isEqualTo(35);
+            assertThat(c.getAttempts()).isEqualTo(2);
+        });
+
+        assertThat(SpatialIndexService.heatmapPrecision(13)).isEqualTo(6);
+    }
+
+    @Test
+    void heatmapTileStopsAtMaxCells() {
+        // the next geohash-5 cell east, in the same z10 tile
+        double[] next = {P[0], P[1] + 0.044};
+        assertThat(tileX(next[1], 10)).isEqualTo(tileX(P[1], 10));
+        cells.replace(attempt("r1"), track(P, 10, 0));
+        cells.replace(attempt("r2"), track(next, 20, 0));
+
+        assertThat(tileAt(P, 10).getCells()).hasSize(2);
+        SpatialIndexService.HeatmapTile limited = new SpatialIndexService(cells, 64, 1)
+                .heatmapTile(10, tileX(P[1], 10), tileY(P[0], 10));
+        assertThat(limited.isTruncated()).isTrue();
+        assertThat(limited.getCells()).hasSize(1);
+    }
+
+    @Test
+    void replacingAnAttemptMovesOnlyItsOwnCounts() {
+        long a = attempt("r1");
+        long b = attempt("r2");
+        cells.replace(a, track(P, 10, 2, Q, 5, 0));
+        cells.replace(b, track(P, 20, 0));
+
+        // re-verification: same points, more of them off route
+        cells.replace(a, track(P, 10, 10, Q, 5, 5));
+        SpatialIndexService.TileCell coarse = tileAt(P, 10).getCells().get(0);
+        assertThat(coarse.getPoints()).isEqualTo(35);
+        assertThat(coarse.getOffRoutePoints()).isEqualTo(15);
+        assertThat(coarse.getAttempts()).isEqualTo(2);
+
+        cells.replace(b, new TrackCells(new long[0], new int[0], new int[0]));
+        SpatialIndexService.TileCell p = cell(tileAt(P, 16), Geohash.toBase32(Geohash.encode(P[0], P[1], 7), 7));
+        assertThat(p.getPoints()).isEqualTo(10);
+        assertThat(p.getAttempts()).isEqualTo(1);
+
+        cells.replace(a, new TrackCells(new long[0], new int[0], new int[0]));
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM heatmap_cells", Integer.class)).isZero();
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM attempt_cells", Integer.class)).isZero();
+    }
+
+    // -------------------------
+    // Helpers
+    // -------------------------
+
+    private long attempt(String runnerId) {
+        Attempt a = new Attempt(runnerId);
+        a.setResult("VERIFIED");
+        a.setGpxSha256(String.format("%064x", files.incrementAndGet()));
+        return attempts.save(a).getId();
+    }
+
+    /** Cells from (lat/lon, points, off-route points) triples. */
+    private static TrackCells track(Object... spec) {
+        Map<Long, int[]> byCell = new TreeMap<>();
+        for (int i = 0; i < spec.length; i += 3) {
+            double[] at = (double[]) spec[i];
+            byCell.put(Geohash.encode(at[0], at[1], TrackCells.PRECISION),
+                    new int[]{(Integer) spec[i + 1], (Integer) spec[i + 2]});
+        }
+        long[] ids = new long[byCell.size()];
+        int[] points = new int[byCell.size()];
+        int[] offRoute = new int[byCell.size()];
+        int i = 0;
+        for (Map.Entry<Long, int[]> e : byCell.entrySet()) {
+            ids[i] = e.getKey();
+            points[i] = e.getValue()[0];
+            offRoute[i] = e.getValue()[1];
+            i++;
+        }
+        return new TrackCells(ids, points, offRoute);
+    }
+
+    private SpatialIndexService.HeatmapTile tileAt(double[] at, int z) {
+        return spatial.heatmapTile(z, tileX(at[1], z), tileY(at[0], z));
+    }
+
+    private static SpatialIndexService.TileCell cell(SpatialIndexService.HeatmapTile tile, String geohash) {
+        return tile.getCells().stream()
+                .filter(c -> c.getGeohash().equals(geohash))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static int tileX(double lon, int z) {
+        return (int) Math.floor((lon + 180.0) / 360.0 * (1 << z));
+    }
+
+    private static int tileY(double lat, int z) {
+        double r = Math.toRadians(lat);
+        return (int) Math.floor((1 - Math.log(Math.tan(r) + 1 / Math.cos(r)) / Math.PI) / 2 * (1 << z));
+    }
+
+    private static double[] centre(long cell, int precision) {
+        double[] b = Geohash.bounds(cell, precision);
+        return new double[]{b[0] + b[2] / 2, b[1] + b[3] / 2};
+    }
+}
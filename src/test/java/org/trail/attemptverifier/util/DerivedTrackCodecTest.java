@@ -0,0 +1,255 @@
+package org.trail.attemptverifier.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class DerivedTrackCodecTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    // ------------------------------------------------------------
+    // Current format
+    // ------------------------------------------------------------
+
+    @Test
+    void roundTripsAllColumnsAndExcursions() {
+        DerivedTrack original = sample();
+        byte[] data = DerivedTrackCodec.encode(original);
+        assertThat(data[2]).isEqualTo((byte) DerivedTrackCodec.FORMAT_EXCURSION_TOTALS);
+
+        DerivedTrack decoded = DerivedTrackCodec.decode(data);
+        assertSameTrack(decoded.getTrack(), original.getTrack());
+        assertThat(decoded.getLevels()).containsExactly(original.getLevels());
+        assertThat(decoded.getOnRoute()).containsExactly(original.getOnRoute());
+        assertThat(decoded.getNearestSegment()).containsExactly(original.getNearestSegment());
+        assertThat(decoded.getChainageM()).containsExactly(original.getChainageM());
+        assertThat(decoded.getTrack().segmentStarts()).containsExactly(4);
+
+        List<Excursions.Excursion> expected = original.getExcursions().getExcursions();
+        List<Excursions.Excursion> actual = decoded.getExcursions().getExcursions();
+        assertThat(actual).hasSize(2);
+        for (int k = 0; k < expected.size(); k++) {
+            Excursions.Excursion e = expected.get(k);
+            Excursions.Excursion a = actual.get(k);
+            assertThat(a.getStartIndex()).isEqualTo(e.getStartIndex());
+            assertThat(a.getEndIndex()).isEqualTo(e.getEndIndex());
+            assertThat(a.getStartChainageM()).isEqualTo(e.getStartChainageM());
+            assertThat(a.getEndChainageM()).isEqualTo(e.getEndChainageM());
+            assertThat(a.getLengthM()).isCloseTo(e.getLengthM(), within(0.5));
+            assertThat(a.getMaxDeviationM()).isCloseTo(e.getMaxDeviationM(), within(0.05));
+            assertThat(a.getMinLat()).isCloseTo(e.getMinLat(), within(1e-7));
+            assertThat(a.getMinLon()).isCloseTo(e.getMinLon(), within(1e-7));
+            assertThat(a.getMaxLat()).isCloseTo(e.getMaxLat(), within(1e-7));
+            assertThat(a.getMaxLon()).isCloseTo(e.getMaxLon(), within(1e-7));
+            assertThat(a.getStartTime()).isEqualTo(e.getStartTime());
+            assertThat(a.getDurationSeconds()).isEqualTo(e.getDurationSeconds());
+        }
+        assertSameTotals(decoded.getExcursions(), original.getExcursions());
+    }
+
+    @Test
+    void roundTripsExcursionTotalsAndMinimum() {
+        // both 2-point runs are below a 3-point minimum
+        DerivedTrack original = sample(3);
+        assertThat(original.getExcursions().getCount()).isZero();
+        assertThat(original.getExcursions().getShortRuns()).isEqualTo(2);
+
+        Excursions decoded = DerivedTrackCodec.decode(DerivedTrackCodec.encode(original)).getExcursions();
+        assertThat(decoded.getExcursions()).isEmpty();
+        assertSameTotals(decoded, original.getExcursions());
+        assertThat(decoded.getOffRoutePoints()).isEqualTo(4);
+        assertThat(decoded.getMaxDeviationM()).isEqualTo(55.6);
+    }
+
+    @Test
+    void roundTripsTrackWithoutElevationOrTime() {
+        PackedTrack.Builder b = new PackedTrack.Builder();
+        b.add(-33.8567844, 151.2152967, Double.NaN, PackedTrack.NO_TIME);
+        b.add(-33.8568000, 151.2153500, Double.NaN, PackedTrack.NO_TIME);
+        PackedTrack track = b.build();
+        Excursions none = new Excursions.Tracker(track, new int[2]).finish();
+        DerivedTrack original = new DerivedTrack(track, new byte[]{3, 3}, new boolean[]{true, true},
+                new int[]{0, 0}, new int[]{0, 5}, none);
+
+        DerivedTrack decoded = DerivedTrackCodec.decode(DerivedTrackCodec.encode(original));
+        assertSameTrack(decoded.getTrack(), track);
+        assertThat(decoded.getExcursions().getCount()).isZero();
+    }
+
+    @Test
+    void refusesToEncodeWithoutExcursions() {
+        DerivedTrack d = sample();
+        DerivedTrack noExcursions = new DerivedTrack(d.getTrack(), d.getLevels(), d.getOnRoute(),
+                d.getNearestSegment(), d.getChainageM(), null);
+        assertThatThrownBy(() -> DerivedTrackCodec.encode(noExcursions))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // ------------------------------------------------------------
+    // Older formats
+    // ------------------------------------------------------------
+
+    /** Format 1 as stored before chainage was added: 3 points, no chainage, one segment. */
+    private static final byte[] STORED_FORMAT_1 = bytes(
+            0x44, 0x54, 0x01, 0x03, 0xC0, 0xB9, 0xA9, 0x62, 0xC0, 0xE2, 0xD9, 0xF0, 0x07, 0x84, 0x07,
+            0xD4, 0x0C, 0x84, 0x07, 0xD4, 0x0C, 0x02, 0x05, 0xF6, 0x01, 0x10, 0x01, 0x80, 0xA0, 0xAB,
+            0xFE, 0xF9, 0x62, 0x90, 0x4E, 0x90, 0x4E, 0x33, 0x05, 0x00, 0x02, 0x00);
+
+    @Test
+    void decodesStoredFormat1() {
+        DerivedTrack d = DerivedTrackCodec.decode(STORED_FORMAT_1);
+        PackedTrack t = d.getTrack();
+
+        assertThat(t.size()).isEqualTo(3);
+        assertThat(t.latitudes()).containsExactly(new double[]{10.31, 10.310045, 10.31009}, within(1e-9));
+        assertThat(t.longitudes()).containsExactly(new double[]{105.77, 105.770081, 105.770162}, within(1e-9));
+        assertThat(t.elevations()[0]).isCloseTo(12.3, within(1e-9));
+        assertThat(t.elevations()[1]).isNaN();
+        assertThat(t.elevations()[2]).isCloseTo(13.1, within(1e-9));
+        assertThat(t.timesMillis()).containsExactly(T0, T0 + 5000, T0 + 10000);
+        assertThat(t.segmentStarts()).isEmpty();
+        assertThat(d.getLevels()).containsExactly(3, 0, 3);
+        assertThat(d.getOnRoute()).containsExactly(true, false, true);
+        assertThat(d.getNearestSegment()).containsExactly(0, 1, 1);
+        assertThat(d.hasChainage()).isFalse();
+        assertThat(d.hasExcursions()).isFalse();
+    }
+
+    @Test
+    void decodesFormat2To4() {
+        // One GPX segment and no excursions: format 5 ends in the segment
+        // count (0), the excursion count (0) and the totals (minimum 1
+        // point / 0 m, then four zeros), each one byte
+        DerivedTrack original = singleSegmentWithoutExcursions();
+        byte[] current = DerivedTrackCodec.encode(original);
+        assertThat(Arrays.copyOfRange(current, current.length - 8, current.length))
+                .containsExactly(0, 0, 1, 0, 0, 0, 0, 0);
+
+        byte[] format4 = Arrays.copyOf(current, current.length - 6);
+        format4[2] = DerivedTrackCodec.FORMAT_EXCURSIONS;
+        DerivedTrack d4 = DerivedTrackCodec.decode(format4);
+        assertSameTrack(d4.getTrack(), original.getTrack());
+        assertThat(d4.hasExcursions()).isTrue();
+        assertThat(d4.getExcursions().getMinPoints()).isEqualTo(1);
+        assertThat(d4.getExcursions().getOffRoutePoints()).isZero();
+
+        byte[] format3 = Arrays.copyOf(current, current.length - 7);
+        format3[2] = DerivedTrackCodec.FORMAT_SEGMENTS;
+        DerivedTrack d3 = DerivedTrackCodec.decode(format3);
+        assertSameTrack(d3.getTrack(), original.getTrack());
+        assertThat(d3.getChainageM()).containsExactly(original.getChainageM());
+        assertThat(d3.hasExcursions()).isFalse();
+
+        byte[] format2 = Arrays.copyOf(current, current.length - 8);
+        format2[2] = DerivedTrackCodec.FORMAT_CHAINAGE;
+        DerivedTrack d2 = DerivedTrackCodec.decode(format2);
+        assertSameTrack(d2.getTrack(), original.getTrack());
+        assertThat(d2.getChainageM()).containsExactly(original.getChainageM());
+        assertThat(d2.getTrack().segmentStarts()).isEmpty();
+        assertThat(d2.hasExcursions()).isFalse();
+    }
+
+    @Test
+    void rejectsUnknownVersionsAndTruncatedData() {
+        byte[] future = STORED_FORMAT_1.clone();
+        future[2] = (byte) (DerivedTrackCodec.FORMAT_VERSION + 1);
+        assertThatThrownBy(() -> DerivedTrackCodec.decode(future))
+                .hasMessageContaining("Unsupported packed track format");
+
+        byte[] zero = STORED_FORMAT_1.clone();
+        zero[2] = 0;
+        assertThatThrownBy(() -> DerivedTrackCodec.decode(zero))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThatThrownBy(() -> DerivedTrackCodec.decode(Arrays.copyOf(STORED_FORMAT_1, 20)))
+                .hasMessageContaining("truncated");
+        assertThatThrownBy(() -> DerivedTrackCodec.decode(bytes('G', 'P', 1, 0)))
+                .hasMessageContaining("Not a packed track");
+    }
+
+    // -------------------------
+    // Helpers
+    // -------------------------
+
+    private static DerivedTrack sample() {
+        return sample(1);
+    }
+
+    /**
+     * Two GPX segments (the second starts at 4), partial elevation, and two
+     * off-route runs (points 1-2 and 4-5; the segment start opens the
+     * second), listed as excursions unless the minimum is above 2 points.
+     */
+    private static DerivedTrack sample(int excursionMinPoints) {
+        PackedTrack.Builder b = new PackedTrack.Builder();
+        b.add(10.3100000, 105.7700000, 12.3, T0);
+        b.add(10.3101000, 105.7704000, 12.9, T0 + 5_000);
+        b.add(10.3102500, 105.7707000, Double.NaN, T0 + 10_000);
+        b.add(10.3103000, 105.7709000, 14.0, T0 + 15_000);
+        b.startSegment();
+        b.add(10.3110000, 105.7720000, 15.5, T0 + 60_000);
+        b.add(10.3111000, 105.7718000, 15.1, T0 + 65_000);
+        b.add(10.3112000, 105.7722000, 16.0, T0 + 70_000);
+        PackedTrack track = b.build();
+
+        boolean[] onRoute = {true, false, false, true, false, false, true};
+        double[] deviation = {3.0, 41.27, 55.55, 2.0, 31.0, 28.4, 1.0};
+        int[] chainage = {0, 40, 80, 120, 300, 310, 330};
+        Excursions.Tracker tracker = new Excursions.Tracker(track, chainage, excursionMinPoints, 0);
+        for (int i = 0; i < track.size(); i++) {
+            tracker.accept(i, onRoute[i], deviation[i]);
+        }
+        return new DerivedTrack(track, new byte[]{3, 1, 0, 2, 3, 0, 3}, onRoute,
+                new int[]{0, 1, 2, 2, 7, 7, 8}, chainage, tracker.finish());
+    }
+
+    private static DerivedTrack singleSegmentWithoutExcursions() {
+        PackedTrack.Builder b = new PackedTrack.Builder();
+        b.add(22.3364000, 103.8438000, 1600.0, T0);
+        b.add(22.3365000, 103.8437000, 1602.5, T0 + 1_000);
+        b.add(22.3366000, 103.8436000, 1604.0, T0 + 2_000);
+        PackedTrack track = b.build();
+        int[] chainage = {10, 25, 40};
+        return new DerivedTrack(track, new byte[]{3, 2, 3}, new boolean[]{true, true, true},
+                new int[]{1, 1, 2}, chainage, new Excursions.Tracker(track, chainage).finish());
+    }
+
+    private static void assertSameTotals(Excursions actual, Excursions expected) {
+        assertThat(actual.getMinPoints()).isEqualTo(expected.getMinPoints());
+        assertThat(actual.getMinLengthM()).isEqualTo(expected.getMinLengthM());
+        assertThat(actual.getShortRuns()).isEqualTo(expected.getShortRuns());
+        assertThat(actual.getOffRoutePoints()).isEqualTo(expected.getOffRoutePoints());
+        assertThat(actual.getTotalLengthKm()).isCloseTo(expected.getTotalLengthKm(), within(0.0005));
+        assertThat(actual.getMaxDeviationM()).isCloseTo(expected.getMaxDeviationM(), within(0.05));
+    }
+
+    private static void assertSameTrack(PackedTrack actual, PackedTrack expected) {
+        assertThat(actual.size()).isEqualTo(expected.size());
+        assertThat(actual.latitudes()).containsExactly(expected.latitudes(), within(1e-7));
+        assertThat(actual.longitudes()).containsExactly(expected.longitudes(), within(1e-7));
+        for (int i = 0; i < expected.size(); i++) {
+            double e = expected.elevations()[i];
+            if (Double.isNaN(e)) {
+                assertThat(actual.elevations()[i]).isNaN();
+            } else {
+                assertThat(actual.elevations()[i]).isCloseTo(e, within(0.05));
+            }
+        }
+        assertThat(actual.timesMillis()).containsExactly(expected.timesMillis());
+        assertThat(actual.segmentStarts()).containsExactly(expected.segmentStarts());
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] b = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            b[i] = (byte) values[i];
+        }
+        return b;
+    }
+}
@@ -0,0 +1,81 @@
+package org.trail.attemptverifier.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class ExcursionsTest {
+
+    private static final double M_PER_DEG_LAT = 111_195.0;
+
+    /** 20 points 10 m apart due north. */
+    private static final PackedTrack TRACK = straightTrack(20, 10.0);
+
+    /** Off route: 3 alone, 7-8, and 12-15. */
+    private static final boolean[] OFF = new boolean[20];
+
+    static {
+        OFF[3] = true;
+        OFF[7] = OFF[8] = true;
+        for (int i = 12; i <= 15; i++) {
+            OFF[i] = true;
+        }
+    }
+
+    @Test
+    void withoutMinimumEveryRunIsListed() {
+        Excursions e = track(new Excursions.Tracker(TRACK, null));
+
+        assertThat(e.getCount()).isEqualTo(3);
+        assertThat(e.getShortRuns()).isZero();
+        assertThat(e.getOffRoutePoints()).isEqualTo(7);
+    }
+
+    @Test
+    void runsBelowTheMinimumCountOnlyInTheTotals() {
+        Excursions e = track(new Excursions.Tracker(TRACK, null, 3, 0));
+
+        assertThat(e.getCount()).isEqualTo(1);
+        assertThat(e.getExcursions().get(0).getStartIndex()).isEqualTo(12);
+        assertThat(e.getExcursions().get(0).getEndIndex()).isEqualTo(15);
+        assertThat(e.getShortRuns()).isEqualTo(2);
+
+        // totals still cover the single point (the farthest) and the 2-point run
+        assertThat(e.getOffRoutePoints()).isEqualTo(7);
+        assertThat(e.getTotalLengthKm()).isCloseTo(0.040, within(0.0005));
+        assertThat(e.getMaxDeviationM()).isEqualTo(90.0);
+        assertThat(e.getExcursions().get(0).getMaxDeviationM()).isEqualTo(55.0);
+    }
+
+    @Test
+    void minimumLengthInMeters() {
+        Excursions e = track(new Excursions.Tracker(TRACK, null, 1, 25));
+
+        // 12-15 is 30 m long, 7-8 is 10 m, the single point 0 m
+        assertThat(e.getCount()).isEqualTo(1);
+        assertThat(e.getExcursions().get(0).getLengthM()).isCloseTo(30.0, within(0.1));
+        assertThat(e.getShortRuns()).isEqualTo(2);
+        assertThat(e.getMinLengthM()).isEqualTo(25);
+    }
+
+    // -------------------------
+    // Helpers
+    // -------------------------
+
+    /** Feeds OFF to the tracker; off-route point i is 40 m + i away, point 3 90 m. */
+    private static Excursions track(Excursions.Tracker tracker) {
+        for (int i = 0; i < TRACK.size(); i++) {
+            tracker.accept(i, !OFF[i], !OFF[i] ? 5.0 : i == 3 ? 90.0 : 40.0 + i);
+        }
+        return tracker.finish();
+    }
+
+    private static PackedTrack straightTrack(int points, double stepM) {
+        PackedTrack.Builder b = new PackedTrack.Builder();
+        for (int i = 0; i < points; i++) {
+            b.add(10.0 + i * stepM / M_PER_DEG_LAT, 105.0, Double.NaN, PackedTrack.NO_TIME);
+        }
+        return b.build();
+    }
+}
@@ -0,0 +1,127 @@
+package org.trail.attemptverifier.util;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.trail.attemptverifier.model.TrackPoint;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Decoding of fit/activity.fit, a small hand-built activity:
+ *  - 14-byte header with its CRC
+ *  - file_id, developer_data_id and field_description messages
+ *  - 3 records with timestamp, enhanced_altitude, heart rate and one
+ *    2-byte developer field
+ *  - 2 compressed-timestamp records (offsets 31 and 1: the second rolls over)
+ *  - a record without a GPS fix
+ *  - a timer stop_all event
+ *  - 1 record from a big-endian definition, 53 s after the stop
+ */
+class FitReaderTest {
+
+    /** 2024-11-08T11:33:48Z: FIT timestamp 1_100_000_028. */
+    private static final Instant T0 = Instant.ofEpochSecond(631_065_600L + 1_100_000_028L);
+
+    private static final int[] SECONDS = {0, 1, 2, 3, 5, 60};
+    private static final double[] LAT = {22.3364, 22.3365, 22.3366, 22.3367, 22.3368, 22.3370};
+    private static final double[] LON = {103.8438, 103.8437, 103.8436, 103.8435, 103.8434, 103.8430};
+    private static final double[] ELE = {1600.0, 1601.2, 1602.4, 1603.0, 1603.8, 1610.0};
+
+    private static byte[] activity;
+
+    private final FitReader reader = new FitReader(new ParseLimits(1_000_000, 32, 8192));
+
+    @BeforeAll
+    static void loadFixture() throws IOException {
+        try (InputStream in = FitReaderTest.class.getResourceAsStream("/fit/activity.fit")) {
+            assertThat(in).isNotNull();
+            activity = in.readAllBytes();
+        }
+    }
+
+    @Test
+    void acceptsTheHeader() {
+        assertThat(reader.accepts(activity, activity.length)).isTrue();
+        assertThat(reader.accepts("<?xml version=\"1.0\"?>".getBytes(), 21)).isFalse();
+    }
+
+    @Test
+    void decodesRecordsOfEveryKind() {
+        assertActivity(read(activity));
+    }
+
+    @Test
+    void readsTwelveByteHeader() {
+        // same data behind the older header, which has no CRC
+        byte[] twelve = new byte[activity.length - 2];
+        System.arraycopy(activity, 0, twelve, 0, 12);
+        System.arraycopy(activity, 14, twelve, 12, activity.length - 14);
+        twelve[0] = 12;
+
+        assertActivity(read(twelve));
+    }
+
+    @Test
+    void checksTheHeaderCrcUnlessItIsZero() {
+        byte[] zero = activity.clone();
+        zero[12] = 0;
+        zero[13] = 0;
+        assertActivity(read(zero));
+
+        byte[] wrongCrc = activity.clone();
+        wrongCrc[12] ^= 0x01;
+        assertThat(read(wrongCrc)).isEmpty();
+
+        byte[] wrongSize = activity.clone();
+        wrongSize[4] -= 2; // data size, no longer matching the CRC
+        assertThat(read(wrongSize)).isEmpty();
+    }
+
+    @Test
+    void truncatedFileYieldsNoPoints() {
+        assertThat(read(Arrays.copyOf(activity, activity.length - 20))).isEmpty();
+        assertThat(read(Arrays.copyOf(activity, 10))).isEmpty();
+        assertThat(read(new byte[0])).isEmpty();
+    }
+
+    @Test
+    void readsChainedFiles() {
+        byte[] chained = new byte[activity.length * 2];
+        System.arraycopy(activity, 0, chained, 0, activity.length);
+        System.arraycopy(activity, 0, chained, activity.length, activity.length);
+
+        List<TrackPoint> points = read(chained);
+        assertThat(points).hasSize(12);
+        assertThat(points.get(6).isSegmentStart()).isTrue();
+        assertActivity(points.subList(6, 12));
+    }
+
+    // -------------------------
+    // Helpers
+    // -------------------------
+
+    private List<TrackPoint> read(byte[] data) {
+        return reader.read(new ByteArrayInputStream(data));
+    }
+
+    private static void assertActivity(List<TrackPoint> points) {
+        assertThat(points).hasSize(SECONDS.length);
+        for (int i = 0; i < points.size(); i++) {
+            TrackPoint p = points.get(i);
+            assertThat(p.getTime()).as("time %d", i).isEqualTo(T0.plusSeconds(SECONDS[i]));
+            assertThat(p.getLatitude()).as("lat %d", i).isCloseTo(LAT[i], within(1e-6));
+            assertThat(p.getLongitude()).as("lon %d", i).isCloseTo(LON[i], within(1e-6));
+            assertThat(p.getElevation()).as("ele %d", i).isCloseTo(ELE[i], within(0.1));
+            // the first point and the first after the timer stop
+            assertThat(p.isSegmentStart()).as("segment start %d", i).isEqualTo(i == 0 || i == 5);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package org.trail.attemptverifier.util;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.trail.attemptverifier.model.TrackPoint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * MappedGpxReader must return exactly what GpxParser returns. Chunks are
+ * the 64 KB minimum on 4 threads, so every file here is scanned in
+ * parallel and split at points.
+ */
+class MappedGpxReaderTest {
+
+    private static final int CHUNK_BYTES = 64 * 1024;
+    private static final int THREADS = 4;
+    private static final long T0 = 1_731_065_628_000L;
+
+    private static final ParseLimits LIMITS = new ParseLimits(1_000_000, 32, 8192);
+    private static final GpxParser PARSER = new GpxParser(LIMITS);
+    private static final MappedGpxReader READER = new MappedGpxReader(PARSER, LIMITS, CHUNK_BYTES, THREADS);
+
+    @TempDir
+    Path dir;
+
+    @AfterAll
+    static void shutdown() {
+        READER.shutdown();
+    }
+
+    @Test
+    void matchesGpxParserOnTheSampleFiles() throws IOException, URISyntaxException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> samples = Files.list(Path.of("gpx"))) {
+            samples.filter(f -> f.toString().endsWith(".gpx")).sorted().forEach(files::add);
+        }
+        files.add(Path.of(MappedGpxReaderTest.class.getResource("/gpx/route_official.gpx").toURI()));
+        assertThat(files).hasSizeGreaterThan(1);
+
+        for (Path file : files) {
+            assertMatchesGpxParser(file);
+        }
+    }
+
+    @Test
+    void matchesGpxParserOnPrefixedSegmentedFileWithMarkup() throws IOException {
+        Path file = write("markup.gpx", markupGpx(""));
+
+        List<TrackPoint> points = assertMatchesGpxParser(file);
+        // 3 segments of 1500; every 100th point has no lat and is dropped
+        assertThat(points).hasSize(3 * 1485);
+        assertThat(points.stream().filter(TrackPoint::isSegmentStart).count()).isEqualTo(3);
+        assertThat(points.get(0).getElevation()).isEqualTo(1600.5);
+        assertThat(points.get(0).getTime()).isEqualTo(Instant.ofEpochMilli(T0 + 250));
+    }
+
+    @Test
+    void cdataAndEntitiesInValuesAreReadByGpxParser() throws IOException {
+        String[] odd = {
+                "<g:time><![CDATA[2024-11-08T11:33:48Z]]></g:time>",
+                "<g:time>2024-11-08T11:33:48<!-- local? -->Z</g:time>",
+                "<g:ele>1&#54;00.5</g:ele>",
+                "<g:ele><![CDATA[ 1600.5 ]]></g:ele>",
+        };
+        for (int k = 0; k < odd.length; k++) {
+            Path file = write("odd" + k + ".gpx", markupGpx(odd[k]));
+            List<TrackPoint> points = assertMatchesGpxParser(file);
+            TrackPoint p = points.get(points.size() - 1);
+            if (odd[k].contains("time")) {
+                assertThat(p.getTime()).isEqualTo(Instant.parse("2024-11-08T11:33:48Z"));
+            } else {
+                assertThat(p.getElevation()).isEqualTo(1600.5);
+            }
+        }
+
+        Path entityInAttribute = write("attr.gpx", markupGpx("").replace(
+                "<g:trkpt lat=\"22.3364000\"", "<g:trkpt lat=\"&#50;2.3364000\""));
+        assertThat(assertMatchesGpxParser(entityInAttribute).get(0).getLatitude()).isEqualTo(22.3364);
+    }
+
+    // -------------------------
+    // Helpers
+    // -------------------------
+
+    private static List<TrackPoint> assertMatchesGpxParser(Path file) throws IOException {
+        ByteBuffer data = MappedGpxReader.map(file);
+        assertThat(READER.chunkStarts(data, data.limit())).as(file + " chunks").hasSize(THREADS);
+
+        List<TrackPoint> expected;
+        try (InputStream in = Files.newInputStream(file)) {
+            expected = PARSER.parse(in);
+        }
+        List<TrackPoint> actual = READER.read(data, file);
+
+        assertThat(actual).as(file.toString()).hasSize(expected.size());
+        assertThat(expected).as(file.toString()).isNotEmpty();
+        for (int i = 0; i < expected.size(); i++) {
+            TrackPoint e = expected.get(i);
+            TrackPoint a = actual.get(i);
+            String at = file.getFileName() + " point " + i;
+            assertThat(a.getLatitude()).as(at).isEqualTo(e.getLatitude());
+            assertThat(a.getLongitude()).as(at).isEqualTo(e.getLongitude());
+            assertThat(a.getElevation()).as(at).isEqualTo(e.getElevation());
+            assertThat(a.getTimeMillis()).as(at).isEqualTo(e.getTimeMillis());
+            assertThat(a.isSegmentStart()).as(at).isEqualTo(e.isSegmentStart());
+        }
+        return actual;
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(dir.resolve(name), content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A prefixed GPX 1.1 file of about 600 KB: two tracks (the first with
+     * two segments) of 1500 points each, with comments, CDATA sections and
+     * a processing instruction between elements (some holding fake trkpt
+     * tags), single-quoted and reordered attributes, an &lt;ele&gt; nested
+     * in &lt;extensions&gt;, a self-closing point and points without lat.
+     * lastValue, when not empty, replaces the last point's &lt;ele&gt;
+     * or &lt;time&gt;.
+     */
+    private static String markupGpx(String lastValue) {
+        StringBuilder b = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<g:gpx xmlns:g=\"http://www.topografix.com/GPX/1/1\" version=\"1.1\" creator=\"test\">\n"
+                + "<!-- <g:trkpt lat=\"1\" lon=\"1\"></g:trkpt> -->\n"
+                + "<g:metadata><g:desc><![CDATA[ <g:trkpt lat=\"2\" lon=\"2\"/> ]]></g:desc></g:metadata>\n");
+        int n = 0;
+        for (int trk = 0; trk < 2; trk++) {
+            b.append("<g:trk><g:name>Leg ").append(trk).append("</g:name>\n");
+            int segments = trk == 0 ? 2 : 1;
+            for (int seg = 0; seg < segments; seg++) {
+                b.append("<g:trkseg>\n");
+                for (int i = 0; i < 1500; i++, n++) {
+                    double lat = 22.3364 + n * 1e-5;
+                    double lon = 103.8438 - n * 1e-5;
+                    String ele = String.format(Locale.ROOT, "<g:ele> %.1f </g:ele>", 1600.5 + (n % 300) * 0.4);
+                    String time = "<g:time>" + Instant.ofEpochMilli(T0 + 250 + n * 1000L) + "</g:time>";
+                    if (n == 3 * 1500 - 1 && !lastValue.isEmpty()) {
+                        if (lastValue.contains("time")) {
+                            time = lastValue;
+                        } else {
+                            ele = lastValue;
+                        }
+                    }
+                    if (i % 100 == 50) {
+                        b.append(String.format(Locale.ROOT, "<g:trkpt lon=\"%.7f\"><g:ele>1.0</g:ele></g:trkpt>%n", lon));
+                        continue;
+                    }
+                    if (i % 250 == 7) {
+                        b.append(String.format(Locale.ROOT, "<g:trkpt lat=\"%.7f\" lon=\"%.7f\"/>%n", lat, lon));
+                        continue;
+                    }
+                    if (i % 2 == 0) {
+                        b.append(String.format(Locale.ROOT, "<g:trkpt lat=\"%.7f\" lon=\"%.7f\">", lat, lon));
+                    } else {
+                        b.append(String.format(Locale.ROOT, "<g:trkpt lon='%.7f'\n    lat='%.7f'>", lon, lat));
+                    }
+                    b.append("\n  ").append(ele).append("\n  ").append(time);
+                    if (i % 10 == 3) {
+                        b.append("\n  <!-- </g:trkpt> <g:trkpt lat=\"3\" lon=\"3\"> -->");
+                    }
+                    if (i % 10 == 6) {
+                        b.append("\n  <g:extensions><g:ele>9999</g:ele>"
+                                + "<g:note><![CDATA[</g:trkpt><g:time>x</g:time>]]></g:note></g:extensions>");
+                    }
+                    if (i % 40 == 9) {
+                        b.append("\n  <?device lap=\"").append(i).append("\"?>");
+                    }
+                    b.append("\n</g:trkpt>\n");
+                }
+                b.append("</g:trkseg>\n");
+            }
+            b.append("</g:trk>\n");
+        }
+        return b.append("</g:gpx>\n").toString();
+    }
+}
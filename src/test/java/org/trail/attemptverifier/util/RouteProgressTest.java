@@ -0,0 +1,95 @@
+package org.trail.attemptverifier.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class RouteProgressTest {
+
+    private static final double M_PER_DEG_LAT = 111_195.0;
+    private static final double LAT0 = 10.0;
+    private static final double LON0 = 105.0;
+
+    private static final double TOLERANCE_M = 30.0;
+    private static final double MAX_BRIDGE_M = 300.0;
+    private static final double MIN_BRIDGE_RATIO = 0.5;
+    private static final double MIN_SKIP_M = 500.0;
+
+    /**
+     * Hairpin route: 3 km north, 200 m east, 3 km south, a vertex every 25 m.
+     */
+    private static final RouteIndex ROUTE = RouteIndex.build(hairpin(25.0));
+
+    @Test
+    void sparseSamplingOfTheRouteCoversIt() {
+        // one fix every 310 m (more than max-bridge-m), also across the bend
+        RouteProgress progress = progress(hairpin(310.0));
+
+        assertThat(progress.getSkipped()).isEmpty();
+        assertThat(progress.getCompletion()).isGreaterThan(0.99);
+        assertThat(progress.getProgressKm()).isCloseTo(6.2, within(0.05));
+    }
+
+    @Test
+    void shortcutAcrossTheHairpinIsSkipped() {
+        // up the west leg to 1 km, then straight over to the east leg 200 m away
+        PackedTrack.Builder b = new PackedTrack.Builder();
+        for (double y = 0; y <= 1000; y += 25) {
+            add(b, 0, y);
+        }
+        for (double y = 1000; y >= 0; y -= 25) {
+            add(b, 200, y);
+        }
+        RouteProgress progress = progress(b.build());
+
+        assertThat(progress.getSkipped()).hasSize(1);
+        assertThat(progress.getSkippedKm()).isCloseTo(4.2, within(0.1));
+        assertThat(progress.getCompletion()).isCloseTo(2.0 / 6.2, within(0.02));
+        assertThat(progress.getProgressKm()).isCloseTo(6.2, within(0.05));
+    }
+
+    @Test
+    void shortJumpsAreAlwaysBridged() {
+        // 250 m between fixes along a straight leg
+        PackedTrack.Builder b = new PackedTrack.Builder();
+        for (double y = 0; y <= 3000; y += 250) {
+            add(b, 0, y);
+        }
+        RouteProgress progress = progress(b.build());
+
+        assertThat(progress.getSkipped()).isEmpty();
+        assertThat(progress.getProgressKm()).isCloseTo(3.0, within(0.05));
+    }
+
+    // -------------------------
+    // Helpers
+    // -------------------------
+
+    private static RouteProgress progress(PackedTrack attempt) {
+        DerivedTrack derived = DerivedTrack.build(attempt, ROUTE, TOLERANCE_M);
+        return RouteProgress.compute(derived, ROUTE.lengthM(), MAX_BRIDGE_M, MIN_BRIDGE_RATIO, MIN_SKIP_M);
+    }
+
+    /** Points every stepM along the hairpin. */
+    private static PackedTrack hairpin(double stepM) {
+        PackedTrack.Builder b = new PackedTrack.Builder();
+        for (double c = 0; c <= 6200; c += stepM) {
+            if (c <= 3000) {
+                add(b, 0, c);
+            } else if (c <= 3200) {
+                add(b, c - 3000, 3000);
+            } else {
+                add(b, 200, 6200 - c);
+            }
+        }
+        return b.build();
+    }
+
+    /** Adds a point x meters east and y meters north of the start. */
+    private static void add(PackedTrack.Builder b, double x, double y) {
+        double lat = LAT0 + y / M_PER_DEG_LAT;
+        double lon = LON0 + x / (M_PER_DEG_LAT * Math.cos(Math.toRadians(LAT0)));
+        b.add(lat, lon, Double.NaN, PackedTrack.NO_TIME);
+    }
+}
@@ -0,0 +1,147 @@
+#!/usr/bin/env bash
+# startup_report.sh
+# Usage: ./startup_report.sh target/gpx-verifier-0.0.1-SNAPSHOT.jar [target/gpx-verifier]
+#
+# Starts the verifier as the JVM jar, the JVM jar with Spring AOT code
+# (if the jar was built with -Pnative), the jar with its AppCDS archive
+# (if appcds.sh has written target/cds) and the native binary (if given
+# and present), one after the other, and prints for each:
+#   - ms until GET /api/health answers
+#   - ms until GET /api/health/ready answers 200 (route loaded, warmup done)
+#   - JVM uptime at steady state, as reported by the warmup
+#   - resident memory (RSS) at that point
+# By default every run uses the embedded profile on an in-memory H2
+# database, so no MySQL is needed and the numbers are comparable. The AOT
+# and native builds only run there if they were built with
+# -Dnative.aot.profiles=embedded (NATIVE_AOT_PROFILES, set by mvn -Pnative):
+# a production build has no SQL initializer to create the H2 schema.
+# Set REPORT_DATASOURCE_URL (and REPORT_DATASOURCE_USERNAME/PASSWORD) to
+# measure the production variant against that MySQL instead.
+
+set -e
+
+if [ -z "$1" ]; then
+  echo "Usage: $0 /path/to/app.jar [/path/to/native-binary]"
+  exit 1
+fi
+
+JAR="$1"
+NATIVE="$2"
+PORT="${REPORT_PORT:-18080}"
+JAVA="${JAVA_HOME:+$JAVA_HOME/bin/}java"
+WORK="$(mktemp -d)"
+trap 'rm -rf "$WORK"' EXIT
+
+if [ ! -f "$JAR" ]; then
+  echo "Error: '$JAR' does not exist or is not a file."
+  exit 1
+fi
+
+APP_ARGS=(
+  "--verifier.blob-store.root=$WORK/blobs"
+  "--server.port=$PORT"
+  "--logging.level.org.springframework.jdbc.core=INFO"
+)
+if [ -n "$REPORT_DATASOURCE_URL" ]; then
+  VARIANT="production profile, $REPORT_DATASOURCE_URL"
+  APP_ARGS+=("--spring.datasource.url=$REPORT_DATASOURCE_URL")
+  [ -n "$REPORT_DATASOURCE_USERNAME" ] && APP_ARGS+=("--spring.datasource.username=$REPORT_DATASOURCE_USERNAME")
+  [ -n "$REPORT_DATASOURCE_PASSWORD" ] && APP_ARGS+=("--spring.datasource.password=$REPORT_DATASOURCE_PASSWORD")
+  AOT_RUNS=1
+else
+  VARIANT="embedded profile, in-memory H2"
+  APP_ARGS+=(
+    "--spring.profiles.active=embedded"
+    "--spring.datasource.url=jdbc:h2:mem:startup;MODE=MySQL;DATABASE_TO_LOWER=TRUE;IGNORE_UNKNOWN_SETTINGS=TRUE;DB_CLOSE_DELAY=-1"
+  )
+  # Unknown when run by hand: assume the AOT code was built for embedded
+  case ",${NATIVE_AOT_PROFILES-embedded}," in
+    *,embedded,*) AOT_RUNS=1 ;;
+    *) AOT_RUNS=0 ;;
+  esac
+fi
+
+now_ms() {
+  date +%s%3N
+}
+
+rss_mb() {
+  local kb
+  kb=$(ps -o rss= -p "$1" 2>/dev/null | tr -d ' ')
+  [ -n "$kb" ] && echo $((kb / 1024)) || echo "?"
+}
+
+# measure <label> <command...>
+measure() {
+  local label="$1"
+  shift
+  local log="$WORK/$label.log"
+  local start health ready pid
+
+  start=$(now_ms)
+  "$@" "${APP_ARGS[@]}" > "$log" 2>&1 &
+  pid=$!
+
+  health=""
+  for _ in $(seq 1 1200); do
+    if curl -sf "http://localhost:$PORT/api/health" > /dev/null 2>&1; then
+      health=$(( $(now_ms) - start ))
+      break
+    fi
+    if ! kill -0 "$pid" 2>/dev/null; then
+      break
+    fi
+    sleep 0.05
+  done
+
+  ready=""
+  steady=""
+  if [ -n "$health" ]; then
+    for _ in $(seq 1 1200); do
+      if curl -sf "http://localhost:$PORT/api/health/ready" > "$WORK/ready.json" 2>/dev/null; then
+        ready=$(( $(now_ms) - start ))
+        steady=$(grep -o '"readyAtUptimeMs":[0-9]*' "$WORK/ready.json" | cut -d: -f2)
+        break
+      fi
+      sleep 0.05
+    done
+  fi
+
+  local rss
+  rss=$(rss_mb "$pid")
+  kill "$pid" 2>/dev/null || true
+  wait "$pid" 2>/dev/null || true
+
+  if [ -z "$health" ]; then
+    printf "%-10s %10s %10s %10s %8s   (failed, see output below)\n" "$label" "-" "-" "-" "-"
+    tail -20 "$log"
+    return
+  fi
+  printf "%-10s %10s %10s %10s %8s\n" "$label" "$health" "${ready:--}" "${steady:--}" "$rss"
+}
+
+echo "Startup report ($VARIANT, port $PORT)"
+printf "%-10s %10s %10s %10s %8s\n" "build" "health ms" "ready ms" "steady ms" "RSS MB"
+
+measure jvm "$JAVA" -jar "$JAR"
+
+CDS_DIR="$(dirname "$JAR")/cds"
+if [ -f "$CDS_DIR/application.jsa" ]; then
+  measure jvm-cds "$JAVA" -XX:SharedArchiveFile="$CDS_DIR/application.jsa" -jar "$CDS_DIR/$(basename "$JAR")"
+fi
+
+if [ "$AOT_RUNS" = 0 ]; then
+  echo "AOT/native builds skipped: built for profiles '$NATIVE_AOT_PROFILES', not embedded."
+  echo "Set REPORT_DATASOURCE_URL to a MySQL, or build with -Dnative.aot.profiles=embedded."
+  exit 0
+fi
+
+if unzip -p "$JAR" META-INF/MANIFEST.MF 2>/dev/null | grep -q "Spring-Boot-Native-Processed"; then
+  measure jvm-aot "$JAVA" -Dspring.aot.enabled=true -jar "$JAR"
+fi
+
+if [ -n "$NATIVE" ] && [ -x "$NATIVE" ]; then
+  measure native "$NATIVE"
+elif [ -n "$NATIVE" ]; then
+  echo "Native binary '$NATIVE' not found; build it with: mvn -Pnative clean package"
+fi